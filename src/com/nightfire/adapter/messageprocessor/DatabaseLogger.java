@@ -26,7 +26,8 @@ import com.nightfire.adapter.util.*;
 /**
  * This is a generic message-processor for logging messages to the database. All the
  * columns that are to be inserted are specified in the persistent properties
- * configuration.
+ * configuration.  Non-transactional loggers can have their rows group-committed
+ * asynchronously - see GroupCommitWriter.
  */ 
 public class  DatabaseLogger extends DBMessageProcessorBase
 {
@@ -143,6 +144,20 @@ public class  DatabaseLogger extends DBMessageProcessorBase
 
     private boolean failOnErrorFlag;
 
+    /**
+     * Whether this logger's rows are committed asynchronously, by the writer for
+     * the table and the request's database pool, or inserted by the request itself.
+     */
+    private boolean asyncLogging;
+
+    private int asyncQueueSize = GroupCommitWriter.DEFAULT_QUEUE_SIZE;
+
+    private int asyncBatchSize = GroupCommitWriter.DEFAULT_BATCH_SIZE;
+
+    private boolean waitForCommit = true;
+
+    private long commitTimeout = GroupCommitWriter.DEFAULT_COMMIT_TIMEOUT;
+
     /**
      * Constructor.
      */
@@ -202,6 +217,16 @@ public class  DatabaseLogger extends DBMessageProcessorBase
         // Get boolean value of FAIL_ON_ERROR property if configured, by default it's 'true'.
         failOnErrorFlag = StringUtils.getBoolean( getPropertyValue( FAIL_ON_ERROR_PROP ), true);
 
+        if ( StringUtils.getBoolean( getPropertyValue( GroupCommitWriter.ASYNC_LOGGING_PROP ), false ) )
+        {
+            if ( usingContextConnection )
+                Debug.warning( "DatabaseLogger: Ignoring " + GroupCommitWriter.ASYNC_LOGGING_PROP
+                               + " since logging is part of the overall driver transaction." );
+            else
+            if ( StringUtils.hasValue( tableName ) )
+                initializeAsyncLogging( errorBuffer );
+        }
+
         String logSYSDateInUTC = getPropertyValue( LOG_SYSDATE_IN_UTC_PROP );
 
         if ( StringUtils.hasValue( logSYSDateInUTC ) )
@@ -382,6 +407,9 @@ public class  DatabaseLogger extends DBMessageProcessorBase
         // Extract values from header.
         extractHeaderData(mpContext);
 
+        if ( asyncLogging && insertAsynchronously( ) )
+            return( formatNVPair( inputObject ) );
+
         Connection dbConn = null;
 
         try
@@ -418,11 +446,6 @@ public class  DatabaseLogger extends DBMessageProcessorBase
         }
         catch ( Exception e )
         {
-            String errMsg = "ERROR: DatabaseLogger: Attempt to log to database failed with error: "
-                            + e.getMessage();
-
-            Debug.log( Debug.ALL_ERRORS, errMsg );
-
             // If the configuration indicates that this SQL operation isn't part of the overall driver
             // transaction, roll back any changes now.
             if ( !usingContextConnection )
@@ -440,22 +463,7 @@ public class  DatabaseLogger extends DBMessageProcessorBase
                 }
             }
 
-            // if FAIL_ON_ERROR property set as 'false', then eat exception to continue processing
-
-            if(failOnErrorFlag){
-
-                // Re-throw the exception to the driver.
-                if ( e instanceof MessageException )
-                    throw (MessageException)e;
-                else
-                    throw new ProcessingException( errMsg );
-            }
-
-            if(Debug.isLevelEnabled(Debug.MSG_STATUS)) {
-                Debug.log( Debug.MSG_STATUS, "Could not insert row into database table [" + tableName + "] "  );
-                Debug.log( Debug.MSG_STATUS, "FAIL_ON_ERROR property value is [" + failOnErrorFlag + "]. Hence processing would be continued..." );
-            }
-
+            handleFailure( e );
         }
         finally
         {
@@ -478,6 +486,157 @@ public class  DatabaseLogger extends DBMessageProcessorBase
         return( formatNVPair( inputObject ) );
     }
 
+    /**
+     * Report a failed insert to the driver, unless FAIL_ON_ERROR is 'false'.
+     *
+     * @param  e  The error.
+     *
+     * @exception  ProcessingException  Thrown if processing should stop.
+     * @exception  MessageException  Thrown if the message is bad, and processing should stop.
+     */
+    private void handleFailure ( Exception e ) throws MessageException, ProcessingException
+    {
+        String errMsg = "ERROR: DatabaseLogger: Attempt to log to database failed with error: "
+                        + e.getMessage();
+
+        Debug.log( Debug.ALL_ERRORS, errMsg );
+
+        // if FAIL_ON_ERROR property set as 'false', then eat exception to continue processing
+
+        if(failOnErrorFlag){
+
+            // Re-throw the exception to the driver.
+            if ( e instanceof MessageException )
+                throw (MessageException)e;
+            else
+                throw new ProcessingException( errMsg );
+        }
+
+        if(Debug.isLevelEnabled(Debug.MSG_STATUS)) {
+            Debug.log( Debug.MSG_STATUS, "Could not insert row into database table [" + tableName + "] "  );
+            Debug.log( Debug.MSG_STATUS, "FAIL_ON_ERROR property value is [" + failOnErrorFlag + "]. Hence processing would be continued..." );
+        }
+    }
+
+
+    /**
+     * Read the asynchronous logging properties.
+     *
+     * @param  errorBuffer  Buffer for any property errors.
+     */
+    private void initializeAsyncLogging ( StringBuffer errorBuffer )
+    {
+        waitForCommit = StringUtils.getBoolean( getPropertyValue( GroupCommitWriter.WAIT_FOR_COMMIT_PROP ), true );
+
+        try
+        {
+            String strTemp = getPropertyValue( GroupCommitWriter.ASYNC_QUEUE_SIZE_PROP );
+
+            if ( StringUtils.hasValue( strTemp ) )
+                asyncQueueSize = StringUtils.getInteger( strTemp );
+
+            strTemp = getPropertyValue( GroupCommitWriter.ASYNC_BATCH_SIZE_PROP );
+
+            if ( StringUtils.hasValue( strTemp ) )
+                asyncBatchSize = StringUtils.getInteger( strTemp );
+
+            strTemp = getPropertyValue( GroupCommitWriter.COMMIT_TIMEOUT_PROP );
+
+            if ( StringUtils.hasValue( strTemp ) )
+                commitTimeout = StringUtils.getInteger( strTemp );
+        }
+        catch ( FrameworkException e )
+        {
+            errorBuffer.append ( "Asynchronous logging property value is invalid. " + e.getMessage ( ) + "\n" );
+
+            return;
+        }
+
+        asyncLogging = true;
+
+        if(Debug.isLevelEnabled(Debug.SYSTEM_CONFIG))
+            Debug.log( Debug.SYSTEM_CONFIG, "Rows will be group-committed asynchronously, waiting for commit? ["
+                       + waitForCommit + "], commit timeout [" + commitTimeout + "] msec." );
+    }
+
+
+    /**
+     * Capture the row(s) this logger inserts, and queue them to be group-committed.
+     * If waiting for the commit, failures are handled as for a synchronous insert;
+     * otherwise they are only logged.
+     *
+     * @return  'true' if the rows were handled, or 'false' if they couldn't be
+     *          queued and must be inserted by the caller.
+     *
+     * @exception  ProcessingException  Thrown if the insert failed, and processing should stop.
+     * @exception  MessageException  Thrown if the message is bad, and processing should stop.
+     */
+    private boolean insertAsynchronously ( ) throws MessageException, ProcessingException
+    {
+        // The writer depends on the request's database pool, so is looked up each time.
+        GroupCommitWriter asyncWriter = GroupCommitWriter.getInstance( tableName, asyncQueueSize, asyncBatchSize );
+
+        GroupCommitWriter.Unit unit = asyncWriter.createUnit( waitForCommit ? null : asyncFailureLogger );
+
+        try
+        {
+            insert( unit.getConnection() );
+        }
+        catch ( Exception e )
+        {
+            if ( !unit.isUnsupported() )
+            {
+                handleFailure( e );
+
+                return true;
+            }
+        }
+        finally
+        {
+            unit.release( );
+        }
+
+        if ( unit.isUnsupported() )
+        {
+            if(Debug.isLevelEnabled(Debug.MSG_STATUS))
+                Debug.log( Debug.MSG_STATUS, "Row can't be group-committed, so inserting it synchronously." );
+
+            return false;
+        }
+
+        if ( !asyncWriter.submit( unit ) )
+            return false;
+
+        if ( waitForCommit )
+        {
+            try
+            {
+                unit.await( commitTimeout );
+            }
+            catch ( ProcessingException e )
+            {
+                handleFailure( e );
+            }
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Logs the failures of rows which the request didn't wait for.
+     */
+    private final GroupCommitWriter.FailureCallback asyncFailureLogger = new GroupCommitWriter.FailureCallback( )
+        {
+            public void failed ( GroupCommitWriter.Unit unit, Exception e )
+            {
+                Debug.log( Debug.ALL_ERRORS, "ERROR: DatabaseLogger: Asynchronous logging of [" + unit.getRowCount()
+                           + "] row(s) to database table [" + tableName + "] failed after the request completed: "
+                           + e.getMessage() );
+            }
+        };
+
+
  /**
      * Extract data values from the request header, and use them to
      * set the instance variables.
@@ -0,0 +1,963 @@
+/**
+ * Copyright (c) 2003 Neustar, Inc. All rights reserved.
+ *
+ * $Header:$
+ */
+
+package com.nightfire.adapter.messageprocessor;
+
+
+import java.io.*;
+import java.lang.reflect.*;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+import com.nightfire.common.*;
+import com.nightfire.framework.util.*;
+import com.nightfire.framework.resource.ResourceException;
+import com.nightfire.framework.db.*;
+
+
+/**
+ * Writes rows logged by database-logger message-processors asynchronously,
+ * with group commit.  Each table has one writer, whose thread takes the rows
+ * queued by all requests since its last commit, inserts them in JDBC batches
+ * (one per distinct INSERT statement) on a single pooled connection, and
+ * commits them together.  Writers are per database pool as well, so that rows
+ * logged by a thread using a thread-specific pool key (see DBConnectionPool)
+ * are committed to that pool's database.
+ *
+ * A logger captures its rows by running its usual insert logic against the
+ * connection of a Unit, which records the statements prepared and the values
+ * set on them, instead of executing them.  Values that can't be replayed on
+ * another connection, such as driver-specific LOBs, make the unit unsupported,
+ * and the logger then inserts the row itself, as it would without this writer.
+ * The rows of a unit are always committed together, and a unit whose batch
+ * fails is retried on its own, so that one bad row doesn't fail the others.
+ */
+public class GroupCommitWriter
+{
+    /**
+     * Property indicating whether rows are written asynchronously with group
+     * commit.  Only applies to non-transactional logging.  Default is false.
+     */
+    public static final String ASYNC_LOGGING_PROP = "ASYNC_LOGGING";
+
+    /**
+     * Property indicating whether the request waits until its rows have been
+     * committed, so that failures are reported to the driver, or continues as
+     * soon as they are queued.  Default is true.
+     */
+    public static final String WAIT_FOR_COMMIT_PROP = "WAIT_FOR_COMMIT";
+
+    /**
+     * Property giving the maximum number of units queued for a table before
+     * requests insert their rows themselves.  Default is 10000.
+     */
+    public static final String ASYNC_QUEUE_SIZE_PROP = "ASYNC_QUEUE_SIZE";
+
+    /**
+     * Property giving the maximum number of units committed together.  Default is 500.
+     */
+    public static final String ASYNC_BATCH_SIZE_PROP = "ASYNC_BATCH_SIZE";
+
+    /**
+     * Property giving the time, in milliseconds, a request waits for its rows
+     * to be committed before treating the insert as failed.  Default is 30000.
+     */
+    public static final String COMMIT_TIMEOUT_PROP = "COMMIT_TIMEOUT";
+
+    public static final int DEFAULT_QUEUE_SIZE = 10000;
+
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    public static final long DEFAULT_COMMIT_TIMEOUT = 30000;
+
+
+    /**
+     * Notified of the failure of a unit that nobody waits for.
+     */
+    public interface FailureCallback
+    {
+        /**
+         * Called by the writer's thread when the unit's rows couldn't be committed.
+         *
+         * @param  unit  The unit.
+         * @param  e     The error.
+         */
+        public void failed ( Unit unit, Exception e );
+    }
+
+
+    /**
+     * Get the writer for the given table and the calling thread's database
+     * pool, creating it if necessary.  The queue and batch sizes of the first
+     * logger to ask for the writer are used.
+     *
+     * @param  tableName  The table the rows are inserted into.
+     * @param  queueSize  Maximum number of units queued.
+     * @param  batchSize  Maximum number of units committed together.
+     *
+     * @return  The writer.
+     */
+    public static GroupCommitWriter getInstance ( String tableName, int queueSize, int batchSize )
+    {
+        String poolKey = DBConnectionPool.getThreadSpecificPoolKey( );
+
+        String key = tableName.toUpperCase( );
+
+        if ( poolKey != null )
+            key = poolKey + ":" + key;
+
+        GroupCommitWriter writer = (GroupCommitWriter)writers.get( key );
+
+        if ( writer == null )
+        {
+            // Created under the lock, since each writer starts a thread.
+            synchronized ( writers )
+            {
+                writer = (GroupCommitWriter)writers.get( key );
+
+                if ( writer == null )
+                {
+                    writer = new GroupCommitWriter( poolKey, tableName.toUpperCase(), queueSize, batchSize );
+
+                    writers.putIfAbsent( key, writer );
+                }
+            }
+        }
+
+        return writer;
+    }
+
+
+    /**
+     * Create a unit to capture a request's rows in.  Must be called by a thread
+     * using the writer's database pool.
+     *
+     * @param  callback  Notified if the rows can't be committed, or null.
+     *
+     * @return  The unit.
+     */
+    public Unit createUnit ( FailureCallback callback )
+    {
+        return( new Unit( callback ) );
+    }
+
+
+    /**
+     * Queue a unit's rows to be committed.  A unit without rows is complete
+     * at once.
+     *
+     * @param  unit  The unit, whose connection is no longer used.
+     *
+     * @return  'true' if the unit was queued, or 'false' if the queue is full,
+     *          in which case the caller should insert the rows itself.
+     */
+    public boolean submit ( Unit unit )
+    {
+        if ( unit.rows.isEmpty() )
+        {
+            unit.complete( null );
+
+            return true;
+        }
+
+        unit.submitted = System.currentTimeMillis( );
+
+        if ( !queue.offer( unit ) )
+        {
+            overflows.incrementAndGet( );
+
+            if ( Debug.isLevelEnabled( Debug.DB_STATUS ) )
+                Debug.log( Debug.DB_STATUS, "Group-commit queue for table [" + tableName
+                           + "] is full, so the request will insert its rows itself." );
+
+            return false;
+        }
+
+        return true;
+    }
+
+
+    /**
+     * Describe the writer's queue and usage counts.
+     *
+     * @return  Human-readable description.
+     */
+    public String describe ( )
+    {
+        return( "Group-commit writer for table [" + tableName + "], database pool [" + poolKey
+                + "]: queued [" + queue.size()
+                + "/" + queueSize + "], units committed [" + unitsCommitted.get() + "], rows committed ["
+                + rowsCommitted.get() + "], commits [" + commits.get() + "], failed units ["
+                + unitsFailed.get() + "], queue overflows [" + overflows.get() + "]; "
+                + commitLatency.describe() );
+    }
+
+
+    /**
+     * The rows captured from one request, which are committed together.
+     */
+    public final class Unit
+    {
+        /**
+         * Get a connection which captures the statements prepared and executed
+         * on it.  Only the statement's parameters, execution and batching, and
+         * the database meta-data, are supported.
+         *
+         * @return  The capturing connection.
+         */
+        public Connection getConnection ( )
+        {
+            if ( connection == null )
+            {
+                connection = (Connection)Proxy.newProxyInstance( Connection.class.getClassLoader(),
+                                                                 new Class[] { Connection.class },
+                                                                 new CapturingConnection( ) );
+            }
+
+            return connection;
+        }
+
+
+        /**
+         * Tests whether the logger did anything the unit can't capture, in which
+         * case the rows must be inserted directly instead.
+         *
+         * @return  'true' if the unit can't be used.
+         */
+        public boolean isUnsupported ( )
+        {
+            return( unsupported != null );
+        }
+
+
+        /**
+         * @return  The number of rows captured.
+         */
+        public int getRowCount ( )
+        {
+            return( rows.size() );
+        }
+
+
+        /**
+         * Release the database connection used for meta-data, if any.  Must be
+         * called once the logger is done with the unit's connection.
+         */
+        public void release ( )
+        {
+            if ( metaDataConnection != null )
+            {
+                try
+                {
+                    DBConnectionPool.getInstance( true ).releaseConnection( metaDataConnection );
+                }
+                catch ( ResourceException e )
+                {
+                    Debug.log( Debug.ALL_ERRORS, e.toString() );
+                }
+
+                metaDataConnection = null;
+            }
+        }
+
+
+        /**
+         * Wait until the unit's rows have been committed.
+         *
+         * @param  timeout  Maximum time to wait, in milliseconds.
+         *
+         * @exception  ProcessingException  Thrown if the rows couldn't be
+         *                                  committed, or weren't in time.
+         */
+        public void await ( long timeout ) throws ProcessingException
+        {
+            try
+            {
+                if ( !done.await( timeout, TimeUnit.MILLISECONDS ) )
+                {
+                    throw new ProcessingException( "ERROR: Rows queued for database table [" + tableName
+                                                   + "] were not committed within [" + timeout + "] msec." );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt( );
+
+                throw new ProcessingException( "ERROR: Interrupted while waiting for rows queued for database table ["
+                                               + tableName + "] to be committed." );
+            }
+
+            if ( error != null )
+            {
+                throw new ProcessingException( "ERROR: Could not insert row into database table [" + tableName
+                                               + "]:\n" + getErrorMessage( error ) );
+            }
+        }
+
+
+        private Unit ( FailureCallback callback )
+        {
+            this.callback = callback;
+        }
+
+
+        private void complete ( Exception e )
+        {
+            error = e;
+
+            done.countDown( );
+
+            if ( (e != null) && (callback != null) )
+            {
+                try
+                {
+                    callback.failed( this, e );
+                }
+                catch ( Exception ce )
+                {
+                    Debug.log( Debug.ALL_ERRORS, "Group-commit failure callback failed: " + ce.toString() );
+                }
+            }
+        }
+
+
+        private final FailureCallback callback;
+
+        private final List rows = new ArrayList( );
+
+        private final CountDownLatch done = new CountDownLatch( 1 );
+
+        private volatile Exception error;
+
+        private long submitted;
+
+        private Connection connection;
+
+        private Connection metaDataConnection;
+
+        private String unsupported;
+
+
+        /**
+         * Handles calls on a unit's connection.
+         */
+        private final class CapturingConnection implements InvocationHandler
+        {
+            public Object invoke ( Object proxy, Method method, Object[] args ) throws Throwable
+            {
+                String name = method.getName( );
+
+                if ( name.equals( "prepareStatement" ) && (args.length == 1) )
+                {
+                    return( Proxy.newProxyInstance( PreparedStatement.class.getClassLoader(),
+                                                    new Class[] { PreparedStatement.class },
+                                                    new CapturingStatement( (String)args[0] ) ) );
+                }
+
+                if ( name.equals( "getMetaData" ) )
+                {
+                    // Table meta-data is cached by the loggers, so this is only
+                    // needed the first time a table is logged to.
+                    if ( metaDataConnection == null )
+                        metaDataConnection = DBConnectionPool.getInstance( true ).acquireConnection( );
+
+                    return( metaDataConnection.getMetaData() );
+                }
+
+                if ( name.equals( "close" ) || name.equals( "clearWarnings" ) )
+                    return null;
+
+                if ( name.equals( "isClosed" ) )
+                    return Boolean.FALSE;
+
+                return( invokeObjectMethod( proxy, method, args, "capturing connection" ) );
+            }
+        }
+
+
+        /**
+         * Handles calls on a statement prepared on a unit's connection.
+         */
+        private final class CapturingStatement implements InvocationHandler
+        {
+            CapturingStatement ( String sql )
+            {
+                this.sql = sql;
+            }
+
+            public Object invoke ( Object proxy, Method method, Object[] args ) throws Throwable
+            {
+                String name = method.getName( );
+
+                // Parameter setters take the parameter index and the value.
+                if ( name.startsWith( "set" ) && (args != null) && (args.length >= 2)
+                     && (args[0] instanceof Integer) )
+                {
+                    calls.add( new Call( method, copyArgs( name, args ) ) );
+
+                    return null;
+                }
+
+                if ( name.equals( "executeUpdate" ) && (args == null) )
+                {
+                    addRow( );
+
+                    return Integer.valueOf( 1 );
+                }
+
+                if ( name.equals( "addBatch" ) && (args == null) )
+                {
+                    addRow( );
+
+                    batched ++;
+
+                    return null;
+                }
+
+                if ( name.equals( "executeBatch" ) )
+                {
+                    int[] counts = new int[ batched ];
+
+                    Arrays.fill( counts, 1 );
+
+                    batched = 0;
+
+                    return counts;
+                }
+
+                if ( name.equals( "clearParameters" ) )
+                {
+                    calls = new ArrayList( );
+
+                    return null;
+                }
+
+                if ( name.equals( "close" ) || name.equals( "clearWarnings" ) )
+                    return null;
+
+                return( invokeObjectMethod( proxy, method, args, "capturing statement" ) );
+            }
+
+            private void addRow ( )
+            {
+                rows.add( new Row( sql, calls ) );
+
+                // The parameters stay set for the next row, as with JDBC.
+                calls = new ArrayList( calls );
+            }
+
+            private final String sql;
+
+            private List calls = new ArrayList( );
+
+            private int batched = 0;
+        }
+
+
+        /**
+         * Handles the Object methods of a proxy, and fails any other call.
+         */
+        private Object invokeObjectMethod ( Object proxy, Method method, Object[] args, String what )
+        {
+            String name = method.getName( );
+
+            if ( name.equals( "hashCode" ) )
+                return Integer.valueOf( System.identityHashCode( proxy ) );
+
+            if ( name.equals( "equals" ) )
+                return Boolean.valueOf( proxy == args[0] );
+
+            if ( name.equals( "toString" ) )
+                return( what + " for table [" + tableName + "]" );
+
+            unsupported = name;
+
+            throw new UnsupportedOperationException( "Method [" + name + "] isn't supported by the "
+                                                     + what + " used for group commit." );
+        }
+
+
+        /**
+         * Copy a setter's arguments, reading any stream value so that it can be
+         * replayed, possibly more than once.
+         */
+        private Object[] copyArgs ( String name, Object[] args ) throws IOException
+        {
+            Object[] copy = (Object[])args.clone( );
+
+            for ( int Ix = 1;  Ix < copy.length;  Ix ++ )
+            {
+                if ( copy[ Ix ] instanceof Reader )
+                    copy[ Ix ] = new CharacterData( (Reader)copy[ Ix ] );
+                else
+                if ( copy[ Ix ] instanceof InputStream )
+                    copy[ Ix ] = new ByteData( (InputStream)copy[ Ix ] );
+                else
+                if ( (copy[ Ix ] != null) && !isReplayable( copy[ Ix ] ) )
+                {
+                    unsupported = name;
+
+                    throw new UnsupportedOperationException( "Value of type [" + copy[ Ix ].getClass().getName()
+                                                             + "] can't be captured for group commit." );
+                }
+            }
+
+            return copy;
+        }
+    }
+
+
+    /**
+     * One captured row: the statement and the parameter setter calls.
+     */
+    private static final class Row
+    {
+        Row ( String sql, List calls )
+        {
+            this.sql = sql;
+
+            this.calls = calls;
+        }
+
+        /**
+         * Set the row's parameters on a statement prepared from its SQL.
+         */
+        void populate ( PreparedStatement pstmt ) throws Exception
+        {
+            Iterator iter = calls.iterator( );
+
+            while ( iter.hasNext() )
+            {
+                Call call = (Call)iter.next( );
+
+                Object[] args = (Object[])call.args.clone( );
+
+                for ( int Ix = 1;  Ix < args.length;  Ix ++ )
+                {
+                    if ( args[ Ix ] instanceof CharacterData )
+                        args[ Ix ] = new StringReader( ((CharacterData)args[ Ix ]).value );
+                    else
+                    if ( args[ Ix ] instanceof ByteData )
+                        args[ Ix ] = new ByteArrayInputStream( ((ByteData)args[ Ix ]).value );
+                }
+
+                try
+                {
+                    call.method.invoke( pstmt, args );
+                }
+                catch ( InvocationTargetException e )
+                {
+                    Throwable cause = e.getCause( );
+
+                    if ( cause instanceof Exception )
+                        throw (Exception)cause;
+
+                    throw e;
+                }
+            }
+        }
+
+        final String sql;
+
+        final List calls;
+    }
+
+
+    private static final class Call
+    {
+        Call ( Method method, Object[] args )
+        {
+            this.method = method;
+
+            this.args = args;
+        }
+
+        final Method method;
+
+        final Object[] args;
+    }
+
+
+    private static final class CharacterData
+    {
+        CharacterData ( Reader reader ) throws IOException
+        {
+            StringWriter sw = new StringWriter( );
+
+            char[] buf = new char[ 4096 ];
+
+            for ( int count = reader.read( buf );  count != -1;  count = reader.read( buf ) )
+                sw.write( buf, 0, count );
+
+            value = sw.toString( );
+        }
+
+        final String value;
+    }
+
+
+    private static final class ByteData
+    {
+        ByteData ( InputStream stream ) throws IOException
+        {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream( );
+
+            byte[] buf = new byte[ 4096 ];
+
+            for ( int count = stream.read( buf );  count != -1;  count = stream.read( buf ) )
+                bos.write( buf, 0, count );
+
+            value = bos.toByteArray( );
+        }
+
+        final byte[] value;
+    }
+
+
+    /**
+     * Tests whether a parameter value is independent of the connection it was
+     * created for, and so can be set on another one.
+     */
+    private static boolean isReplayable ( Object value )
+    {
+        return( (value instanceof String) || (value instanceof Number) || (value instanceof Boolean)
+                || (value instanceof java.util.Date) || (value instanceof byte[])
+                || (value instanceof Character) || (value instanceof Calendar) );
+    }
+
+
+    private static String getErrorMessage ( Exception e )
+    {
+        if ( e instanceof SQLException )
+            return( DBInterface.getSQLErrorMessage( (SQLException)e ) );
+
+        return( e.toString() );
+    }
+
+
+    private GroupCommitWriter ( String poolKey, String tableName, int queueSize, int batchSize )
+    {
+        this.poolKey = poolKey;
+
+        this.tableName = tableName;
+
+        this.queueSize = (queueSize > 0) ? queueSize : DEFAULT_QUEUE_SIZE;
+
+        this.batchSize = (batchSize > 0) ? batchSize : DEFAULT_BATCH_SIZE;
+
+        queue = new ArrayBlockingQueue( this.queueSize );
+
+        commitLatency = new Histogram( "Group-commit latency for table [" + tableName + "]", "msec" );
+
+        Debug.log( Debug.SYSTEM_CONFIG, "Starting group-commit writer for table [" + tableName
+                   + "], database pool [" + poolKey + "], queue size [" + this.queueSize
+                   + "], batch size [" + this.batchSize + "]." );
+
+        String threadSuffix = (poolKey == null) ? tableName : (poolKey + "-" + tableName);
+
+        Thread writerThread = new Thread( "GroupCommitWriter-" + threadSuffix )
+            {
+                public void run ( )
+                {
+                    DBConnectionPool.setThreadSpecificPoolKey( GroupCommitWriter.this.poolKey );
+
+                    writeQueued( );
+                }
+            };
+
+        writerThread.setDaemon( true );
+
+        writerThread.start( );
+
+        // Commit whatever is still queued when the process exits.
+        Runtime.getRuntime().addShutdownHook( new Thread( "GroupCommitWriterShutdown-" + threadSuffix )
+            {
+                public void run ( )
+                {
+                    DBConnectionPool.setThreadSpecificPoolKey( GroupCommitWriter.this.poolKey );
+
+                    List units = new ArrayList( );
+
+                    queue.drainTo( units );
+
+                    if ( !units.isEmpty() )
+                        write( units );
+                }
+            } );
+    }
+
+
+    /**
+     * The writer thread's loop: wait for units, then commit all those queued
+     * meanwhile, up to the batch size, together.
+     */
+    private void writeQueued ( )
+    {
+        while ( true )
+        {
+            try
+            {
+                List units = new ArrayList( );
+
+                units.add( queue.take() );
+
+                queue.drainTo( units, batchSize - 1 );
+
+                write( units );
+            }
+            catch ( InterruptedException e )
+            {
+                Debug.warning( "Group-commit writer for table [" + tableName + "] interrupted, exiting." );
+
+                return;
+            }
+            catch ( Exception e )
+            {
+                Debug.error( "Group-commit writer for table [" + tableName + "] failed: " + e.toString() );
+            }
+        }
+    }
+
+
+    /**
+     * Insert and commit the given units' rows on one connection of the writer's
+     * pool, which the calling thread must be using.  If that fails, each unit
+     * is retried on its own.
+     */
+    private void write ( List units )
+    {
+        DBConnectionPool pool = null;
+
+        Connection dbConn = null;
+
+        try
+        {
+            pool = DBConnectionPool.getInstance( true );
+
+            dbConn = pool.acquireConnection( );
+        }
+        catch ( Exception e )
+        {
+            Debug.log( Debug.ALL_ERRORS, "ERROR: Group-commit writer for table [" + tableName
+                       + "] could not get a database connection: " + e.getMessage() );
+
+            complete( units, e );
+
+            return;
+        }
+
+        try
+        {
+            try
+            {
+                insert( dbConn, units );
+
+                pool.commit( dbConn );
+
+                committed( units );
+            }
+            catch ( Exception e )
+            {
+                rollback( pool, dbConn );
+
+                if ( units.size() == 1 )
+                {
+                    failed( units, e );
+
+                    return;
+                }
+
+                if ( Debug.isLevelEnabled( Debug.DB_STATUS ) )
+                    Debug.log( Debug.DB_STATUS, "Group commit of [" + units.size() + "] units to table [" + tableName
+                               + "] failed, so committing them one at a time: " + getErrorMessage( e ) );
+
+                Iterator iter = units.iterator( );
+
+                while ( iter.hasNext() )
+                {
+                    List unit = Collections.singletonList( iter.next() );
+
+                    try
+                    {
+                        insert( dbConn, unit );
+
+                        pool.commit( dbConn );
+
+                        committed( unit );
+                    }
+                    catch ( Exception ue )
+                    {
+                        rollback( pool, dbConn );
+
+                        failed( unit, ue );
+                    }
+                }
+            }
+        }
+        finally
+        {
+            try
+            {
+                pool.releaseConnection( dbConn );
+            }
+            catch ( ResourceException e )
+            {
+                Debug.log( Debug.ALL_ERRORS, e.toString() );
+            }
+        }
+    }
+
+
+    /**
+     * Insert the units' rows, batching the rows of each distinct statement.
+     */
+    private void insert ( Connection dbConn, List units ) throws Exception
+    {
+        Map statements = new LinkedHashMap( );
+
+        try
+        {
+            Iterator iter = units.iterator( );
+
+            while ( iter.hasNext() )
+            {
+                Iterator rows = ((Unit)iter.next()).rows.iterator( );
+
+                while ( rows.hasNext() )
+                {
+                    Row row = (Row)rows.next( );
+
+                    PreparedStatement pstmt = (PreparedStatement)statements.get( row.sql );
+
+                    if ( pstmt == null )
+                    {
+                        pstmt = dbConn.prepareStatement( row.sql );
+
+                        statements.put( row.sql, pstmt );
+                    }
+
+                    row.populate( pstmt );
+
+                    pstmt.addBatch( );
+                }
+            }
+
+            iter = statements.values().iterator( );
+
+            while ( iter.hasNext() )
+                ((PreparedStatement)iter.next()).executeBatch( );
+        }
+        finally
+        {
+            Iterator iter = statements.values().iterator( );
+
+            while ( iter.hasNext() )
+            {
+                try
+                {
+                    ((PreparedStatement)iter.next()).close( );
+                }
+                catch ( SQLException sqle )
+                {
+                    Debug.log( Debug.ALL_ERRORS, DBInterface.getSQLErrorMessage(sqle) );
+                }
+            }
+        }
+    }
+
+
+    private void rollback ( DBConnectionPool pool, Connection dbConn )
+    {
+        try
+        {
+            pool.rollback( dbConn );
+        }
+        catch ( ResourceException e )
+        {
+            Debug.log( Debug.ALL_ERRORS, e.getMessage() );
+        }
+    }
+
+
+    private void committed ( List units )
+    {
+        long now = System.currentTimeMillis( );
+
+        int rowCount = 0;
+
+        Iterator iter = units.iterator( );
+
+        while ( iter.hasNext() )
+        {
+            Unit unit = (Unit)iter.next( );
+
+            rowCount += unit.rows.size( );
+
+            commitLatency.record( now - unit.submitted );
+
+            unit.complete( null );
+        }
+
+        commits.incrementAndGet( );
+
+        unitsCommitted.addAndGet( units.size() );
+
+        rowsCommitted.addAndGet( rowCount );
+
+        if ( Debug.isLevelEnabled( Debug.BENCHMARK ) )
+            Debug.log( Debug.BENCHMARK, "Group-committed [" + rowCount + "] rows of [" + units.size()
+                       + "] requests to table [" + tableName + "]." );
+    }
+
+
+    private void failed ( List units, Exception e )
+    {
+        Debug.log( Debug.ALL_ERRORS, "ERROR: Could not insert queued rows into database table ["
+                   + tableName + "]:\n" + getErrorMessage( e ) );
+
+        unitsFailed.addAndGet( units.size() );
+
+        complete( units, e );
+    }
+
+
+    private static void complete ( List units, Exception e )
+    {
+        Iterator iter = units.iterator( );
+
+        while ( iter.hasNext() )
+            ((Unit)iter.next()).complete( e );
+    }
+
+
+    // Writers, keyed by upper-case table name, prefixed by the pool key, if any.
+    private static ConcurrentMap writers = new ConcurrentHashMap( );
+
+    // Thread-specific key of the database pool written to, or null for the default pool.
+    private final String poolKey;
+
+    private final String tableName;
+
+    private final int queueSize;
+
+    private final int batchSize;
+
+    private final BlockingQueue queue;
+
+    private final Histogram commitLatency;
+
+    private final AtomicLong unitsCommitted = new AtomicLong( );
+
+    private final AtomicLong rowsCommitted = new AtomicLong( );
+
+    private final AtomicLong commits = new AtomicLong( );
+
+    private final AtomicLong unitsFailed = new AtomicLong( );
+
+    private final AtomicLong overflows = new AtomicLong( );
+}
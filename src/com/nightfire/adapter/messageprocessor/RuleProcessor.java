@@ -207,6 +207,25 @@ public class RuleProcessor extends MessageProcessorBase {
     private boolean setHaltMessageExecNode = false;
     
     public static final String HALT_MESSAGE_EXECUTION_PROP = "HALT_MESSAGE_EXECUTION";
+
+    /**
+     * Optional number of seconds for which the results of rule database
+     * queries on reference data (such as LRN and NPA-NXX ownership) are
+     * shared between requests. The default of 0 disables sharing, so
+     * results are only reused within a request.
+     */
+    public static final String SHARED_QUERY_CACHE_TTL_PROP = "SHARED_QUERY_CACHE_TTL";
+
+    /**
+     * Optional maximum number of query results shared between requests.
+     */
+    public static final String SHARED_QUERY_CACHE_MAX_SIZE_PROP = "SHARED_QUERY_CACHE_MAX_SIZE";
+
+    /**
+     * Optional maximum number of idle instances of each Evaluator class
+     * kept in the evaluator pool. The default of 0 keeps all of them.
+     */
+    public static final String EVALUATOR_POOL_MAX_IDLE_PROP = "EVALUATOR_POOL_MAX_IDLE";
    
     /**
     * Gets the input message location and Evaluator class names from
@@ -340,6 +359,38 @@ public class RuleProcessor extends MessageProcessorBase {
                " is invalid. " + e.getMessage ( ) + ". Default value: [false]\n" );
            }
        }
+
+       // Get the optional properties of the query-result cache shared between requests.
+       String strCacheTTL = getPropertyValue( SHARED_QUERY_CACHE_TTL_PROP );
+       String strCacheMaxSize = getPropertyValue( SHARED_QUERY_CACHE_MAX_SIZE_PROP );
+       try
+       {
+           if ( StringUtils.hasValue( strCacheMaxSize ) )
+               QueryResultCache.getInstance().setMaxSize( Integer.parseInt( strCacheMaxSize ) );
+
+           if ( StringUtils.hasValue( strCacheTTL ) )
+               QueryResultCache.getInstance().setTimeToLive( Long.parseLong( strCacheTTL ) * 1000 );
+       }
+       catch ( NumberFormatException e )
+       {
+           throw new ProcessingException( "ERROR: Invalid value for property [" + SHARED_QUERY_CACHE_TTL_PROP
+                                          + "] or [" + SHARED_QUERY_CACHE_MAX_SIZE_PROP + "]: " + e.getMessage() );
+       }
+
+       String strMaxIdle = getPropertyValue( EVALUATOR_POOL_MAX_IDLE_PROP );
+
+       if ( StringUtils.hasValue( strMaxIdle ) )
+       {
+           try
+           {
+               EvaluatorPool.getInstance().setMaxIdle( Integer.parseInt( strMaxIdle ) );
+           }
+           catch ( NumberFormatException e )
+           {
+               throw new ProcessingException( "ERROR: Invalid value for property [" + EVALUATOR_POOL_MAX_IDLE_PROP
+                                              + "]: " + e.getMessage() );
+           }
+       }
        
     }
 
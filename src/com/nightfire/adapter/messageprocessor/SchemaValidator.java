@@ -7,6 +7,7 @@ import com.nightfire.framework.util.Debug;
 import com.nightfire.framework.util.StringUtils;
 import com.nightfire.framework.util.NVPair;
 import com.nightfire.framework.util.FileUtils;
+import com.nightfire.framework.util.Histogram;
 import com.nightfire.framework.db.PersistentProperty;
 import com.nightfire.framework.db.DBInterface;
 import com.nightfire.framework.db.DatabaseException;
@@ -14,13 +15,26 @@ import com.nightfire.framework.message.MessageException;
 import com.nightfire.framework.message.common.xml.XMLLibraryPortabilityLayer;
 import com.nightfire.common.ProcessingException;
 
+import javax.xml.XMLConstants;
 import javax.xml.parsers.SAXParserFactory;
 import javax.xml.parsers.SAXParser;
+import javax.xml.transform.Source;
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamSource;
+import javax.xml.validation.Schema;
+import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
 import java.util.List;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.StringReader;
 
 import org.xml.sax.helpers.DefaultHandler;
 import org.xml.sax.SAXParseException;
@@ -30,6 +44,12 @@ import org.w3c.dom.Document;
 /**
  * This is a message processor which validates a XML Document	
  * against a specified external XSchema and decides next processor.
+ *
+ * When USE_COMPILED_SCHEMA is true, the configured schemas are compiled once
+ * into a javax.xml.validation.Schema, which is shared by all validators
+ * configured with the same schema files, and recompiled only when one of the
+ * files changes.  Each thread reuses its own Validator for the schema, and
+ * validates DOM input directly rather than serializing and reparsing it.
  */
 
 public class SchemaValidator extends MessageProcessorBase
@@ -39,12 +59,25 @@ public class SchemaValidator extends MessageProcessorBase
     private static final String CONTEXT_SCHEMA_FILE_LOCATION_PROP= "CONTEXT_SCHEMA_FILE_LOCATION";
     private static final String NEXT_MESSAGE_PROCESSOR_VALID_XML_PROP= "NEXT_MESSAGE_PROCESSOR_VALID_XML";
     private static final String NEXT_MESSAGE_PROCESSOR_INVALID_XML_PROP= "NEXT_MESSAGE_PROCESSOR_INVALID_XML";
+    private static final String USE_COMPILED_SCHEMA_PROP= "USE_COMPILED_SCHEMA";
+    private static final String SCHEMA_CHECK_INTERVAL_PROP= "SCHEMA_CHECK_INTERVAL";
+
+    // Default time, in msec, between checks of whether the schema files have changed.
+    private static final long DEFAULT_SCHEMA_CHECK_INTERVAL = 10000;
+
+    private static final String SCHEMA_FULL_CHECKING_FEATURE = "http://apache.org/xml/features/validation/schema-full-checking";
+
+    // Compiled schemas, keyed by their schema file locations, shared by all instances.
+    private static final Map compiledSchemas = new ConcurrentHashMap();
 
     private String xmlLocation = null;
     private String nextMessageProcessorForValidXML = null;
     private String nextMessageProcessorForInvalidXML = null;
     private List nameSpaceSchema = null;
     private String noNamespaceSchemaLocation = null;
+    private boolean useCompiledSchema = false;
+    private long schemaCheckInterval = DEFAULT_SCHEMA_CHECK_INTERVAL;
+    private CompiledSchema compiledSchema = null;
 
     /**
      * Constructor.
@@ -98,6 +131,31 @@ public class SchemaValidator extends MessageProcessorBase
             nameSpaceSchema.add( new NamespaceSchema( namespace, contextSchemaFileLocation ) );
         }
 
+        useCompiledSchema = StringUtils.getBoolean( getPropertyValue( USE_COMPILED_SCHEMA_PROP ), false );
+
+        String temp = getPropertyValue( SCHEMA_CHECK_INTERVAL_PROP );
+
+        if ( StringUtils.hasValue( temp ) )
+        {
+            try
+            {
+                schemaCheckInterval = Long.parseLong( temp );
+            }
+            catch ( NumberFormatException nfe )
+            {
+                throw new ProcessingException( "ERROR: Invalid value [" + temp + "] for property ["
+                                               + SCHEMA_CHECK_INTERVAL_PROP + "]." );
+            }
+        }
+
+        if ( useCompiledSchema )
+        {
+            // Compile now, so that bad schemas are reported at start-up.
+            compiledSchema = getCompiledSchema( );
+
+            compiledSchema.getSchema( schemaCheckInterval );
+        }
+
         if(Debug.isLevelEnabled(Debug.SYSTEM_CONFIG))
             Debug.log( Debug.SYSTEM_CONFIG, "SchemaValidator: Initialization done." );
     }
@@ -122,8 +180,21 @@ public class SchemaValidator extends MessageProcessorBase
         if(Debug.isLevelEnabled(Debug.MSG_STATUS))
             Debug.log(Debug.MSG_STATUS, "Executing Schema Validator message-processor." );
 
+        long startTime = System.currentTimeMillis();
+
         try
         {
+            if ( useCompiledSchema )
+            {
+                validate( get( xmlLocation, mpContext, inputObject ) );
+
+                logValidationTime( startTime );
+
+                NVPair[ ] validXML = new NVPair[ 1 ];
+                validXML[ 0 ] = new NVPair( nextMessageProcessorForValidXML, inputObject );
+                return validXML;
+            }
+
             StringBuffer buffer = new StringBuffer();
             String xml = null;
             Object input = get( xmlLocation,mpContext,inputObject);
@@ -176,6 +247,8 @@ public class SchemaValidator extends MessageProcessorBase
                 }
             });
 
+            logValidationTime( startTime );
+
             NVPair[ ] validXML = new NVPair[ 1 ];
             validXML[ 0 ] = new NVPair( nextMessageProcessorForValidXML, inputObject );
             return validXML;
@@ -183,6 +256,8 @@ public class SchemaValidator extends MessageProcessorBase
         }
         catch (SAXParseException e)
         {
+            logValidationTime( startTime );
+
             Debug.log( Debug.ALL_ERRORS, "ERROR: Validation failed\n" + e.getMessage() + "\nline " + e.getLineNumber() + ", column " + e.getColumnNumber() + "\n");
 //			System.err.println("Validation failed\n" + e.getMessage() + "\nline " + e.getLineNumber() + ", column " + e.getColumnNumber() + "\n");
             NVPair[ ] invalidXML = new NVPair[ 1 ];
@@ -204,6 +279,80 @@ public class SchemaValidator extends MessageProcessorBase
 
     }
 
+    /**
+     * Validates the input against the compiled schema, using the current thread's validator.
+     *
+     * @param  input  The XML, as a Document or String.
+     *
+     * @exception  SAXParseException  Thrown if the XML is not valid.
+     * @exception  Exception  Thrown on other errors.
+     */
+    private void validate ( Object input ) throws Exception
+    {
+        Source source;
+
+        // A DOM can only be validated directly if it was built namespace-aware;
+        // otherwise it's serialized and validated as a stream.
+        if ( (input instanceof Document) && (((Document)input).getDocumentElement().getLocalName() != null) )
+            source = new DOMSource( (Document)input );
+        else
+        {
+            String xml;
+
+            if ( input instanceof Document )
+                xml = XMLLibraryPortabilityLayer.convertDomToString( (Document)input );
+            else
+                xml = (String)input;
+
+            source = new StreamSource( new StringReader( xml ) );
+        }
+
+        compiledSchema.getValidator( schemaCheckInterval ).validate( source );
+    }
+
+    /**
+     * Gets the compiled schema shared by all validators configured with the same schema files.
+     */
+    private CompiledSchema getCompiledSchema ( )
+    {
+        // The no-namespace schema is the first one configured.
+        Set locations = new LinkedHashSet();
+
+        Iterator iter = nameSpaceSchema.iterator( );
+
+        while( iter.hasNext() )
+            locations.add( ((NamespaceSchema)iter.next()).getSchemaFileLocation() );
+
+        String key = locations.toString();
+
+        CompiledSchema schema = (CompiledSchema)compiledSchemas.get( key );
+
+        if ( schema == null )
+        {
+            CompiledSchema created = new CompiledSchema( (String[])locations.toArray( new String[ locations.size() ] ) );
+
+            schema = (CompiledSchema)((ConcurrentHashMap)compiledSchemas).putIfAbsent( key, created );
+
+            if ( schema == null )
+                schema = created;
+        }
+
+        return schema;
+    }
+
+    /**
+     * Logs the time taken to validate a message.
+     */
+    private void logValidationTime ( long startTime )
+    {
+        long elapsed = System.currentTimeMillis() - startTime;
+
+        validationTimes.record( elapsed );
+
+        if(Debug.isLevelEnabled(Debug.BENCHMARK))
+            Debug.log( Debug.BENCHMARK, "SchemaValidator: Validation took [" + elapsed + "] msec. " + validationTimes.describe() );
+    }
+
     private String replaceProlog(String str)
     {
         if(str.indexOf("?>") == -1)
@@ -212,6 +361,157 @@ public class SchemaValidator extends MessageProcessorBase
             return str.substring(str.indexOf("?>")+2);
     }
 
+    /**
+     * A set of schema files compiled into one Schema, which is recompiled when
+     * any of the files changes, along with each thread's Validator for it.
+     */
+    private static class CompiledSchema
+    {
+        private final String[] locations;
+        private final long[] lastModified;
+        private volatile Schema schema = null;
+        private volatile long nextCheckTime = 0;
+
+        // Each thread's validator, along with the schema it was created from.
+        private final ThreadLocal validators = new ThreadLocal();
+
+        public CompiledSchema(String[] locations)
+        {
+            this.locations = locations;
+            this.lastModified = new long[ locations.length ];
+        }
+
+        /**
+         * Gets the compiled schema, recompiling it if any of the files has changed.
+         *
+         * @param  checkInterval  Minimum time, in msec, between checks of the files.
+         *
+         * @exception  ProcessingException  Thrown if the schema can't be compiled.
+         */
+        public Schema getSchema(long checkInterval) throws ProcessingException
+        {
+            Schema current = schema;
+
+            if ( (current != null) && (System.currentTimeMillis() < nextCheckTime) )
+                return current;
+
+            synchronized( this )
+            {
+                // The modification times are always recorded, including before the first compile.
+                if ( isModified() || (schema == null) )
+                    schema = compile( );
+
+                nextCheckTime = System.currentTimeMillis() + checkInterval;
+
+                return schema;
+            }
+        }
+
+        /**
+         * Gets the current thread's validator for the schema.
+         *
+         * @param  checkInterval  Minimum time, in msec, between checks of the files.
+         *
+         * @exception  ProcessingException  Thrown if the schema can't be compiled.
+         */
+        public Validator getValidator(long checkInterval) throws ProcessingException
+        {
+            Schema current = getSchema( checkInterval );
+
+            Object[] entry = (Object[])validators.get();
+
+            if ( (entry == null) || (entry[0] != current) )
+            {
+                Validator validator = current.newValidator();
+
+                validator.setErrorHandler( new DefaultHandler() {
+                    public void error(SAXParseException e) throws SAXException
+                    {
+                        throw e;
+                    }
+                });
+
+                entry = new Object[]{ current, validator };
+
+                validators.set( entry );
+            }
+
+            return (Validator)entry[1];
+        }
+
+        /**
+         * Checks whether any of the schema files has changed since it was compiled,
+         * and records the files' modification times.
+         */
+        private boolean isModified()
+        {
+            boolean modified = false;
+
+            for ( int Ix = 0;  Ix < locations.length;  Ix ++ )
+            {
+                long time = new File( locations[Ix] ).lastModified();
+
+                if ( time != lastModified[Ix] )
+                {
+                    lastModified[Ix] = time;
+                    modified = true;
+                }
+            }
+
+            return modified;
+        }
+
+        private Schema compile() throws ProcessingException
+        {
+            if(Debug.isLevelEnabled(Debug.SYSTEM_CONFIG))
+                Debug.log( Debug.SYSTEM_CONFIG, "SchemaValidator: Compiling schemas " + java.util.Arrays.asList( locations ) );
+
+            long startTime = System.currentTimeMillis();
+
+            try
+            {
+                SchemaFactory factory = SchemaFactory.newInstance( XMLConstants.W3C_XML_SCHEMA_NS_URI );
+
+                try
+                {
+                    factory.setFeature( SCHEMA_FULL_CHECKING_FEATURE, true );
+                }
+                catch ( SAXException e )
+                {
+                    Debug.warning( "SchemaValidator: Schema full checking is not supported: " + e.getMessage() );
+                }
+
+                Source[] sources = new Source[ locations.length ];
+
+                for ( int Ix = 0;  Ix < locations.length;  Ix ++ )
+                {
+                    File file = new File( locations[Ix] );
+
+                    if ( file.exists() )
+                        sources[Ix] = new StreamSource( file );
+                    else
+                        sources[Ix] = new StreamSource( locations[Ix] );
+                }
+
+                Schema compiled = factory.newSchema( sources );
+
+                if(Debug.isLevelEnabled(Debug.BENCHMARK))
+                    Debug.log( Debug.BENCHMARK, "SchemaValidator: Compiling schemas took ["
+                               + (System.currentTimeMillis() - startTime) + "] msec." );
+
+                return compiled;
+            }
+            catch ( SAXException e )
+            {
+                throw new ProcessingException( "ERROR: Could not compile schemas " + java.util.Arrays.asList( locations )
+                                               + ":\n" + e.getMessage() );
+            }
+        }
+    }
+
+    // Validation times of all instances.
+    private static final Histogram validationTimes = new Histogram( "SchemaValidator validation time", "msec" );
+
     private class NamespaceSchema
     {
         private String namespace = null;
@@ -182,9 +182,10 @@ public abstract class RequestHandlerBase
         header = data.getHeader();
         request = data.getMessage();
 
+        MessageProcessingDriver driver = null;
+
         try
         {
-            MessageProcessingDriver driver;
 
             if(StringUtils.hasValue(header))
             {
@@ -291,6 +292,10 @@ public abstract class RequestHandlerBase
                 MetricsAgent.logGateway( metricsStartTime, driverKey, driverType + "," 
                                          + ComServerBase.getHeaderMetrics(header) + "." + outcome );
 
+            // Hand the driver's message-processors back for reuse, if its chain allows it.
+            if ( driver != null )
+                driver.release( );
+
             // Reset customer context.
             try
             {
@@ -29,7 +29,7 @@ import com.nightfire.comms.ia.asn.msg.*;
 /**
  * A utility for managing pools of reuseable DB socket connections.
  */
-class IASocketConnectionPool extends ResourcePool
+class IASocketConnectionPool extends ConcurrentResourcePool
 {
 
     private static final byte[] TEST_IA_STATUS_MESSAGE = {00000000};
@@ -218,7 +218,7 @@ class IASocketConnectionPool extends ResourcePool
      *
      * @exception ResourceException  Thrown if socket connection can't be obtained.
      */
-    public synchronized IASocket acquireSocket() throws ResourceException
+    public IASocket acquireSocket() throws ResourceException
     {
         long startTime = Performance.startTiming( Debug.BENCHMARK );
 
@@ -252,7 +252,7 @@ class IASocketConnectionPool extends ResourcePool
      *
      * @exception ResourceException  Thrown if socket connection can't be obtained.
      */
-    public synchronized IASocket acquireSocket(long timeout) throws ResourceException
+    public IASocket acquireSocket(long timeout) throws ResourceException
     {
         long startTime = Performance.startTiming( Debug.BENCHMARK );
 
@@ -284,7 +284,7 @@ class IASocketConnectionPool extends ResourcePool
      *
      * @exception ResourceException Thrown on errors.
      */
-    public synchronized void releaseSocket(IASocket socket) throws ResourceException
+    public void releaseSocket(IASocket socket) throws ResourceException
     {
         if (socket == null)
         {
@@ -0,0 +1,798 @@
+/**
+ * Copyright (c) 2010 Neustar, Inc. All rights reserved.
+ *
+ * $Header: $
+ *
+ */
+
+package com.nightfire.comms.jms;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.sql.Connection;
+
+import javax.jms.JMSException;
+import javax.jms.QueueConnection;
+import javax.jms.QueueSession;
+
+import com.nightfire.framework.util.*;
+import com.nightfire.framework.db.*;
+import com.nightfire.framework.resource.*;
+import com.nightfire.framework.jms.*;
+
+/**
+ * A pool of JMS connections, sessions and message producers for sending to a
+ * single queue, so that JMSQueueProducer does not set them up for every message.
+ * There is one pool per database pool key, queue name and batch size.
+ *
+ * When the batch size is more than one, the sessions are transacted and
+ * messages are committed once the batch is full, or once the oldest message
+ * in the batch has waited for the flush interval. Messages that are not yet
+ * committed are kept, so that they can be sent again on a new session if the
+ * commit fails, and are committed when the pool is shut down.
+ */
+class JMSProducerPool extends ConcurrentResourcePool
+{
+    /**
+     * Default maximum number of producers in each pool.
+     */
+    public static final int DEFAULT_MAX_SIZE = 8;
+
+    /**
+     * Default time, in msec, a batched message waits to be committed.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    private static final String LOGGING_CLASS_NAME = "JMSProducerPool";
+
+    private static ConcurrentMap instancePool = new ConcurrentHashMap();
+
+    static
+    {
+        Runtime.getRuntime().addShutdownHook
+        (
+            new Thread()
+            {
+                public void run()
+                {
+                    try
+                    {
+                        JMSProducerPool.shutdown();
+                    }
+                    catch (Exception x)
+                    {
+                        Debug.logStackTrace(x);
+                        Debug.log( Debug.ALL_WARNINGS, "Problem occured while shutting down JMSProducerPool: "
+                                   + x.getMessage() );
+                    }
+                }
+            }
+        );
+    }
+
+    private String poolId;
+
+    private String dbPoolKey;
+
+    private boolean alternateDBPool;
+
+    private String queueName;
+
+    private int batchSize;
+
+    private long flushInterval;
+
+    // All the producers created by this pool, whether acquired or available.
+    private Vector producers = new Vector();
+
+    private FlushThread flusher;
+
+
+    private JMSProducerPool ( String poolId, String dbPoolKey, boolean alternateDBPool, String queueName,
+                              int batchSize, long flushInterval, int maxSize ) throws ResourceException
+    {
+        super( maxSize, 0 );
+
+        this.poolId = poolId;
+        this.dbPoolKey = dbPoolKey;
+        this.alternateDBPool = alternateDBPool;
+        this.queueName = queueName;
+        this.batchSize = Math.max( 1, batchSize );
+        this.flushInterval = (flushInterval > 0) ? flushInterval : DEFAULT_FLUSH_INTERVAL;
+
+        if ( isBatched() )
+        {
+            flusher = new FlushThread();
+            flusher.start();
+        }
+    }
+
+
+    /**
+     * Get the pool of producers for the given queue, creating it if necessary.
+     *
+     * @param  dbPoolKey  Key of the database pool the JMS connections are created on.
+     * @param  alternateDBPool  True if the key names an alternate database pool, whose connections
+     *                          are acquired directly from DBConnectionPool.
+     * @param  queueName  Name of the queue messages are sent to.
+     * @param  batchSize  Number of messages committed together, or 1 to commit each message.
+     * @param  flushInterval  Time in msec a batched message waits for the rest of its batch.
+     * @param  maxSize  Maximum number of producers in the pool.
+     *
+     * @return  The pool.
+     *
+     * @exception  ResourceException  Thrown if the pool can't be created.
+     */
+    public static JMSProducerPool getInstance ( String dbPoolKey, boolean alternateDBPool, String queueName,
+                                                int batchSize, long flushInterval, int maxSize )
+        throws ResourceException
+    {
+        String poolId = dbPoolKey + ":" + queueName + ":" + batchSize;
+
+        JMSProducerPool pool = (JMSProducerPool) instancePool.get( poolId );
+
+        if ( pool != null )
+            return pool;
+
+        // Created under the lock, since each pool may start a flusher thread.
+        synchronized ( JMSProducerPool.class )
+        {
+            pool = (JMSProducerPool) instancePool.get( poolId );
+
+            if ( pool == null )
+            {
+                if ( Debug.isLevelEnabled( Debug.MSG_STATUS ) )
+                    Debug.log( Debug.MSG_STATUS, LOGGING_CLASS_NAME + ": Creating pool with id [" + poolId + "]." );
+
+                pool = new JMSProducerPool( poolId, dbPoolKey, alternateDBPool, queueName,
+                                            batchSize, flushInterval, maxSize );
+
+                instancePool.putIfAbsent( poolId, pool );
+            }
+
+            return pool;
+        }
+    }
+
+
+    /**
+     * Commits any pending batches and closes the producers of all pools.
+     *
+     * @exception ResourceException Thrown if a pool can't be destroyed.
+     */
+    public static void shutdown() throws ResourceException
+    {
+        Debug.log( Debug.MSG_STATUS, LOGGING_CLASS_NAME + ": Shutting down JMS producer pools ..." );
+
+        synchronized ( JMSProducerPool.class )
+        {
+            Iterator iter = instancePool.values().iterator( );
+
+            while ( iter.hasNext() )
+            {
+                JMSProducerPool pool = (JMSProducerPool) iter.next( );
+
+                try
+                {
+                    if ( pool.flusher != null )
+                        pool.flusher.interrupt();
+
+                    pool.destroyAll();
+                }
+                catch ( Exception e )
+                {
+                    Debug.log( Debug.ALL_ERRORS, LOGGING_CLASS_NAME + ": Could not destroy pool ["
+                               + pool.poolId + "]: " + e.toString() );
+                }
+
+                iter.remove( );
+            }
+        }
+    }
+
+
+    /**
+     * Sends a message to the queue on a pooled producer. If the send fails,
+     * the producer is discarded and the message, along with any uncommitted
+     * messages of the producer's batch, is sent again on a new one. If the
+     * failure was the commit of a full batch, the message is already among
+     * the uncommitted messages, and is only sent again with them.
+     *
+     * @param  message  The message text.
+     * @param  properties  The message properties, or null.
+     *
+     * @exception  Exception  Thrown if the message can't be sent.
+     */
+    public void send ( String message, Properties properties ) throws Exception
+    {
+        PooledProducer producer = (PooledProducer) acquireResource();
+
+        List failed = null;
+
+        boolean queued = false;
+
+        try
+        {
+            producer.send( message, properties );
+
+            return;
+        }
+        catch ( Exception e )
+        {
+            Debug.warning( LOGGING_CLASS_NAME + ": Send on pooled producer of [" + poolId
+                           + "] failed, reconnecting: " + e.toString() );
+
+            queued = producer.isLastMessageQueued();
+
+            failed = producer.discard();
+        }
+        finally
+        {
+            releaseResource( producer );
+        }
+
+        producer = (PooledProducer) acquireResource();
+
+        try
+        {
+            producer.resend( failed );
+
+            if ( !queued )
+                producer.send( message, properties );
+        }
+        catch ( Exception e )
+        {
+            producer.discard();
+
+            if ( failed.size() > 0 )
+                Debug.error( LOGGING_CLASS_NAME + ": Lost [" + failed.size() + "] uncommitted messages to queue ["
+                             + queueName + "]: " + e.toString() );
+
+            throw e;
+        }
+        finally
+        {
+            releaseResource( producer );
+        }
+    }
+
+
+    /**
+     * For testing. Sends messages through a batched pool whose producers
+     * simulate a transacted queue, failing the commit of the second full
+     * batch, and checks that each message is delivered exactly once.
+     */
+    public static void main ( String[] args )
+    {
+        Debug.disableAll();
+
+        final int batchSize = 5;
+
+        final int messageCount = 23;
+
+        // Messages committed to the simulated queue.
+        final List delivered = new Vector();
+
+        final int[] commits = new int[ 1 ];
+
+        try
+        {
+            JMSProducerPool pool = new JMSProducerPool( "test", "test", false, "TEST_QUEUE", batchSize, 60000, 1 )
+                {
+                    PooledProducer newProducer () throws Exception
+                    {
+                        return new PooledProducer( false )
+                            {
+                                // Messages sent in the current transaction.
+                                private List sent = new LinkedList();
+
+                                void sendToQueue ( String message, Properties properties )
+                                {
+                                    sent.add( message );
+                                }
+
+                                void commitSession () throws JMSException
+                                {
+                                    if ( ++ commits[0] == 2 )
+                                    {
+                                        sent.clear();
+
+                                        throw new JMSException( "Simulated commit failure." );
+                                    }
+
+                                    delivered.addAll( sent );
+
+                                    sent.clear();
+                                }
+
+                                void checkSession () { }
+                            };
+                    }
+                };
+
+            for ( int Ix = 0;  Ix < messageCount;  Ix ++ )
+                pool.send( "message-" + Ix, null );
+
+            pool.destroyAll();
+
+            int errors = 0;
+
+            for ( int Ix = 0;  Ix < messageCount;  Ix ++ )
+            {
+                int count = Collections.frequency( delivered, "message-" + Ix );
+
+                if ( count != 1 )
+                {
+                    System.out.println( "ERROR: [message-" + Ix + "] was delivered [" + count + "] times." );
+
+                    errors ++;
+                }
+            }
+
+            System.out.println( "Sent [" + messageCount + "] messages in batches of [" + batchSize + "] with ["
+                                + commits[0] + "] commits, one failed: delivered [" + delivered.size() + "], ["
+                                + errors + "] not delivered exactly once." );
+        }
+        catch ( Exception e )
+        {
+            e.printStackTrace();
+        }
+    }
+
+
+    /**
+     * Get the pool's status for logging.
+     */
+    public String poolStatus()
+    {
+        return "JMSProducerPool[" + poolId + "] " + super.poolStatus();
+    }
+
+
+    protected Object createResource() throws ResourceException
+    {
+        try
+        {
+            PooledProducer producer = newProducer();
+
+            producers.addElement( producer );
+
+            return producer;
+        }
+        catch ( ResourceException e )
+        {
+            throw e;
+        }
+        catch ( Exception e )
+        {
+            throw new ResourceException( "ERROR: " + LOGGING_CLASS_NAME + ": Could not create producer for pool ["
+                                         + poolId + "]: " + e.toString() );
+        }
+    }
+
+
+    protected boolean validateResource( Object aResource ) throws ResourceException
+    {
+        return ((PooledProducer) aResource).isValid();
+    }
+
+
+    protected void destroyResource( Object aResource ) throws ResourceException
+    {
+        PooledProducer producer = (PooledProducer) aResource;
+
+        producers.removeElement( producer );
+
+        List lost = producer.close();
+
+        // Give uncommitted messages one more chance on a new producer.
+        if ( lost.size() > 0 )
+        {
+            try
+            {
+                PooledProducer replacement = newProducer();
+
+                replacement.resend( lost );
+
+                replacement.close();
+            }
+            catch ( Exception e )
+            {
+                Debug.error( LOGGING_CLASS_NAME + ": Lost [" + lost.size() + "] uncommitted messages to queue ["
+                             + queueName + "]: " + e.toString() );
+            }
+        }
+    }
+
+
+    /**
+     * Creates a producer connected to the pool's queue.
+     */
+    PooledProducer newProducer () throws Exception
+    {
+        return new PooledProducer();
+    }
+
+
+    private boolean isBatched()
+    {
+        return batchSize > 1;
+    }
+
+
+    /**
+     * A JMS connection, session and message producer for the pool's queue.
+     */
+    class PooledProducer implements JMSExceptionCallBack
+    {
+        private JMSPortabilityLayer jpl;
+
+        private Connection dbconn;
+
+        private QueueConnection queueConnection;
+
+        private QueueSession queueSession;
+
+        private JMSProducer producer;
+
+        // Set by the exception listener when the connection fails.
+        private volatile boolean broken = false;
+
+        private boolean closed = false;
+
+        // Sent messages not yet committed, as message text and properties pairs.
+        private List pending = new LinkedList();
+
+        private long firstPendingTime;
+
+        // Whether the message of the last send() was added to the pending batch.
+        private boolean lastMessageQueued = false;
+
+
+        /**
+         * Creates a producer without JMS resources, whose sendToQueue() and
+         * commitSession() are overridden. For testing.
+         */
+        PooledProducer ( boolean connect ) throws Exception
+        {
+            if ( connect )
+                connect();
+        }
+
+
+        PooledProducer () throws Exception
+        {
+            connect();
+        }
+
+
+        private void connect () throws Exception
+        {
+            jpl = new JMSPortabilityLayer();
+
+            try
+            {
+                if ( alternateDBPool )
+                {
+                    String currentPoolKey = DBConnectionPool.getInstance().getThreadSpecificPoolKey();
+
+                    try
+                    {
+                        DBConnectionPool.getInstance().setThreadSpecificPoolKey( dbPoolKey );
+                        dbconn = DBConnectionPool.getInstance( dbPoolKey ).acquireConnection();
+                    }
+                    finally
+                    {
+                        DBConnectionPool.getInstance().setThreadSpecificPoolKey( currentPoolKey );
+                    }
+
+                    queueConnection = jpl.createQueueConnection( dbconn );
+                }
+                else
+                    queueConnection = JMSConnection.acquireQueueConnection( jpl );
+
+                JMSConnection.registerQueueExceptionListener( this, jpl, queueConnection );
+
+                if ( isBatched() )
+                    queueSession = jpl.createTransactedQueueSession( queueConnection );
+                else
+                    queueSession = JMSSession.acquireQueueSession( jpl, queueConnection );
+
+                producer = new JMSProducer( jpl, queueSession );
+
+                producer.createQueueProducer( queueName );
+
+                JMSConnection.startQueueConnection( jpl, queueConnection );
+            }
+            catch ( Exception e )
+            {
+                close();
+
+                throw e;
+            }
+
+            if ( Debug.isLevelEnabled( Debug.MSG_STATUS ) )
+                Debug.log( Debug.MSG_STATUS, LOGGING_CLASS_NAME + ": Created producer for pool [" + poolId + "]." );
+        }
+
+
+        /**
+         * Called by the exception listener when the connection fails. The
+         * producer is replaced the next time it is taken from the pool.
+         */
+        public void resumeProcessing ()
+        {
+            Debug.warning( LOGGING_CLASS_NAME + ": Connection of pooled producer for [" + poolId + "] failed." );
+
+            broken = true;
+        }
+
+
+        synchronized boolean isValid ()
+        {
+            if ( broken || closed )
+                return false;
+
+            try
+            {
+                checkSession();
+
+                return true;
+            }
+            catch ( JMSException e )
+            {
+                return false;
+            }
+        }
+
+
+        void checkSession () throws JMSException
+        {
+            // Throws an exception if the session has been closed.
+            queueSession.getTransacted();
+        }
+
+
+        synchronized void send ( String message, Properties properties ) throws Exception
+        {
+            lastMessageQueued = false;
+
+            sendToQueue( message, properties );
+
+            if ( !isBatched() )
+                return;
+
+            if ( pending.isEmpty() )
+                firstPendingTime = System.currentTimeMillis();
+
+            // keep a copy, the caller may reuse the properties for its next message
+            pending.add( new Object[] { message, (properties == null) ? null : properties.clone() } );
+
+            lastMessageQueued = true;
+
+            if ( pending.size() >= batchSize )
+                commit();
+        }
+
+
+        /**
+         * Tests whether the message of the last send() was added to the
+         * uncommitted messages, which is the case if the send failed on the
+         * commit of a full batch, so that discard() returns it.
+         */
+        synchronized boolean isLastMessageQueued ()
+        {
+            return lastMessageQueued;
+        }
+
+
+        void sendToQueue ( String message, Properties properties ) throws Exception
+        {
+            if ( (properties != null) && !properties.isEmpty() )
+                producer.setMessage( message, properties );
+            else
+                producer.setMessage( message );
+
+            producer.sendMessage();
+        }
+
+
+        void commitSession () throws JMSException
+        {
+            queueSession.commit();
+        }
+
+
+        /**
+         * Sends messages left uncommitted by a failed producer.
+         */
+        synchronized void resend ( List messages ) throws Exception
+        {
+            Iterator iter = messages.iterator();
+
+            while ( iter.hasNext() )
+            {
+                Object[] pair = (Object[]) iter.next();
+
+                send( (String) pair[0], (Properties) pair[1] );
+            }
+
+            if ( Debug.isLevelEnabled( Debug.MSG_STATUS ) && messages.size() > 0 )
+                Debug.log( Debug.MSG_STATUS, LOGGING_CLASS_NAME + ": Resent [" + messages.size()
+                           + "] uncommitted messages to queue [" + queueName + "]." );
+        }
+
+
+        private void commit () throws JMSException
+        {
+            commitSession();
+
+            if ( Debug.isLevelEnabled( Debug.MSG_STATUS ) )
+                Debug.log( Debug.MSG_STATUS, LOGGING_CLASS_NAME + ": Committed batch of [" + pending.size()
+                           + "] messages to queue [" + queueName + "]." );
+
+            pending.clear();
+        }
+
+
+        /**
+         * Commits the pending batch if its oldest message has waited for the
+         * flush interval. If the commit fails the producer is discarded, and
+         * the batch is sent again when the pool destroys it.
+         */
+        synchronized void flushIfDue ( long now )
+        {
+            if ( closed || pending.isEmpty() || (now - firstPendingTime < flushInterval) )
+                return;
+
+            try
+            {
+                commit();
+            }
+            catch ( JMSException e )
+            {
+                Debug.warning( LOGGING_CLASS_NAME + ": Commit of batch for [" + poolId + "] failed: " + e.toString() );
+
+                broken = true;
+            }
+        }
+
+
+        /**
+         * Marks the producer as unusable, and returns the messages it sent
+         * that were not committed.
+         */
+        synchronized List discard ()
+        {
+            broken = true;
+
+            List uncommitted = pending;
+
+            pending = new LinkedList();
+
+            return uncommitted;
+        }
+
+
+        /**
+         * Commits any pending batch and closes the JMS resources.
+         *
+         * @return  The messages that could not be committed.
+         */
+        synchronized List close ()
+        {
+            if ( closed )
+                return new LinkedList();
+
+            closed = true;
+
+            List lost = new LinkedList();
+
+            if ( broken )
+            {
+                lost = pending;
+
+                pending = new LinkedList();
+            }
+            else if ( !pending.isEmpty() )
+            {
+                try
+                {
+                    commit();
+                }
+                catch ( JMSException e )
+                {
+                    Debug.warning( LOGGING_CLASS_NAME + ": Commit of batch for [" + poolId + "] failed: " + e.toString() );
+
+                    lost = pending;
+
+                    pending = new LinkedList();
+                }
+            }
+
+            try
+            {
+                if ( queueSession != null )
+                    JMSSession.closeQueueSession( jpl, queueSession );
+            }
+            catch ( Exception e )
+            {
+                Debug.warning( LOGGING_CLASS_NAME + ": Could not close session: " + e.toString() );
+            }
+
+            try
+            {
+                if ( queueConnection != null )
+                {
+                    if ( dbconn == null )
+                        JMSConnection.closeQueueConnection( jpl, queueConnection );
+                    else
+                        JMSConnection.closeQueueConnection( jpl, queueConnection, false );
+                }
+            }
+            catch ( Exception e )
+            {
+                Debug.warning( LOGGING_CLASS_NAME + ": Could not close connection: " + e.toString() );
+            }
+
+            if ( dbconn != null )
+            {
+                String currentPoolKey = DBConnectionPool.getInstance().getThreadSpecificPoolKey();
+
+                try
+                {
+                    DBConnectionPool.getInstance().setThreadSpecificPoolKey( dbPoolKey );
+                    DBConnectionPool.getInstance( dbPoolKey ).releaseConnection( dbconn );
+                }
+                catch ( Exception e )
+                {
+                    Debug.warning( LOGGING_CLASS_NAME + ": Could not release database connection: " + e.toString() );
+                }
+                finally
+                {
+                    DBConnectionPool.getInstance().setThreadSpecificPoolKey( currentPoolKey );
+                }
+
+                dbconn = null;
+            }
+
+            return lost;
+        }
+    }
+
+
+    /**
+     * Commits batches that have waited for the flush interval, so that
+     * messages are not held back when traffic stops.
+     */
+    private class FlushThread extends Thread
+    {
+        FlushThread ()
+        {
+            setDaemon( true );
+            setName( "JMSProducerPool_Flusher_" + poolId );
+        }
+
+        public void run ()
+        {
+            try
+            {
+                while ( !isInterrupted() )
+                {
+                    Thread.sleep( flushInterval );
+
+                    long now = System.currentTimeMillis();
+
+                    Object[] snapshot = producers.toArray();
+
+                    for ( int Ix = 0;  Ix < snapshot.length;  Ix ++ )
+                        ((PooledProducer) snapshot[Ix]).flushIfDue( now );
+                }
+            }
+            catch ( InterruptedException e )
+            {
+                Debug.log( Debug.OBJECT_LIFECYCLE, LOGGING_CLASS_NAME + ": Flush thread for [" + poolId + "] exiting." );
+            }
+        }
+    }
+}
@@ -135,7 +135,39 @@ public class JMSQueueProducer extends MessageProcessorBase
      */
     public static final String TRANSACTIONAL_LOGGING_PROP = "TRANSACTIONAL_LOGGING";
 
+    /**
+     * Property indicating whether JMS connections, sessions and producers are pooled and
+     * kept across messages, instead of being set up for each message. Not used with
+     * TRANSACTIONAL_LOGGING or ALTERNATE_DB_PROP_LOC. If not set, default value is false.
+     */
+    public static final String POOL_JMS_RESOURCES_PROP = "POOL_JMS_RESOURCES";
+
+    /**
+     * Property indicating the maximum number of pooled producers per pool key and queue.
+     */
+    public static final String JMS_POOL_MAX_SIZE_PROP = "JMS_POOL_MAX_SIZE";
+
+    /**
+     * Property indicating the number of messages committed together by a pooled producer.
+     * If not set, default value is 1, which commits each message as it is sent.
+     */
+    public static final String SEND_BATCH_SIZE_PROP = "SEND_BATCH_SIZE";
+
+    /**
+     * Property indicating the maximum time, in msec, a batched message waits for the rest
+     * of its batch before it is committed.
+     */
+    public static final String SEND_BATCH_FLUSH_INTERVAL_PROP = "SEND_BATCH_FLUSH_INTERVAL";
+
     private boolean createTransactionalSession = false;
+
+    private boolean poolJMSResources = false;
+
+    private int jmsPoolMaxSize = JMSProducerPool.DEFAULT_MAX_SIZE;
+
+    private int sendBatchSize = 1;
+
+    private long sendBatchFlushInterval = JMSProducerPool.DEFAULT_FLUSH_INTERVAL;
     
     private String SET_SERVICE_TYPE_IN_HEADER_PROP = "SET_SERVICE_TYPE_IN_HEADER";
     
@@ -312,6 +344,47 @@ public class JMSQueueProducer extends MessageProcessorBase
         // Get the location of the alternate DB pool key
         alternateDBPoolKeyLoc = getPropertyValue (ALTERNATE_DB_POOL_KEY_LOC_PROP);
 
+        try
+        {
+            strTemp = getPropertyValue(POOL_JMS_RESOURCES_PROP);
+
+            if(StringUtils.hasValue(strTemp))
+                poolJMSResources = getBoolean(strTemp);
+
+            strTemp = getPropertyValue(JMS_POOL_MAX_SIZE_PROP);
+
+            if(StringUtils.hasValue(strTemp))
+                jmsPoolMaxSize = StringUtils.getInteger(strTemp);
+
+            strTemp = getPropertyValue(SEND_BATCH_SIZE_PROP);
+
+            if(StringUtils.hasValue(strTemp))
+                sendBatchSize = StringUtils.getInteger(strTemp);
+
+            strTemp = getPropertyValue(SEND_BATCH_FLUSH_INTERVAL_PROP);
+
+            if(StringUtils.hasValue(strTemp))
+                sendBatchFlushInterval = StringUtils.getInteger(strTemp);
+        }
+        catch(FrameworkException e)
+        {
+            errorBuffer.append("Invalid JMS pooling property value: ").append(e.getMessage()).append("\n");
+        }
+
+        if(poolJMSResources && (createTransactionalSession || StringUtils.hasValue(dbPropFileLoc)))
+        {
+            Debug.log(Debug.ALL_WARNINGS, LOGGING_CLASS_NAME + ": " + POOL_JMS_RESOURCES_PROP
+                      + " can't be used with " + TRANSACTIONAL_LOGGING_PROP + " or " + ALTERNATE_DB_LOC_PROP
+                      + ", JMS resources will not be pooled.");
+
+            poolJMSResources = false;
+        }
+
+        if(Debug.isLevelEnabled(Debug.SYSTEM_CONFIG))
+            Debug.log(Debug.SYSTEM_CONFIG, LOGGING_CLASS_NAME + ": Pool JMS resources? [" + poolJMSResources
+                      + "], max pool size [" + jmsPoolMaxSize + "], send batch size [" + sendBatchSize
+                      + "], batch flush interval [" + sendBatchFlushInterval + "] msec.");
+
         // If any of the required properties are absent, indicate error to caller.
         if(errorBuffer.length() > 0)
         {
@@ -385,11 +458,14 @@ public class JMSQueueProducer extends MessageProcessorBase
             this.mpContext = mpContext;
 
             
-            // Connect to JMS Provider.
-            if(Debug.isLevelEnabled(Debug.MSG_STATUS))
-                Debug.log(Debug.MSG_STATUS, LOGGING_CLASS_NAME+": Connecting to JMS Provider ... " );
-            
-            connect();
+            // Connect to JMS Provider, unless a pooled producer is used.
+            if(!poolJMSResources)
+            {
+                if(Debug.isLevelEnabled(Debug.MSG_STATUS))
+                    Debug.log(Debug.MSG_STATUS, LOGGING_CLASS_NAME+": Connecting to JMS Provider ... " );
+
+                connect();
+            }
 
             // Try to get queue name from the context or input, only in case of QUEUE_NAME_LOC is configured,
             // Otherwise use QueueName as in previous.
@@ -405,7 +481,10 @@ public class JMSQueueProducer extends MessageProcessorBase
                     throw new FrameworkException("Queue Name is not at [" + queueNameLoc + "]");
 
             // Send the message to JMS Queue.
-            sendMessage(inputObject.getString());
+            if(poolJMSResources)
+                sendPooledMessage(inputObject.getString());
+            else
+                sendMessage(inputObject.getString());
             
         }
         catch (Exception e)
@@ -418,9 +497,10 @@ public class JMSQueueProducer extends MessageProcessorBase
         finally
         {
             /* if not transactional then do the clean-up now ! */
-			if (!isJMSSessionTransactional()
+			if (!poolJMSResources
+					&& (!isJMSSessionTransactional()
 					|| StringUtils.hasValue(dbPropFileLoc)
-					|| StringUtils.hasValue(alternateDBPoolKey))
+					|| StringUtils.hasValue(alternateDBPoolKey)))
 			{
                 try
                 {
@@ -474,20 +554,7 @@ public class JMSQueueProducer extends MessageProcessorBase
         }
         else if (StringUtils.hasValue(alternateDBPoolKey))
         {
-        	if(!initializedAltDbPool)
-        	{
-        		synchronized (JMSQueueProducer.class) {
-					
-        			if(!initializedAltDbPool)
-        			{
-        				if(Debug.isLevelEnabled(Debug.DB_BASE))
-        					Debug.log(Debug.DB_BASE, "JMSQueueProducer: initializing db pools... ");
-        				
-        				DBConnectionPool.initializePoolConfigurations();
-        				initializedAltDbPool = true;
-        			}
-				}
-        	}
+        	initializeAltDbPools();
         	
         	String currentPoolKey = DBConnectionPool.getInstance().getThreadSpecificPoolKey();
             try
@@ -526,6 +593,29 @@ public class JMSQueueProducer extends MessageProcessorBase
         queueSession = JMSSession.acquireQueueSession(jpl, queueConnection);
     }
 
+    /**
+     * Initializes the configurations of the alternate database pools, once.
+     *
+     * @exception  Exception  Thrown on errors.
+     */
+    private static void initializeAltDbPools() throws Exception
+    {
+    	if(!initializedAltDbPool)
+    	{
+    		synchronized (JMSQueueProducer.class) {
+				
+    			if(!initializedAltDbPool)
+    			{
+    				if(Debug.isLevelEnabled(Debug.DB_BASE))
+    					Debug.log(Debug.DB_BASE, "JMSQueueProducer: initializing db pools... ");
+    				
+    				DBConnectionPool.initializePoolConfigurations();
+    				initializedAltDbPool = true;
+    			}
+			}
+    	}
+    }
+
     /**
      * Provides a SQL connection
      *
@@ -610,9 +700,6 @@ public class JMSQueueProducer extends MessageProcessorBase
     public void sendMessage( String message ) throws Exception
     {
     	
-        // Stores the Customer Context CustomerId value
-        String customerContextCustomerId;
-
         // Create a JMS Producer instance, for sending messages to JMS queue.
         JMSProducer producer = new JMSProducer(jpl, queueSession);
 
@@ -622,6 +709,69 @@ public class JMSQueueProducer extends MessageProcessorBase
         if(Debug.isLevelEnabled(Debug.MSG_STATUS))
             Debug.log(Debug.MSG_STATUS, LOGGING_CLASS_NAME+": Created Message Sender Client.. ");
 
+        addContextMessageProperties();
+
+        // If message properties are configured, set the message along with the properties
+        // else, set the message only.
+        if(!messageProperties.isEmpty())
+            producer.setMessage(message, messageProperties);
+        else
+            producer.setMessage(message);
+
+        // Start the Connection
+        JMSConnection.startQueueConnection(jpl, queueConnection);
+
+        // Send the Message
+        producer.sendMessage();
+        
+        
+        if(Debug.isLevelEnabled(Debug.MSG_STATUS))
+            Debug.log(Debug.MSG_STATUS,LOGGING_CLASS_NAME+": Succesfully sent the message... " );
+    }
+
+
+    /**
+     * Sends a message to the JMS Queue using a pooled connection, session and producer.
+     *
+     * @exception  Exception  Thrown on errors.
+     */
+    private void sendPooledMessage( String message ) throws Exception
+    {
+        String dbPoolKey;
+
+        boolean alternateDBPool = StringUtils.hasValue(alternateDBPoolKey);
+
+        if(alternateDBPool)
+        {
+            initializeAltDbPools();
+
+            dbPoolKey = alternateDBPoolKey;
+        }
+        else
+            dbPoolKey = DBConnectionPool.getInstance().getThreadSpecificPoolKey();
+
+        JMSProducerPool pool = JMSProducerPool.getInstance(dbPoolKey, alternateDBPool, queueName,
+                                                           sendBatchSize, sendBatchFlushInterval, jmsPoolMaxSize);
+
+        addContextMessageProperties();
+
+        pool.send(message, messageProperties);
+
+        if(Debug.isLevelEnabled(Debug.MSG_STATUS))
+            Debug.log(Debug.MSG_STATUS,LOGGING_CLASS_NAME+": Succesfully sent the message on pooled producer... " );
+    }
+
+
+    /**
+     * Adds the message properties taken from the customer context.
+     *
+     * @exception  FrameworkException  Thrown if the customer context can't be accessed.
+     */
+    private void addContextMessageProperties() throws FrameworkException
+    {
+        // Stores the Customer Context CustomerId value
+        String customerContextCustomerId;
+
         // Some apps are explicitly setting Customeridentifier in header properties using iterative properties
         // If CustomerId is not setted in iterative properties then get the CustomerId from CustomerContext.
         if(useCustomerId && !isCustomerIdMsgProperty)
@@ -662,23 +812,6 @@ public class JMSQueueProducer extends MessageProcessorBase
         	}
         	
         }
-        
-        // If message properties are configured, set the message along with the properties
-        // else, set the message only.
-        if(!messageProperties.isEmpty())
-            producer.setMessage(message, messageProperties);
-        else
-            producer.setMessage(message);
-
-        // Start the Connection
-        JMSConnection.startQueueConnection(jpl, queueConnection);
-
-        // Send the Message
-        producer.sendMessage();
-        
-        
-        if(Debug.isLevelEnabled(Debug.MSG_STATUS))
-            Debug.log(Debug.MSG_STATUS,LOGGING_CLASS_NAME+": Succesfully sent the message... " );
     }
 
 
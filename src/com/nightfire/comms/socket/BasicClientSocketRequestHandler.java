@@ -59,9 +59,19 @@ public class BasicClientSocketRequestHandler implements ClientSocketRequestHandl
             // Invoke a driver against the input.
             MessageProcessingDriver driver = new MessageProcessingDriver( );
             
-            driver.initialize( driverKey, driverType );
+            Object result = null;
+
+            try
+            {
+                driver.initialize( driverKey, driverType );
             
-            Object result = driver.process( input );
+                result = driver.process( input );
+            }
+            finally
+            {
+                // Hand the driver's message-processors back for reuse, if its chain allows it.
+                driver.release( );
+            }
             
 
             // Return the response over the socket connectino, if available.
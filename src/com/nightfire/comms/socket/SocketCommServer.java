@@ -41,6 +41,33 @@ public class SocketCommServer extends PushComServerBase
      */
     public static final String REQUEST_HANDLER_TYPE_PROP = "REQUEST_HANDLER_TYPE";
 
+    /**
+     * Property indicating whether requests are read by NIO selector threads and serviced
+     * by a bounded pool of worker threads, instead of a new thread per connection (optional,
+     * default is false). Requests must be length-prefixed, as read by BasicClientSocketRequestHandler.
+     */
+    public static final String USE_NIO_PROP = "USE_NIO";
+
+    /**
+     * Property giving the number of selector threads in NIO mode (optional).
+     */
+    public static final String NIO_SELECTOR_THREADS_PROP = "NIO_SELECTOR_THREADS";
+
+    /**
+     * Property giving the number of request-handler worker threads in NIO mode (optional).
+     */
+    public static final String NIO_WORKER_THREADS_PROP = "NIO_WORKER_THREADS";
+
+    /**
+     * Property giving the number of requests that can wait for a worker thread in NIO mode (optional).
+     */
+    public static final String NIO_WORKER_QUEUE_SIZE_PROP = "NIO_WORKER_QUEUE_SIZE";
+
+    /**
+     * Property giving the largest request, in bytes, accepted in NIO mode (optional).
+     */
+    public static final String NIO_MAX_REQUEST_SIZE_PROP = "NIO_MAX_REQUEST_SIZE";
+
 
     /**
      * Constructor that creates the comm server object and loads its properties.
@@ -72,7 +99,17 @@ public class SocketCommServer extends PushComServerBase
 
             String rhType = getPropertyValue( REQUEST_HANDLER_TYPE_PROP );
 
-            listener = new SocketListener( port, requestHandlerClassName, rhKey, rhType );
+            boolean useNIO = StringUtils.getBoolean( getPropertyValue( USE_NIO_PROP ), false );
+
+            listener = new SocketListener( null, port, -1, requestHandlerClassName, rhKey, rhType, useNIO );
+
+            if ( useNIO )
+            {
+                listener.setNIOConfiguration( getIntPropertyValue( NIO_SELECTOR_THREADS_PROP ),
+                                              getIntPropertyValue( NIO_WORKER_THREADS_PROP ),
+                                              getIntPropertyValue( NIO_WORKER_QUEUE_SIZE_PROP ),
+                                              getIntPropertyValue( NIO_MAX_REQUEST_SIZE_PROP ) );
+            }
         }
         catch ( NumberFormatException nfe )
         {
@@ -87,6 +124,44 @@ public class SocketCommServer extends PushComServerBase
     }
 
 
+    /**
+     * Get an optional integer property.
+     *
+     * @param  name  The property name.
+     *
+     * @return  The value, or -1 if the property isn't set.
+     *
+     * @exception  ProcessingException  Thrown if the value isn't an integer.
+     */
+    private int getIntPropertyValue ( String name ) throws ProcessingException
+    {
+        String value = getPropertyValue( name );
+
+        if ( !StringUtils.hasValue( value ) )
+            return -1;
+
+        try
+        {
+            return Integer.parseInt( value );
+        }
+        catch ( NumberFormatException nfe )
+        {
+            throw new ProcessingException( "ERROR: Invalid value [" + value + "] for property [" + name + "]." );
+        }
+    }
+
+
+    /**
+     * Get the listener's connection and queue counts.
+     *
+     * @return  The description, for logging.
+     */
+    public String describe ( )
+    {
+        return listener.describe( );
+    }
+
+
     /**
      * Starts the server object, making it block waiting for requests.
      */
@@ -6,13 +6,26 @@ package com.nightfire.comms.socket;
 
 import java.io.*;
 import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import com.nightfire.framework.util.*;
 
 
 /**
  * Socket listener API infrastructure for use in building TCP/IP socket server objects.
+ *
+ * By default each client connection is serviced in its own new thread. In NIO mode,
+ * connections are accepted and read by a small number of selector threads, and each
+ * request is handed to a bounded pool of worker threads once it has been read in full.
+ * Requests are framed as an integer giving the length of the remaining data (as written
+ * by DataOutputStream.writeInt()), followed by that many bytes, which is the format read
+ * by BasicClientSocketRequestHandler. The request handler gets a socket whose input
+ * stream returns the request as read, including its length, so handlers work unchanged
+ * in either mode.
  */
 public class SocketListener
 { 
@@ -21,6 +34,33 @@ public class SocketListener
      */
     public static final int DEFAULT_BACKLOG_QUEUE_SIZE = 10;
 
+    /**
+     * Default number of selector threads in NIO mode.
+     */
+    public static final int DEFAULT_SELECTOR_THREADS = 1;
+
+    /**
+     * Default number of request-handler worker threads in NIO mode.
+     */
+    public static final int DEFAULT_WORKER_THREADS = 20;
+
+    /**
+     * Default number of read requests that can wait for a worker thread in NIO mode.
+     */
+    public static final int DEFAULT_WORKER_QUEUE_SIZE = 100;
+
+    /**
+     * Default maximum request size, in bytes, accepted in NIO mode.
+     */
+    public static final int DEFAULT_MAX_REQUEST_SIZE = 10 * 1024 * 1024;
+
+    // Size of the request length that starts each request.
+    private static final int LENGTH_SIZE = 4;
+
+    // Time in msec selector threads wait in select(), so that they check for
+    // shutdown and for requests waiting on a worker.
+    private static final long SELECT_TIMEOUT = 500;
+
 
     /**
      * Create a socket listener.
@@ -58,6 +98,32 @@ public class SocketListener
      */
     public SocketListener ( String bindAddress, int listenPort, int backlog, 
                             String handlerClassName, String handlerKey, String handlerType ) throws FrameworkException
+    {
+        this( bindAddress, listenPort, backlog, handlerClassName, handlerKey, handlerType, false );
+    }
+
+
+    /**
+     * Create a socket listener.
+     *
+     * @param  bindAddress  The IP address to bind to on a multi-homed host. 
+     * @param  listenPort  The port that the server socket should listen on.
+     * @param  backlog  The maximum queue length for incoming connection indications (a request to connect) 
+     *                  is set to the backlog parameter. If a connection indication arrives when the queue 
+     *                  is full, the connection is refused. 
+     * @param  handlerClassName  The fully-qualified (package + class) name of the
+     *                           class that will be used to service each request
+     *                           (must implement the ClientSocketRequestHandler interface).
+     * @param  handlerKey  Property key value used to configure the request-handler.
+     * @param  handlerType  Property type value used to configure the request-handler.
+     * @param  useNIO  True if requests are read by selector threads and serviced by a bounded
+     *                 pool of worker threads, instead of one new thread per connection.
+     *
+     * @exception  FrameworkException  Thrown if the server socket can't be created against the given port.
+     */
+    public SocketListener ( String bindAddress, int listenPort, int backlog, 
+                            String handlerClassName, String handlerKey, String handlerType,
+                            boolean useNIO ) throws FrameworkException
     {
         try
         {
@@ -78,7 +144,16 @@ public class SocketListener
                     Debug.log( Debug.IO_STATUS, "Server socket backlog queue size will be set to [" 
                                + backlog + "]." );
 
-                listener = new ServerSocket( listenPort, backlog, InetAddress.getByName(bindAddress) );
+                if ( useNIO )
+                {
+                    serverChannel = ServerSocketChannel.open( );
+
+                    listener = serverChannel.socket( );
+
+                    listener.bind( new InetSocketAddress( InetAddress.getByName(bindAddress), listenPort ), backlog );
+                }
+                else
+                    listener = new ServerSocket( listenPort, backlog, InetAddress.getByName(bindAddress) );
             }
             else
             {
@@ -87,9 +162,19 @@ public class SocketListener
                     if ( Debug.isLevelEnabled( Debug.IO_STATUS ) )
                         Debug.log( Debug.IO_STATUS, "Server socket backlog queue size will be set to [" 
                                    + backlog + "]." );
-                    
-                    listener = new ServerSocket( listenPort, backlog );
                 }
+
+                if ( useNIO )
+                {
+                    serverChannel = ServerSocketChannel.open( );
+
+                    listener = serverChannel.socket( );
+
+                    // A backlog of 0 selects the implementation's default.
+                    listener.bind( new InetSocketAddress( listenPort ), Math.max( backlog, 0 ) );
+                }
+                else if ( backlog > 0 )
+                    listener = new ServerSocket( listenPort, backlog );
                 else
                     listener = new ServerSocket( listenPort );
             }
@@ -118,10 +203,96 @@ public class SocketListener
 
 
     /**
-     * Block, waiting for client requests, each of which is serviced in its own thread.
+     * Configure NIO mode. Must be called before listen().
+     *
+     * @param  selectorThreads  Number of threads accepting connections and reading requests.
+     * @param  workerThreads  Number of threads running request handlers.
+     * @param  workerQueueSize  Number of read requests that can wait for a worker thread. When
+     *                          it is full, no further connections are accepted or read until
+     *                          a worker thread is free.
+     * @param  maxRequestSize  Largest request length, in bytes, accepted from a client.
+     */
+    public void setNIOConfiguration ( int selectorThreads, int workerThreads, int workerQueueSize, int maxRequestSize )
+    {
+        if ( selectorThreads > 0 )
+            this.selectorThreadCount = selectorThreads;
+
+        if ( workerThreads > 0 )
+            this.workerThreadCount = workerThreads;
+
+        if ( workerQueueSize > 0 )
+            this.workerQueueSize = workerQueueSize;
+
+        if ( maxRequestSize > 0 )
+            this.maxRequestSize = maxRequestSize;
+    }
+
+
+    /**
+     * Returns the number of client connections accepted and not yet closed.
+     *
+     * @return  The number of active connections.
+     */
+    public int getActiveConnectionCount ( )
+    {
+        return activeConnections.get( );
+    }
+
+
+    /**
+     * Returns the number of read requests waiting for a worker thread in NIO mode.
+     *
+     * @return  The number of queued requests, or 0 if NIO mode isn't being used.
+     */
+    public int getQueueDepth ( )
+    {
+        if ( workers == null )
+            return 0;
+
+        return workers.getQueue().size( ) + parkedRequests.get( );
+    }
+
+
+    /**
+     * Returns the number of requests being serviced by worker threads in NIO mode.
+     *
+     * @return  The number of busy worker threads, or 0 if NIO mode isn't being used.
+     */
+    public int getActiveWorkerCount ( )
+    {
+        if ( workers == null )
+            return 0;
+
+        return workers.getActiveCount( );
+    }
+
+
+    /**
+     * Describes the listener's connection and queue counts, for logging.
+     *
+     * @return  The description.
+     */
+    public String describe ( )
+    {
+        return "SocketListener[port=" + listener.getLocalPort( ) + ", nio=" + (serverChannel != null)
+            + ", active-connections=" + getActiveConnectionCount( ) + ", busy-workers=" + getActiveWorkerCount( )
+            + ", queue-depth=" + getQueueDepth( ) + "]";
+    }
+
+
+    /**
+     * Block, waiting for client requests, each of which is serviced in its own thread,
+     * or by the worker thread pool in NIO mode.
      */
     public void listen ( )
     {
+        if ( serverChannel != null )
+        {
+            listenNIO( );
+
+            return;
+        }
+
         Debug.log( Debug.IO_STATUS, "Socket listener now entering listen-loop ..." );
 
         try
@@ -135,20 +306,20 @@ public class SocketListener
                 if ( Debug.isLevelEnabled( Debug.IO_STATUS ) )
                     Debug.log( Debug.IO_STATUS, "Accepted client socket connection: " + clientSock.toString() );
 
+                int count = activeConnections.incrementAndGet( );
+
                 Thread t = new Thread( requestHandlerThreadGroup, 
                                        new RequestHandlerThread( clientSock, handlerClassName, handlerKey, handlerType ), 
-                                       "request-handler-" + requestHandlerThreadCount ); 
+                                       "request-handler-" + count ); 
                 
                 // NOTE: We don't make these threads daemons so that in the event of a shutdown, 
                 // the server won't exit until all outstanding requests have been serviced.
                 
                 t.start( );
 
-                requestHandlerThreadCount ++;
-                
                 if ( Debug.isLevelEnabled( Debug.THREAD_STATUS ) )
                     Debug.log( Debug.THREAD_STATUS, "Number of outstanding request-handler threads [" 
-                               + requestHandlerThreadCount + "]." );
+                               + count + "]." );
             }
         }
         catch ( Exception e )
@@ -173,6 +344,86 @@ public class SocketListener
     }
 
 
+    /**
+     * NIO mode listen-loop. Starts the selector threads and worker pool, and blocks until
+     * the listener is shut down.
+     */
+    private void listenNIO ( )
+    {
+        Debug.log( Debug.IO_STATUS, "Socket listener now entering NIO listen-loop with [" + selectorThreadCount
+                   + "] selector threads, [" + workerThreadCount + "] worker threads and worker queue size ["
+                   + workerQueueSize + "] ..." );
+
+        // NOTE: The worker threads aren't daemons so that in the event of a shutdown, 
+        // the server won't exit until all outstanding requests have been serviced.
+        workers = new ThreadPoolExecutor( workerThreadCount, workerThreadCount, 0, TimeUnit.SECONDS,
+                                          new ArrayBlockingQueue( workerQueueSize ),
+                                          new ThreadFactory( )
+                                          {
+                                              private int count = 0;
+
+                                              public synchronized Thread newThread ( Runnable r )
+                                              {
+                                                  return new Thread( requestHandlerThreadGroup, r,
+                                                                     "request-handler-" + (count ++) );
+                                              }
+                                          } );
+
+        try
+        {
+            serverChannel.configureBlocking( false );
+
+            SelectorThread[] threads = new SelectorThread[ selectorThreadCount ];
+
+            for ( int Ix = 0;  Ix < selectorThreadCount;  Ix ++ )
+                threads[ Ix ] = new SelectorThread( Ix );
+
+            selectorThreads = threads;
+
+            // The first selector thread also accepts connections.
+            selectorThreads[ 0 ].acceptKey = serverChannel.register( selectorThreads[ 0 ].selector, SelectionKey.OP_ACCEPT );
+
+            for ( int Ix = 1;  Ix < selectorThreadCount;  Ix ++ )
+                selectorThreads[ Ix ].start( );
+
+            selectorThreads[ 0 ].run( );
+
+            for ( int Ix = 1;  Ix < selectorThreadCount;  Ix ++ )
+                selectorThreads[ Ix ].join( );
+        }
+        catch ( Exception e )
+        {
+            Debug.warning( "Server socket encountered exception:\n" + e.toString() );
+
+            shuttingDown = true;
+
+            for ( int Ix = 0;  (selectorThreads != null) && (Ix < selectorThreads.length);  Ix ++ )
+            {
+                if ( selectorThreads[ Ix ] != null )
+                    selectorThreads[ Ix ].selector.wakeup( );
+            }
+        }
+        finally
+        {
+            try
+            {
+                Debug.log( Debug.IO_STATUS, "Closing server socket." );
+                
+                serverChannel.close( );
+            }
+            catch ( Exception e )
+            {
+                Debug.warning( e.toString() );
+            }
+
+            // Let outstanding requests finish, but don't take any more.
+            workers.shutdown( );
+        }
+
+        Debug.log( Debug.IO_STATUS, "Server socket is now exiting its NIO listen-loop." );
+    }
+
+
     /**
      * Shuts-down the socket listener.
      */
@@ -190,6 +441,525 @@ public class SocketListener
         {
             Debug.warning( e.toString() );
         }
+
+        SelectorThread[] threads = selectorThreads;
+
+        for ( int Ix = 0;  (threads != null) && (Ix < threads.length);  Ix ++ )
+        {
+            if ( threads[ Ix ] != null )
+                threads[ Ix ].selector.wakeup( );
+        }
+    }
+
+
+    /**
+     * Closes a client connection accepted in NIO mode before it was handed to a worker.
+     */
+    private void closeChannel ( SocketChannel channel )
+    {
+        try
+        {
+            Debug.log( Debug.IO_STATUS, "Closing client socket: " + channel.socket().toString() );
+
+            channel.close( );
+        }
+        catch ( Exception e )
+        {
+            Debug.log( Debug.IO_STATUS, e.toString() );
+        }
+
+        activeConnections.decrementAndGet( );
+    }
+
+
+    // A selector thread accepts connections (the first thread only) and reads requests
+    // from its share of the connections. Once a request has been read in full, its
+    // connection is taken off the selector, switched to blocking mode, and handed to
+    // the worker pool. If the worker pool is saturated, the request is parked and the
+    // thread stops accepting connections until a worker frees up.
+    private class SelectorThread extends Thread
+    {
+        public SelectorThread ( int index ) throws IOException
+        {
+            super( "socket-selector-" + index );
+
+            selector = Selector.open( );
+        }
+
+
+        // Adds a newly accepted connection to this thread's selector.
+        public void addChannel ( SocketChannel channel )
+        {
+            newChannels.add( channel );
+
+            if ( this != Thread.currentThread( ) )
+                selector.wakeup( );
+        }
+
+
+        public void run ( )
+        {
+            try
+            {
+                while ( !shuttingDown )
+                {
+                    selector.select( SELECT_TIMEOUT );
+
+                    registerNewChannels( );
+
+                    Iterator iter = selector.selectedKeys().iterator( );
+
+                    while ( iter.hasNext() )
+                    {
+                        SelectionKey key = (SelectionKey)iter.next( );
+
+                        iter.remove( );
+
+                        if ( !key.isValid() )
+                            continue;
+
+                        if ( key.isAcceptable() )
+                            accept( );
+                        else if ( key.isReadable() )
+                            read( key );
+                    }
+
+                    dispatchReadRequests( );
+                }
+            }
+            catch ( Exception e )
+            {
+                if ( !shuttingDown )
+                    Debug.warning( getName() + " encountered exception:\n" + e.toString() );
+            }
+            finally
+            {
+                closeAll( );
+            }
+        }
+
+
+        private void registerNewChannels ( ) throws IOException
+        {
+            SocketChannel channel;
+
+            while ( (channel = (SocketChannel)newChannels.poll()) != null )
+                channel.register( selector, SelectionKey.OP_READ, new RequestReader( ) );
+        }
+
+
+        private void accept ( ) throws IOException
+        {
+            SocketChannel channel = serverChannel.accept( );
+
+            if ( channel == null )
+                return;
+
+            channel.configureBlocking( false );
+
+            int count = activeConnections.incrementAndGet( );
+
+            if ( Debug.isLevelEnabled( Debug.IO_STATUS ) )
+                Debug.log( Debug.IO_STATUS, "Accepted client socket connection: " + channel.socket().toString() );
+
+            if ( Debug.isLevelEnabled( Debug.THREAD_STATUS ) )
+                Debug.log( Debug.THREAD_STATUS, "Number of active connections [" + count 
+                           + "], requests waiting for a worker [" + getQueueDepth() + "]." );
+
+            SelectorThread target = selectorThreads[ (nextSelectorThread ++) % selectorThreads.length ];
+
+            target.addChannel( channel );
+        }
+
+
+        private void read ( SelectionKey key )
+        {
+            SocketChannel channel = (SocketChannel)key.channel( );
+
+            RequestReader reader = (RequestReader)key.attachment( );
+
+            try
+            {
+                if ( !reader.read( channel ) )
+                    return;
+            }
+            catch ( Exception e )
+            {
+                Debug.warning( "Could not read request from client socket " + channel.socket().toString()
+                               + ":\n" + e.toString() );
+
+                key.cancel( );
+
+                closeChannel( channel );
+
+                return;
+            }
+
+            // The request is complete, so take the connection off the selector.
+            key.cancel( );
+
+            readRequests.add( new RequestHandlerTask( channel, reader.getRequest() ) );
+        }
+
+
+        // Hands read requests to the worker pool, parking them if it is saturated.
+        private void dispatchReadRequests ( ) throws IOException
+        {
+            if ( !readRequests.isEmpty() )
+            {
+                // Complete the cancellation of the keys of read connections,
+                // so that they can be put into blocking mode.
+                selector.selectNow( );
+
+                Iterator iter = readRequests.iterator( );
+
+                while ( iter.hasNext() )
+                {
+                    RequestHandlerTask task = (RequestHandlerTask)iter.next( );
+
+                    iter.remove( );
+
+                    try
+                    {
+                        task.channel.configureBlocking( true );
+
+                        parkedRequests.incrementAndGet( );
+
+                        parked.add( task );
+                    }
+                    catch ( IOException e )
+                    {
+                        Debug.warning( "Could not prepare client socket for request handler:\n" + e.toString() );
+
+                        closeChannel( task.channel );
+                    }
+                }
+            }
+
+            while ( !parked.isEmpty() )
+            {
+                RequestHandlerTask task = (RequestHandlerTask)parked.getFirst( );
+
+                try
+                {
+                    workers.execute( task );
+                }
+                catch ( RejectedExecutionException e )
+                {
+                    break;
+                }
+
+                parked.removeFirst( );
+
+                parkedRequests.decrementAndGet( );
+            }
+
+            // Stop accepting connections while requests are waiting for the worker pool.
+            if ( acceptKey != null )
+            {
+                int ops = (parkedRequests.get() > 0) ? 0 : SelectionKey.OP_ACCEPT;
+
+                if ( acceptKey.interestOps() != ops )
+                {
+                    if ( Debug.isLevelEnabled( Debug.THREAD_STATUS ) )
+                        Debug.log( Debug.THREAD_STATUS, (ops == 0) ? "Worker pool is saturated, pausing accepts: "
+                                   + describe() : "Resuming accepts: " + describe() );
+
+                    acceptKey.interestOps( ops );
+                }
+            }
+        }
+
+
+        // Closes the connections that haven't been handed to a worker.
+        private void closeAll ( )
+        {
+            Iterator iter = selector.keys().iterator( );
+
+            while ( iter.hasNext() )
+            {
+                SelectionKey key = (SelectionKey)iter.next( );
+
+                if ( key.channel() instanceof SocketChannel )
+                    closeChannel( (SocketChannel)key.channel() );
+            }
+
+            SocketChannel channel;
+
+            while ( (channel = (SocketChannel)newChannels.poll()) != null )
+                closeChannel( channel );
+
+            iter = readRequests.iterator( );
+
+            while ( iter.hasNext() )
+                closeChannel( ((RequestHandlerTask)iter.next()).channel );
+
+            iter = parked.iterator( );
+
+            while ( iter.hasNext() )
+            {
+                closeChannel( ((RequestHandlerTask)iter.next()).channel );
+
+                parkedRequests.decrementAndGet( );
+            }
+
+            try
+            {
+                selector.close( );
+            }
+            catch ( IOException e )
+            {
+                Debug.warning( e.toString() );
+            }
+        }
+
+
+        private Selector selector;
+
+        // The server socket's key, on the first selector thread only.
+        private SelectionKey acceptKey;
+
+        // Connections accepted by the first thread and waiting to be registered.
+        private Queue newChannels = new ConcurrentLinkedQueue( );
+
+        // Requests read during the current select.
+        private List readRequests = new LinkedList( );
+
+        // Requests waiting for the worker pool to accept them.
+        private LinkedList parked = new LinkedList( );
+    }
+
+
+    // Accumulates a length-prefixed request from a non-blocking connection.
+    private class RequestReader
+    {
+        // Reads what is available, returning true once the request is complete.
+        public boolean read ( SocketChannel channel ) throws IOException, FrameworkException
+        {
+            if ( body == null )
+            {
+                if ( channel.read( length ) < 0 )
+                    throw new EOFException( "Connection closed before request length was read." );
+
+                if ( length.hasRemaining() )
+                    return false;
+
+                int len = length.getInt( 0 );
+
+                if ( (len < 0) || (len > maxRequestSize) )
+                    throw new FrameworkException( "ERROR: Request length [" + len + "] exceeds maximum of ["
+                                                  + maxRequestSize + "] bytes." );
+
+                body = ByteBuffer.allocate( LENGTH_SIZE + len );
+
+                body.put( length.array() );
+            }
+
+            if ( channel.read( body ) < 0 && body.hasRemaining() )
+                throw new EOFException( "Connection closed after [" + (body.position() - LENGTH_SIZE) 
+                                        + "] bytes of a [" + (body.capacity() - LENGTH_SIZE) + "] byte request." );
+
+            return !body.hasRemaining( );
+        }
+
+
+        // Returns the request, including its length.
+        public byte[] getRequest ( )
+        {
+            return body.array( );
+        }
+
+
+        private ByteBuffer length = ByteBuffer.allocate( LENGTH_SIZE );
+
+        private ByteBuffer body;
+    }
+
+
+    // Runs the request handler against a request read in NIO mode.
+    private class RequestHandlerTask implements Runnable
+    {
+        public RequestHandlerTask ( SocketChannel channel, byte[] request )
+        {
+            this.channel = channel;
+
+            this.request = request;
+        }
+
+        public void run ( )
+        {
+            try
+            {
+                new RequestHandlerThread( new ReadSocket( channel.socket(), request ), 
+                                          handlerClassName, handlerKey, handlerType ).run( );
+            }
+            finally
+            {
+                // Wake up selector threads holding requests back for a free worker.
+                SelectorThread[] threads = selectorThreads;
+
+                if ( parkedRequests.get() > 0 )
+                {
+                    for ( int Ix = 0;  Ix < threads.length;  Ix ++ )
+                    {
+                        if ( threads[ Ix ] != null )
+                            threads[ Ix ].selector.wakeup( );
+                    }
+                }
+            }
+        }
+
+
+        private SocketChannel channel;
+
+        private byte[] request;
+    }
+
+
+    // A client socket whose input stream first returns the request already read from it.
+    private static class ReadSocket extends Socket
+    {
+        public ReadSocket ( Socket socket, byte[] request )
+        {
+            this.socket = socket;
+
+            this.request = request;
+        }
+
+        public synchronized InputStream getInputStream ( ) throws IOException
+        {
+            if ( in == null )
+                in = new SequenceInputStream( new ByteArrayInputStream( request ), socket.getInputStream() );
+
+            return in;
+        }
+
+        public OutputStream getOutputStream ( ) throws IOException
+        {
+            return socket.getOutputStream( );
+        }
+
+        public SocketChannel getChannel ( )
+        {
+            return socket.getChannel( );
+        }
+
+        public InetAddress getInetAddress ( )
+        {
+            return socket.getInetAddress( );
+        }
+
+        public InetAddress getLocalAddress ( )
+        {
+            return socket.getLocalAddress( );
+        }
+
+        public int getPort ( )
+        {
+            return socket.getPort( );
+        }
+
+        public int getLocalPort ( )
+        {
+            return socket.getLocalPort( );
+        }
+
+        public SocketAddress getRemoteSocketAddress ( )
+        {
+            return socket.getRemoteSocketAddress( );
+        }
+
+        public SocketAddress getLocalSocketAddress ( )
+        {
+            return socket.getLocalSocketAddress( );
+        }
+
+        public void setSoTimeout ( int timeout ) throws SocketException
+        {
+            socket.setSoTimeout( timeout );
+        }
+
+        public int getSoTimeout ( ) throws SocketException
+        {
+            return socket.getSoTimeout( );
+        }
+
+        public void setTcpNoDelay ( boolean on ) throws SocketException
+        {
+            socket.setTcpNoDelay( on );
+        }
+
+        public boolean getTcpNoDelay ( ) throws SocketException
+        {
+            return socket.getTcpNoDelay( );
+        }
+
+        public void setSoLinger ( boolean on, int linger ) throws SocketException
+        {
+            socket.setSoLinger( on, linger );
+        }
+
+        public int getSoLinger ( ) throws SocketException
+        {
+            return socket.getSoLinger( );
+        }
+
+        public void setKeepAlive ( boolean on ) throws SocketException
+        {
+            socket.setKeepAlive( on );
+        }
+
+        public boolean getKeepAlive ( ) throws SocketException
+        {
+            return socket.getKeepAlive( );
+        }
+
+        public void shutdownInput ( ) throws IOException
+        {
+            socket.shutdownInput( );
+        }
+
+        public void shutdownOutput ( ) throws IOException
+        {
+            socket.shutdownOutput( );
+        }
+
+        public boolean isConnected ( )
+        {
+            return socket.isConnected( );
+        }
+
+        public boolean isClosed ( )
+        {
+            return socket.isClosed( );
+        }
+
+        public boolean isInputShutdown ( )
+        {
+            return socket.isInputShutdown( );
+        }
+
+        public boolean isOutputShutdown ( )
+        {
+            return socket.isOutputShutdown( );
+        }
+
+        public void close ( ) throws IOException
+        {
+            socket.close( );
+        }
+
+        public String toString ( )
+        {
+            return socket.toString( );
+        }
+
+
+        private Socket socket;
+
+        private byte[] request;
+
+        private InputStream in;
     }
 
 
@@ -243,11 +1013,11 @@ public class SocketListener
                 }
             }
 
-            requestHandlerThreadCount --;
+            int count = activeConnections.decrementAndGet( );
 
             if ( Debug.isLevelEnabled( Debug.THREAD_STATUS ) )
                 Debug.log( Debug.THREAD_STATUS, "Number of outstanding request-handler threads [" 
-                           + requestHandlerThreadCount + "]." );
+                           + count + "]." );
         }
         
 
@@ -312,10 +1082,13 @@ public class SocketListener
     }
 
 
-    private boolean shuttingDown = false;
+    private volatile boolean shuttingDown = false;
 
     private ServerSocket listener;
 
+    // Only set in NIO mode.
+    private ServerSocketChannel serverChannel;
+
     private String handlerClassName;
 
     private String handlerKey;
@@ -324,5 +1097,24 @@ public class SocketListener
 
     private ThreadGroup requestHandlerThreadGroup;
 
-    private int requestHandlerThreadCount;
+    // Connections accepted and not yet closed.
+    private AtomicInteger activeConnections = new AtomicInteger( );
+
+    private int selectorThreadCount = DEFAULT_SELECTOR_THREADS;
+
+    private int workerThreadCount = DEFAULT_WORKER_THREADS;
+
+    private int workerQueueSize = DEFAULT_WORKER_QUEUE_SIZE;
+
+    private int maxRequestSize = DEFAULT_MAX_REQUEST_SIZE;
+
+    private volatile SelectorThread[] selectorThreads;
+
+    // Round-robin index of the selector thread given the next accepted connection.
+    private int nextSelectorThread;
+
+    private ThreadPoolExecutor workers;
+
+    // Read requests held back because the worker pool was saturated.
+    private AtomicInteger parkedRequests = new AtomicInteger( );
 }
@@ -0,0 +1,772 @@
+/**
+ * Copyright (c) 1999 Nightfire Software, Inc. All rights reserved.
+ *
+ * $Header: $
+ *
+ */
+
+package com.nightfire.framework.resource;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.AbstractQueuedSynchronizer;
+
+import com.nightfire.framework.util.*;
+import com.nightfire.framework.environment.*;
+
+/**
+ * Manages a pool of resources so that they can be reused, like ResourcePool,
+ * with the same methods for subclasses to use and implement.
+ *
+ * Acquisition is bounded by a fair set of permits, one per resource that may
+ * be acquired, and available resources are kept in a concurrent deque, so
+ * acquiring and releasing resources don't serialize on the pool's monitor.
+ * Waiting callers are served in arrival order, and resources are reused
+ * most-recently-released first.
+ *
+ * Since acquireResource() waits for a permit rather than on the pool's
+ * monitor, a subclass must not hold its own monitor while it acquires or
+ * releases resources, or a thread waiting for a resource keeps the thread
+ * returning one out. Subclasses that do should extend ResourcePool instead.
+ */
+public abstract class ConcurrentResourcePool implements Runnable
+{
+    private int initSize;
+    private volatile int maxSize;
+
+    // Maximum time in millis to wait before acquireResource returns. Default to 60 seconds.
+    private volatile long maxWaitTime = DEFAULT_MAX_WAIT_TIME;
+
+    // Acquired resources, mapped to themselves.
+    private ConcurrentHashMap acquiredResources;
+    private LinkedBlockingDeque availableResources;
+
+    // One permit for each resource that can still be acquired.
+    private PoolPermits permits;
+
+    private AtomicBoolean beingDestroyed = new AtomicBoolean( false );
+
+    // Last time that a resource was acquired.
+    private volatile long lastAccessTime;
+    // Time without activity to wait before cleaning up unused resources.
+    private long idleCleanupInterval = DEFAULT_MAX_RESOURCE_AGING_TIME;
+
+    private Thread cleanupThread;
+
+
+    /**
+     * Constant to allow returning from acquireResource() without waiting.
+     */
+    public static final int NOT_SET = -1;
+
+    /**
+     * Constant defining the default maximum time (in minutes) to wait before
+     * freeing-up available resources when there are no active client requests.
+     */
+    public static final long DEFAULT_MAX_RESOURCE_AGING_TIME = 60;
+
+    /**
+     * Constant defining the default maximum time (in seconds) to wait for a
+     * database connection to become available before giving up.
+     */
+    public static final long DEFAULT_MAX_WAIT_TIME = 60;
+
+
+    private static final long MSEC_PER_SEC = 1000;
+
+    private static final long MSEC_PER_MINUTE = 60 * MSEC_PER_SEC;
+
+
+    /**
+     * Constructs a resource pool with the specified parameters.
+     *
+     * @param	maxSize		Maximum pool size.
+     * @param	initSize	Initial pool size.
+     *
+     * @exception ResourceException Thrown if failed to construct pool.
+     *
+     */
+    protected ConcurrentResourcePool(int maxSize, int initSize) throws ResourceException
+    {
+        if (maxSize <= 0 || initSize < 0)
+        {
+            throw new ResourceException("ERROR: Cannot constructing pool with [" + maxSize + ", " + initSize
+                                     + "]. The maximum size must be positive and initial size non-negative.");
+        }
+
+        Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: Constructing resource pool [" + maxSize + ", " + initSize + "]...");
+
+        if (initSize > maxSize) {
+            Debug.log(Debug.ALL_WARNINGS, "WARNING: RESOURCE_POOL: Initial pool size[" + initSize + "] is greater than maximum size [" + maxSize +
+                            "], using maximum size instead.");
+
+            initSize = maxSize;
+        }
+        this.maxSize = maxSize;
+        this.initSize = initSize;
+
+        availableResources = new LinkedBlockingDeque();
+        acquiredResources = new ConcurrentHashMap(maxSize);
+
+        permits = new PoolPermits(maxSize);
+
+        for (int i=0; i<initSize; i++ )
+        {
+            Object aResource = createResource();
+            availableResources.addLast(aResource);
+
+        }
+
+        lastAccessTime = System.currentTimeMillis( );
+
+        // Start the background cleanup thread for connection pool aging.
+        cleanupThread = new Thread( this );
+
+        cleanupThread.setDaemon(true);
+
+        cleanupThread.start( );
+
+        Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: Constructed resource pool [" + this.maxSize + ", " + this.initSize + "].");
+    }
+
+
+    /**
+     * Set the maximum number of resources available from the resource pool.
+     *
+     * @param  newMaxSize  New maximum value of resources.
+     */
+    public synchronized void setMaxPoolSize ( int newMaxSize )
+    {
+        if ( newMaxSize > 0 )
+        {
+            int oldValue = maxSize;
+
+            // Set new Value.
+            maxSize = newMaxSize;
+
+            // Resources already acquired above a reduced size are returned
+            // without their permits being made available again.
+            if ( newMaxSize > oldValue )
+                permits.releaseShared( newMaxSize - oldValue );
+            else
+                permits.reducePermits( oldValue - newMaxSize );
+
+            Debug.log( Debug.DB_STATUS, "Replaced maxSize value: [" + oldValue +
+                            "] with the new value: [" + maxSize + "]" );
+        }
+        else {
+
+            String errMsg = "Invalid newMaxSize value: [" + newMaxSize +
+                            "] Keeping the current value: [" + maxSize + "]";
+            Debug.error( errMsg );
+        }
+    }
+
+
+    /**
+     * Set the maximum amount of time to wait for resource availability
+     * from the resource pool.
+     *
+     * @param  seconds  Maximum time, in seconds, to wait before giving up and throwing exception.
+     */
+    public void setMaxResourceWaitTime ( int seconds )
+    {
+        if ( seconds > 0 )
+        {
+            // Convert seconds to milliseconds.
+            maxWaitTime = seconds * MSEC_PER_SEC;
+        }
+        else {
+            maxWaitTime = DEFAULT_MAX_WAIT_TIME * MSEC_PER_SEC;
+        }
+
+        Debug.log( Debug.DB_STATUS, "Maximum time to wait for resource being set to [" +
+                   seconds + "] seconds." );
+    }
+
+
+    /**
+     * Set the time to wait before cleaning up available resources when
+     * there is no activity against the resource pool. (resource aging)
+     *
+     * @param  minutes  Number of minutes without pool access activity
+     *                  before cleanup should be performed.
+     */
+    public void setIdleCleanupTime ( int minutes )
+    {
+        if ( minutes > 0 )
+        {
+            idleCleanupInterval = minutes;
+
+            Debug.log( Debug.DB_STATUS, "Time to wait before idle resource cleanup: [" +
+                       idleCleanupInterval + "] minutes." );
+        }
+    }
+
+
+    /**
+     * Returns whether the resource is currently available or not.
+     *
+     * @return true if resource is available.
+     */
+    public boolean isResourceAvailable()
+    {
+        if (beingDestroyed.get())
+        {
+            Debug.log( Debug.DB_STATUS, "Resource is being destroyed, so it's not currently available." );
+
+            return false;
+        }
+        return (acquiredResources.size() < maxSize);
+    }
+
+    /**
+     * Returns whether the resource belongs to the pool or not.
+     *
+     * @return true if resource is available.
+     */
+    public boolean isPoolResource(Object resource)
+    {
+        if( Debug.isLevelEnabled( Debug.DB_STATUS ) )
+            Debug.log( Debug.DB_STATUS, poolStatus() );
+
+        return ( acquiredResources.containsKey(resource) ||
+                 availableResources.contains(resource) );
+    }
+
+    /**
+     * Acquires a resource from pool. Creates a new resource if neccesary. If max
+     *
+     * @return The acquired resource.
+     *
+     * @exception ResourceException Thrown if failed to grab one from pool.
+     */
+    protected Object acquireResource() throws ResourceException
+    {
+        Object aResource = null;
+
+        if ( maxWaitTime == NOT_SET )
+        {
+            aResource = acquireResourceNoWait( );
+        }
+        else
+        {
+            aResource = acquireResource( maxWaitTime );
+        }
+        return aResource;
+    }
+
+
+    /**
+     * Acquires a resource from pool. Creates a new resource if neccesary.
+     * Do not wait for resource availability.
+     *
+     * @return The acquired resource.
+     *
+     * @exception ResourceException Thrown if failed to grab one from pool.
+     */
+    protected Object acquireResourceNoWait() throws ResourceException
+    {
+        checkNotDestroyed();
+
+        if (!permits.tryAcquireNow())
+        {
+            throw new ResourceException("ERROR: Cannot get resource from pool since pool is empty.");
+        }
+
+        return getResourceInternal();
+    }
+
+
+    /**
+     * Acquires a resource from pool within the specified time period. Creates a new resource if neccesary.
+     * Waiting callers are served in the order they arrived.
+     *
+     * @param    timeout    The time in millis to wait until a non-null resource is acquired,
+     *                      or 0 to wait indefinitely.
+     *
+     * @return The acquired resource.
+     *
+     * @exception ResourceException Thrown if failed to grab exception from pool.
+     */
+    protected Object acquireResource(long timeout) throws ResourceException
+    {
+
+        if( Debug.isLevelEnabled( Debug.DB_STATUS ) )
+            Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: Trying to acquire resource, will wait up to [" + timeout + "] milliseconds...");
+
+        if (timeout < 0)
+        {
+            throw new ResourceException("ERROR: Cannot get resource with a negative timeout [" + timeout + "].");
+        }
+
+        checkNotDestroyed();
+
+        if (timeout == 0)
+        {
+            permits.acquireShared(1);
+        }
+        else if (!tryAcquirePermit(timeout))
+        {
+            throw new ResourceException("ERROR: Attempt to acquire resource has timed out by exceeding max-wait-time of ["
+                                        + timeout + "] msec.  Current pool configuration: " + poolStatus() );
+        }
+
+        return getResourceInternal();
+
+    }
+
+
+    /**
+     * Waits up to the given time for a permit. Like the monitor-based waiting
+     * this replaces, interrupts don't end the wait, but the thread's interrupt
+     * status is restored before returning.
+     */
+    private boolean tryAcquirePermit(long timeout)
+    {
+        long deadline = System.currentTimeMillis() + timeout;
+
+        boolean interrupted = false;
+
+        try
+        {
+            while (true)
+            {
+                long remaining = deadline - System.currentTimeMillis();
+
+                try
+                {
+                    return permits.tryAcquireSharedNanos(1, TimeUnit.MILLISECONDS.toNanos(Math.max(remaining, 0)));
+                }
+                catch (InterruptedException ie)
+                {
+                    interrupted = true;
+                }
+            }
+        }
+        finally
+        {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * Returns the resource to pool.
+     *
+     * @param    aResource    The resource to put back in pool.
+     *
+     * @exception ResourceException Thrown if failed to put back the resource.
+     */
+    protected void releaseResource(Object aResource) throws ResourceException
+    {
+        if( Debug.isLevelEnabled( Debug.DB_STATUS ) )
+            Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: Returning resource [" + aResource + "]...");
+
+        if( Debug.isLevelEnabled( Debug.DB_STATUS ) )
+           Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: " + this.poolStatus());
+
+        if (beingDestroyed.get())
+        {
+            // Pool is being destroyed, do not return to pool.
+            Debug.log(Debug.DB_STATUS, "WARNING: RESOURCE_POOL: Resource returned while pool being destroyed.");
+        }
+        else
+        {
+            if (aResource == null || acquiredResources.remove(aResource) == null)
+            {
+                // If this resource was not acquired from this pool, throw exception.
+                throw new ResourceException("ERROR: The resource [" + aResource +
+                            "] you are returning was not acquired from the pool.");
+            }
+
+            // Move back the resource from acquired pool to available pool,
+            // before letting a waiting thread in to take it.
+            availableResources.addFirst(aResource);
+
+            releasePermit();
+        }
+
+        if( Debug.isLevelEnabled( Debug.DB_STATUS ) )
+            Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: " + this.poolStatus());
+
+        if( Debug.isLevelEnabled( Debug.DB_STATUS ) )
+            Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: Returned resource [" + aResource + "].");
+
+    }
+
+
+    /**
+     * Destroys all resources in free pool and in used pool.
+     *
+     * @exception ResourceException Thrown if failed to destroy the pool.
+     */
+    protected void destroyAll() throws ResourceException
+    {
+        Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: Destroying the resource pool...");
+
+        Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: " + this.poolStatus());
+
+        if (!beingDestroyed.compareAndSet(false, true))
+        {
+            return;
+        }
+
+        // Wake all waiting threads, so that they find the pool being destroyed.
+        permits.close();
+
+        // Tell the cleanup thread that we're done with it.
+        cleanupThread.interrupt( );
+
+        // Destroys all resource that is in free pool.
+        Object aResource;
+
+        while ((aResource = availableResources.pollFirst()) != null)
+        {
+            destroyResource(aResource);
+        }
+
+        // Destroys all resource that is being used also.
+        Iterator iter = acquiredResources.keySet().iterator();
+
+        while (iter.hasNext())
+        {
+            aResource = iter.next();
+            iter.remove();
+            destroyResource(aResource);
+        }
+
+        if( Debug.isLevelEnabled( Debug.DB_STATUS ) )
+            Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: " + this.poolStatus());
+
+        Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: Destroyed the resource pool.");
+
+    }
+
+
+    /**
+     * Creates a new resource.
+     *
+     * @return The new created resource.
+     *
+     * @exception ResourceException Thrown if failed to create a resouce.
+     */
+    protected abstract Object createResource() throws ResourceException;
+
+
+    /**
+     * Validates the resource.
+     *
+     * @param    aResource    The resource to be validated.
+     *
+     * @return true if resource is valid.
+     *
+     * @exception ResourceException Thrown if failed to valid the resouce.
+     */
+    protected abstract boolean validateResource(Object aResource) throws ResourceException;
+
+
+    /**
+     * Destroys the resource.
+     *
+     * @param    aResource    The resource to be destroyed.
+     *
+     * @exception ResourceException Thrown if failed to destroy the resouce.
+     */
+    protected abstract void destroyResource(Object aResource) throws ResourceException;
+
+
+    private void checkNotDestroyed() throws ResourceException
+    {
+        if (beingDestroyed.get())
+        {
+            throw new ResourceException("ERROR: Can't get resource since pool is being destroyed.");
+        }
+    }
+
+
+    /**
+     * Gives back a permit. If the pool has shrunk since it was taken, this
+     * pays back the reduction instead of letting another caller in.
+     */
+    private void releasePermit()
+    {
+        permits.releaseShared(1);
+    }
+
+
+    /**
+     * Takes a resource from the available pool, or creates a new one if none is
+     * available, once the caller holds a permit. Gives the permit back on failure.
+     *
+     * @return The acquired resource.
+     *
+     * @exception ResourceException Thrown if failed to grab one from pool.
+     */
+    private Object getResourceInternal() throws ResourceException
+    {
+        Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: Acquiring a resource...");
+
+        if( Debug.isLevelEnabled( Debug.DB_STATUS ) )
+            Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: " + this.poolStatus());
+
+        // A caller let through by the pool being destroyed holds no permit.
+        checkNotDestroyed();
+
+        Object aResource = null;
+
+        try
+        {
+            // Repeated get from available pool until a good resource is return or nothing left in available pool.
+            while (aResource == null && (aResource = availableResources.pollFirst()) != null)
+            {
+                if (!validateResource(aResource))
+                {
+                    Debug.log(Debug.DB_STATUS, "WARNING: RESOURCE_POOL: Found an invalid resource, destroy it.");
+                    destroyResource(aResource);
+                    aResource = null;
+                }
+            }
+
+            if (aResource == null)
+            {
+                // None is available from pool, but a permit is held, so create a new one.
+                Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: No valid resource in pool, creating a new one...");
+                aResource = createResource();
+            }
+        }
+        catch (ResourceException e)
+        {
+            releasePermit();
+
+            throw e;
+        }
+        catch (RuntimeException e)
+        {
+            releasePermit();
+
+            throw e;
+        }
+
+        // Before return, add it to acquired pool.
+        acquiredResources.put(aResource, aResource);
+
+        Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: " + this.poolStatus());
+
+        if( Debug.isLevelEnabled( Debug.DB_STATUS ) )
+            Debug.log(Debug.DB_STATUS, "RESOURCE_POOL: Resource [" + aResource + "] was acquired.");
+
+        // Remember the last time we acquired a resource for aging.
+        lastAccessTime = System.currentTimeMillis( );
+
+        return aResource;
+    }
+
+    /**
+     * Get the resource pool statistics in string form. For debug purpose.
+     *
+     * @return The curent size of pool and the number of resource being used.
+     *
+     */
+    public String poolStatus()
+    {
+        return "Pool[init-size=" + initSize + ", max-size=" + maxSize + ", available="
+               + availableResources.size() + ", acquired=" + acquiredResources.size()
+               + ", max-wait-time=" + ((float)maxWaitTime)/1000.0 + " sec]";
+    }
+
+    /**
+     * Take the decision whether we need to execute the clean up thread for resource pool.
+     *
+     * @return true if the time difference of current time and pool last access time is more then idle interval.
+     *
+     */
+
+    public boolean isCleanUpRequired(long idleInterval )
+    {
+        // this method will be called only when its subclass has not overwrite this. hence this method contains the default behaviour
+        // Calculate the time since a resource was last acquired.
+        long now = System.currentTimeMillis( );
+        long delta =  (now - lastAccessTime)/MSEC_PER_MINUTE;
+        if( Debug.isLevelEnabled( Debug.OBJECT_LIFECYCLE ) )
+                    Debug.log( Debug.OBJECT_LIFECYCLE, "Time since last resource access for pool ["
+                           + getClass().getName() + "]: [" + delta + "] minutes." );
+
+        return (delta >= idleInterval);
+    }
+
+
+    /**
+     * Execution entry point for internal thread that performs
+     * resource pool aging and cleanup of unused resources.
+     */
+    public void run ( )
+    {
+        if( Debug.isLevelEnabled( Debug.OBJECT_LIFECYCLE ) )
+            Debug.log( Debug.OBJECT_LIFECYCLE, "Starting resource pool cleanup thread, which will wait ["
+                   + idleCleanupInterval + "] minutes between cleanup attempts." );
+
+        try
+        {
+            // The cleanup thread should be run at the lowest priority.
+            Thread.currentThread().setPriority( Thread.MIN_PRIORITY );
+
+            do
+            {
+                Thread.sleep( idleCleanupInterval * MSEC_PER_MINUTE );
+
+                // Skip cleanup if parent thread has indicated that cleanup thread should exit.
+                if ( Thread.currentThread().isInterrupted() )
+                    break;
+
+                if( Debug.isLevelEnabled( Debug.OBJECT_LIFECYCLE ) )
+                    Debug.log( Debug.OBJECT_LIFECYCLE, "Resource pool cleanup thread just woke up." );
+
+
+                boolean isCleanupReq = isCleanUpRequired(idleCleanupInterval);
+
+
+                // If the value for the isCleanupReq comes out to be true then proceed with the cleanup thread
+                if ( isCleanupReq )
+                {
+                    if( Debug.isLevelEnabled( Debug.OBJECT_LIFECYCLE ) )
+                        Debug.log( Debug.OBJECT_LIFECYCLE, "Before pool cleanup: " + poolStatus() );
+
+                    // Free-up all available resources, taking them from the least recently used
+                    // end of the deque. Acquirers aren't blocked while this happens; any resource
+                    // they take first is simply not destroyed.
+                    // (NOTE: We don't touch any outstanding resources that are in use by clients!)
+                    Object aResource;
+
+                    while ( (aResource = availableResources.pollLast()) != null )
+                    {
+                        destroyResource(aResource);
+                    }
+
+                    Debug.log( Debug.OBJECT_LIFECYCLE, "After destroying available resources: " + poolStatus() );
+
+                    // Now, initialize resources up to initial low water mark count, which at this
+                    // point is the initial size minus the currently outstanding acquired resources.
+                    int minCount = initSize - acquiredResources.size();
+
+                    // If there are more acquired resources than the initial size,
+                    // we'll do nothing.
+                    if ( minCount < 0 )
+                        minCount = 0;
+
+                    while ( availableResources.size() < minCount )
+                    {
+                        aResource = createResource( );
+
+                        availableResources.addLast( aResource );
+                    }
+
+                    if( Debug.isLevelEnabled( Debug.OBJECT_LIFECYCLE ) )
+                        Debug.log( Debug.OBJECT_LIFECYCLE, "After re-initializing: " + poolStatus() );
+
+                    if( Debug.isLevelEnabled( Debug.OBJECT_LIFECYCLE ) )
+                        Debug.log( Debug.OBJECT_LIFECYCLE, "After pool cleanup: " + poolStatus() );
+                }
+            }
+            while ( true );
+        }
+        catch ( InterruptedException ie )
+        {
+            Debug.log( Debug.OBJECT_LIFECYCLE, "Resource pool cleanup thread has been interrupted and is now exiting ..." );
+        }
+        catch ( Exception e )
+        {
+            Debug.log( Debug.ALL_ERRORS, "ERROR: Resource pool cleanup thread for ["
+                       + getClass().getName() + "] encountered exception:\n" + e.toString() );
+        }
+    }
+
+
+    /**
+     * Fair permits, whose count can be reduced when the pool shrinks, and
+     * which let every waiter through, without a permit, once closed.
+     */
+    private static final class PoolPermits extends AbstractQueuedSynchronizer
+    {
+        private static final long serialVersionUID = 4727019337419823716L;
+
+        // Set when the pool is being destroyed.
+        private volatile boolean closed = false;
+
+        PoolPermits ( int permits )
+        {
+            setState( permits );
+        }
+
+        /**
+         * Takes a permit if one is available, even if others are waiting.
+         */
+        boolean tryAcquireNow ( )
+        {
+            return( tryAcquire( false ) >= 0 );
+        }
+
+        void reducePermits ( int reduction )
+        {
+            while ( true )
+            {
+                int current = getState( );
+
+                if ( compareAndSetState( current, current - reduction ) )
+                    return;
+            }
+        }
+
+        void close ( )
+        {
+            closed = true;
+
+            // Wakes the first waiter, which then wakes the next, and so on.
+            releaseShared( 0 );
+        }
+
+        protected int tryAcquireShared ( int acquires )
+        {
+            return tryAcquire( true );
+        }
+
+        protected boolean tryReleaseShared ( int releases )
+        {
+            while ( true )
+            {
+                int current = getState( );
+
+                if ( compareAndSetState( current, current + releases ) )
+                    return true;
+            }
+        }
+
+        private int tryAcquire ( boolean fair )
+        {
+            while ( true )
+            {
+                if ( closed )
+                    return 1;
+
+                if ( fair )
+                {
+                    Thread first = getFirstQueuedThread( );
+
+                    if ( (first != null) && (first != Thread.currentThread()) )
+                        return -1;
+                }
+
+                int available = getState( );
+
+                int remaining = available - 1;
+
+                if ( (remaining < 0) || compareAndSetState( available, remaining ) )
+                    return remaining;
+            }
+        }
+    }
+}
@@ -6,6 +6,8 @@
 package com.nightfire.framework.rules;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.*;
 
 import com.nightfire.framework.util.*;
@@ -14,9 +16,24 @@ import com.nightfire.framework.util.*;
 /**
  * Provides methods for executing regular expression-related utilies (matching, replacement)
  * in a performance optimized way.  Underlying implementation utilizes java.util.regex functionality.
+ *
+ * Compiled patterns are held in a bounded cache shared by all threads, which is read
+ * without locking.  Each thread keeps its own Matcher for each recently used pattern, so
+ * matchers are reused without being handed between threads.
  */
 public class CachingRegexUtils
 {
+    /**
+     * Default maximum number of compiled patterns cached.
+     */
+    public static final int DEFAULT_MAX_PATTERNS = 2000;
+
+    /**
+     * Maximum number of matchers each thread keeps.
+     */
+    public static final int MAX_MATCHERS_PER_THREAD = 64;
+
+
     /**
      * Replaces every subsequence of the input sequence that matches the pattern with the given replacement string.
      *
@@ -24,24 +41,12 @@ public class CachingRegexUtils
      * @param  input  Input data to perform replacements on.
      * @param  replacement  Value to use in replacement.
      *
-     * @return The string constructed by replacing each matching subsequence by the replacement string, 
+     * @return The string constructed by replacing each matching subsequence by the replacement string,
      *         substituting captured subsequences as needed
      */
     public static String replaceAll ( String perl5Pattern, String input, String replacement )
     {
-        PatternMatcher pm = getPatternMatcher( perl5Pattern );
-
-        Matcher m = pm.getMatcher( input );
-
-        try
-        {
-            return( m.replaceAll( replacement ) );
-        }
-        finally
-        {
-            // Return matcher to it's parent pattern-specific cache.
-            pm.putMatcher( m );
-        }
+        return( getMatcher( getPattern( perl5Pattern ), input ).replaceAll( replacement ) );
     }
 
 
@@ -55,124 +60,136 @@ public class CachingRegexUtils
      */
     public static boolean matches ( String perl5Pattern, String input )
     {
-        PatternMatcher pm = getPatternMatcher( perl5Pattern );
+        return( getMatcher( getPattern( perl5Pattern ), input ).matches() );
+    }
 
-        Matcher m = pm.getMatcher( input );
 
-        try
-        {
-            return( m.matches() );
-        }
-        finally
-        {
-            // Return matcher to it's parent pattern-specific cache.
-            pm.putMatcher( m );
-        }
+    /**
+     * Splits the input around matches of the pattern, in the same way as String.split().
+     *
+     * @param  perl5Pattern  Pattern to split around.
+     * @param  input  Input data to split.
+     * @param  limit  The limit, as for String.split().
+     *
+     * @return  The array of strings computed by splitting the input.
+     */
+    public static String[] split ( String perl5Pattern, String input, int limit )
+    {
+        return( getPattern( perl5Pattern ).split( input, limit ) );
     }
 
 
     /**
-     * Get the PatternMatcher object associated with the given regular expression.
+     * Get the compiled pattern for the given regular expression, compiling and caching it
+     * if it hasn't been seen before.  Once the cache is full, new patterns are compiled
+     * but not cached.
      *
-     * @param  regex  Pattern to use to identify pattern matcher.
+     * @param  regex  The regular expression.
      *
-     * @return  The associated pattern matcher object.
+     * @return  The compiled pattern.
+     *
+     * @exception  PatternSyntaxException  Thrown if the expression is invalid.
      */
-    private static synchronized PatternMatcher getPatternMatcher ( String regex )
+    public static Pattern getPattern ( String regex )
     {
-        // First, check to see if we've already previously created and cached one.
-        PatternMatcher pm = (PatternMatcher)patternMatcherContainer.get( regex );
+        Pattern pattern = (Pattern)patterns.get( regex );
+
+        if ( pattern != null )
+            return pattern;
+
+        compilations.incrementAndGet( );
+
+        if ( Debug.isLevelEnabled( Debug.OBJECT_LIFECYCLE ) )
+            Debug.log( Debug.OBJECT_LIFECYCLE, "Compiling pattern for regex [" + regex + "]." );
+
+        // Compile outside of any lock.  If two threads compile the same
+        // pattern at once, both get an equivalent pattern.
+        pattern = Pattern.compile( regex );
 
-        // Haven't created one yet, so ...
-        if ( pm == null )
+        if ( patterns.size() < maxPatterns )
         {
-            // Create one now against the pattern ...
-            pm = new PatternMatcher( regex );
+            Pattern existing = (Pattern)patterns.putIfAbsent( regex, pattern );
 
-            // and cache it for subsequent reuse, using regular expression as access key.
-            patternMatcherContainer.put( regex, pm );
+            if ( existing != null )
+                pattern = existing;
         }
 
-        return pm;
+        return pattern;
     }
 
 
     /**
-     * Private implementation class used to cache a Pattern together with
-     * an internal cache of Matchers associated with it.  (NOTE: Pattern objects
-     * are stateless and therefore inherently thread-safe, but Matcher objects 
-     * maintain match state and therefore must be associated with only one execution 
-     * thread at a time.  However, they can be reset and reused.)
+     * Set the maximum number of compiled patterns cached.
+     *
+     * @param  max  Maximum number of patterns.
      */
-    private static class PatternMatcher
+    public static void setMaxPatterns ( int max )
     {
-        /**
-         * Get a Matcher object for the current pattern and the given input.
-         *
-         * @param input  Input to get Matcher for.
-         *
-         * @return  A Matcher object.
-         */
-        public synchronized Matcher getMatcher ( String input )
-        {
-            // If we have one in the internal cache ...
-            if ( matchersForPattern.size() > 0 )
-            {
-                // Remove it from the cache so that it's only accessible by
-                // the current thread.
-                Matcher m = (Matcher)matchersForPattern.removeFirst( );
+        maxPatterns = max;
+    }
 
-                // Reset it against the new input before returning it.
-                return( m.reset( input ) );
-            }
-            else
-            {
-                if ( Debug.isLevelEnabled( Debug.OBJECT_LIFECYCLE ) )
-                    Debug.log( Debug.OBJECT_LIFECYCLE, "Creating matcher against input [" 
-                               + input + "] for regex [" + pattern.pattern() + "]." );
 
-                // Create a new matcher against the pattern.
-                return( pattern.matcher( input ) );
-            }
-        }
+    /**
+     * Describe the size of the pattern cache and the number of compilations.
+     *
+     * @return  Human-readable description.
+     */
+    public static String describe ( )
+    {
+        return( "Compiled-regex cache: patterns [" + patterns.size() + "/" + maxPatterns
+                + "], compilations [" + compilations.get() + "]." );
+    }
 
-        /**
-         * Return the Matcher to the cache.
-         *
-         * @param m Matcher to return.
-         */
-        public synchronized void putMatcher ( Matcher m )
-        {
-            if ( m.pattern() != pattern )
-            {
-                throw new IllegalArgumentException( "Regex Matcher didn't originate from this Pattern." );
-            }
 
-            // Reset Matcher and return it to the internal cache.
-            m.reset( );
+    /**
+     * Get the current thread's Matcher for the pattern, reset against the given input.
+     * The matcher must be used before this thread asks for another matcher for the
+     * same pattern.
+     *
+     * @param  pattern  The compiled pattern.
+     * @param  input  Input to match.
+     *
+     * @return  A Matcher object.
+     */
+    private static Matcher getMatcher ( Pattern pattern, String input )
+    {
+        Map matchers = (Map)threadMatchers.get( );
 
-            matchersForPattern.add( m );
-        }
+        Matcher m = (Matcher)matchers.get( pattern );
 
-        /**
-         * Create a pattern matcher object supporting the given regular expression.
-         *
-         * @param  regex  Perl5 regular expression to support.
-         */
-        public PatternMatcher ( String regex )
+        if ( m == null )
         {
-            if ( Debug.isLevelEnabled( Debug.OBJECT_LIFECYCLE ) )
-                Debug.log( Debug.OBJECT_LIFECYCLE, "Creating pattern-matcher for regex [" + regex + "]." );
+            m = pattern.matcher( input );
 
-            pattern = Pattern.compile( regex );
+            matchers.put( pattern, m );
 
-            matchersForPattern = new LinkedList( );
+            return m;
         }
 
-        private Pattern pattern;
-        private LinkedList matchersForPattern;
+        return( m.reset( input ) );
     }
 
 
-    private static Map patternMatcherContainer = new HashMap( );
+    // Each thread's matchers, keyed by pattern, with the least recently used
+    // dropped once there are too many.
+    private static ThreadLocal threadMatchers = new ThreadLocal( )
+        {
+            protected Object initialValue ( )
+            {
+                return new LinkedHashMap( 16, 0.75f, true )
+                    {
+                        protected boolean removeEldestEntry ( Map.Entry eldest )
+                        {
+                            return( size() > MAX_MATCHERS_PER_THREAD );
+                        }
+                    };
+            }
+        };
+
+    private static ConcurrentHashMap patterns = new ConcurrentHashMap( );
+
+    private static volatile int maxPatterns = DEFAULT_MAX_PATTERNS;
+
+    // Counted on misses only, so that hits don't contend on a shared counter.
+    private static AtomicLong compilations = new AtomicLong( );
 }
@@ -12,7 +12,7 @@ import java.util.*;
 import com.nightfire.framework.util.*;
 
 
-public class EvaluatorPool extends FactoryCacheBase{
+public class EvaluatorPool extends ConcurrentFactoryCacheBase{
 
   /**
   * A singleton instance of the EvaluatorPool. 
@@ -0,0 +1,313 @@
+/**
+ * Copyright (c) 2003 Neustar, Inc. All rights reserved.
+ *
+ */
+package com.nightfire.framework.rules;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.nightfire.framework.util.*;
+import com.nightfire.framework.cache.*;
+
+/**
+ * Cache of rule database query results that is shared by all requests, for
+ * slowly changing reference data (LRN and NPA-NXX ownership, for example).
+ * Results expire once the configured time-to-live has passed, and the
+ * cache is disabled until a time-to-live is set.  Flushing the cache via
+ * the CacheManager discards all results.
+ *
+ * Also accumulates the hit counts of the per-request query caches held
+ * by each RuleContext, so that the number of database calls removed per
+ * validated request can be reported.
+ */
+public class QueryResultCache implements CachingObject
+{
+    /**
+     * Default maximum number of results held.
+     */
+    public static final int DEFAULT_MAX_SIZE = 10000;
+
+    /**
+     * Minimum time, in milliseconds, between purges of expired results
+     * from a full cache.
+     */
+    public static final long PURGE_INTERVAL = 1000;
+
+
+    /**
+     * Get the single instance of the cache.
+     *
+     * @return  The shared query-result cache.
+     */
+    public static QueryResultCache getInstance ( )
+    {
+        return singleton;
+    }
+
+
+    /**
+     * Build the key of a query result from the query and its bind values.
+     *
+     * @param  query  The SQL query.
+     * @param  bindValues  The query's bind values, in order.  May be null.
+     *
+     * @return  The cache key.
+     */
+    public static String getKey ( String query, Object[] bindValues )
+    {
+        StringBuffer sb = new StringBuffer( query );
+
+        if ( bindValues != null )
+        {
+            for ( int Ix = 0;  Ix < bindValues.length;  Ix ++ )
+            {
+                // A character that can't appear in a query or bind value.
+                sb.append( '\u0000' );
+                sb.append( bindValues[ Ix ] );
+            }
+        }
+
+        return( sb.toString() );
+    }
+
+
+    /**
+     * Set the time results are held for.  A value of zero (the default)
+     * disables the cache and discards any results it holds.
+     *
+     * @param  timeToLive  Time-to-live in milliseconds.
+     */
+    public void setTimeToLive ( long timeToLive )
+    {
+        if ( timeToLive != this.timeToLive )
+        {
+            Debug.log( Debug.SYSTEM_CONFIG, "Shared rule query-result cache time-to-live set to ["
+                       + timeToLive + "] msec." );
+
+            this.timeToLive = timeToLive;
+
+            if ( timeToLive <= 0 )
+                results.clear( );
+        }
+    }
+
+
+    /**
+     * Set the maximum number of results held.  Once it is reached, new
+     * results are not cached until expired ones are purged, which a full
+     * cache does at most once per PURGE_INTERVAL.
+     *
+     * @param  maxSize  Maximum number of results.
+     */
+    public void setMaxSize ( int maxSize )
+    {
+        this.maxSize = maxSize;
+    }
+
+
+    /**
+     * Test whether results can be shared between requests.
+     *
+     * @return  'true' if a time-to-live has been set, otherwise 'false'.
+     */
+    public boolean isEnabled ( )
+    {
+        return( timeToLive > 0 );
+    }
+
+
+    /**
+     * Get the unexpired result of a query.
+     *
+     * @param  key  The key built by getKey().
+     *
+     * @return  The result, or null if it isn't cached or has expired.
+     */
+    public Object get ( String key )
+    {
+        if ( !isEnabled() )
+            return null;
+
+        Entry entry = (Entry)results.get( key );
+
+        if ( entry != null )
+        {
+            if ( entry.expiration > System.currentTimeMillis() )
+            {
+                sharedHits.incrementAndGet( );
+
+                return entry.value;
+            }
+
+            results.remove( key, entry );
+        }
+
+        return null;
+    }
+
+
+    /**
+     * Cache the result of a query.  The result is shared between threads,
+     * so it must not be modified after it is cached.
+     *
+     * @param  key  The key built by getKey().
+     * @param  value  The query result.
+     */
+    public void put ( String key, Object value )
+    {
+        if ( !isEnabled() || (value == null) )
+            return;
+
+        long now = System.currentTimeMillis( );
+
+        if ( results.size() >= maxSize )
+        {
+            // Only one caller purges, and not on every miss, since a purge
+            // scans every result.
+            long purgeTime = nextPurgeTime.get( );
+
+            if ( (now < purgeTime) || !nextPurgeTime.compareAndSet( purgeTime, now + PURGE_INTERVAL ) )
+                return;
+
+            purgeExpired( now );
+
+            if ( results.size() >= maxSize )
+                return;
+        }
+
+        results.put( key, new Entry( value, now + timeToLive ) );
+    }
+
+
+    /**
+     * Discard all shared results.
+     *
+     * @exception  FrameworkException  Thrown on errors.
+     */
+    public void flushCache ( ) throws FrameworkException
+    {
+        Debug.log( Debug.SYSTEM_CONFIG, "Flushing shared rule query-result cache: " + describe() );
+
+        results.clear( );
+    }
+
+
+    /**
+     * Add the query-cache usage of a completed request to the totals.
+     *
+     * @param  hits  Number of queries answered by the request's own cache.
+     * @param  misses  Number of queries that weren't, including those
+     *                 answered by this shared cache.
+     */
+    void addRequestStatistics ( long hits, long misses )
+    {
+        requests.incrementAndGet( );
+
+        requestHits.addAndGet( hits );
+
+        requestMisses.addAndGet( misses );
+    }
+
+
+    /**
+     * Describe the cache's size and hit rates.
+     *
+     * @return  Human-readable description.
+     */
+    public String describe ( )
+    {
+        long requestCount = requests.get( );
+
+        long lookups = requestHits.get() + requestMisses.get();
+
+        long hits = requestHits.get() + sharedHits.get();
+
+        StringBuffer sb = new StringBuffer( );
+
+        sb.append( "Rule query-result cache: requests [" );
+        sb.append( requestCount );
+        sb.append( "], queries [" );
+        sb.append( lookups );
+        sb.append( "], request-cache hits [" );
+        sb.append( requestHits.get() );
+        sb.append( "], shared-cache hits [" );
+        sb.append( sharedHits.get() );
+        sb.append( "], hit rate [" );
+        sb.append( (lookups == 0) ? 0 : (hits * 100 / lookups) );
+        sb.append( "%], database calls saved per request [" );
+        sb.append( (requestCount == 0) ? "0" : String.valueOf( (double)hits / requestCount ) );
+        sb.append( "], shared results [" );
+        sb.append( results.size() );
+        sb.append( "/" );
+        sb.append( maxSize );
+        sb.append( "], time-to-live [" );
+        sb.append( timeToLive );
+        sb.append( "] msec." );
+
+        return( sb.toString() );
+    }
+
+
+    // Remove the results that have expired.
+    private void purgeExpired ( long now )
+    {
+        Iterator iter = results.values().iterator( );
+
+        while ( iter.hasNext() )
+        {
+            if ( ((Entry)iter.next()).expiration <= now )
+                iter.remove( );
+        }
+    }
+
+
+    private QueryResultCache ( )
+    {
+        try
+        {
+            CacheManager.getRegistrar().register( this );
+        }
+        catch ( Exception e )
+        {
+            Debug.warning( e.toString() );
+        }
+    }
+
+
+    // A cached result and the time it expires.
+    private static class Entry
+    {
+        Entry ( Object value, long expiration )
+        {
+            this.value = value;
+
+            this.expiration = expiration;
+        }
+
+        final Object value;
+
+        final long expiration;
+    }
+
+
+    private final ConcurrentHashMap results = new ConcurrentHashMap( );
+
+    private volatile long timeToLive = 0;
+
+    private volatile int maxSize = DEFAULT_MAX_SIZE;
+
+    // Earliest time a full cache may be purged again.
+    private final AtomicLong nextPurgeTime = new AtomicLong( );
+
+    private final AtomicLong requests = new AtomicLong( );
+
+    private final AtomicLong requestHits = new AtomicLong( );
+
+    private final AtomicLong requestMisses = new AtomicLong( );
+
+    private final AtomicLong sharedHits = new AtomicLong( );
+
+    private static final QueryResultCache singleton = new QueryResultCache( );
+}
@@ -176,6 +176,44 @@ public class RuleContext
 
 
 
+    /**
+     * Get the cached result of a database query made earlier in this request.
+     *
+     * @param  key  Query key, as built by QueryResultCache.getKey().
+     *
+     * @return  The result, or null if the query hasn't been made yet.
+     */
+    public Object getQueryResult ( String key )
+    {
+        Object result = (queryResults == null) ? null : queryResults.get( key );
+
+        if ( result != null )
+            queryHits ++;
+        else
+            queryMisses ++;
+
+        return result;
+    }
+
+
+    /**
+     * Cache the result of a database query for the rest of this request.
+     *
+     * @param  key  Query key, as built by QueryResultCache.getKey().
+     * @param  result  The query result.
+     */
+    public void setQueryResult ( String key, Object result )
+    {
+        if ( result == null )
+            return;
+
+        if ( queryResults == null )
+            queryResults = new HashMap( );
+
+        queryResults.put( key, result );
+    }
+
+
     /**
      * Get the data container associated with this context.
      *
@@ -198,6 +236,22 @@ public class RuleContext
         if(map!=null)
              map.clear();
         map=null;
+
+        if ( (queryHits + queryMisses) > 0 )
+        {
+            QueryResultCache.getInstance().addRequestStatistics( queryHits, queryMisses );
+
+            if ( Debug.isLevelEnabled( Debug.DB_STATUS ) )
+                Debug.log( Debug.DB_STATUS, "Rule context query cache: hits [" + queryHits
+                           + "], misses [" + queryMisses + "].\n"
+                           + QueryResultCache.getInstance().describe() );
+
+            queryHits = 0;
+
+            queryMisses = 0;
+        }
+
+        queryResults = null;
     }
 
 
@@ -222,6 +276,11 @@ public class RuleContext
         sb.append( "]\n" );
         sb.append( "DB CONNECTION AVAILABLE? [" );
         sb.append( dbConAvailable );
+        sb.append( "]\n" );
+        sb.append( "QUERY CACHE HITS/MISSES: [" );
+        sb.append( queryHits );
+        sb.append( "/" );
+        sb.append( queryMisses );
         sb.append( "]\n\n" );
         sb.append( "AVAILABLE KEYS AND VALUES:\n\n" );
         sb.append( "[");
@@ -244,6 +303,16 @@ public class RuleContext
      */
     private Connection dbConn = null;
 
+    /**
+     * Results of database queries made by rules during this request,
+     * keyed by query and bind values.
+     */
+    private HashMap queryResults = null;
+
+    private long queryHits = 0;
+
+    private long queryMisses = 0;
+
     // Flag indicating whether or not this context owns the database transaction.
     // Default is 'true' - i.e., This context instance owns the transaction.
     private boolean ownsDBConnection = false;
@@ -9,6 +9,7 @@ import com.nightfire.framework.message.MessageException;
 import com.nightfire.framework.message.util.xml.*;
 import com.nightfire.framework.order.CHOrderEvalContext;
 import java.sql.*;
+import java.util.*;
 
 /**
 * This is the parent class for all generated rule Evaluator implementations.
@@ -498,6 +499,132 @@ public abstract class RuleEvaluatorBase extends ActionFunctions
 			return null;
    }
 
+   /**
+   * Executes a query on the shared DB Connection and returns its rows, each
+   * as a String[] of its column values. The result is cached in the
+   * RuleContext, so that rules asking the same question in the same request
+   * only execute the query once. If shared is true, and the
+   * QueryResultCache has been enabled, the result is also shared with
+   * later requests until it expires. This must only be used for slowly
+   * changing reference data.
+   *
+   * The returned list is shared, and must not be modified.
+   *
+   * @param query The SQL query.
+   * @param bindValues The values of the query's bind variables, in order.
+   * @param shared Whether the result may be reused by other requests.
+   * @return List of String[] rows.
+   * @exception FrameworkException Thrown if the query fails.
+   */
+   protected List executeCachedQuery( String query,
+                                      String[] bindValues,
+                                      boolean shared ) throws FrameworkException{
+
+      String key = QueryResultCache.getKey(query, bindValues);
+
+      List rows = null;
+
+      if(rContext != null)
+         rows = (List) rContext.getQueryResult(key);
+
+      if(rows == null && shared)
+         rows = (List) QueryResultCache.getInstance().get(key);
+
+      if(rows != null){
+
+         if(Debug.isLevelEnabled(Debug.DB_STATUS))
+            Debug.log(Debug.DB_STATUS, "Using cached result of query:\n" + query);
+
+      }
+      else{
+
+         rows = executeQuery(query, bindValues);
+
+         if(shared)
+            QueryResultCache.getInstance().put(key, rows);
+
+      }
+
+      if(rContext != null)
+         rContext.setQueryResult(key, rows);
+
+      return rows;
+
+   }
+
+   /**
+   * Executes a query on the shared DB Connection, and returns an
+   * unmodifiable list of its rows as String[] column values.
+   */
+   private List executeQuery( String query,
+                              String[] bindValues ) throws FrameworkException{
+
+      Connection conn = getDBConnection();
+
+      if(conn == null)
+         throw new FrameworkException("No database connection is available to execute query ["+
+                                      query+"]");
+
+      PreparedStatement pstmt = null;
+
+      ResultSet results = null;
+
+      try{
+
+         if(Debug.isLevelEnabled(Debug.NORMAL_STATUS))
+            Debug.log(Debug.NORMAL_STATUS, "Executing query:\n" + query);
+
+         pstmt = conn.prepareStatement(query);
+
+         for(int i = 0; bindValues != null && i < bindValues.length; i++)
+            pstmt.setString(i + 1, bindValues[i]);
+
+         results = pstmt.executeQuery();
+
+         int columnCount = results.getMetaData().getColumnCount();
+
+         List rows = new ArrayList();
+
+         while(results.next()){
+
+            String[] row = new String[columnCount];
+
+            for(int i = 0; i < columnCount; i++)
+               row[i] = results.getString(i + 1);
+
+            rows.add(row);
+
+         }
+
+         return Collections.unmodifiableList(rows);
+
+      }
+      catch(SQLException sqle){
+
+         throw new FrameworkException("Could not execute query ["+query+"]: "+sqle);
+
+      }
+      finally{
+
+         try{
+
+            if(results != null)
+               results.close();
+
+            if(pstmt != null)
+               pstmt.close();
+
+         }
+         catch(SQLException sqle){
+
+            Debug.error("Could not close statement: "+sqle);
+
+         }
+
+      }
+
+   }
+
    /**
    *  Test to see if there is a value associated with the named item in the ruleContext map. 
    */
@@ -596,7 +596,7 @@ public class Value implements Comparable{
   */
  public Value[] split(String regex, int limit) {
      
-     String[] tokens = value.split( regex, limit );
+     String[] tokens = CachingRegexUtils.split( regex, value, limit );
 
      Value[] values = new Value[tokens.length];
      
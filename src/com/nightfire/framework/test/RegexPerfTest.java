@@ -0,0 +1,209 @@
+package com.nightfire.framework.test;
+
+import java.util.*;
+import java.util.regex.*;
+
+import org.apache.oro.text.perl.Perl5Util;
+
+import com.nightfire.framework.util.*;
+import com.nightfire.framework.rules.*;
+
+
+/*
+ * Measures the cost of matching typical rule patterns (TNs, dates, times
+ * and other fixed formats) against values, comparing:
+ *
+ *   compile        - compiling a java.util.regex Pattern on every call
+ *   cached         - CachingRegexUtils.matches(), as used by Value.matches()
+ *   perl5-per-call - a new ORO Perl5Util, and pattern compilation, on every
+ *                    call, which is what RegexUtils.match() used to do
+ *   perl5-cached   - RegexUtils.match(), which now compiles through a
+ *                    per-thread pattern cache
+ *
+ * Each variant is run on the given number of threads, and the results of
+ * every variant are checked against the compile variant.
+ */
+class RegexPerfTest
+{
+    public static void main ( String[] args )
+    {
+        if ( args.length < 2 )
+        {
+            System.out.println( "\n\nUSAGE: RegexPerfTest <num-threads> <matches-per-thread>\n\n" );
+
+            return;
+        }
+
+        try
+        {
+            int threadCount = Integer.parseInt( args[0] );
+
+            int matchCount = Integer.parseInt( args[1] );
+
+            Debug.disableAll();
+
+            checkResults( );
+
+            for ( int Ix = 0;  Ix < VARIANTS.length;  Ix ++ )
+                run( VARIANTS[ Ix ] + " (warm-up)", Ix, threadCount, matchCount / 10 );
+
+            for ( int Ix = 0;  Ix < VARIANTS.length;  Ix ++ )
+                run( VARIANTS[ Ix ], Ix, threadCount, matchCount );
+
+            System.out.println( CachingRegexUtils.describe() );
+        }
+        catch ( Exception e )
+        {
+            e.printStackTrace( );
+        }
+    }
+
+
+    /*
+     * Checks that every variant gives the same answer for every pattern and value.
+     */
+    private static void checkResults ( ) throws Exception
+    {
+        int checked = 0;
+
+        for ( int Ix = 0;  Ix < PATTERNS.length;  Ix ++ )
+        {
+            for ( int Jx = 0;  Jx < VALUES.length;  Jx ++ )
+            {
+                boolean expected = match( 0, PATTERNS[ Ix ], VALUES[ Jx ] );
+
+                for ( int Kx = 1;  Kx < VARIANTS.length;  Kx ++ )
+                {
+                    if ( match( Kx, PATTERNS[ Ix ], VALUES[ Jx ] ) != expected )
+                    {
+                        throw new Exception( "Variant [" + VARIANTS[ Kx ] + "] gave [" + !expected + "] for pattern ["
+                                             + PATTERNS[ Ix ] + "] and value [" + VALUES[ Jx ] + "]." );
+                    }
+                }
+
+                checked ++;
+            }
+        }
+
+        System.out.println( "All variants agree on [" + checked + "] pattern/value pairs." );
+    }
+
+
+    /*
+     * Runs matchCount matches of the variant on each of threadCount threads,
+     * cycling through the patterns and values, and prints the throughput.
+     */
+    private static void run ( String name, final int variant, int threadCount, final int matchCount ) throws Exception
+    {
+        final Exception[] errors = new Exception[ 1 ];
+
+        final int[] matched = new int[ threadCount ];
+
+        Thread[] threads = new Thread[ threadCount ];
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+        {
+            final int threadIndex = Ix;
+
+            threads[ Ix ] = new Thread( )
+                {
+                    public void run ( )
+                    {
+                        try
+                        {
+                            for ( int Jx = 0;  Jx < matchCount;  Jx ++ )
+                            {
+                                String pattern = PATTERNS[ Jx % PATTERNS.length ];
+
+                                String value = VALUES[ (Jx / PATTERNS.length) % VALUES.length ];
+
+                                if ( match( variant, pattern, value ) )
+                                    matched[ threadIndex ] ++;
+                            }
+                        }
+                        catch ( Exception e )
+                        {
+                            errors[ 0 ] = e;
+                        }
+                    }
+                };
+        }
+
+        long start = System.currentTimeMillis( );
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+            threads[ Ix ].start( );
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+            threads[ Ix ].join( );
+
+        long stop = System.currentTimeMillis( );
+
+        if ( errors[ 0 ] != null )
+            throw errors[ 0 ];
+
+        long total = (long) threadCount * matchCount;
+
+        long hits = 0;
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+            hits += matched[ Ix ];
+
+        System.out.println( name + ": [" + total + "] matches on [" + threadCount + "] threads took ["
+                            + (stop - start) + "] msec, [" + (total * 1000 / Math.max( 1, stop - start ))
+                            + "] matches/sec, [" + hits + "] matched." );
+    }
+
+
+    private static boolean match ( int variant, String pattern, String value ) throws Exception
+    {
+        switch ( variant )
+        {
+        case 0:
+            return( Pattern.compile( pattern ).matcher( value ).matches() );
+
+        case 1:
+            return( CachingRegexUtils.matches( pattern, value ) );
+
+        case 2:
+            return( new Perl5Util().match( "/^(?:" + pattern + ")$/", value ) );
+
+        default:
+            return( RegexUtils.match( "^(?:" + pattern + ")$", value ) );
+        }
+    }
+
+
+    private static final String[] VARIANTS = { "compile", "cached", "perl5-per-call", "perl5-cached" };
+
+    // Patterns of the kinds used by rules.
+    private static final String[] PATTERNS =
+    {
+        "[0-9]{10}",
+        "[0-9]{3}-[0-9]{3}-[0-9]{4}",
+        "[0-9]{3}-[0-9]{3}",
+        "(0[1-9]|1[0-2])-(0[1-9]|[12][0-9]|3[01])-[0-9]{4}",
+        "(0[1-9]|1[0-2])-(0[1-9]|[12][0-9]|3[01])-[0-9]{4}-([01][0-9]|2[0-3])[0-5][0-9](AM|PM)",
+        "[0-9]{4}",
+        "[A-Za-z0-9]{1,12}",
+        "[0-9]{1,10}",
+        "(Y|N)",
+        "[a-zA-Z ]*"
+    };
+
+    private static final String[] VALUES =
+    {
+        "3035551212",
+        "303-555-1212",
+        "303-555",
+        "12-31-2004",
+        "02-29-2008-1130PM",
+        "1234",
+        "SPID1234",
+        "Y",
+        "Not a TN",
+        "13-01-2004",
+        "30355512",
+        ""
+    };
+}
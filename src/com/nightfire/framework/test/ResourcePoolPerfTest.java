@@ -0,0 +1,347 @@
+package com.nightfire.framework.test;
+
+import java.util.*;
+
+import com.nightfire.framework.util.*;
+import com.nightfire.framework.resource.*;
+
+
+/*
+ * Compares the contended throughput of ConcurrentResourcePool, which bounds
+ * acquisition with fair permits and keeps available resources in a concurrent
+ * deque, with ResourcePool, which does all pool bookkeeping on Vectors while
+ * holding the pool's monitor and wakes waiters with notifyAll().
+ *
+ * Each thread repeatedly acquires a resource, holds it for the given time to
+ * simulate using it, and releases it. The number of threads defaults to the
+ * 8, 32 and 128 thread runs, against a pool smaller than the thread count.
+ */
+class ResourcePoolPerfTest
+{
+    public static void main ( String[] args )
+    {
+        if ( args.length < 2 )
+        {
+            System.out.println( "\n\nUSAGE: ResourcePoolPerfTest <pool-size> <ops-per-thread> [<hold-time-us>] [<num-threads> ...]\n\n" );
+
+            return;
+        }
+
+        try
+        {
+            int poolSize = Integer.parseInt( args[0] );
+
+            int opCount = Integer.parseInt( args[1] );
+
+            long holdTime = (args.length > 2) ? Long.parseLong( args[2] ) * 1000 : 0;
+
+            int[] threadCounts = { 8, 32, 128 };
+
+            if ( args.length > 3 )
+            {
+                threadCounts = new int[ args.length - 3 ];
+
+                for ( int Ix = 0;  Ix < threadCounts.length;  Ix ++ )
+                    threadCounts[ Ix ] = Integer.parseInt( args[ Ix + 3 ] );
+            }
+
+            Debug.disableAll();
+
+            checkDestroyWakesWaiters( );
+
+            // warm up both implementations first
+            run( "Monitor (warm-up)", new MonitorPool( poolSize ), threadCounts[0], opCount / 10, holdTime );
+            run( "Semaphore (warm-up)", new SemaphorePool( poolSize ), threadCounts[0], opCount / 10, holdTime );
+
+            for ( int Ix = 0;  Ix < threadCounts.length;  Ix ++ )
+            {
+                run( "Monitor", new MonitorPool( poolSize ), threadCounts[ Ix ], opCount, holdTime );
+                run( "Semaphore", new SemaphorePool( poolSize ), threadCounts[ Ix ], opCount, holdTime );
+            }
+        }
+        catch ( Exception e )
+        {
+            e.printStackTrace( );
+        }
+    }
+
+
+    /*
+     * Runs opCount acquire/release cycles on each of threadCount threads,
+     * spinning for holdTime ns while each resource is held. Checks that no
+     * resource is ever held by two threads at once and prints the throughput,
+     * the average and worst time spent in acquire and the number of
+     * resources created.
+     */
+    private static void run ( String name, final Pool pool, int threadCount, final int opCount,
+                              final long holdTime ) throws Exception
+    {
+        final long[] waitTimes = new long[ threadCount ];
+
+        final long[] maxWaits = new long[ threadCount ];
+
+        final Exception[] errors = new Exception[ 1 ];
+
+        Thread[] threads = new Thread[ threadCount ];
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+        {
+            final int threadIndex = Ix;
+
+            threads[ Ix ] = new Thread( )
+                {
+                    public void run ( )
+                    {
+                        try
+                        {
+                            for ( int Jx = 0;  Jx < opCount;  Jx ++ )
+                            {
+                                long before = System.nanoTime( );
+
+                                PooledResource resource = (PooledResource) pool.acquire( );
+
+                                long after = System.nanoTime( );
+
+                                waitTimes[ threadIndex ] += after - before;
+
+                                maxWaits[ threadIndex ] = Math.max( maxWaits[ threadIndex ], after - before );
+
+                                resource.use( holdTime );
+
+                                pool.release( resource );
+                            }
+                        }
+                        catch ( Exception e )
+                        {
+                            errors[ 0 ] = e;
+                        }
+                    }
+                };
+        }
+
+        long start = System.currentTimeMillis( );
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+            threads[ Ix ].start( );
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+            threads[ Ix ].join( );
+
+        long stop = System.currentTimeMillis( );
+
+        String status = pool.status( );
+
+        pool.destroy( );
+
+        if ( errors[ 0 ] != null )
+            throw errors[ 0 ];
+
+        long waitTime = 0;
+
+        long maxWait = 0;
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+        {
+            waitTime += waitTimes[ Ix ];
+
+            maxWait = Math.max( maxWait, maxWaits[ Ix ] );
+        }
+
+        long total = (long) threadCount * opCount;
+
+        System.out.println( name + ": [" + total + "] acquires on [" + threadCount + "] threads took [" + (stop - start)
+                            + "] msec, [" + (total * 1000 / Math.max( 1, stop - start )) + "] ops/sec, average acquire ["
+                            + (waitTime / total / 1000) + "] usec, worst acquire [" + (maxWait / 1000) + "] usec, ["
+                            + PooledResource.created + "] resources created, " + status );
+
+        PooledResource.created = 0;
+    }
+
+
+    /*
+     * Checks that destroying an exhausted ConcurrentResourcePool promptly
+     * fails the threads waiting for a resource.
+     */
+    private static void checkDestroyWakesWaiters ( ) throws Exception
+    {
+        final SemaphorePool pool = new SemaphorePool( 1 );
+
+        pool.acquire( );
+
+        final int[] failed = new int[ 1 ];
+
+        Thread[] waiters = new Thread[ 4 ];
+
+        for ( int Ix = 0;  Ix < waiters.length;  Ix ++ )
+        {
+            waiters[ Ix ] = new Thread( )
+                {
+                    public void run ( )
+                    {
+                        try
+                        {
+                            pool.acquire( );
+                        }
+                        catch ( ResourceException e )
+                        {
+                            synchronized ( failed )
+                            {
+                                failed[ 0 ] ++;
+                            }
+                        }
+                    }
+                };
+
+            waiters[ Ix ].start( );
+        }
+
+        // let the waiters block
+        Thread.sleep( 200 );
+
+        long start = System.currentTimeMillis( );
+
+        pool.destroy( );
+
+        for ( int Ix = 0;  Ix < waiters.length;  Ix ++ )
+            waiters[ Ix ].join( 5000 );
+
+        if ( failed[ 0 ] != waiters.length )
+            throw new Exception( "Only [" + failed[ 0 ] + "] of [" + waiters.length
+                                 + "] waiters were failed by destroying the pool." );
+
+        System.out.println( "Destroying the pool failed [" + waiters.length + "] waiting threads in ["
+                            + (System.currentTimeMillis( ) - start) + "] msec." );
+    }
+
+
+    private interface Pool
+    {
+        public Object acquire ( ) throws ResourceException;
+
+        public void release ( Object resource ) throws ResourceException;
+
+        public void destroy ( ) throws ResourceException;
+
+        public String status ( );
+    }
+
+
+    /*
+     * A pooled resource that fails the test if it is used by two threads at once.
+     */
+    private static class PooledResource
+    {
+        static volatile int created;
+
+        private volatile Thread user;
+
+        PooledResource ( )
+        {
+            created ++;
+        }
+
+        void use ( long holdTime ) throws ResourceException
+        {
+            user = Thread.currentThread( );
+
+            long start = System.nanoTime( );
+
+            while ( System.nanoTime( ) - start < holdTime )
+                ;
+
+            if ( user != Thread.currentThread( ) )
+                throw new ResourceException( "Resource was acquired by two threads at once." );
+        }
+    }
+
+
+    private static class SemaphorePool extends ConcurrentResourcePool implements Pool
+    {
+        SemaphorePool ( int poolSize ) throws ResourceException
+        {
+            super( poolSize, poolSize / 2 );
+
+            // wait as long as it takes, so that only throughput is measured
+            setMaxResourceWaitTime( 3600 );
+        }
+
+        public Object acquire ( ) throws ResourceException
+        {
+            return acquireResource( );
+        }
+
+        public void release ( Object resource ) throws ResourceException
+        {
+            releaseResource( resource );
+        }
+
+        public void destroy ( ) throws ResourceException
+        {
+            destroyAll( );
+        }
+
+        public String status ( )
+        {
+            return poolStatus( );
+        }
+
+        protected Object createResource ( )
+        {
+            return new PooledResource( );
+        }
+
+        protected boolean validateResource ( Object resource )
+        {
+            return true;
+        }
+
+        protected void destroyResource ( Object resource )
+        {
+        }
+    }
+
+
+    private static class MonitorPool extends ResourcePool implements Pool
+    {
+        MonitorPool ( int poolSize ) throws ResourceException
+        {
+            super( poolSize, poolSize / 2 );
+
+            setMaxResourceWaitTime( 3600 );
+        }
+
+        public Object acquire ( ) throws ResourceException
+        {
+            return acquireResource( );
+        }
+
+        public void release ( Object resource ) throws ResourceException
+        {
+            releaseResource( resource );
+        }
+
+        public void destroy ( ) throws ResourceException
+        {
+            destroyAll( );
+        }
+
+        public String status ( )
+        {
+            return poolStatus( );
+        }
+
+        protected Object createResource ( )
+        {
+            return new PooledResource( );
+        }
+
+        protected boolean validateResource ( Object resource )
+        {
+            return true;
+        }
+
+        protected void destroyResource ( Object resource )
+        {
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.nightfire.framework.test;
+
+import java.util.*;
+
+import com.nightfire.framework.util.*;
+
+
+/*
+ * Compares the contended throughput of the block-prefetching
+ * SequenceBlockAllocator used by SeqIdGenerator with the previous
+ * implementation, which fetched the next sequence value while holding
+ * a class-wide lock. The database round trip is simulated with a sleep,
+ * so no database is needed.
+ */
+class SeqIdGeneratorPerfTest
+{
+    public static void main ( String[] args )
+    {
+        if ( args.length < 3 )
+        {
+            System.out.println( "\n\nUSAGE: SeqIdGeneratorPerfTest <num-threads> <ids-per-thread> <fetch-latency-ms> [<block-size>] [<think-time-us>]\n\n" );
+
+            return;
+        }
+
+        try
+        {
+            int threadCount = Integer.parseInt( args[0] );
+
+            int idCount = Integer.parseInt( args[1] );
+
+            long latency = Long.parseLong( args[2] );
+
+            int blockSize = (args.length > 3) ? Integer.parseInt( args[3] ) : 100;
+
+            long thinkTime = (args.length > 4) ? Long.parseLong( args[4] ) * 1000 : 0;
+
+            Debug.disableAll();
+
+            IdSource locked = new LockedIdSource( latency, blockSize );
+
+            IdSource allocator = new AllocatorIdSource( new SimulatedAllocator( latency, blockSize ) );
+
+            // warm up both implementations first
+            run( "Locked (warm-up)", locked, threadCount, idCount / 10, thinkTime );
+            run( "Allocator (warm-up)", allocator, threadCount, idCount / 10, thinkTime );
+
+            run( "Locked", locked, threadCount, idCount, thinkTime );
+            run( "Allocator", allocator, threadCount, idCount, thinkTime );
+        }
+        catch ( Exception e )
+        {
+            e.printStackTrace( );
+        }
+    }
+
+
+    /*
+     * Generates idCount ID's on each of threadCount threads, spinning for
+     * thinkTime ns between ID's to simulate the rest of a request's work.
+     * Checks that the ID's are all unique and prints the throughput, the
+     * average time spent in getNextId() and the number of calls that
+     * stalled for more than a millisecond.
+     */
+    private static void run ( String name, final IdSource source, int threadCount, final int idCount,
+                              final long thinkTime ) throws Exception
+    {
+        final long[][] ids = new long[ threadCount ][ idCount ];
+
+        final long[] waitTimes = new long[ threadCount ];
+
+        final int[] stalls = new int[ threadCount ];
+
+        final Exception[] errors = new Exception[ 1 ];
+
+        Thread[] threads = new Thread[ threadCount ];
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+        {
+            final long[] threadIds = ids[ Ix ];
+
+            final int threadIndex = Ix;
+
+            threads[ Ix ] = new Thread( )
+                {
+                    public void run ( )
+                    {
+                        try
+                        {
+                            for ( int Jx = 0;  Jx < idCount;  Jx ++ )
+                            {
+                                long before = System.nanoTime( );
+
+                                threadIds[ Jx ] = source.getNextId( );
+
+                                long after = System.nanoTime( );
+
+                                waitTimes[ threadIndex ] += after - before;
+
+                                if ( after - before > 1000000 )
+                                    stalls[ threadIndex ] ++;
+
+                                while ( System.nanoTime( ) - after < thinkTime )
+                                    ;
+                            }
+                        }
+                        catch ( Exception e )
+                        {
+                            errors[ 0 ] = e;
+                        }
+                    }
+                };
+        }
+
+        long start = System.currentTimeMillis( );
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+            threads[ Ix ].start( );
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+            threads[ Ix ].join( );
+
+        long stop = System.currentTimeMillis( );
+
+        if ( errors[ 0 ] != null )
+            throw errors[ 0 ];
+
+        Set unique = new HashSet( );
+
+        long waitTime = 0;
+
+        int stallCount = 0;
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+        {
+            for ( int Jx = 0;  Jx < idCount;  Jx ++ )
+                unique.add( Long.valueOf( ids[ Ix ][ Jx ] ) );
+
+            waitTime += waitTimes[ Ix ];
+
+            stallCount += stalls[ Ix ];
+        }
+
+        long total = (long) threadCount * idCount;
+
+        System.out.println( name + ": [" + total + "] ID's on [" + threadCount + "] threads took [" + (stop - start)
+                            + "] msec, [" + (total * 1000 / Math.max( 1, stop - start )) + "] ID's/sec, average wait ["
+                            + (waitTime / total) + "] nsec, [" + stallCount + "] stalls, ["
+                            + (total - unique.size( )) + "] duplicates." );
+    }
+
+
+    private interface IdSource
+    {
+        public long getNextId ( ) throws FrameworkException;
+    }
+
+
+    /*
+     * Simulates the database sequence: each value reserves the next block.
+     */
+    private static long fetch ( long[] sequence, long latency, int blockSize )
+    {
+        try
+        {
+            Thread.sleep( latency );
+        }
+        catch ( InterruptedException e )
+        {
+        }
+
+        synchronized ( sequence )
+        {
+            long value = sequence[ 0 ];
+
+            sequence[ 0 ] += blockSize;
+
+            return value;
+        }
+    }
+
+
+    /*
+     * The previous SeqIdGenerator algorithm.
+     */
+    private static class LockedIdSource implements IdSource
+    {
+        private final long[] sequence = new long[ 1 ];
+
+        private final long latency;
+
+        private final int blockSize;
+
+        private int nextIdIdx;
+
+        private long currSeq;
+
+        LockedIdSource ( long latency, int blockSize )
+        {
+            this.latency = latency;
+
+            this.blockSize = blockSize;
+
+            nextIdIdx = blockSize;
+        }
+
+        public long getNextId ( )
+        {
+            synchronized ( LockedIdSource.class )
+            {
+                if ( nextIdIdx == blockSize )
+                {
+                    currSeq = fetch( sequence, latency, blockSize );
+
+                    nextIdIdx = 0;
+                }
+
+                ++ nextIdIdx;
+
+                return ++ currSeq;
+            }
+        }
+    }
+
+
+    private static class AllocatorIdSource implements IdSource
+    {
+        private final SequenceBlockAllocator allocator;
+
+        AllocatorIdSource ( SequenceBlockAllocator allocator )
+        {
+            this.allocator = allocator;
+        }
+
+        public long getNextId ( ) throws FrameworkException
+        {
+            return allocator.getNextId( );
+        }
+    }
+
+
+    private static class SimulatedAllocator extends SequenceBlockAllocator
+    {
+        private final long[] sequence = new long[ 1 ];
+
+        private final long latency;
+
+        private final int blockSize;
+
+        SimulatedAllocator ( long latency, int blockSize )
+        {
+            super( "SIMULATED", blockSize );
+
+            this.latency = latency;
+
+            this.blockSize = blockSize;
+        }
+
+        protected long fetchNextValue ( )
+        {
+            return fetch( sequence, latency, blockSize );
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.nightfire.framework.test;
+
+import java.util.*;
+
+import com.nightfire.framework.util.*;
+
+
+/*
+ * Compares the cost of a watch()/cancel() pair on TimedWatcher, which is
+ * timed by the shared TimingWheel, with the previous implementation, which
+ * started a new thread for every watch. Each watch is cancelled right away,
+ * as it is for nearly every request a comm server executes.
+ *
+ * Also checks how late timing-wheel tasks run, by scheduling tasks with
+ * random delays and letting them expire.
+ */
+class TimedWatcherPerfTest
+{
+    public static void main ( String[] args )
+    {
+        if ( args.length < 2 )
+        {
+            System.out.println( "\n\nUSAGE: TimedWatcherPerfTest <num-threads> <watches-per-thread> [<expiring-tasks>]\n\n" );
+
+            return;
+        }
+
+        try
+        {
+            int threadCount = Integer.parseInt( args[0] );
+
+            int watchCount = Integer.parseInt( args[1] );
+
+            int expiringCount = (args.length > 2) ? Integer.parseInt( args[2] ) : 1000;
+
+            Debug.disableAll();
+
+            // warm up both implementations first
+            run( "Thread (warm-up)", false, threadCount, watchCount / 10 );
+            run( "Wheel (warm-up)", true, threadCount, watchCount / 10 );
+
+            run( "Thread", false, threadCount, watchCount );
+            run( "Wheel", true, threadCount, watchCount );
+
+            checkExpiry( expiringCount );
+        }
+        catch ( Exception e )
+        {
+            e.printStackTrace( );
+        }
+    }
+
+
+    /*
+     * Runs watchCount watch/cancel pairs on each of threadCount threads and
+     * prints the throughput, the average cost of a pair and the largest
+     * number of live threads seen.
+     */
+    private static void run ( String name, final boolean wheel, int threadCount, final int watchCount ) throws Exception
+    {
+        final long[] times = new long[ threadCount ];
+
+        final Exception[] errors = new Exception[ 1 ];
+
+        final int[] peakThreads = new int[ 1 ];
+
+        Thread[] threads = new Thread[ threadCount ];
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+        {
+            final int threadIndex = Ix;
+
+            threads[ Ix ] = new Thread( )
+                {
+                    public void run ( )
+                    {
+                        try
+                        {
+                            for ( int Jx = 0;  Jx < watchCount;  Jx ++ )
+                            {
+                                long before = System.nanoTime( );
+
+                                if ( wheel )
+                                {
+                                    TimedWatcher watcher = new TimedWatcher( 60, "perf test", false );
+
+                                    watcher.watch( );
+
+                                    watcher.cancel( );
+                                }
+                                else
+                                {
+                                    ThreadWatcher watcher = new ThreadWatcher( 60 );
+
+                                    watcher.watch( );
+
+                                    watcher.cancel( );
+                                }
+
+                                times[ threadIndex ] += System.nanoTime( ) - before;
+
+                                if ( (Jx % 100) == 0 )
+                                {
+                                    int active = Thread.activeCount( );
+
+                                    synchronized ( peakThreads )
+                                    {
+                                        peakThreads[ 0 ] = Math.max( peakThreads[ 0 ], active );
+                                    }
+                                }
+                            }
+                        }
+                        catch ( Exception e )
+                        {
+                            errors[ 0 ] = e;
+                        }
+                    }
+                };
+        }
+
+        long start = System.currentTimeMillis( );
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+            threads[ Ix ].start( );
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+            threads[ Ix ].join( );
+
+        long stop = System.currentTimeMillis( );
+
+        if ( errors[ 0 ] != null )
+            throw errors[ 0 ];
+
+        long time = 0;
+
+        for ( int Ix = 0;  Ix < threadCount;  Ix ++ )
+            time += times[ Ix ];
+
+        long total = (long) threadCount * watchCount;
+
+        System.out.println( name + ": [" + total + "] watch/cancel pairs on [" + threadCount + "] threads took ["
+                            + (stop - start) + "] msec, [" + (total * 1000 / Math.max( 1, stop - start ))
+                            + "] pairs/sec, average [" + (time / Math.max( 1, total )) + "] nsec per pair, peak ["
+                            + peakThreads[ 0 ] + "] live threads, [" + TimingWheel.getShared().getPendingCount( )
+                            + "] pending timeouts." );
+    }
+
+
+    /*
+     * Schedules count tasks with random delays of up to two seconds on the
+     * shared wheel, waits for them all to run and prints how late they were.
+     */
+    private static void checkExpiry ( int count ) throws Exception
+    {
+        final long[] lateness = new long[ count ];
+
+        final Object lock = new Object( );
+
+        final int[] remaining = { count };
+
+        Random random = new Random( 1 );
+
+        for ( int Ix = 0;  Ix < count;  Ix ++ )
+        {
+            final int index = Ix;
+
+            final long delay = random.nextInt( 2000 );
+
+            final long scheduled = System.currentTimeMillis( );
+
+            TimingWheel.getShared().schedule( new Runnable( )
+                {
+                    public void run ( )
+                    {
+                        lateness[ index ] = System.currentTimeMillis( ) - scheduled - delay;
+
+                        synchronized ( lock )
+                        {
+                            if ( -- remaining[ 0 ] == 0 )
+                                lock.notifyAll( );
+                        }
+                    }
+                }, delay );
+        }
+
+        synchronized ( lock )
+        {
+            while ( remaining[ 0 ] > 0 )
+                lock.wait( );
+        }
+
+        long min = Long.MAX_VALUE;
+
+        long max = Long.MIN_VALUE;
+
+        long sum = 0;
+
+        for ( int Ix = 0;  Ix < count;  Ix ++ )
+        {
+            min = Math.min( min, lateness[ Ix ] );
+
+            max = Math.max( max, lateness[ Ix ] );
+
+            sum += lateness[ Ix ];
+        }
+
+        System.out.println( "Expiry: [" + count + "] tasks ran between [" + min + "] and [" + max
+                            + "] msec late, average [" + (sum / Math.max( 1, count )) + "] msec, with a tick of ["
+                            + TimingWheel.DEFAULT_TICK_MSEC + "] msec." );
+    }
+
+
+    /*
+     * The previous TimedWatcher algorithm: a daemon thread per watch that
+     * waits on the watcher until it is cancelled or the time is up.
+     */
+    private static class ThreadWatcher implements Runnable
+    {
+        private final int watchTime;
+
+        private boolean cancelled = false;
+
+        ThreadWatcher ( int seconds )
+        {
+            watchTime = seconds;
+        }
+
+        public void watch ( )
+        {
+            Thread watchThread = new Thread( this, Thread.currentThread().getName() + ":TimedWatcher" );
+
+            watchThread.setDaemon( true );
+
+            watchThread.start( );
+        }
+
+        public synchronized void cancel ( )
+        {
+            cancelled = true;
+
+            notifyAll( );
+        }
+
+        public synchronized void run ( )
+        {
+            long waitTime = watchTime;
+
+            while ( !cancelled )
+            {
+                try
+                {
+                    wait( waitTime * 1000 );
+                }
+                catch ( Exception e )
+                {
+                }
+
+                waitTime = 1;
+            }
+        }
+    }
+}
@@ -0,0 +1,324 @@
+/**
+ * Copyright (c) 2003 Neustar, Inc. All rights reserved.
+ *
+ * $Header:$
+ */
+
+package com.nightfire.framework.util;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.nightfire.framework.cache.*;
+
+
+/**
+ * Factory/cache with the same contract as FactoryCacheBase, for objects
+ * that are acquired and released at high rates by many threads.  Each key
+ * has its own lock-free stack of idle objects, so threads working with
+ * different keys never contend, and threads working with the same key
+ * only retry a compare-and-set.  Objects are created outside of any lock
+ * on a cache miss.  The number of idle objects kept per key can be bounded,
+ * and acquire, release and miss counts are reported by describe().
+ */
+public abstract class ConcurrentFactoryCacheBase extends FactoryCacheBase
+{
+    /**
+     * Get an object instance from the factory - either by creating it anew
+     * or by getting a previously-created one from the cache.
+     *
+     * @param   key  Name uniquely identifying requested resource type.
+     * @param  initializer  An optional object argument to be passed
+     *                      to the constructor for the new object.
+     *
+     * @return  Object instance.
+     *
+     * @exception  FrameworkException  Thrown if creation fails.
+     */
+    public Object get ( String key, Object initializer ) throws FrameworkException
+    {
+        if ( Debug.isLevelEnabled(Debug.OBJECT_LIFECYCLE) )
+            Debug.log( Debug.OBJECT_LIFECYCLE, "Getting object [" + key + "] from concurrent factory/cache." );
+
+        Pool pool = getPool( key );
+
+        pool.acquires.incrementAndGet( );
+
+        Object ret = pool.pop( );
+
+        if ( ret == null )
+        {
+            pool.misses.incrementAndGet( );
+
+            if ( Debug.isLevelEnabled(Debug.OBJECT_LIFECYCLE) )
+                Debug.log( Debug.OBJECT_LIFECYCLE, "No cached item of type [" + key
+                           + "] was available, so creating a new one." );
+
+            ret = createObject( initializer );
+        }
+
+        outstandingObjects.put( ret, key );
+
+        return ret;
+    }
+
+
+    /**
+     * Return an object instance to the factory/cache.  Objects that weren't
+     * handed out by this factory, or were handed out before the cache was
+     * last flushed, are discarded, as are objects beyond the idle limit.
+     *
+     * @param   key  Name uniquely identifying requested resource type.
+     * @param   obj  Object to return to cache.
+     */
+    public void put ( String key, Object obj )
+    {
+        if ( obj == null )
+            return;
+
+        // Only take back objects that are outstanding, so that an object
+        // released twice can't be handed out to two callers.
+        if ( outstandingObjects.remove( obj ) == null )
+            return;
+
+        Pool pool = getPool( key );
+
+        pool.releases.incrementAndGet( );
+
+        if ( !pool.push( obj, maxIdle ) )
+        {
+            pool.discards.incrementAndGet( );
+
+            if ( Debug.isLevelEnabled(Debug.OBJECT_LIFECYCLE) )
+                Debug.log( Debug.OBJECT_LIFECYCLE, "Discarding object of type [" + key
+                           + "], as the factory/cache already holds [" + maxIdle + "] idle items." );
+        }
+    }
+
+
+    /**
+     * Set the maximum number of idle objects kept for each key.  Objects
+     * released once it is reached are discarded.
+     *
+     * @param  maxIdle  The maximum, or zero (the default) for no limit.
+     */
+    public void setMaxIdle ( int maxIdle )
+    {
+        Debug.log( Debug.SYSTEM_CONFIG, "Maximum idle items per key of factory/cache ["
+                   + getClass().getName() + "] set to [" + maxIdle + "]." );
+
+        this.maxIdle = maxIdle;
+    }
+
+
+    /**
+     * A string describing the current cache contents and usage for the factory.
+     *
+     * @return  String giving the idle count and usage counts for each key.
+     */
+    public String describe ( )
+    {
+        StringBuffer sb = new StringBuffer( );
+
+        sb.append( "Factory-cache contents for [" );
+        sb.append( getClass().getName() );
+        sb.append( "], outstanding [" );
+        sb.append( outstandingObjects.size() );
+        sb.append( "], max idle per key [" );
+        sb.append( maxIdle );
+        sb.append( "]:\n" );
+
+        Iterator iter = new TreeMap( pools ).entrySet().iterator( );
+
+        while ( iter.hasNext() )
+        {
+            Map.Entry entry = (Map.Entry)iter.next( );
+
+            Pool pool = (Pool)entry.getValue( );
+
+            sb.append( '\t' );
+            sb.append( "key [" );
+            sb.append( (String)entry.getKey() );
+            sb.append( "], count [" );
+            sb.append( pool.size.get() );
+            sb.append( "], acquires [" );
+            sb.append( pool.acquires.get() );
+            sb.append( "], misses [" );
+            sb.append( pool.misses.get() );
+            sb.append( "], releases [" );
+            sb.append( pool.releases.get() );
+            sb.append( "], discards [" );
+            sb.append( pool.discards.get() );
+            sb.append( "]\n" );
+        }
+
+        return( sb.toString() );
+    }
+
+
+    /**
+     * Method invoked by the cache-flushing infrastructure
+     * to indicate that the cache should be emptied.  Usage counts are kept.
+     *
+     * @exception FrameworkException if cache cannot be cleared.
+     */
+    public void flushCache ( ) throws FrameworkException
+    {
+        Debug.log( Debug.OBJECT_LIFECYCLE, "Flushing concurrent factory cache ..." );
+
+        Iterator iter = pools.values().iterator( );
+
+        while ( iter.hasNext() )
+            ((Pool)iter.next()).clear( );
+
+        outstandingObjects.clear( );
+    }
+
+
+    /**
+     * Construct a concurrent factory/cache.
+     */
+    protected ConcurrentFactoryCacheBase ( )
+    {
+        // The parent's synchronized cache isn't used.
+        super( false );
+
+        Debug.log( Debug.OBJECT_LIFECYCLE, "Factory/cache of type ["
+                   + getClass().getName() + "] uses per-key concurrent caching." );
+
+        //Register for clearing.
+        CacheManager.getRegistrar().register( this );
+    }
+
+
+    /**
+     * Get the pool for the given key, creating it if necessary.
+     */
+    private Pool getPool ( String key )
+    {
+        Pool pool = (Pool)pools.get( key );
+
+        if ( pool == null )
+        {
+            Pool created = new Pool( );
+
+            pool = (Pool)pools.putIfAbsent( key, created );
+
+            if ( pool == null )
+                pool = created;
+        }
+
+        return pool;
+    }
+
+
+    /**
+     * Lock-free stack of the idle objects for one key, with its usage counts.
+     */
+    private static class Pool
+    {
+        /**
+         * Push an idle object onto the stack, unless it already holds the
+         * maximum number of objects.
+         *
+         * @return  'true' if the object was added, otherwise 'false'.
+         */
+        boolean push ( Object obj, int maxIdle )
+        {
+            // Reserve room for the object before adding it, so that
+            // concurrent releases can't exceed the maximum.
+            while ( true )
+            {
+                int current = size.get( );
+
+                if ( (maxIdle > 0) && (current >= maxIdle) )
+                    return false;
+
+                if ( size.compareAndSet( current, current + 1 ) )
+                    break;
+            }
+
+            Node node = new Node( obj );
+
+            do
+            {
+                node.next = (Node)top.get( );
+            }
+            while ( !top.compareAndSet( node.next, node ) );
+
+            return true;
+        }
+
+
+        /**
+         * Pop the most recently released idle object off the stack.
+         *
+         * @return  The object, or null if the stack is empty.
+         */
+        Object pop ( )
+        {
+            Node node;
+
+            do
+            {
+                node = (Node)top.get( );
+
+                if ( node == null )
+                    return null;
+            }
+            while ( !top.compareAndSet( node, node.next ) );
+
+            size.decrementAndGet( );
+
+            return node.item;
+        }
+
+
+        /**
+         * Discard all idle objects.
+         */
+        void clear ( )
+        {
+            while ( pop() != null )
+                ;
+        }
+
+
+        private final AtomicReference top = new AtomicReference( );
+
+        final AtomicInteger size = new AtomicInteger( );
+
+        final AtomicLong acquires = new AtomicLong( );
+
+        final AtomicLong misses = new AtomicLong( );
+
+        final AtomicLong releases = new AtomicLong( );
+
+        final AtomicLong discards = new AtomicLong( );
+    }
+
+
+    private static class Node
+    {
+        Node ( Object item )
+        {
+            this.item = item;
+        }
+
+        final Object item;
+
+        Node next;
+    }
+
+
+    // Pools of idle objects, keyed by the objects' type names.
+    private final ConcurrentHashMap pools = new ConcurrentHashMap( );
+
+    // Objects handed out and not yet returned, mapped to their keys.
+    private final Map outstandingObjects = new ConcurrentHashMap( );
+
+    private volatile int maxIdle = 0;
+}
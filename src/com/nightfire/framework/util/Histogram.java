@@ -0,0 +1,200 @@
+/**
+ * Copyright (c) 2003 Neustar, Inc. All rights reserved.
+ *
+ * $Header: $
+ */
+
+package com.nightfire.framework.util;
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A thread-safe histogram of durations, or any other non-negative values.
+ * Values are counted in power-of-two buckets (0, 1, 2-3, 4-7, ... ), so
+ * recording a value is cheap and lock-free, and percentiles are accurate
+ * to within a factor of two.
+ */
+public class Histogram
+{
+    /**
+     * Create an empty histogram.
+     *
+     * @param  name  Name used in the description.
+     * @param  units  Units of the recorded values, such as "msec".
+     */
+    public Histogram ( String name, String units )
+    {
+        this.name = name;
+
+        this.units = units;
+    }
+
+
+    /**
+     * Record a value.  Negative values are recorded as zero.
+     *
+     * @param  value  The value to record.
+     */
+    public void record ( long value )
+    {
+        if ( value < 0 )
+            value = 0;
+
+        buckets.incrementAndGet( getBucket( value ) );
+
+        count.incrementAndGet( );
+
+        total.addAndGet( value );
+
+        long currentMax = max.get( );
+
+        while ( (value > currentMax) && !max.compareAndSet( currentMax, value ) )
+            currentMax = max.get( );
+    }
+
+
+    /**
+     * @return  The number of values recorded.
+     */
+    public long getCount ( )
+    {
+        return( count.get() );
+    }
+
+
+    /**
+     * @return  The average of the recorded values, or zero if there are none.
+     */
+    public long getAverage ( )
+    {
+        long n = count.get( );
+
+        return( (n == 0) ? 0 : (total.get() / n) );
+    }
+
+
+    /**
+     * @return  The largest value recorded.
+     */
+    public long getMax ( )
+    {
+        return( max.get() );
+    }
+
+
+    /**
+     * Get the upper bound of the bucket holding the given percentile.
+     *
+     * @param  percentile  Percentile, from 0 to 100.
+     *
+     * @return  The value that at least the given percentage of the recorded
+     *          values doesn't exceed, to within a factor of two.
+     */
+    public long getPercentile ( double percentile )
+    {
+        long n = count.get( );
+
+        if ( n == 0 )
+            return 0;
+
+        long rank = (long)Math.ceil( n * percentile / 100.0 );
+
+        long seen = 0;
+
+        for ( int Ix = 0;  Ix < BUCKET_COUNT;  Ix ++ )
+        {
+            seen += buckets.get( Ix );
+
+            if ( seen >= rank )
+                return( Math.min( getUpperBound( Ix ), max.get() ) );
+        }
+
+        return( max.get() );
+    }
+
+
+    /**
+     * Discard all recorded values.
+     */
+    public void reset ( )
+    {
+        for ( int Ix = 0;  Ix < BUCKET_COUNT;  Ix ++ )
+            buckets.set( Ix, 0 );
+
+        count.set( 0 );
+
+        total.set( 0 );
+
+        max.set( 0 );
+    }
+
+
+    /**
+     * Describe the histogram's count, average, percentiles and maximum.
+     *
+     * @return  Human-readable description.
+     */
+    public String describe ( )
+    {
+        StringBuffer sb = new StringBuffer( );
+
+        sb.append( name );
+        sb.append( " [count=" );
+        sb.append( getCount() );
+        sb.append( ", avg=" );
+        sb.append( getAverage() );
+        sb.append( ", p50=" );
+        sb.append( getPercentile( 50 ) );
+        sb.append( ", p90=" );
+        sb.append( getPercentile( 90 ) );
+        sb.append( ", p99=" );
+        sb.append( getPercentile( 99 ) );
+        sb.append( ", max=" );
+        sb.append( getMax() );
+        sb.append( "] " );
+        sb.append( units );
+
+        return( sb.toString() );
+    }
+
+
+    /**
+     * @return  Same as describe().
+     */
+    public String toString ( )
+    {
+        return( describe() );
+    }
+
+
+    // Bucket 0 holds 0, and bucket N holds values from 2^(N-1) to 2^N - 1.
+    private static int getBucket ( long value )
+    {
+        return( 64 - Long.numberOfLeadingZeros( value ) );
+    }
+
+
+    // The largest value held by the given bucket.
+    private static long getUpperBound ( int bucket )
+    {
+        return( (bucket >= 63) ? Long.MAX_VALUE : ((1L << bucket) - 1) );
+    }
+
+
+    private static final int BUCKET_COUNT = 65;
+
+    private final String name;
+
+    private final String units;
+
+    private final AtomicLongArray buckets = new AtomicLongArray( BUCKET_COUNT );
+
+    private final AtomicLong count = new AtomicLong( );
+
+    private final AtomicLong total = new AtomicLong( );
+
+    private final AtomicLong max = new AtomicLong( );
+}
@@ -12,6 +12,10 @@ import com.nightfire.framework.db.SQLUtil;
 import com.nightfire.framework.db.DatabaseException;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.*;
 import java.text.*;
 import java.sql.Connection;
@@ -22,6 +26,13 @@ import java.net.UnknownHostException;
 
 /**
  * The MetricsAgent class provides general-purpose performance metrics logging facilities.
+ *
+ * By default, each metric is written to the log file (or database) by the calling thread.
+ * When asynchronous mode is configured, callers only capture the metric and add it to a
+ * bounded, lock-free queue.  A background writer thread drains the queue periodically,
+ * writing the same log file entries with one flush per batch, inserting any database rows
+ * with one connection and commit per batch, and aggregating the elapsed times of each
+ * category and action into histograms, which are logged periodically and by describe().
  */
 public final class MetricsAgent
 {
@@ -58,6 +69,43 @@ public final class MetricsAgent
      */
     public static final String METRICS_DB_LOGGING_LEVEL_PROP = "METRICS_DB_LOGGING_LEVEL";
 
+    /**
+     * Name of property indicating whether metrics are written asynchronously by a background thread (true/false).
+     */
+    public static final String METRICS_ASYNC_PROP = "METRICS_ASYNC";
+
+    /**
+     * Name of property giving the interval, in msec, at which queued metrics are written in asynchronous mode.
+     */
+    public static final String METRICS_FLUSH_INTERVAL_PROP = "METRICS_FLUSH_INTERVAL";
+
+    /**
+     * Name of property giving the maximum number of metrics queued in asynchronous mode.
+     * Metrics logged while the queue is full are dropped and counted.
+     */
+    public static final String METRICS_QUEUE_SIZE_PROP = "METRICS_QUEUE_SIZE";
+
+    /**
+     * Name of property giving the interval, in seconds, at which the metrics histograms
+     * are logged in asynchronous mode.  Zero disables the summary.
+     */
+    public static final String METRICS_SUMMARY_INTERVAL_PROP = "METRICS_SUMMARY_INTERVAL";
+
+    /**
+     * Default flush interval in msec.
+     */
+    public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+    /**
+     * Default maximum number of queued metrics.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 100000;
+
+    /**
+     * Default summary interval in seconds.
+     */
+    public static final long DEFAULT_SUMMARY_INTERVAL = 300;
+
     /**
      * Name of property indicating the business object category of metrics.
      */
@@ -197,40 +245,25 @@ public final class MetricsAgent
 
         try
         {
-            // Get the log file state object associated with the currrent thread.
-            LogFileState lfs = getLogFile( );
+            StringBuffer sb = new StringBuffer( );
 
-            // Serialize access to a given log file, while allowing concurrent
-            // access to different log files.
-            synchronized( lfs )
-            {
-                StringBuffer sb = new StringBuffer( );
-
-                logFixed( lfs, sb, startTime, BO_CATEGORY );
-
-                sb.append( ',' );
+            sb.append( ',' );
 
-                sb.append( metaDataName );
+            sb.append( metaDataName );
 
-                sb.append( ',' );
+            sb.append( ',' );
 
-                sb.append( BOID );
+            sb.append( BOID );
 
-                sb.append( ',' );
+            sb.append( ',' );
 
-                sb.append( currentState );
+            sb.append( currentState );
 
-                sb.append( ',' );
+            sb.append( ',' );
 
-                sb.append( operation );
+            sb.append( operation );
 
-                Writer fw = lfs.getLogFile( );
-
-                write( fw, sb.toString() );
-                write( fw, "\n" );
-
-                flush( fw );
-            }
+            logEntry( startTime, BO_CATEGORY, sb.toString(), metaDataName + DOT_PROP + operation );
         }
         catch ( Exception e )
         {
@@ -255,40 +288,25 @@ public final class MetricsAgent
 
         try
         {
-            // Get the log file state object associated with the currrent thread.
-            LogFileState lfs = getLogFile( );
-
-            // Serialize access to a given log file, while allowing concurrent
-            // access to different log files.
-            synchronized( lfs )
-            {
-                StringBuffer sb = new StringBuffer( );
-
-                logFixed( lfs, sb, startTime, WF_CATEGORY );
+            StringBuffer sb = new StringBuffer( );
 
-                sb.append( ',' );
+            sb.append( ',' );
 
-                sb.append( metaDataName );
+            sb.append( metaDataName );
 
-                sb.append( ',' );
+            sb.append( ',' );
 
-                sb.append( BOID );
+            sb.append( BOID );
 
-                sb.append( ',' );
+            sb.append( ',' );
 
-                sb.append( driverKey );
+            sb.append( driverKey );
 
-                sb.append( ',' );
+            sb.append( ',' );
 
-                sb.append( driverType );
+            sb.append( driverType );
 
-                Writer fw = lfs.getLogFile( );
-
-                write( fw, sb.toString() );
-                write( fw, "\n" );
-
-                flush( fw );
-            }
+            logEntry( startTime, WF_CATEGORY, sb.toString(), driverKey + DOT_PROP + driverType );
         }
         catch ( Exception e )
         {
@@ -316,28 +334,7 @@ public final class MetricsAgent
                 return;
             }
 
-            // Get the log file state object associated with the currrent thread.
-            LogFileState lfs = getLogFile( );
-
-            // Serialize access to a given log file, while allowing concurrent
-            // access to different log files.
-            synchronized( lfs )
-            {
-                StringBuffer sb = new StringBuffer( );
-
-                logFixed( lfs, sb, startTime, SYNC_API_CATEGORY );
-
-                sb.append( ',' );
-
-                sb.append( action );
-
-                Writer fw = lfs.getLogFile( );
-
-                write( fw, sb.toString() );
-                write( fw, "\n" );
-
-                flush( fw );
-            }
+            logEntry( startTime, SYNC_API_CATEGORY, COMMA_PROP + action, getActionKey( action ) );
         }
         catch ( Exception e )
         {
@@ -360,32 +357,17 @@ public final class MetricsAgent
 
         try
         {
-            // Get the log file state object associated with the currrent thread.
-            LogFileState lfs = getLogFile( );
+            StringBuffer sb = new StringBuffer( );
 
-            // Serialize access to a given log file, while allowing concurrent
-            // access to different log files.
-            synchronized( lfs )
-            {
-                StringBuffer sb = new StringBuffer( );
+            sb.append( ',' );
 
-                logFixed( lfs, sb, startTime, ASYNC_API_CATEGORY );
+            sb.append( metaDataName );
 
-                sb.append( ',' );
+            sb.append( ',' );
 
-                sb.append( metaDataName );
+            sb.append( BOID );
 
-                sb.append( ',' );
-
-                sb.append( BOID );
-
-                Writer fw = lfs.getLogFile( );
-
-                write( fw, sb.toString() );
-                write( fw, "\n" );
-
-                flush( fw );
-            }
+            logEntry( startTime, ASYNC_API_CATEGORY, sb.toString(), metaDataName );
         }
         catch ( Exception e )
         {
@@ -408,36 +390,66 @@ public final class MetricsAgent
 
         try
         {
-            // Get the log file state object associated with the currrent thread.
-            LogFileState lfs = getLogFile( );
-
-            // Serialize access to a given log file, while allowing concurrent
-            // access to different log files.
-            synchronized( lfs )
-            {
-                StringBuffer sb = new StringBuffer( );
+            StringBuffer sb = new StringBuffer( );
 
-                logFixed( lfs, sb, startTime, GATEWAY_CATEGORY );
+            sb.append( ',' );
 
-                sb.append( ',' );
+            sb.append( driverKey );
 
-                sb.append( driverKey );
+            sb.append( ',' );
 
-                sb.append( ',' );
+            sb.append( driverType );
 
-                sb.append( driverType );
+            logEntry( startTime, GATEWAY_CATEGORY, sb.toString(), driverKey + DOT_PROP + driverType );
+        }
+        catch ( Exception e )
+        {
+            Debug.error( "MetricsAgent.logGateway() failed.  Reason:\n" + e.toString() );
+        }
+    }
 
-                Writer fw = lfs.getLogFile( );
 
-                write( fw, sb.toString() );
-                write( fw, "\n" );
+    /**
+     * Log one metrics entry.  In synchronous mode, the entry is written to the
+     * log file right away.  In asynchronous mode, it is queued for the writer
+     * thread, which also adds its elapsed time to the histogram for its key.
+     *
+     * @param  startTime  Time at which the metric being measured started.
+     * @param  category  Type of metric.
+     * @param  detail  The category-specific part of the entry, starting with a comma.
+     * @param  key  Identifies the action within the category, for aggregation.
+     *
+     * @exception  Exception  Thrown on errors.
+     */
+    private static final void logEntry ( long startTime, String category, String detail, String key )
+        throws Exception
+    {
+        if ( asyncMode )
+        {
+            enqueue( new Record( startTime, category, detail, key ) );
 
-                flush( fw );
-            }
+            return;
         }
-        catch ( Exception e )
+
+        // Get the log file state object associated with the currrent thread.
+        LogFileState lfs = getLogFile( );
+
+        // Serialize access to a given log file, while allowing concurrent
+        // access to different log files.
+        synchronized( lfs )
         {
-            Debug.error( "MetricsAgent.logGateway() failed.  Reason:\n" + e.toString() );
+            StringBuffer sb = new StringBuffer( );
+
+            logFixed( lfs, sb, startTime, category );
+
+            sb.append( detail );
+
+            Writer fw = lfs.getLogFile( );
+
+            write( fw, sb.toString() );
+            write( fw, "\n" );
+
+            flush( fw );
         }
     }
 
@@ -498,8 +510,6 @@ public final class MetricsAgent
         Date currDate = null;
 
         try{
-            conn = DBInterface.acquireConnection();
-
             CustomerContext cc = CustomerContext.getInstance( );
 
             columnValues = new Hashtable ();
@@ -520,13 +530,21 @@ public final class MetricsAgent
                 columnValues.put (SESSIONID_COL, sessionID);
 
             try{
-                columnValues.put (MACHINEINETADDRESS_COL, InetAddress.getLocalHost().toString());
+                columnValues.put (MACHINEINETADDRESS_COL, getMachineAddress());
             }
             catch(UnknownHostException une)
             {
                 une.printStackTrace();
             }
 
+            if(asyncMode)
+            {
+                enqueue(new Record(USER_ACTION_DB_TABLE, columnValues, USER_ACTION_DB_TABLE + ":" + action, -1));
+                return;
+            }
+
+            conn = DBInterface.acquireConnection();
+
             sqlResult = SQLUtil.insertRow(conn, USER_ACTION_DB_TABLE, columnValues );
 
             if(Debug.isLevelEnabled(Debug.MSG_DATA))
@@ -545,11 +563,12 @@ public final class MetricsAgent
         {
             /** Here try is required to release the DB Connection Pool Instance */
             try {
+                // No connection is acquired when the metric is queued.
                 if (conn != null) {
                     conn.commit ();
-                }
 
-                DBInterface.releaseConnection(conn);
+                    DBInterface.releaseConnection(conn);
+                }
 
                 columnValues = null;
             }
@@ -653,9 +672,7 @@ public final class MetricsAgent
 
             // Get the InetAddress of the machine where tomcat is running
             try{
-                sb = new StringBuffer();
-                sb.append(InetAddress.getLocalHost());
-                columnValues.put (MACHINEINETADDRESS_COL, sb.toString() );
+                columnValues.put (MACHINEINETADDRESS_COL, getMachineAddress() );
             }
             catch(UnknownHostException uhe )
             {
@@ -682,6 +699,13 @@ public final class MetricsAgent
                 columnValues.put (METRICATTRIBUTE_COL + ix, st.nextToken());
             }
 
+            // In asynchronous mode, the writer thread inserts the row.
+            if(asyncMode)
+            {
+                enqueue(new Record(WEBAPP_METRICS_DB_TABLE, columnValues, category + ":" + actionValue, System.currentTimeMillis() - startTime));
+                return;
+            }
+
             // Get the connection from DBConnectionPool
             conn = DBInterface.acquireConnection();
 
@@ -712,7 +736,9 @@ public final class MetricsAgent
             /** Here try is required to release the DB Connection Pool Instance */
             try {
 
-                DBInterface.releaseConnection(conn);
+                // No connection is acquired when the metric is queued.
+                if (conn != null)
+                    DBInterface.releaseConnection(conn);
 
                 columnValues = null;
 
@@ -796,6 +822,8 @@ public final class MetricsAgent
 
                 Debug.log( Debug.SYSTEM_CONFIG, "Metrics DB Logging level is set to [" + metricsDbLoggingLevel + "]" );
             }
+
+            configureAsync( null );
         }
         catch ( Exception e )
         {
@@ -874,6 +902,7 @@ public final class MetricsAgent
                 Debug.log( Debug.SYSTEM_CONFIG, "Metrics DB Logging level is set to [" + metricsDbLoggingLevel + "]" );
             }
 
+            configureAsync( props );
         }
         catch ( Exception e )
         {
@@ -882,6 +911,368 @@ public final class MetricsAgent
     }
 
 
+    /**
+     * Configure asynchronous mode, starting the writer thread if it's enabled.
+     *
+     * @param  props  Optional hash table to search first for properties.
+     */
+    private static void configureAsync ( Hashtable props )
+    {
+        String temp = getProperty( props, METRICS_FLUSH_INTERVAL_PROP );
+
+        if ( temp != null )
+            flushInterval = Math.max( 1, Long.parseLong( temp ) );
+
+        temp = getProperty( props, METRICS_QUEUE_SIZE_PROP );
+
+        if ( temp != null )
+            maxQueued = Math.max( 1, Integer.parseInt( temp ) );
+
+        temp = getProperty( props, METRICS_SUMMARY_INTERVAL_PROP );
+
+        if ( temp != null )
+            summaryInterval = Long.parseLong( temp );
+
+        boolean async = StringUtils.getBoolean( getProperty( props, METRICS_ASYNC_PROP ), false );
+
+        Debug.log( Debug.SYSTEM_CONFIG, "Asynchronous metrics logging is set to [" + async + "], flush interval ["
+                   + flushInterval + "] msec, queue size [" + maxQueued + "], summary interval ["
+                   + summaryInterval + "] sec." );
+
+        if ( async )
+            startWriter( );
+
+        // Set after the writer is running, so that nothing is queued without a writer to drain it.
+        asyncMode = async;
+    }
+
+
+    /**
+     * Start the background writer thread, if it isn't already running.
+     */
+    private static synchronized void startWriter ( )
+    {
+        if ( writer != null )
+            return;
+
+        writer = new Thread( "MetricsAgentWriter" )
+            {
+                public void run ( )
+                {
+                    long nextSummary = System.currentTimeMillis() + (summaryInterval * 1000);
+
+                    while ( true )
+                    {
+                        try
+                        {
+                            synchronized( writerWakeup )
+                            {
+                                if ( queued.get() < (maxQueued / 2) )
+                                    writerWakeup.wait( flushInterval );
+                            }
+                        }
+                        catch ( InterruptedException ie )
+                        {
+                            // Write what's queued, then carry on.
+                        }
+
+                        drain( );
+
+                        if ( (summaryInterval > 0) && (System.currentTimeMillis() >= nextSummary) )
+                        {
+                            Debug.log( Debug.NORMAL_STATUS, describe() );
+
+                            nextSummary = System.currentTimeMillis() + (summaryInterval * 1000);
+                        }
+                    }
+                }
+            };
+
+        writer.setDaemon( true );
+
+        writer.start( );
+
+        // Write whatever is still queued when the process exits.
+        Runtime.getRuntime().addShutdownHook( new Thread( "MetricsAgentShutdown" )
+            {
+                public void run ( )
+                {
+                    drain( );
+                }
+            } );
+    }
+
+
+    /**
+     * Add a metric to the queue for the writer thread, unless the queue is full.
+     *
+     * @param  record  The captured metric.
+     */
+    private static void enqueue ( Record record )
+    {
+        int count = queued.incrementAndGet( );
+
+        if ( count > maxQueued )
+        {
+            queued.decrementAndGet( );
+
+            dropped.incrementAndGet( );
+
+            return;
+        }
+
+        queue.offer( record );
+
+        // Wake the writer early when the queue is half full, rather than
+        // waiting out the flush interval.  Only the caller that reaches the
+        // mark takes the lock.
+        if ( count == (maxQueued / 2) )
+        {
+            synchronized( writerWakeup )
+            {
+                writerWakeup.notify( );
+            }
+        }
+    }
+
+
+    /**
+     * Write all queued metrics: log file entries with a single flush, database rows
+     * on a single connection with a single commit, and elapsed times to the histograms.
+     */
+    private static void drain ( )
+    {
+        synchronized( drainLock )
+        {
+            List entries = new ArrayList( );
+
+            List rows = new ArrayList( );
+
+            Record record;
+
+            while ( (record = (Record)queue.poll()) != null )
+            {
+                queued.decrementAndGet( );
+
+                if ( record.table == null )
+                    entries.add( record );
+                else
+                    rows.add( record );
+
+                if ( record.elapsed >= 0 )
+                    getHistogram( record.key ).record( record.elapsed );
+            }
+
+            if ( entries.size() > 0 )
+                writeEntries( entries );
+
+            if ( rows.size() > 0 )
+                insertRows( rows );
+        }
+    }
+
+
+    /**
+     * Write the given metrics to the log file, in the same format as in synchronous mode.
+     *
+     * @param  entries  The metrics to write.
+     */
+    private static void writeEntries ( List entries )
+    {
+        LogFileState lfs = getLogFile( );
+
+        synchronized( lfs )
+        {
+            Writer fw = null;
+
+            try
+            {
+                StringBuffer sb = new StringBuffer( );
+
+                for ( int Ix = 0;  Ix < entries.size();  Ix ++ )
+                {
+                    Record record = (Record)entries.get( Ix );
+
+                    sb.setLength( 0 );
+
+                    sb.append( lfs.timestamp.format( new Date( record.time ) ) );
+
+                    sb.append( ',' );
+
+                    sb.append( record.elapsed );
+
+                    sb.append( ',' );
+
+                    sb.append( record.customerID );
+
+                    sb.append( ',' );
+
+                    sb.append( record.userID );
+
+                    if ( StringUtils.hasValue( record.subDomainId, true ) )
+                        sb.append( ',' ).append( record.subDomainId );
+
+                    sb.append( ',' );
+
+                    sb.append( record.category );
+
+                    sb.append( record.detail );
+
+                    sb.append( '\n' );
+
+                    // Called once per entry, so that log files are rotated as in synchronous mode.
+                    Writer current = lfs.getLogFile( );
+
+                    write( current, sb.toString() );
+
+                    fw = current;
+                }
+
+                flush( fw );
+            }
+            catch ( Exception e )
+            {
+                Debug.error( "MetricsAgent could not write [" + entries.size() + "] queued metrics.  Reason:\n" + e.toString() );
+            }
+        }
+    }
+
+
+    /**
+     * Insert the given rows using one connection and one commit.
+     *
+     * @param  rows  The metrics holding the rows to insert.
+     */
+    private static void insertRows ( List rows )
+    {
+        Connection conn = null;
+
+        int inserted = 0;
+
+        try
+        {
+            conn = DBInterface.acquireConnection( );
+
+            for ( int Ix = 0;  Ix < rows.size();  Ix ++ )
+            {
+                Record record = (Record)rows.get( Ix );
+
+                try
+                {
+                    inserted += SQLUtil.insertRow( conn, record.table, record.row );
+                }
+                catch ( DatabaseException dbe )
+                {
+                    Debug.log( Debug.ALL_ERRORS, "Could not insert metrics row into [" + record.table + "]: " + dbe.getMessage() );
+                }
+            }
+
+            conn.commit( );
+
+            if ( Debug.isLevelEnabled( Debug.MSG_DATA ) )
+                Debug.log( Debug.MSG_DATA, "Inserted [" + inserted + "] of [" + rows.size() + "] queued metrics rows." );
+        }
+        catch ( Exception e )
+        {
+            Debug.log( Debug.ALL_ERRORS, "Could not insert [" + rows.size() + "] queued metrics rows: " + e.toString() );
+        }
+        finally
+        {
+            try
+            {
+                if ( conn != null )
+                    DBInterface.releaseConnection( conn );
+            }
+            catch ( Exception e )
+            {
+                Debug.log( Debug.ALL_ERRORS, e.toString() );
+            }
+        }
+    }
+
+
+    /**
+     * Get the histogram for the given category and action, creating it if necessary.
+     */
+    private static Histogram getHistogram ( String key )
+    {
+        Histogram histogram = (Histogram)histograms.get( key );
+
+        if ( histogram == null )
+        {
+            Histogram created = new Histogram( key, "msec" );
+
+            histogram = (Histogram)histograms.putIfAbsent( key, created );
+
+            if ( histogram == null )
+                histogram = created;
+        }
+
+        return histogram;
+    }
+
+
+    /**
+     * Describe the elapsed-time histograms aggregated in asynchronous mode, along with the
+     * number of queued and dropped metrics.
+     *
+     * @return  Human-readable description.
+     */
+    public static String describe ( )
+    {
+        StringBuffer sb = new StringBuffer( );
+
+        sb.append( "Metrics: asynchronous [" );
+        sb.append( asyncMode );
+        sb.append( "], queued [" );
+        sb.append( queued.get() );
+        sb.append( "], dropped [" );
+        sb.append( dropped.get() );
+        sb.append( "]\n" );
+
+        Iterator iter = new TreeMap( histograms ).values().iterator( );
+
+        while ( iter.hasNext() )
+        {
+            sb.append( '\t' );
+            sb.append( ((Histogram)iter.next()).describe() );
+            sb.append( '\n' );
+        }
+
+        return( sb.toString() );
+    }
+
+
+    /**
+     * Get the key used to aggregate a synchronous API action, which is the
+     * action's name and status, without any of the details following it.
+     */
+    private static String getActionKey ( String action )
+    {
+        if ( action == null )
+            return null;
+
+        int end = action.indexOf( COMMA_PROP );
+
+        if ( end < 0 )
+            end = action.indexOf( EQUALS_PROP );
+
+        return( (end < 0) ? action : action.substring( 0, end ) );
+    }
+
+
+    /**
+     * Get the address of this machine, which is looked up once.
+     */
+    private static String getMachineAddress ( ) throws UnknownHostException
+    {
+        if ( machineAddress == null )
+            machineAddress = InetAddress.getLocalHost().toString( );
+
+        return machineAddress;
+    }
+
+
     /**
      * Set the log-levels from the configuration string.
      *
@@ -1166,6 +1557,90 @@ public final class MetricsAgent
     }
 
 
+    /**
+     * A metric captured on the calling thread, for the writer thread to write.
+     */
+    private static class Record
+    {
+        /**
+         * Capture a log file entry.
+         */
+        Record ( long startTime, String category, String detail, String key ) throws FrameworkException
+        {
+            time = System.currentTimeMillis( );
+
+            elapsed = time - startTime;
+
+            CustomerContext cc = CustomerContext.getInstance( );
+
+            customerID = cc.getCustomerID( );
+
+            userID = cc.getUserID( );
+
+            subDomainId = cc.getSubDomainId( );
+
+            this.category = category;
+
+            this.detail = detail;
+
+            this.key = category + ":" + key;
+
+            table = null;
+
+            row = null;
+        }
+
+
+        /**
+         * Capture a database row.
+         *
+         * @param  elapsed  Elapsed time to aggregate, or -1 if there is none.
+         */
+        Record ( String table, Hashtable row, String key, long elapsed )
+        {
+            time = System.currentTimeMillis( );
+
+            this.elapsed = elapsed;
+
+            customerID = null;
+
+            userID = null;
+
+            subDomainId = null;
+
+            category = null;
+
+            detail = null;
+
+            this.key = key;
+
+            this.table = table;
+
+            this.row = row;
+        }
+
+        final long time;
+
+        final long elapsed;
+
+        final String customerID;
+
+        final String userID;
+
+        final String subDomainId;
+
+        final String category;
+
+        final String detail;
+
+        final String key;
+
+        final String table;
+
+        final Hashtable row;
+    }
+
+
     private static Set enabledLevels = new HashSet( );
 
     private static String configuredLogFileName;
@@ -1182,4 +1657,31 @@ public final class MetricsAgent
     private static boolean metricsDbLogging;
 
     private static LogFileState logFile;
+
+    private static volatile String machineAddress;
+
+    private static volatile boolean asyncMode = false;
+
+    private static volatile long flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+    private static volatile int maxQueued = DEFAULT_QUEUE_SIZE;
+
+    private static volatile long summaryInterval = DEFAULT_SUMMARY_INTERVAL;
+
+    private static Thread writer;
+
+    // Metrics waiting for the writer thread, with a separate count, since
+    // ConcurrentLinkedQueue.size() traverses the queue.
+    private static final ConcurrentLinkedQueue queue = new ConcurrentLinkedQueue( );
+
+    private static final AtomicInteger queued = new AtomicInteger( );
+
+    private static final AtomicLong dropped = new AtomicLong( );
+
+    private static final Object drainLock = new Object( );
+
+    private static final Object writerWakeup = new Object( );
+
+    // Elapsed-time histograms, keyed by category and action.
+    private static final ConcurrentHashMap histograms = new ConcurrentHashMap( );
 }
@@ -2,6 +2,8 @@ package com.nightfire.framework.util;
 
 import java.util.*;
 import com.nightfire.framework.util.*;
+import org.apache.oro.text.PatternCache;
+import org.apache.oro.text.PatternCacheLRU;
 import org.apache.oro.text.perl.*;
 import org.apache.oro.text.regex.*;
 
@@ -13,6 +15,35 @@ import org.apache.oro.text.regex.*;
 
 public class RegexUtils
 {
+   /**
+    * Number of compiled Perl5 patterns each thread keeps.
+    */
+   public static final int PATTERN_CACHE_SIZE = 200;
+
+   /**
+    * Each thread's cache of compiled Perl5 patterns. ORO pattern caches
+    * aren't thread-safe, so each thread has its own, which lets patterns
+    * be compiled once per thread rather than once per call.
+    */
+   private static ThreadLocal patternCaches = new ThreadLocal()
+   {
+      protected Object initialValue()
+      {
+         return new PatternCacheLRU( PATTERN_CACHE_SIZE, new Perl5Compiler() );
+      }
+   };
+
+   /**
+    * Creates a Perl5Util that compiles patterns through the current thread's
+    * pattern cache. Perl5Util holds the state of the last match, so each call
+    * still gets its own instance.
+    *
+    * @return a new Perl5Util.
+    */
+   private static Perl5Util newPerl5Util()
+   {
+      return new Perl5Util( (PatternCache) patternCaches.get() );
+   }
 
    /**
     * This function takes a perl5 regular expression as the pattern
@@ -53,7 +84,7 @@ public class RegexUtils
                     " input = " + input );
       }
 
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
       String result = input;
 
       try
@@ -95,7 +126,7 @@ public class RegexUtils
          throw new FrameworkException("ERROR: RegexUtils: replaceAll(): pattern or replacement or input is null.");
       }
 
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
 
       String negativeLookAheadPattern = makePerl5MatchPatternNegativeLookAhead( pattern, replacement );
       String substitutionPattern = makePerl5SubstitutionPattern( negativeLookAheadPattern, replacement );
@@ -391,7 +422,7 @@ public class RegexUtils
          throw new FrameworkException("RegexUtils: replaceAll(): pattern or replacement or input is null.");
       }
 
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
       StringBuffer resultBuffer = new StringBuffer();
 
       if( (beginToken == null) || (endToken == null) )
@@ -509,7 +540,7 @@ public class RegexUtils
          throw new FrameworkException("RegexUtils: replaceAll(): pattern or replacement or input is null.");
       }
 
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
       StringBuffer resultBuffer = new StringBuffer();
 
       if( (beginToken == null) || (endToken == null) )
@@ -627,7 +658,7 @@ public class RegexUtils
    private static final boolean isOtherBeginTokenThere(String begin, String input, String beginTokens[])
    throws FrameworkException
    {
-      Perl5Util util= new Perl5Util();
+      Perl5Util util= newPerl5Util();
 
       for( int i = 0; i < beginTokens.length; i++ )
       {
@@ -660,7 +691,7 @@ public class RegexUtils
     */
    private static final String skipOrphanedBeginToken(String beginToken, String current, StringBuffer resultBuffer)
   {
-     Perl5Util util= new Perl5Util();
+     Perl5Util util= newPerl5Util();
      boolean nextBeginTokenMatch = true;
      MatchResult matchResult = null;
      String remainderStr = null;
@@ -724,7 +755,7 @@ public class RegexUtils
                                       "input =" + input + ", " + "delimiter = "+delimiter);
       }
 
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
       Vector result =  new Vector();
 
       // convert the delimiter to the perl5 format
@@ -763,7 +794,7 @@ public class RegexUtils
                                       "input =" + input + ", " + "pattern = "+pattern);
       }
 
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
       boolean isMatched = false;
 
       // convert the pattern to the perl5 format
@@ -791,7 +822,7 @@ public class RegexUtils
                                       "input =" + input + ", " + "pattern = "+pattern);
       }
 
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
       boolean isMatched = false;
       MatchResult matchResult = null;
 
@@ -830,7 +861,7 @@ public class RegexUtils
                                       "input = " + input + ", " +  "pattern = " + pattern);
       }
 
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
       int beginOffset = -1;
       String formatPattern = null;
 
@@ -1019,7 +1050,7 @@ public class RegexUtils
 
       String result = null;
       String perl5SubstitutionPattern = null;
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
 
       // default return value
       result = input;
@@ -1055,7 +1086,7 @@ public class RegexUtils
                                       +"pattern = " + pattern + "input = " + input + "replacement = "+replacement );
       }
 
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
       MatchResult matchResult = null;
       String result = null;
       String pre = null;
@@ -1120,7 +1151,7 @@ public class RegexUtils
                                       "\ninput = " + input + "\npattern = " + pattern + "\nreplacement = " + replacement);
       }
 
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
 
       // default return value
       String result = input;
@@ -1193,7 +1224,7 @@ public class RegexUtils
       String result = pattern;
       StringBuffer patternBuffer = new StringBuffer();
 
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
       String formatPattern = makePerl5MatchPattern( pattern );
 
       // check if the pattern string is a part of the replacement string
@@ -1244,7 +1275,7 @@ public class RegexUtils
       String result = null;
       StringBuffer patternBuffer = new StringBuffer();
 
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
       String formatPattern = makePerl5MatchPattern(pattern);
 
       for( int i=0; i<replacements.length; i++ )
@@ -1317,7 +1348,7 @@ public class RegexUtils
       }
 
       boolean check = false;
-      Perl5Util util = new Perl5Util();
+      Perl5Util util = newPerl5Util();
       String formatPattern = makePerl5MatchPattern( pattern );
 
       // check if the pattern string is a part of the replacement string
@@ -1,10 +1,5 @@
 package com.nightfire.framework.util;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.SQLException;
-
 import com.nightfire.framework.db.DBInterface;
 import com.nightfire.framework.db.PersistentProperty;
 import com.nightfire.framework.db.PropertyException;
@@ -14,7 +9,11 @@ import com.nightfire.framework.util.StringUtils;
 /**
  * Utility Class that generates ID's using a database sequence. ID's are incremented by one each time
  * when #getNextId or #getStrNextId is invoked until next sequence is fetched from database.
- * By default the next sequence is fetched after 100 increments
+ * By default the next sequence is fetched after 100 increments.
+ *
+ * ID's are handed out by the SequenceBlockAllocator shared by all generators using the same
+ * sequence, which fetches the next sequence value in the background before the current one is
+ * used up, so callers do not wait on the database or on each other.
  */
 public class SeqIdGenerator {
 
@@ -22,10 +21,6 @@ public class SeqIdGenerator {
      * Name of database sequence used to generate ids.
      */
     private String seqName;
-    /**
-     * String containing SQL query to select the next value of sequence
-     */
-    private String SQL_QRY;
 
     /**
      * Default number of times to increment the sequence before fetching the next value from database.
@@ -33,14 +28,9 @@ public class SeqIdGenerator {
     private static int MAX_SEQ_INCR_COUNT = 100;
 
     /**
-     * Counter to track number of increments.
-     */
-    private int nextIdIdx;
-
-    /**
-     * Current value of sequence in memory i.e. current unique id
+     * Allocator handing out the ID's of the sequence.
      */
-    private long currSeq;
+    private SequenceBlockAllocator allocator;
 
     /**
      * Properties to be read from database for intializing this class
@@ -60,8 +50,7 @@ public class SeqIdGenerator {
             Debug.log(Debug.OBJECT_LIFECYCLE,"Initializing SeqIdGenerator with sequence["+seqName+"]");
 
         this.seqName = seqName;
-        SQL_QRY = "SELECT "+seqName+".NEXTVAL FROM DUAL";
-        nextIdIdx = maxSeqIncrCount;
+        allocator = SequenceBlockAllocator.getInstance(seqName, maxSeqIncrCount);
     }
 
     /**
@@ -89,8 +78,7 @@ public class SeqIdGenerator {
         if(StringUtils.hasValue(val))
             MAX_SEQ_INCR_COUNT = Integer.parseInt(val);
 
-        nextIdIdx = MAX_SEQ_INCR_COUNT;
-        SQL_QRY = "SELECT "+seqName+".NEXTVAL FROM DUAL";
+        allocator = SequenceBlockAllocator.getInstance(seqName, MAX_SEQ_INCR_COUNT);
     }
 
     /**
@@ -100,16 +88,7 @@ public class SeqIdGenerator {
      */
     public long getNextId() throws FrameworkException
     {
-        synchronized(SeqIdGenerator.class)
-        {
-            if(nextIdIdx==MAX_SEQ_INCR_COUNT)
-            {
-               fetchNextSeq();
-               nextIdIdx=0;
-            }
-            ++nextIdIdx;
-            return ++currSeq;
-        }
+        return allocator.getNextId();
     }
 
     /**
@@ -119,18 +98,7 @@ public class SeqIdGenerator {
      */
     public String getStrNextId() throws FrameworkException
     {
-        synchronized(SeqIdGenerator.class)
-        {
-            if(nextIdIdx==MAX_SEQ_INCR_COUNT)
-            {
-               fetchNextSeq();
-               nextIdIdx=0;
-            }
-            ++nextIdIdx;
-            ++currSeq;
-        }
-
-        String id = String.valueOf(currSeq);
+        String id = String.valueOf(allocator.getNextId());
         if(id.length()<10)
         {
             int zerosToAppend = 10 - id.length();
@@ -143,44 +111,6 @@ public class SeqIdGenerator {
         return id;
 
     }
-
-    private void fetchNextSeq() throws FrameworkException
-    {
-        Connection conn = null;
-        PreparedStatement pstmt =null;
-        ResultSet rs = null;
-        
-        try
-        {
-            conn = DBInterface.acquireConnection();
-            pstmt = conn.prepareStatement(SQL_QRY);
-            rs = pstmt.executeQuery();
-            rs.next();
-            currSeq = rs.getLong(1);
-        }
-        catch(Exception e)
-        {
-            Debug.log(Debug.ALL_ERRORS,"Exception occured while fetching sequence from database "+e.getMessage());
-            throw new FrameworkException(e);
-        }
-        finally
-        {
-            try{
-             if(rs!=null)
-                rs.close();
-            }catch(SQLException e){}
-
-            try{
-            if(pstmt!=null)
-                pstmt.close();
-            }catch(SQLException e){}
-
-            try
-            {
-              DBInterface.releaseConnection(conn);
-            }catch(Exception e) {}
-                }
-    }
     
     public static void main(String args[]) throws Exception
     {
@@ -0,0 +1,309 @@
+/**
+ * Copyright(c) 2000-2006 Neustar, Inc.
+ * All rights reserved.
+ *
+ * $Header: $
+ */
+
+package com.nightfire.framework.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.nightfire.framework.db.DBInterface;
+
+/**
+ * Hands out ID's from blocks reserved with a database sequence. Each value
+ * fetched from the sequence reserves the block of ID's following it, so the
+ * sequence is expected to be incremented by the block size.
+ *
+ * ID's are taken from the current block with an atomic counter, without any
+ * lock. Once a given share of the block is used, the next block is fetched
+ * in the background, so that callers only wait on the database when ID's are
+ * used up faster than a block can be fetched.
+ *
+ * There is one allocator per sequence and block size, shared by all the
+ * SeqIdGenerator instances using them.
+ */
+public class SequenceBlockAllocator
+{
+    /**
+     * Percentage of a block to use before the next block is prefetched.
+     */
+    public static final int PREFETCH_PERCENT = 75;
+
+    /**
+     * Allocators keyed by sequence name and block size.
+     */
+    private static final ConcurrentHashMap allocators = new ConcurrentHashMap();
+
+    /**
+     * Runs the background prefetches, on daemon threads so that a pending
+     * prefetch never keeps the JVM alive.
+     */
+    private static final Executor prefetcher = Executors.newCachedThreadPool(
+        new ThreadFactory()
+        {
+            public Thread newThread(Runnable task)
+            {
+                Thread thread = new Thread(task, "SequenceBlockPrefetch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+    /**
+     * Name of database sequence used to reserve blocks.
+     */
+    private final String seqName;
+
+    /**
+     * String containing SQL query to select the next value of sequence
+     */
+    private final String sqlQuery;
+
+    /**
+     * Number of ID's in a block.
+     */
+    private final int blockSize;
+
+    /**
+     * Index within a block at which the next block is prefetched.
+     */
+    private final int prefetchIndex;
+
+    /**
+     * Block ID's are currently handed out from. Starts out empty so that
+     * the first call fetches a block.
+     */
+    private volatile Block current = new Block(0, 0);
+
+    /**
+     * Background fetch of the next block's sequence value, or null if none
+     * has been started. Guarded by this allocator's monitor.
+     */
+    private FutureTask prefetched;
+
+
+    /**
+     * Returns the allocator for the given sequence and block size, creating
+     * it on first use.
+     *
+     * @param seqName name of the database sequence.
+     * @param blockSize number of ID's reserved by each sequence value.
+     *
+     * @return  The shared allocator.
+     */
+    public static SequenceBlockAllocator getInstance(String seqName, int blockSize)
+    {
+        String key = seqName + ":" + blockSize;
+
+        SequenceBlockAllocator allocator = (SequenceBlockAllocator)allocators.get(key);
+
+        if (allocator == null)
+        {
+            allocator = new SequenceBlockAllocator(seqName, blockSize);
+
+            SequenceBlockAllocator existing =
+                (SequenceBlockAllocator)allocators.putIfAbsent(key, allocator);
+
+            if (existing != null)
+                allocator = existing;
+        }
+
+        return allocator;
+    }
+
+    /**
+     * Create an allocator. Use getInstance() to share the allocator of a
+     * sequence; this constructor is for subclasses supplying the sequence
+     * values some other way.
+     *
+     * @param seqName name of the database sequence.
+     * @param blockSize number of ID's reserved by each sequence value.
+     */
+    protected SequenceBlockAllocator(String seqName, int blockSize)
+    {
+        if (blockSize < 1)
+            throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+
+        this.seqName = seqName;
+        this.blockSize = blockSize;
+        sqlQuery = "SELECT " + seqName + ".NEXTVAL FROM DUAL";
+
+        prefetchIndex = Math.min(blockSize - 1, (blockSize * PREFETCH_PERCENT) / 100);
+    }
+
+    /**
+     * Get the next ID.
+     *
+     * @return  The next ID.
+     *
+     * @exception  FrameworkException  Thrown if a new block is needed and
+     *                                 can't be fetched from the database.
+     */
+    public long getNextId() throws FrameworkException
+    {
+        while (true)
+        {
+            Block block = current;
+
+            int index = block.next.getAndIncrement();
+
+            if (index < block.size)
+            {
+                if (index == prefetchIndex)
+                    startPrefetch();
+
+                return block.base + index + 1;
+            }
+
+            nextBlock(block);
+        }
+    }
+
+    /**
+     * Starts fetching the next block in the background, unless that is
+     * already under way.
+     */
+    private synchronized void startPrefetch()
+    {
+        if (prefetched != null)
+            return;
+
+        prefetched = new FutureTask(new Callable()
+            {
+                public Object call() throws Exception
+                {
+                    return Long.valueOf(fetchNextValue());
+                }
+            });
+
+        prefetcher.execute(prefetched);
+    }
+
+    /**
+     * Replaces the exhausted block with the next one, using the prefetched
+     * value if there is one. Only the first thread to find the block
+     * exhausted does this; the others wait here and then retry.
+     *
+     * @param exhausted the block that ran out of ID's.
+     */
+    private synchronized void nextBlock(Block exhausted) throws FrameworkException
+    {
+        if (current != exhausted)
+            return;
+
+        FutureTask fetch = prefetched;
+
+        prefetched = null;
+
+        long base;
+
+        if (fetch == null)
+            base = fetchNextValue();
+        else
+        {
+            try
+            {
+                base = ((Long)fetch.get()).longValue();
+            }
+            catch (InterruptedException e)
+            {
+                throw new FrameworkException("Interrupted while waiting for the next block of sequence ["
+                                             + seqName + "].");
+            }
+            catch (ExecutionException e)
+            {
+                Debug.log(Debug.ALL_WARNINGS, "Prefetch of sequence [" + seqName
+                          + "] failed, fetching it again: " + e.getCause());
+
+                base = fetchNextValue();
+            }
+        }
+
+        if (Debug.isLevelEnabled(Debug.DB_STATUS))
+            Debug.log(Debug.DB_STATUS, "Sequence [" + seqName + "] reserved ID's after [" + base + "].");
+
+        current = new Block(base, blockSize);
+    }
+
+    /**
+     * Fetches the next value of the sequence from the database.
+     *
+     * @return  The sequence value; the block reserved is the blockSize ID's
+     *          following it.
+     *
+     * @exception  FrameworkException  Thrown if the query fails.
+     */
+    protected long fetchNextValue() throws FrameworkException
+    {
+        Connection conn = null;
+        PreparedStatement pstmt =null;
+        ResultSet rs = null;
+
+        try
+        {
+            conn = DBInterface.acquireConnection();
+            pstmt = conn.prepareStatement(sqlQuery);
+            rs = pstmt.executeQuery();
+            rs.next();
+            return rs.getLong(1);
+        }
+        catch(Exception e)
+        {
+            Debug.log(Debug.ALL_ERRORS,"Exception occured while fetching sequence from database "+e.getMessage());
+            throw new FrameworkException(e);
+        }
+        finally
+        {
+            try{
+             if(rs!=null)
+                rs.close();
+            }catch(SQLException e){}
+
+            try{
+            if(pstmt!=null)
+                pstmt.close();
+            }catch(SQLException e){}
+
+            try
+            {
+              if(conn!=null)
+                DBInterface.releaseConnection(conn);
+            }catch(Exception e) {}
+        }
+    }
+
+    /**
+     * A block of ID's following a sequence value.
+     */
+    private static final class Block
+    {
+        final long base;
+
+        final int size;
+
+        /**
+         * Index of the next ID to hand out. It keeps counting past the
+         * size once the block is used up.
+         */
+        final AtomicInteger next = new AtomicInteger(0);
+
+        Block(long base, int size)
+        {
+            this.base = base;
+            this.size = size;
+        }
+    }
+}
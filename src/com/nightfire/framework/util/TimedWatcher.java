@@ -15,6 +15,9 @@ import java.text.*;
 /**
  * Provides the ability to emit warning messages if an event doesn't happen
  * within a configurable amount of time.
+ *
+ * Watchers are timed by the shared TimingWheel, rather than each one
+ * starting its own thread.
  */
 public class TimedWatcher implements Runnable
 {
@@ -78,23 +81,24 @@ public class TimedWatcher implements Runnable
 
 
     /**
-     * Create a background thread that will wait for the given amount 
-     * of time before emiting the warning message if not cancelled.
+     * Schedule the watcher to emit the warning message once the given
+     * amount of time has passed, if not cancelled.
      */
     public void watch ( ) throws FrameworkException
     {
-        watchThread = new Thread( this, Thread.currentThread().getName() + ":TimedWatcher" );
-
-        watchThread.setDaemon( true );
-
         Debug.log( Debug.THREAD_STATUS, "Starting timed-watcher ..." );
 
-        watchThread.start( );
+        synchronized ( this )
+        {
+            start = System.currentTimeMillis( );
+
+            timeout = TimingWheel.getShared().schedule( this, watchTime * 1000L );
+        }
     }
 
 
     /**
-     * Cancel the background watcher thread.
+     * Cancel the watcher.
      */
     public void cancel ( )
     {
@@ -104,61 +108,42 @@ public class TimedWatcher implements Runnable
 
             cancelled = true;
 
-            notifyAll( );
+            if ( timeout != null )
+                timeout.cancel( );
         }
     }
 
 
     /**
-     * Executes in the watcher's background thread, waiting for the 
-     * configured time to expire and emit warnings or to be cancelled.
+     * Executes on the timing-wheel's thread each time the watch time expires,
+     * emitting the warning and rescheduling itself to repeat it every second
+     * until cancelled.
      */
     public void run ( )
     {
-        Debug.log( Debug.THREAD_STATUS, "Started timed-watcher." );
-
-        long start = System.currentTimeMillis( );
-
-        long waitTime = watchTime;
-
         synchronized ( this )
         {
-            while( !cancelled )
+            if ( cancelled )
             {
-                if ( Debug.isLevelEnabled( Debug.THREAD_STATUS ) )
-                    Debug.log( Debug.THREAD_STATUS, "Timed-watcher now waiting for [" + waitTime  + "] seconds ..." );
-
-                try
-                {
-                    wait( waitTime * 1000 );
-                }
-                catch ( Exception e )
-                {
-                    Debug.warning( "Timed-watch interrupted: " + e.toString() );
-                }
-
-                if ( cancelled )
-                {
-                    Debug.log( Debug.THREAD_STATUS, "Timed-watcher has been cancelled." );
+                Debug.log( Debug.THREAD_STATUS, "Timed-watcher has been cancelled." );
 
-                    break;
-                }
-
-                double delta = ((double)(System.currentTimeMillis() - start))/1000.0;
+                return;
+            }
 
-                Debug.warning( "Wait-time on parent thread [" + parentThread.toString() + "] of [" + delta 
-                               + "] secs exceeds preset watch-time of [" + watchTime + "] secs: \"" + warningMessage + "\"" );
+            double delta = ((double)(System.currentTimeMillis() - start))/1000.0;
 
-                if ( wantsInterrupt )
-                {
-                    Debug.warning( "Timed-watcher is now interrupting parent thread [" 
-                                   + parentThread.toString() + "] ..." );
+            Debug.warning( "Wait-time on parent thread [" + parentThread.toString() + "] of [" + delta 
+                           + "] secs exceeds preset watch-time of [" + watchTime + "] secs: \"" + warningMessage + "\"" );
 
-                    parentThread.interrupt( );
-                }
+            if ( wantsInterrupt )
+            {
+                Debug.warning( "Timed-watcher is now interrupting parent thread [" 
+                               + parentThread.toString() + "] ..." );
 
-                waitTime = 1;
+                parentThread.interrupt( );
             }
+
+            timeout = TimingWheel.getShared().schedule( this, 1000 );
         }
     }
 
@@ -209,7 +194,8 @@ public class TimedWatcher implements Runnable
     }
 
 
-    private Thread watchThread;
+    private TimingWheel.Timeout timeout;
+    private long start;
     private Thread parentThread;
     private boolean wantsInterrupt = false;
     private int watchTime;
@@ -0,0 +1,344 @@
+/**
+ * Copyright (c) 2003 Neustar, Inc. All rights reserved.
+ *
+ * $Header: $
+ */
+
+package com.nightfire.framework.util;
+
+
+/**
+ * A hashed timing-wheel, which runs tasks once a delay has passed.  Scheduling
+ * and cancelling a task take constant time, and all timeouts share a single
+ * background thread, so it suits large numbers of short-lived, per-request
+ * timeouts that are nearly always cancelled before they expire.
+ *
+ * Time is divided into ticks.  Each tick maps to one of a fixed number of
+ * buckets, each holding a linked list of the timeouts expiring on the ticks
+ * that map to it.  Timeouts expire on the first tick at or after their delay
+ * has passed, so they fire up to one tick late, never early.
+ *
+ * Expired tasks run on the wheel's thread, so they must be short and must
+ * not block.
+ */
+public class TimingWheel implements Runnable
+{
+    /**
+     * Tick duration in milliseconds of the shared wheel.
+     */
+    public static final long DEFAULT_TICK_MSEC = 100;
+
+    /**
+     * Number of buckets in the shared wheel.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+
+    /**
+     * A scheduled task, which can be cancelled until it expires.
+     */
+    public static class Timeout
+    {
+        /**
+         * Cancel the task, if it hasn't expired yet.
+         *
+         * @return  'true' if the task was cancelled before expiring, otherwise 'false'.
+         */
+        public boolean cancel ( )
+        {
+            return wheel.cancel( this );
+        }
+
+
+        /**
+         * @return  'true' if the task was cancelled.
+         */
+        public boolean isCancelled ( )
+        {
+            return( state == CANCELLED );
+        }
+
+
+        /**
+         * @return  'true' if the task expired and was run (or is running).
+         */
+        public boolean isExpired ( )
+        {
+            return( state == EXPIRED );
+        }
+
+
+        private Timeout ( TimingWheel wheel, Runnable task, long deadlineTick )
+        {
+            this.wheel = wheel;
+
+            this.task = task;
+
+            this.deadlineTick = deadlineTick;
+        }
+
+
+        private final TimingWheel wheel;
+
+        private final Runnable task;
+
+        private final long deadlineTick;
+
+        // Links in the bucket's list, guarded by the wheel.
+        private Timeout prev;
+
+        private Timeout next;
+
+        private int bucket;
+
+        private volatile int state = PENDING;
+    }
+
+
+    /**
+     * Get the wheel shared by all per-request timeouts in the process.
+     *
+     * @return  The shared timing-wheel.
+     */
+    public static TimingWheel getShared ( )
+    {
+        return shared;
+    }
+
+
+    /**
+     * Create a timing-wheel.  Its thread is started when the first task is scheduled.
+     *
+     * @param  name  Name of the wheel's thread.
+     * @param  tickTime  Duration of a tick in milliseconds.
+     * @param  wheelSize  Number of buckets, rounded up to a power of two.
+     */
+    public TimingWheel ( String name, long tickTime, int wheelSize )
+    {
+        if ( tickTime <= 0 )
+            throw new IllegalArgumentException( "Timing-wheel tick time must be positive: " + tickTime );
+
+        int size = 1;
+
+        while ( size < wheelSize )
+            size <<= 1;
+
+        this.name = name;
+
+        this.tickTime = tickTime;
+
+        buckets = new Timeout[ size ];
+
+        mask = size - 1;
+
+        startTime = System.currentTimeMillis( );
+    }
+
+
+    /**
+     * Schedule a task to run once the given delay has passed.
+     *
+     * @param  task  The task to run.  It runs on the wheel's thread.
+     * @param  delay  Delay in milliseconds.
+     *
+     * @return  The timeout, which can be used to cancel the task.
+     */
+    public Timeout schedule ( Runnable task, long delay )
+    {
+        // The first tick at or after the deadline, rounding up.
+        long deadlineTick = (System.currentTimeMillis() + Math.max( delay, 0 ) - startTime + tickTime - 1) / tickTime;
+
+        synchronized ( this )
+        {
+            if ( deadlineTick <= processedTick )
+                deadlineTick = processedTick + 1;
+
+            Timeout timeout = new Timeout( this, task, deadlineTick );
+
+            timeout.bucket = (int)(deadlineTick & mask);
+
+            link( timeout );
+
+            pendingCount ++;
+
+            if ( thread == null )
+            {
+                thread = new Thread( this, name );
+
+                thread.setDaemon( true );
+
+                thread.start( );
+            }
+
+            return timeout;
+        }
+    }
+
+
+    /**
+     * Get the number of tasks that have neither expired nor been cancelled.
+     *
+     * @return  Count of pending tasks.
+     */
+    public synchronized int getPendingCount ( )
+    {
+        return pendingCount;
+    }
+
+
+    /**
+     * Executes in the wheel's background thread, expiring the timeouts of each tick.
+     */
+    public void run ( )
+    {
+        Debug.log( Debug.THREAD_STATUS, "Started timing-wheel [" + name + "]." );
+
+        long tick = 0;
+
+        while ( true )
+        {
+            tick ++;
+
+            // Wait until the tick has passed.
+            long sleepTime = startTime + (tick * tickTime) - System.currentTimeMillis( );
+
+            if ( sleepTime > 0 )
+            {
+                try
+                {
+                    Thread.sleep( sleepTime );
+                }
+                catch ( InterruptedException e )
+                {
+                    Debug.warning( "Timing-wheel [" + name + "] interrupted: " + e.toString() );
+                }
+            }
+
+            Timeout expired = null;
+
+            synchronized ( this )
+            {
+                Timeout timeout = buckets[ (int)(tick & mask) ];
+
+                while ( timeout != null )
+                {
+                    Timeout next = timeout.next;
+
+                    // Later rounds of the wheel map to the same bucket.
+                    if ( timeout.deadlineTick <= tick )
+                    {
+                        unlink( timeout );
+
+                        timeout.state = EXPIRED;
+
+                        pendingCount --;
+
+                        // Collect the expired ones, so that they run outside of the lock.
+                        timeout.next = expired;
+
+                        expired = timeout;
+                    }
+
+                    timeout = next;
+                }
+
+                processedTick = tick;
+            }
+
+            while ( expired != null )
+            {
+                Timeout next = expired.next;
+
+                expired.next = null;
+
+                try
+                {
+                    expired.task.run( );
+                }
+                catch ( Throwable t )
+                {
+                    Debug.error( "Timing-wheel [" + name + "] task failed: " + t.toString() );
+                }
+
+                expired = next;
+            }
+        }
+    }
+
+
+    /**
+     * Cancel the given timeout, if it's still pending.
+     *
+     * @return  'true' if the timeout was cancelled, otherwise 'false'.
+     */
+    private synchronized boolean cancel ( Timeout timeout )
+    {
+        if ( timeout.state != PENDING )
+            return false;
+
+        unlink( timeout );
+
+        timeout.state = CANCELLED;
+
+        pendingCount --;
+
+        return true;
+    }
+
+
+    // Add the timeout to the front of its bucket's list.
+    private void link ( Timeout timeout )
+    {
+        Timeout head = buckets[ timeout.bucket ];
+
+        timeout.next = head;
+
+        if ( head != null )
+            head.prev = timeout;
+
+        buckets[ timeout.bucket ] = timeout;
+    }
+
+
+    // Remove the timeout from its bucket's list.
+    private void unlink ( Timeout timeout )
+    {
+        if ( timeout.prev != null )
+            timeout.prev.next = timeout.next;
+        else
+            buckets[ timeout.bucket ] = timeout.next;
+
+        if ( timeout.next != null )
+            timeout.next.prev = timeout.prev;
+
+        timeout.prev = null;
+
+        timeout.next = null;
+    }
+
+
+    private static final int PENDING = 0;
+
+    private static final int CANCELLED = 1;
+
+    private static final int EXPIRED = 2;
+
+    private static final TimingWheel shared = new TimingWheel( "SharedTimingWheel", DEFAULT_TICK_MSEC, DEFAULT_WHEEL_SIZE );
+
+    private final String name;
+
+    private final long tickTime;
+
+    private final long startTime;
+
+    private final Timeout[] buckets;
+
+    private final int mask;
+
+    // The last tick whose timeouts were expired.
+    private long processedTick = 0;
+
+    private int pendingCount = 0;
+
+    private Thread thread;
+}
@@ -56,7 +56,7 @@ public class PageListCache implements CachingObject
 
   /**
    * property which indicates the directory where swap files are written to.
-   * NOT IMPLEMENTED
+   * Optional, defaults to the java.io.tmpdir directory.
    */
   public static final String SWAP_DIR_PROP = "SWAP_FILE_DIR";
 
@@ -115,8 +115,7 @@ public class PageListCache implements CachingObject
      String maxSwapSizeStr         = PropUtils.getRequiredPropertyValue(props,MAX_PAGE_SWAP_SIZE_PROP,errors);
 
 
-     // nod used
-     //swapDir   =   PropUtils.getRequiredPropertyValue(props, SWAP_DIR_PROP,errors);
+     swapDir   =   PropUtils.getPropertyValue(props, SWAP_DIR_PROP, System.getProperty("java.io.tmpdir") );
 
      if ( errors.length()  > 0 ) {
        Debug.error("PageListCache: " + errors.toString() );
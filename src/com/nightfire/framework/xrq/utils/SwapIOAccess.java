@@ -1,21 +1,58 @@
 package com.nightfire.framework.xrq.utils;
 
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.*;
 import java.util.*;
 import com.nightfire.framework.util.*;
 
 
 /**
  * This class is an access point into the swap file.
+ *
+ * Serialized records are appended to a file in the swap directory, and an
+ * index of the offset of each record is kept in memory. Records are read
+ * back through a read-only memory mapping of the file, so only the records
+ * of the pages being looked at take up heap space.
+ *
+ * NOTE: Callers must hold the swap lock of the owning PageList, the same as
+ * for the in-memory swap.
  */
 public class SwapIOAccess
 {
+  /**
+   * The extension of swap files.
+   */
+  public static final String SWAP_FILE_EXT = ".swp";
+
+  /**
+   * Character encoding of records in the swap file.
+   */
+  private static final String ENCODING = "UTF-8";
+
+  /**
+   * A single mapping can not be larger than this, so the swap stops
+   * growing once it is reached.
+   */
+  private static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
 
   private String swapDir;
   private String fileName;
 
-  private List swapRecords;
+  private List pendingRecords;
   private int maxRecs;
 
+  private File swapFile;
+  private OutputStream out;
+
+  // offsets[i] is the start of record i, and offsets[count] the end of the last record.
+  private long[] offsets = new long[ 1 ];
+  private int count;
+
+  private MappedByteBuffer mapped;
+
+  private boolean destroyed = false;
+
   /**
    * constructor
    * @param swapDir the directory where the swap file should exist.
@@ -30,27 +67,67 @@ public class SwapIOAccess
   {
      this.fileName = fileName;
      this.swapDir = swapDir;
-     swapRecords = new ArrayList(records);
+     pendingRecords = new ArrayList(records);
      maxRecs = maxNumRecords;
   }
 
   /**
    * open the swap file.
+   * The file is created on the first call, and the records passed to the
+   * constructor are written to it.
    */
   public void open() throws FrameworkException
-  {}
+  {
+     if (destroyed)
+        throw new FrameworkException("SwapIOAccess[" + fileName + "] : Swap was already cleaned up.");
+
+     if (swapFile != null)
+        return;
+
+     try {
+        File dir = new File( (swapDir == null) ? System.getProperty("java.io.tmpdir") : swapDir);
+
+        if (!dir.exists() )
+           dir.mkdirs();
+
+        swapFile = File.createTempFile(fileName + "_", SWAP_FILE_EXT, dir);
+
+        if (Debug.isLevelEnabled(Debug.IO_STATUS) )
+           Debug.log(Debug.IO_STATUS, "SwapIOAccess[" + fileName + "] : Created swap file [" + swapFile.getPath() + "]");
+
+        out = new BufferedOutputStream(new FileOutputStream(swapFile) );
+     } catch (IOException e) {
+        swapFile = null;
+        throw new FrameworkException("SwapIOAccess[" + fileName + "] : Could not create swap file in [" + swapDir + "]: " + e.getMessage() );
+     }
+
+     Iterator iter = pendingRecords.iterator();
+
+     while (iter.hasNext() && count < maxRecs)
+        append( (String) iter.next() );
+
+     pendingRecords = null;
+  }
+
   /**
    * close the swap file.
+   * Flushes any records written since the last call, the mapping used to
+   * read records stays valid until cleanup() is called.
    */
   public void close() throws FrameworkException
-  {}
+  {
+     flush();
+  }
 
   /**
    * returns the number of records in the swap
    */
   public int size()
   {
-     return swapRecords.size();
+     if (pendingRecords != null)
+        return Math.min(pendingRecords.size(), maxRecs);
+
+     return count;
   }
 
 
@@ -60,16 +137,114 @@ public class SwapIOAccess
    * of this RecordSerializer via the pushSerializedRecords(...) method.
    * Then it iterates through the rest of records in the RecordSerializer
    */
-  public void buildSwap(RecordSerializer rs)
+  public void buildSwap(RecordSerializer rs) throws FrameworkException
+  {
+     open();
+
+     while (rs.hasNext() && count < maxRecs && append(rs.next() ) )
+        ;
+
+     flush();
+
+     if (Debug.isLevelEnabled(Debug.IO_STATUS) )
+        Debug.log(Debug.IO_STATUS, "SwapIOAccess[" + fileName + "] : Wrote [" + count + "] records, [" + offsets[count] + "] bytes to swap.");
+  }
+
+  /**
+   * Appends a record to the end of the swap file.
+   *
+   * @return false if the swap file is full and the record was not added.
+   */
+  private boolean append(String record) throws FrameworkException
+  {
+     try {
+        byte[] bytes = record.getBytes(ENCODING);
+
+        long end = offsets[count] + bytes.length;
+
+        if (end > MAX_FILE_SIZE) {
+           Debug.warning("SwapIOAccess[" + fileName + "] : Swap file is full, dropping records after [" + count + "]");
+           return false;
+        }
+
+        out.write(bytes);
+
+        if (count + 1 == offsets.length) {
+           long[] grown = new long[ offsets.length * 2 ];
+           System.arraycopy(offsets, 0, grown, 0, offsets.length);
+           offsets = grown;
+        }
+
+        offsets[++count] = end;
+
+        return true;
+     } catch (IOException e) {
+        throw new FrameworkException("SwapIOAccess[" + fileName + "] : Could not write to swap file: " + e.getMessage() );
+     }
+  }
+
+  /**
+   * Flushes written records to the swap file.
+   */
+  private void flush() throws FrameworkException
+  {
+     if (out == null)
+        return;
+
+     try {
+        out.flush();
+     } catch (IOException e) {
+        throw new FrameworkException("SwapIOAccess[" + fileName + "] : Could not flush swap file: " + e.getMessage() );
+     }
+  }
+
+  /**
+   * Returns a mapping covering all the records written so far, remapping
+   * the file if it grew since it was last mapped.
+   */
+  private ByteBuffer getMapping() throws FrameworkException
   {
-     int count = swapRecords.size();
+     long length = offsets[count];
 
-     
-     while (rs.hasNext() && count < maxRecs) {
-        swapRecords.add(rs.next() );
-        count++;
+     if (mapped == null || mapped.capacity() < length) {
+        flush();
+
+        RandomAccessFile file = null;
+
+        try {
+           file = new RandomAccessFile(swapFile, "r");
+           mapped = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } catch (IOException e) {
+           throw new FrameworkException("SwapIOAccess[" + fileName + "] : Could not map swap file: " + e.getMessage() );
+        } finally {
+           // the mapping stays valid after the file is closed
+           try {
+              if (file != null)
+                 file.close();
+           } catch (IOException e) {}
+        }
      }
 
+     // a duplicate has its own position, so reads don't affect each other
+     return mapped.duplicate();
+  }
+
+  /**
+   * Reads the record at the given index from the mapping.
+   */
+  private String readRecord(ByteBuffer buf, int index) throws FrameworkException
+  {
+     int start = (int) offsets[index];
+     byte[] bytes = new byte[ (int) (offsets[index + 1] - start) ];
+
+     buf.position(start);
+     buf.get(bytes);
+
+     try {
+        return new String(bytes, ENCODING);
+     } catch (UnsupportedEncodingException e) {
+        throw new FrameworkException(e);
+     }
   }
 
 
@@ -82,7 +257,12 @@ public class SwapIOAccess
    */
   public String getRecord(int index) throws FrameworkException
   {
-    return (String) swapRecords.get(index);
+    open();
+
+    if (index < 0 || index >= count)
+       throw new FrameworkException("SwapIOAccess[" + fileName + "] : Invalid swap access: index [" + index + "], size [" + count + "]");
+
+    return readRecord(getMapping(), index);
 
   }
 
@@ -91,12 +271,13 @@ public class SwapIOAccess
    * @param index the starting index of the records.
    * @param count The number of records to retrieve.
    *
-   * @returns Iterator contains the records 
+   * @returns Iterator contains the records
    * @exception FrameworkException thrown if the record is not found.
    *
    */
   public final Iterator getRecords(int index, int count) throws FrameworkException
   {
+     open();
 
      int end = index + count;
 
@@ -108,24 +289,53 @@ public class SwapIOAccess
         Debug.log(Debug.IO_STATUS, "SwapIOAccess[" + fileName + "] : Retrieving records from start index [" + index + "] to end index [" + end +"]");
 
 
-     List subList;
+     if (index < 0 || index > end) {
+        Debug.error("Invalid swap access: start index [" + index + "], end index [" + end + "]");
+        throw new FrameworkException("SwapIOAccess[" + fileName + "] : Invalid swap access: start index [" + index + "], end index [" + end + "]");
+     }
 
+     List subList = new ArrayList(end - index);
 
-     try {
-        subList = swapRecords.subList(index, end);
-     } catch (Exception e) {
-        Debug.error("Invalid swap access: " + e.getMessage() );
-        throw new FrameworkException("SwapIOAccess[" + fileName + "] : Invalid swap access: " + e.getMessage());
+     if (end > index) {
+        ByteBuffer buf = getMapping();
+
+        for (int i = index; i < end; i++)
+           subList.add(readRecord(buf, i) );
      }
+
      return subList.iterator();
 
   }
 
   /**
    * does any clean up
+   * Closes and deletes the swap file.
    */
   public void cleanup() throws FrameworkException
   {
+     destroyed = true;
+     mapped = null;
+     pendingRecords = null;
+
+     if (swapFile == null)
+        return;
+
+     try {
+        if (out != null)
+           out.close();
+     } catch (IOException e) {
+        Debug.warning("SwapIOAccess[" + fileName + "] : Could not close swap file: " + e.getMessage() );
+     }
+
+     out = null;
+
+     if (!swapFile.delete() && swapFile.exists() )
+        throw new FrameworkException("SwapIOAccess[" + fileName + "] : Could not delete swap file [" + swapFile.getPath() + "]");
+
+     if (Debug.isLevelEnabled(Debug.IO_STATUS) )
+        Debug.log(Debug.IO_STATUS, "SwapIOAccess[" + fileName + "] : Deleted swap file [" + swapFile.getPath() + "]");
+
+     swapFile = null;
   }
 
-} 
\ No newline at end of file
+}
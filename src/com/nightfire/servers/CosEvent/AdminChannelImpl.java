@@ -235,6 +235,10 @@ public class AdminChannelImpl extends EventChannelImpl
             
             Debug.error( Debug.getStackTrace( e ) );
         }
+        finally
+        {
+            flushQueue( );
+        }
     }
 
     
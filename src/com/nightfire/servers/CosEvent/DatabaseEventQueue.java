@@ -6,6 +6,7 @@ package com.nightfire.servers.CosEvent;
 
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 import java.sql.*;
 
@@ -25,6 +26,13 @@ import com.nightfire.framework.db.*;
  *     noConsumersAvailable() methods.
  * 3.) The initialize() method is called before any other queuing operations occur.
  * 4.) The shutdown() method may be called at any point.
+ *
+ * When batching is enabled, events added concurrently are inserted by a
+ * single writer thread in JDBC batches, each committed once, and the
+ * callers of add() wait until their event's batch has been committed.
+ * Delivery status updates are buffered and written as one batch before
+ * more events are loaded from the database, once LOAD_EVENT_BATCH_SIZE
+ * updates are pending, or when the delivery thread flushes the queue.
  */
 public class DatabaseEventQueue implements EventQueue
 {
@@ -38,6 +46,33 @@ public class DatabaseEventQueue implements EventQueue
      */
     public static final int DEFAULT_LOAD_EVENT_BATCH_SIZE = 10;
 
+    /**
+     * Property flag indicating whether event inserts and delivery status updates
+     * are written to the database in batches.
+     */
+    public static final String BATCH_DATABASE_OPERATIONS_FLAG_PROP = "BATCH_DATABASE_OPERATIONS_FLAG";
+
+    /**
+     * Property giving the maximum number of events to insert into the database in one batch.
+     */
+    public static final String INSERT_EVENT_BATCH_SIZE_PROP = "INSERT_EVENT_BATCH_SIZE";
+
+    /**
+     * The default value for the number of events to insert into the database in one batch.
+     */
+    public static final int DEFAULT_INSERT_EVENT_BATCH_SIZE = 50;
+
+    /**
+     * Property giving the maximum time in msec that a batch of inserts waits to fill up,
+     * and that a delivery status update may stay unwritten.
+     */
+    public static final String BATCH_FLUSH_INTERVAL_PROP = "BATCH_FLUSH_INTERVAL";
+
+    /**
+     * The default value for the batch flush interval, in msec.
+     */
+    public static final int DEFAULT_BATCH_FLUSH_INTERVAL = 50;
+
     /**
      * The maximum length of the error message than can be inserted into the 
      * PersistentEvent.lastErrorMessage column.
@@ -77,6 +112,40 @@ public class DatabaseEventQueue implements EventQueue
                 Debug.log( Debug.SYSTEM_CONFIG, "QUEUE OPERATION: Initializing: Maximum-database-event-batch-load-size is [" 
                            + maxDatabaseEventLoadSize + "] rows." );
         }
+
+        temp = (String)props.get( BATCH_DATABASE_OPERATIONS_FLAG_PROP );
+
+        if ( !StringUtils.hasValue( temp ) || !StringUtils.getBoolean( temp ) )
+            return;
+
+        int insertBatchSize = DEFAULT_INSERT_EVENT_BATCH_SIZE;
+
+        temp = (String)props.get( INSERT_EVENT_BATCH_SIZE_PROP );
+
+        if ( StringUtils.hasValue( temp ) )
+            insertBatchSize = StringUtils.getInteger( temp );
+
+        temp = (String)props.get( BATCH_FLUSH_INTERVAL_PROP );
+
+        if ( StringUtils.hasValue( temp ) )
+            batchFlushInterval = StringUtils.getInteger( temp );
+
+        if ( (insertBatchSize < 1) || (maxDatabaseEventLoadSize < 1) || (batchFlushInterval < 0) )
+        {
+            throw new FrameworkException( "ERROR: Invalid batch configuration: insert-batch-size [" + insertBatchSize
+                                          + "], load-batch-size [" + maxDatabaseEventLoadSize
+                                          + "], flush-interval [" + batchFlushInterval + "] msec." );
+        }
+
+        if ( Debug.isLevelEnabled( Debug.SYSTEM_CONFIG ) )
+            Debug.log( Debug.SYSTEM_CONFIG, "QUEUE OPERATION: Initializing: Batching database operations, insert-batch-size is ["
+                       + insertBatchSize + "] rows, flush-interval is [" + batchFlushInterval + "] msec." );
+
+        pendingUpdates = new LinkedList( );
+
+        insertBatcher = new InsertBatcher( insertBatchSize );
+
+        insertBatcher.start( );
     }
     
     
@@ -91,6 +160,13 @@ public class DatabaseEventQueue implements EventQueue
     {
         Debug.log( Debug.MSG_STATUS, "QUEUE OPERATION: Adding event to database queue ..." );
 
+        if ( insertBatcher != null )
+        {
+            insertBatcher.add( event );
+
+            return;
+        }
+
         Connection dbConn = null;
         
         PreparedStatement ps = null;
@@ -119,12 +195,7 @@ public class DatabaseEventQueue implements EventQueue
 
             ps = dbConn.prepareStatement( INSERT_EVENT_SQL );
 
-            ps.setString( 1, event.channelName );
-            ps.setInt( 2, event.id );
-
-            DBLOBUtils.setCLOB( ps, 3, event.message );
-
-            ps.setTimestamp( 4, event.arrivalTime );
+            setInsertValues( ps, event );
             
             int numRows = ps.executeUpdate( );
 
@@ -193,6 +264,18 @@ public class DatabaseEventQueue implements EventQueue
             
             return;
         }
+
+        if ( (eventStatus != EventStatus.DELIVERY_SUCCESSFUL) && (eventStatus != EventStatus.DELIVERY_FAILED) )
+        {
+            throw new FrameworkException( "ERROR: Invalid event update type [" + eventStatus.name + "]." );
+        }
+
+        if ( pendingUpdates != null )
+        {
+            addPendingUpdate( event, eventStatus );
+
+            return;
+        }
         
         Connection dbConn = null;
         
@@ -215,35 +298,19 @@ public class DatabaseEventQueue implements EventQueue
                 
                 ps = dbConn.prepareStatement( UPDATE_EVENT_SUCCESS_SQL );
 
-                java.sql.Timestamp ts = new java.sql.Timestamp( System.currentTimeMillis() );
-                
-                ps.setTimestamp( 1, ts ); 
-                ps.setString( 2, event.channelName );
-                ps.setInt( 3, event.id );
+                setSuccessValues( ps, event, new java.sql.Timestamp( System.currentTimeMillis() ) );
             }
             else
-            if ( eventStatus == EventStatus.DELIVERY_FAILED )
             {
                 // If the event delivery failed, we mark it as failed in the database.
                 if ( Debug.isLevelEnabled( Debug.DB_DATA ) )
                     Debug.log( Debug.DB_DATA, "\n" + LINE + "\nExecuting SQL:\n" + UPDATE_EVENT_ERROR_SQL );
                 
-                // Truncate error message if it's larger than database column.
-                if ( (event.lastErrorMessage != null) && (event.lastErrorMessage.length() > MAX_ERROR_MESSAGE_LENGTH) )
-                    event.lastErrorMessage = event.lastErrorMessage.substring( 0, MAX_ERROR_MESSAGE_LENGTH );
-
-                event.lastErrorTime = new java.sql.Timestamp( System.currentTimeMillis() );
+                recordError( event );
 
                 ps = dbConn.prepareStatement( UPDATE_EVENT_ERROR_SQL );
                 
-                ps.setTimestamp( 1, event.lastErrorTime ); 
-                ps.setString( 2, event.lastErrorMessage );
-                ps.setString( 3, event.channelName );
-                ps.setInt( 4, event.id );
-            }                
-            else
-            {
-                throw new FrameworkException( "ERROR: Invalid event update type [" + eventStatus.name + "]." );
+                setErrorValues( ps, event );
             }
 
             if ( Debug.isLevelEnabled( Debug.DB_DATA ) )
@@ -267,15 +334,7 @@ public class DatabaseEventQueue implements EventQueue
 
             // At this point, the event should be removed from the in-memory buffer of events as well, 
             // irrespective of processing outcome.
-            if ( Debug.isLevelEnabled( Debug.MSG_STATUS ) )
-                Debug.log( Debug.MSG_STATUS, "Removing event [" + event.describe() 
-                           + "] from in-memory queue buffer." );
-            
-            boolean removed = queue.remove( event );
-            
-            if ( Debug.isLevelEnabled( Debug.MSG_STATUS ) )
-                Debug.log( Debug.MSG_STATUS, "Event removed? [" + removed 
-                           + "].  In-memory queue buffer size [" + queue.size() + "]." );
+            removeFromBuffer( event );
         }
         catch ( SQLException sqle )
         {
@@ -313,6 +372,9 @@ public class DatabaseEventQueue implements EventQueue
      */
     public boolean hasNext ( Event criteria ) throws FrameworkException
     {
+        if ( pendingUpdates != null )
+            flushUpdatesIfDue( );
+
         boolean available = (queue.size() > 0);
         
         // If no events are available in memory, attempt to get more from the database.
@@ -372,6 +434,11 @@ public class DatabaseEventQueue implements EventQueue
             throw new FrameworkException( "ERROR: Event channel name is a required queue search criteria." );
         }
 
+        // Events that were delivered must be marked as such before loading, 
+        // so that they aren't loaded again.
+        if ( pendingUpdates != null )
+            flushUpdates( );
+
         Connection dbConn = null;
 
         PreparedStatement ps = null;
@@ -392,6 +459,11 @@ public class DatabaseEventQueue implements EventQueue
                 Debug.log( Debug.DB_DATA, "Criteria used in query against database:\n" + criteria.describe() );
 
             ps = dbConn.prepareStatement( QUERY_EVENT_SQL );
+
+            // Only the first batch of rows is used, so don't fetch any more.
+            ps.setMaxRows( maxDatabaseEventLoadSize );
+
+            ps.setFetchSize( maxDatabaseEventLoadSize );
             
             ps.setString( 1, criteria.channelName );
             
@@ -562,7 +634,26 @@ public class DatabaseEventQueue implements EventQueue
      */
     public void noConsumersAvailable ( )
     {
-        // Nothing to do here.
+        try
+        {
+            flush( );
+        }
+        catch ( Exception e )
+        {
+            Debug.warning( e.toString() );
+        }
+    }
+
+
+    /**
+     * Write any buffered event status updates to the database.
+     * 
+     * @exception  FrameworkException  Thrown on errors.
+     */
+    public void flush ( ) throws FrameworkException
+    {
+        if ( pendingUpdates != null )
+            flushUpdates( );
     }
 
 
@@ -571,7 +662,17 @@ public class DatabaseEventQueue implements EventQueue
      */
     public void shutdown ( )
     {
-        // Nothing to do here.
+        if ( insertBatcher != null )
+            insertBatcher.shutdown( );
+
+        try
+        {
+            flush( );
+        }
+        catch ( Exception e )
+        {
+            Debug.error( "Failed to write buffered event status updates at shut-down:\n" + e.toString() );
+        }
     }
 
 
@@ -592,10 +693,285 @@ public class DatabaseEventQueue implements EventQueue
         sb.append( maxDatabaseEventLoadSize );
         sb.append( "]" );
 
+        if ( insertBatcher != null )
+        {
+            sb.append( ", " );
+            sb.append( insertBatcher.describe() );
+            sb.append( ", pending-status-update-count [" );
+            sb.append( pendingUpdates.size() );
+            sb.append( "]" );
+        }
+
         return( sb.toString() );
     }
 
 
+    // Remove the given event from the in-memory buffer of loaded events.
+    private void removeFromBuffer ( Event event )
+    {
+        if ( Debug.isLevelEnabled( Debug.MSG_STATUS ) )
+            Debug.log( Debug.MSG_STATUS, "Removing event [" + event.describe() 
+                       + "] from in-memory queue buffer." );
+        
+        boolean removed = queue.remove( event );
+        
+        if ( Debug.isLevelEnabled( Debug.MSG_STATUS ) )
+            Debug.log( Debug.MSG_STATUS, "Event removed? [" + removed 
+                       + "].  In-memory queue buffer size [" + queue.size() + "]." );
+    }
+
+
+    // Record the time of a failed delivery in the event, and truncate its error 
+    // message if it's larger than the database column.
+    private static void recordError ( Event event )
+    {
+        if ( (event.lastErrorMessage != null) && (event.lastErrorMessage.length() > MAX_ERROR_MESSAGE_LENGTH) )
+            event.lastErrorMessage = event.lastErrorMessage.substring( 0, MAX_ERROR_MESSAGE_LENGTH );
+
+        event.lastErrorTime = new java.sql.Timestamp( System.currentTimeMillis() );
+    }
+
+
+    // Set the values of the insert statement from the given event.
+    private static void setInsertValues ( PreparedStatement ps, Event event ) throws Exception
+    {
+        ps.setString( 1, event.channelName );
+        ps.setInt( 2, event.id );
+
+        DBLOBUtils.setCLOB( ps, 3, event.message );
+
+        ps.setTimestamp( 4, event.arrivalTime );
+    }
+
+
+    // Set the values of the successful-delivery update statement.
+    private static void setSuccessValues ( PreparedStatement ps, Event event, java.sql.Timestamp ts ) throws SQLException
+    {
+        ps.setTimestamp( 1, ts ); 
+        ps.setString( 2, event.channelName );
+        ps.setInt( 3, event.id );
+    }
+
+
+    // Set the values of the failed-delivery update statement.
+    private static void setErrorValues ( PreparedStatement ps, Event event ) throws SQLException
+    {
+        ps.setTimestamp( 1, event.lastErrorTime ); 
+        ps.setString( 2, event.lastErrorMessage );
+        ps.setString( 3, event.channelName );
+        ps.setInt( 4, event.id );
+    }
+
+
+    // Check the row counts of an executed batch against the number of statements 
+    // in it, allowing for drivers that don't report counts for batched statements.
+    private static void checkBatchCounts ( String sql, int[] counts, int expected, boolean exact ) 
+        throws FrameworkException
+    {
+        if ( counts.length != expected )
+        {
+            throw new FrameworkException( "Execution of batch SQL statement [" + sql + "] returned ["
+                                          + counts.length + "] results for [" + expected + "] rows." );
+        }
+
+        for ( int Ix = 0;  Ix < counts.length;  Ix ++ )
+        {
+            if ( counts[Ix] == Statement.SUCCESS_NO_INFO )
+                continue;
+
+            if ( (counts[Ix] > 1) || (exact && (counts[Ix] != 1)) )
+            {
+                String errMsg = "Execution of batch SQL statement [" + sql + "] affected [" 
+                    + counts[Ix] + "] rows.";
+
+                Debug.error( errMsg );
+
+                throw new FrameworkException( errMsg );
+            }
+        }
+    }
+
+
+    // Buffer the status update of a delivered event, and remove the event from the 
+    // in-memory buffer so that the next one can be delivered.
+    private void addPendingUpdate ( Event event, EventStatus eventStatus ) throws FrameworkException
+    {
+        if ( eventStatus == EventStatus.DELIVERY_FAILED )
+            recordError( event );
+
+        int pendingCount;
+
+        synchronized ( pendingUpdates )
+        {
+            pendingUpdates.add( new PendingUpdate( event, eventStatus ) );
+
+            pendingCount = pendingUpdates.size();
+        }
+
+        if ( Debug.isLevelEnabled( Debug.MSG_STATUS ) )
+            Debug.log( Debug.MSG_STATUS, "Buffered status update of event [" + event.describe() 
+                       + "], pending-status-update-count [" + pendingCount + "]." );
+
+        removeFromBuffer( event );
+
+        if ( pendingCount >= maxDatabaseEventLoadSize )
+            flushUpdates( );
+        else
+            flushUpdatesIfDue( );
+    }
+
+
+    // Write the buffered status updates if the oldest one has waited for the flush interval.
+    private void flushUpdatesIfDue ( ) throws FrameworkException
+    {
+        synchronized ( pendingUpdates )
+        {
+            if ( pendingUpdates.isEmpty() )
+                return;
+
+            PendingUpdate oldest = (PendingUpdate)pendingUpdates.getFirst( );
+
+            if ( (System.currentTimeMillis() - oldest.time.getTime()) < batchFlushInterval )
+                return;
+
+            flushUpdates( );
+        }
+    }
+
+
+    /**
+     * Write the buffered status updates to the database as one batch per statement type 
+     * in a single transaction.  If that fails the updates stay buffered, so that they are
+     * written by the next flush.
+     * 
+     * @exception  FrameworkException  Thrown on errors.
+     */
+    private void flushUpdates ( ) throws FrameworkException
+    {
+        synchronized ( pendingUpdates )
+        {
+            if ( pendingUpdates.isEmpty() )
+                return;
+
+            Connection dbConn = null;
+
+            PreparedStatement successPs = null;
+
+            PreparedStatement errorPs = null;
+
+            int successCount = 0;
+
+            int errorCount = 0;
+
+            boolean committed = false;
+
+            long startTime = -1;
+
+            if ( Debug.isLevelEnabled( Debug.BENCHMARK ) )
+                startTime = System.currentTimeMillis( );
+
+            try
+            {
+                dbConn = DBConnectionPool.getInstance().acquireConnection( );
+
+                Iterator iter = pendingUpdates.iterator( );
+
+                while ( iter.hasNext() )
+                {
+                    PendingUpdate update = (PendingUpdate)iter.next( );
+
+                    if ( Debug.isLevelEnabled( Debug.DB_DATA ) )
+                        Debug.log( Debug.DB_DATA, "Event being operated on in database:\n" + update.event.describe() );
+
+                    if ( update.status == EventStatus.DELIVERY_SUCCESSFUL )
+                    {
+                        if ( successPs == null )
+                            successPs = dbConn.prepareStatement( UPDATE_EVENT_SUCCESS_SQL );
+
+                        setSuccessValues( successPs, update.event, update.time );
+
+                        successPs.addBatch( );
+
+                        successCount ++;
+                    }
+                    else
+                    {
+                        if ( errorPs == null )
+                            errorPs = dbConn.prepareStatement( UPDATE_EVENT_ERROR_SQL );
+
+                        setErrorValues( errorPs, update.event );
+
+                        errorPs.addBatch( );
+
+                        errorCount ++;
+                    }
+                }
+
+                if ( Debug.isLevelEnabled( Debug.DB_DATA ) )
+                    Debug.log( Debug.DB_DATA, "\n" + LINE + "\nExecuting batches of [" + successCount + "] SQL:\n" 
+                               + UPDATE_EVENT_SUCCESS_SQL + "\nand [" + errorCount + "] SQL:\n" + UPDATE_EVENT_ERROR_SQL );
+
+                if ( successPs != null )
+                    checkBatchCounts( UPDATE_EVENT_SUCCESS_SQL, successPs.executeBatch( ), successCount, false );
+
+                if ( errorPs != null )
+                    checkBatchCounts( UPDATE_EVENT_ERROR_SQL, errorPs.executeBatch( ), errorCount, false );
+
+                DBConnectionPool.getInstance().commit( dbConn );
+
+                committed = true;
+
+                if ( Debug.isLevelEnabled( Debug.DB_DATA ) )
+                    Debug.log( Debug.DB_DATA, "Successfully committed SQL operation.\n" + LINE );
+
+                pendingUpdates.clear( );
+            }
+            catch ( SQLException sqle )
+            {
+                throw new DatabaseException( "ERROR: Could not execute SQL statement:\n" + 
+                                             DBInterface.getSQLErrorMessage(sqle) );
+            }
+            catch ( Exception e )
+            {
+                throw new DatabaseException( "ERROR: Could not execute SQL statement:\n" + 
+                                             e.toString() );
+            }
+            finally
+            {
+                if ( !committed && (dbConn != null) )
+                    rollback( dbConn );
+
+                releaseDatabaseResources( null, successPs );
+
+                releaseDatabaseResources( dbConn, errorPs );
+
+                if ( Debug.isLevelEnabled( Debug.BENCHMARK ) && (startTime > 0) )
+                {
+                    long stopTime = System.currentTimeMillis( );
+
+                    Debug.log( Debug.BENCHMARK, "ELAPSED TIME [" + (stopTime - startTime) + "] msec:  "
+                               + "SQL: Time to update [" + (successCount + errorCount) 
+                               + "] event(s) in PersistentEvent database table." );
+                }
+            }
+        }
+    }
+
+
+    // Roll back the work done on the given connection, logging any failure.
+    private static void rollback ( Connection dbConn )
+    {
+        try
+        {
+            DBConnectionPool.getInstance().rollback( dbConn );
+        }
+        catch ( Exception e )
+        {
+            Debug.warning( "Failed to roll back database connection:\n" + e.toString() );
+        }
+    }
+
+
     // Release the given database resources, if non-null.
     private static void releaseDatabaseResources ( Connection dbConn, PreparedStatement ps )
     {
@@ -634,6 +1010,23 @@ public class DatabaseEventQueue implements EventQueue
 
     private int maxDatabaseEventLoadSize = DEFAULT_LOAD_EVENT_BATCH_SIZE;
 
+    private int batchFlushInterval = DEFAULT_BATCH_FLUSH_INTERVAL;
+
+    // Buffered delivery status updates, oldest first.  Null unless batching.
+    private LinkedList pendingUpdates;
+
+    // Writes added events in batches.  Null unless batching.
+    private InsertBatcher insertBatcher;
+
+    // Number of batches of inserts that may be waiting for the writer thread.
+    private static final int MAX_PENDING_INSERT_BATCHES = 4;
+
+    // Time in msec that the writer thread waits for events before checking for shut-down.
+    private static final long INSERT_POLL_TIME = 1000;
+
+    // Time in msec to wait for pending inserts to be written at shut-down.
+    private static final long SHUTDOWN_WAIT_TIME = 30000;
+
 
     // Non-null status column values.
     private static final String ERROR_STATUS_AWAITING_RETRY = "AwaitingRetry";
@@ -713,4 +1106,346 @@ public class DatabaseEventQueue implements EventQueue
 
     private static final String LINE 
         = "===============================================================================";
+
+
+    // A buffered delivery status update.
+    private static class PendingUpdate
+    {
+        final Event event;
+
+        final EventStatus status;
+
+        final java.sql.Timestamp time = new java.sql.Timestamp( System.currentTimeMillis() );
+
+        PendingUpdate ( Event event, EventStatus status )
+        {
+            this.event = event;
+
+            this.status = status;
+        }
+    }
+
+
+    // An event waiting to be inserted by the writer thread.
+    private static class PendingInsert
+    {
+        final Event event;
+
+        private boolean done = false;
+
+        private FrameworkException error;
+
+        PendingInsert ( Event event )
+        {
+            this.event = event;
+        }
+
+        synchronized void complete ( FrameworkException error )
+        {
+            this.error = error;
+
+            done = true;
+
+            notifyAll( );
+        }
+
+        synchronized boolean isDone ( )
+        {
+            return done;
+        }
+
+        // Wait up to the given time for the insert to complete, throwing its error if it failed.
+        synchronized boolean waitUntilDone ( long waitTime ) throws FrameworkException
+        {
+            if ( !done )
+            {
+                try
+                {
+                    wait( waitTime );
+                }
+                catch ( InterruptedException e )
+                {
+                    Thread.currentThread().interrupt( );
+
+                    throw new FrameworkException( "ERROR: Interrupted while waiting for event to be inserted into the database." );
+                }
+            }
+
+            if ( done && (error != null) )
+                throw error;
+
+            return done;
+        }
+    }
+
+
+    /**
+     * Inserts the events added by supplier threads into the database on a thread of its own.
+     * Each batch holds the events that arrived while the previous batch was being written, 
+     * plus any arriving within the flush interval, up to the insert batch size.
+     */
+    private class InsertBatcher extends Thread
+    {
+        InsertBatcher ( int batchSize )
+        {
+            super( "DatabaseEventQueue-InsertBatcher" );
+
+            setDaemon( true );
+
+            this.batchSize = batchSize;
+
+            // Bound the backlog, so that suppliers are held back when the database can't keep up.
+            pending = new ArrayBlockingQueue( batchSize * MAX_PENDING_INSERT_BATCHES );
+        }
+
+
+        /**
+         * Insert the event into the database, returning once the batch containing it has been committed.
+         *
+         * @param  event  The event to add to the queue.
+         *
+         * @exception  FrameworkException  Thrown if the event could not be inserted.
+         */
+        void add ( Event event ) throws FrameworkException
+        {
+            if ( shutDown )
+                throw new FrameworkException( "ERROR: Event can't be added, as the database event queue is shutting down." );
+
+            try
+            {
+                event.id = PersistentSequence.getNextSequenceValue( SEQUENCE_NAME );
+            }
+            catch ( Exception e )
+            {
+                throw new DatabaseException( "ERROR: Could not get event identifier:\n" + e.toString() );
+            }
+
+            event.arrivalTime = new java.sql.Timestamp( System.currentTimeMillis() );
+
+            if ( Debug.isLevelEnabled( Debug.MSG_DATA ) )
+                Debug.log( Debug.MSG_DATA, "Event contents:\n" + event.message );
+
+            PendingInsert insert = new PendingInsert( event );
+
+            try
+            {
+                pending.put( insert );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt( );
+
+                throw new FrameworkException( "ERROR: Interrupted while waiting to add event to the database event queue." );
+            }
+
+            while ( !insert.waitUntilDone( INSERT_POLL_TIME ) )
+            {
+                // If the writer thread has exited without taking the event, it never will.
+                if ( !isAlive() && pending.remove( insert ) )
+                    throw new FrameworkException( "ERROR: Event can't be added, as the database event queue has shut down." );
+            }
+        }
+
+
+        /**
+         * Stop accepting events, and wait for the ones already added to be written.
+         */
+        void shutdown ( )
+        {
+            shutDown = true;
+
+            try
+            {
+                join( SHUTDOWN_WAIT_TIME );
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt( );
+            }
+
+            if ( isAlive() )
+                Debug.warning( "Database event queue writer thread is still writing [" + pending.size() 
+                               + "] pending events at shut-down." );
+        }
+
+
+        /**
+         * Get a human-readable description of the batching state.
+         *
+         * @return  A description of the batching state.
+         */
+        String describe ( )
+        {
+            return "insert-batch-size [" + batchSize + "], pending-insert-count [" + pending.size()
+                + "], insert-batches-written [" + batchCount + "], events-inserted [" + insertCount + "]";
+        }
+
+
+        public void run ( )
+        {
+            List batch = new ArrayList( batchSize );
+
+            while ( true )
+            {
+                try
+                {
+                    Object first = pending.poll( INSERT_POLL_TIME, TimeUnit.MILLISECONDS );
+
+                    if ( first == null )
+                    {
+                        if ( shutDown )
+                            break;
+
+                        continue;
+                    }
+
+                    batch.add( first );
+
+                    long deadline = System.currentTimeMillis() + batchFlushInterval;
+
+                    while ( batch.size() < batchSize )
+                    {
+                        pending.drainTo( batch, batchSize - batch.size() );
+
+                        long remaining = deadline - System.currentTimeMillis();
+
+                        if ( (batch.size() >= batchSize) || (remaining <= 0) || shutDown )
+                            break;
+
+                        Object next = pending.poll( remaining, TimeUnit.MILLISECONDS );
+
+                        if ( next == null )
+                            break;
+
+                        batch.add( next );
+                    }
+                }
+                catch ( InterruptedException e )
+                {
+                    Debug.warning( "Database event queue writer thread was interrupted." );
+                }
+
+                if ( batch.size() > 0 )
+                    writeBatch( batch );
+
+                batch.clear( );
+            }
+
+            if ( Debug.isLevelEnabled( Debug.OBJECT_LIFECYCLE ) )
+                Debug.log( Debug.OBJECT_LIFECYCLE, "Database event queue writer thread is exiting after writing ["
+                           + insertCount + "] events in [" + batchCount + "] batches." );
+        }
+
+
+        /**
+         * Insert the given events as one JDBC batch in a single transaction, and tell each 
+         * waiting caller the outcome.  If the batch fails, the events are retried one at a time, 
+         * so that one bad event doesn't fail the others.
+         *
+         * @param  batch  The events to insert.
+         */
+        private void writeBatch ( List batch )
+        {
+            Connection dbConn = null;
+
+            PreparedStatement ps = null;
+
+            boolean committed = false;
+
+            long startTime = -1;
+
+            if ( Debug.isLevelEnabled( Debug.BENCHMARK ) )
+                startTime = System.currentTimeMillis( );
+
+            try
+            {
+                dbConn = DBConnectionPool.getInstance().acquireConnection( );
+
+                if ( Debug.isLevelEnabled( Debug.DB_DATA ) )
+                    Debug.log( Debug.DB_DATA, "\n" + LINE + "\nExecuting batch of [" + batch.size() + "] SQL:\n" + INSERT_EVENT_SQL );
+
+                ps = dbConn.prepareStatement( INSERT_EVENT_SQL );
+
+                Iterator iter = batch.iterator( );
+
+                while ( iter.hasNext() )
+                {
+                    Event event = ((PendingInsert)iter.next()).event;
+
+                    if ( Debug.isLevelEnabled( Debug.DB_DATA ) )
+                        Debug.log( Debug.DB_DATA, "Event being inserted into database:\n" + event.describe() );
+
+                    setInsertValues( ps, event );
+
+                    ps.addBatch( );
+                }
+
+                checkBatchCounts( INSERT_EVENT_SQL, ps.executeBatch( ), batch.size(), true );
+
+                DBConnectionPool.getInstance().commit( dbConn );
+
+                committed = true;
+
+                if ( Debug.isLevelEnabled( Debug.DB_DATA ) )
+                    Debug.log( Debug.DB_DATA, "Successfully committed SQL operation.\n" + LINE );
+            }
+            catch ( Exception e )
+            {
+                String errMsg = "ERROR: Could not execute SQL statement:\n" + ((e instanceof SQLException) 
+                    ? DBInterface.getSQLErrorMessage( (SQLException)e ) : e.toString());
+
+                if ( dbConn != null )
+                    rollback( dbConn );
+
+                releaseDatabaseResources( dbConn, ps );
+
+                dbConn = null;
+
+                ps = null;
+
+                if ( batch.size() > 1 )
+                {
+                    Debug.warning( "Batch insert of [" + batch.size() + "] events failed, inserting them one at a time:\n" + errMsg );
+
+                    for ( int Ix = 0;  Ix < batch.size();  Ix ++ )
+                        writeBatch( batch.subList( Ix, Ix + 1 ) );
+                }
+                else
+                    ((PendingInsert)batch.get( 0 )).complete( new DatabaseException( errMsg ) );
+            }
+            finally
+            {
+                releaseDatabaseResources( dbConn, ps );
+
+                if ( Debug.isLevelEnabled( Debug.BENCHMARK ) && (startTime > 0) )
+                {
+                    long stopTime = System.currentTimeMillis( );
+
+                    Debug.log( Debug.BENCHMARK, "ELAPSED TIME [" + (stopTime - startTime) + "] msec:  "
+                               + "SQL: Time to insert [" + batch.size() + "] event(s) into PersistentEvent database table." );
+                }
+            }
+
+            if ( committed )
+            {
+                batchCount ++;
+
+                insertCount += batch.size();
+
+                for ( int Ix = 0;  Ix < batch.size();  Ix ++ )
+                    ((PendingInsert)batch.get( Ix )).complete( null );
+            }
+        }
+
+
+        private final int batchSize;
+
+        private final BlockingQueue pending;
+
+        private volatile boolean shutDown = false;
+
+        private volatile long batchCount = 0;
+
+        private volatile long insertCount = 0;
+    }
 }
@@ -555,6 +555,10 @@ public class EventChannelImpl extends EventChannelPOA
 
             Debug.error( Debug.getStackTrace( e ) );
         }
+        finally
+        {
+            flushQueue( );
+        }
         
         if (Debug.isLevelEnabled(Debug.MSG_DATA))
         {
@@ -564,6 +568,23 @@ public class EventChannelImpl extends EventChannelPOA
     }
 
 
+    /**
+     * Write out any delivery outcomes that the queue has buffered, once a round of 
+     * event pushing is done.
+     */
+    protected void flushQueue ( )
+    {
+        try
+        {
+            eventQueue.flush( );
+        }
+        catch ( Exception e )
+        {
+            Debug.error( "Failed to flush event queue of channel [" + channelName + "]:\n" + e.toString() );
+        }
+    }
+
+
     /**
      * Check to see if conditions exist indicating that an event should be delivered.
      *
@@ -85,6 +85,14 @@ public interface EventQueue
     public void noConsumersAvailable ( );
 
 
+    /**
+     * Write out any buffered changes to the state of the queue.
+     * 
+     * @exception  FrameworkException  Thrown on errors.
+     */
+    public void flush ( ) throws FrameworkException;
+
+
     /**
      * Shut down the queue;
      */
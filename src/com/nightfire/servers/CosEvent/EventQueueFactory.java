@@ -72,6 +72,9 @@ public class EventQueueFactory
     // A list of additional property names
     // that can be used to configure an event queue.
     private static String[] additionalConfigPropNames = {
-        DatabaseEventQueue.LOAD_EVENT_BATCH_SIZE_PROP
+        DatabaseEventQueue.LOAD_EVENT_BATCH_SIZE_PROP,
+        DatabaseEventQueue.BATCH_DATABASE_OPERATIONS_FLAG_PROP,
+        DatabaseEventQueue.INSERT_EVENT_BATCH_SIZE_PROP,
+        DatabaseEventQueue.BATCH_FLUSH_INTERVAL_PROP
     };
 }
@@ -169,6 +169,15 @@ public class InMemoryEventQueue implements EventQueue
     }
     
     
+    /**
+     * Write out any buffered changes to the state of the queue.
+     */
+    public void flush ( )
+    {
+        // Nothing to do here.
+    }
+    
+    
     /**
      * Shut down the queue;
      */
@@ -334,6 +334,10 @@ public abstract class ComServerBase implements Runnable
                 MetricsAgent.logGateway( metricsStartTime, drvKey, drvType + "," 
                                          + getHeaderMetrics(header) + "." + outcome );
 
+            // Hand the driver's message-processors back for reuse, if its chain allows it.
+            if ( driver != null )
+                driver.release( );
+
             // Reset customer context.
             try
             {
@@ -0,0 +1,318 @@
+/**
+ * Copyright (c) 1997 Nightfire Software, Inc. All rights reserved.
+ *
+ */
+
+package com.nightfire.spi.common.driver;
+
+import java.util.*;
+
+import com.nightfire.common.*;
+import com.nightfire.framework.util.*;
+import com.nightfire.framework.db.*;
+import com.nightfire.framework.cache.*;
+
+
+/**
+ * Cache of driver-chain templates, keyed by driver property key and type.
+ * A template holds the driver's property chain, so that it is only built
+ * once, and - for drivers configured to reuse their message-processors -
+ * a pool of message-processor trees already created from it.  Flushing
+ * the cache via the CacheManager discards all templates and their pools.
+ */
+public class DriverChainCache implements CachingObject
+{
+    /**
+     * Driver property indicating whether the driver's message-processors may be
+     * cleaned up and reused by later requests, instead of being created and
+     * initialized for every request.  Only set this on chains whose processors
+     * reset all per-request state in cleanup().  Default is 'false'.
+     */
+    public static final String REUSE_PROCESSORS_FLAG_PROP = "REUSE_PROCESSORS_FLAG";
+
+    /**
+     * Driver property giving the maximum number of idle message-processor
+     * trees to keep for the chain.
+     */
+    public static final String MAX_POOLED_CHAINS_PROP = "MAX_POOLED_CHAINS";
+
+    /**
+     * Default maximum number of idle message-processor trees kept per chain.
+     */
+    public static final int DEFAULT_MAX_POOLED_CHAINS = 10;
+
+
+    /**
+     * Get the single instance of the cache.
+     *
+     * @return  The driver-chain cache.
+     */
+    public static DriverChainCache getInstance ( )
+    {
+        return singleton;
+    }
+
+
+    /**
+     * Get the template for the given driver configuration, building it if
+     * it isn't already cached.
+     *
+     * @param  key   Driver property key.
+     * @param  type  Driver property type.
+     *
+     * @return  The driver-chain template.
+     *
+     * @exception  ProcessingException  Thrown if the property chain can't be built.
+     */
+    public Template getTemplate ( String key, String type ) throws ProcessingException
+    {
+        String name = key + ":" + type;
+
+        synchronized ( templates )
+        {
+            Template template = (Template)templates.get( name );
+
+            if ( template != null )
+                return template;
+        }
+
+        // Build the property chain outside of the lock, so that a slow database
+        // doesn't hold up requests for chains that are already cached.
+        Hashtable props = null;
+
+        try
+        {
+            PropertyChainUtil propChain = new PropertyChainUtil( );
+
+            props = propChain.buildPropertyChains( key, type );
+        }
+        catch ( Exception e )
+        {
+            throw new ProcessingException( "ERROR: Could not build property chain for driver key ["
+                                           + key + "], type [" + type + "]:\n" + e.toString() );
+        }
+
+        synchronized ( templates )
+        {
+            Template template = (Template)templates.get( name );
+
+            // Another thread may have built the same chain in the meantime.
+            if ( template == null )
+            {
+                template = new Template( name, props );
+
+                templates.put( name, template );
+
+                if ( Debug.isLevelEnabled( Debug.SYSTEM_CONFIG ) )
+                    Debug.log( Debug.SYSTEM_CONFIG, "Cached driver-chain template " + template.describe() );
+            }
+
+            return template;
+        }
+    }
+
+
+    /**
+     * Discard all cached templates, along with any idle message-processors
+     * created from them.  Processors in use are discarded when released.
+     *
+     * @exception  FrameworkException  Thrown on errors.
+     */
+    public void flushCache ( ) throws FrameworkException
+    {
+        synchronized ( templates )
+        {
+            if ( Debug.isLevelEnabled( Debug.SYSTEM_CONFIG ) )
+                Debug.log( Debug.SYSTEM_CONFIG, "Flushing [" + templates.size() + "] driver-chain templates:\n"
+                           + describe() );
+
+            Iterator iter = templates.values().iterator( );
+
+            while ( iter.hasNext() )
+                ((Template)iter.next()).flush( );
+
+            templates.clear( );
+        }
+    }
+
+
+    /**
+     * Describe the cached templates.
+     *
+     * @return  Human-readable description of the cache contents.
+     */
+    public String describe ( )
+    {
+        StringBuffer sb = new StringBuffer( );
+
+        synchronized ( templates )
+        {
+            Iterator iter = templates.values().iterator( );
+
+            while ( iter.hasNext() )
+            {
+                sb.append( '\t' );
+                sb.append( ((Template)iter.next()).describe() );
+                sb.append( '\n' );
+            }
+        }
+
+        return( sb.toString() );
+    }
+
+
+    /**
+     * A driver chain's configuration, and its pool of idle message-processor trees.
+     */
+    public static class Template
+    {
+        /**
+         * Get the driver properties.  The returned object is shared
+         * by all drivers using the template, and must not be modified.
+         *
+         * @return  The driver properties.
+         */
+        public Hashtable getProperties ( )
+        {
+            return properties;
+        }
+
+
+        /**
+         * Test whether message-processors created from this template may be reused.
+         *
+         * @return  'true' if processors may be reused, otherwise 'false'.
+         */
+        public boolean isReuseEnabled ( )
+        {
+            return reuseEnabled;
+        }
+
+
+        /**
+         * Get an idle message-processor tree created from this template.
+         *
+         * @return  Map of processor names to MessageProcessorTree nodes,
+         *          or null if none are idle.
+         */
+        synchronized Map acquireProcessors ( )
+        {
+            if ( idle.isEmpty() )
+            {
+                created ++;
+
+                return null;
+            }
+
+            reused ++;
+
+            return( (Map)idle.removeFirst( ) );
+        }
+
+
+        /**
+         * Return a message-processor tree to the pool.  The tree's
+         * processors must already have been cleaned up.
+         *
+         * @param  processors  Map of processor names to MessageProcessorTree nodes.
+         */
+        synchronized void releaseProcessors ( Map processors )
+        {
+            if ( flushed || (idle.size() >= maxPooled) )
+                return;
+
+            // Forget the data flow of the previous request.
+            Iterator iter = processors.values().iterator( );
+
+            while ( iter.hasNext() )
+                ((MessageProcessorTree)iter.next()).clear( );
+
+            idle.addFirst( processors );
+        }
+
+
+        /**
+         * Describe the template and its pool usage.
+         *
+         * @return  Human-readable description.
+         */
+        public synchronized String describe ( )
+        {
+            return( "Driver-chain [" + name + "], reuse-processors [" + reuseEnabled
+                    + "], idle [" + idle.size() + "/" + maxPooled + "], created ["
+                    + created + "], reused [" + reused + "]." );
+        }
+
+
+        private Template ( String name, Hashtable properties ) throws ProcessingException
+        {
+            this.name = name;
+
+            this.properties = properties;
+
+            try
+            {
+                String temp = (String)properties.get( REUSE_PROCESSORS_FLAG_PROP );
+
+                if ( StringUtils.hasValue( temp ) )
+                    reuseEnabled = StringUtils.getBoolean( temp );
+
+                temp = (String)properties.get( MAX_POOLED_CHAINS_PROP );
+
+                if ( StringUtils.hasValue( temp ) )
+                    maxPooled = Integer.parseInt( temp );
+            }
+            catch ( Exception e )
+            {
+                throw new ProcessingException( "ERROR: Invalid value for driver property ["
+                                               + REUSE_PROCESSORS_FLAG_PROP + "] or [" + MAX_POOLED_CHAINS_PROP
+                                               + "] in driver-chain [" + name + "]:\n" + e.toString() );
+            }
+        }
+
+
+        private synchronized void flush ( )
+        {
+            flushed = true;
+
+            idle.clear( );
+        }
+
+
+        private final String name;
+
+        private final Hashtable properties;
+
+        private boolean reuseEnabled = false;
+
+        private int maxPooled = DEFAULT_MAX_POOLED_CHAINS;
+
+        // Idle message-processor trees, most recently used first.
+        private final LinkedList idle = new LinkedList( );
+
+        private boolean flushed = false;
+
+        private long created = 0;
+
+        private long reused = 0;
+    }
+
+
+    private DriverChainCache ( )
+    {
+        try
+        {
+            CacheManager.getRegistrar().register( this );
+        }
+        catch ( Exception e )
+        {
+            Debug.warning( e.toString() );
+        }
+    }
+
+
+    // Templates keyed by "<driver-key>:<driver-type>".
+    private final Map templates = new HashMap( );
+
+    private static final DriverChainCache singleton = new DriverChainCache( );
+}
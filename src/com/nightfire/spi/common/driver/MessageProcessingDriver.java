@@ -279,6 +279,8 @@ public class MessageProcessingDriver
 
                 Debug.log( Debug.UNIT_TEST, "\nRESPONSE:\n" + result );
 
+                driver.release( );
+
                 Performance.logMemoryUsage( Debug.UNIT_TEST, "After driver process() call." );
             }
 
@@ -412,6 +414,9 @@ public class MessageProcessingDriver
             Debug.log( Debug.SYSTEM_CONFIG, "Setting properties on driver ..." );
 
         properties = props;
+
+        // Processors built from other properties can't be shared with the cached chain.
+        template = null;
 	}
 
 
@@ -463,9 +468,12 @@ public class MessageProcessingDriver
 
 		try
         {
-            PropertyChainUtil propChain = new PropertyChainUtil( );
+            // The property chain is only built once per driver configuration.
+            DriverChainCache.Template chainTemplate = DriverChainCache.getInstance().getTemplate( key, type );
+
+			setProperties( chainTemplate.getProperties() );
 
-			setProperties( propChain.buildPropertyChains( key, type ) );
+            template = chainTemplate;
 		}
 		catch ( Exception e )
         {
@@ -626,6 +634,10 @@ public class MessageProcessingDriver
 
         ThreadMonitor.ThreadInfo tmti = null;
 
+        boolean completed = false;
+
+        reusable = false;
+
         try
         {
            tmti = ThreadMonitor.start( "Executing message-processing driver for configuration ["
@@ -719,6 +731,8 @@ public class MessageProcessingDriver
                     Debug.log( Debug.MSG_STATUS, "Committing all work performed against context." );
 
                 context.commit( );
+
+                completed = true;
             }
         }
         catch ( Exception e )
@@ -801,6 +815,9 @@ public class MessageProcessingDriver
             // Tell each message-processor to clean up after itself.
             cleanupProcessors( );
 
+            // Only processors that finished a request cleanly are candidates for reuse.
+            reusable = completed;
+
             if ( Debug.isLevelEnabled ( Debug.BENCHMARK ) )
                 stopTimer( Debug.BENCHMARK, startTime, "Time for driver to process request ["
                            + driverConfigKey + ":" + driverConfigType + "]." );
@@ -827,6 +844,42 @@ public class MessageProcessingDriver
     }
 
 
+    /**
+     * Release the driver's message-processors once the driver is no longer
+     * needed.  If the driver's configuration allows processor reuse, and the
+     * last request completed without errors, the processors are returned to
+     * the cached driver chain for use by later requests.  The driver can't
+     * process any further requests after this call.
+     */
+    public void release ( )
+    {
+        if ( reusable && isPoolable() )
+        {
+            if(Debug.isLevelEnabled(Debug.MSG_LIFECYCLE))
+                Debug.log( Debug.MSG_LIFECYCLE, "Returning message-processors to cached driver chain ["
+                           + driverConfigKey + ":" + driverConfigType + "]." );
+
+            template.releaseProcessors( processors );
+        }
+
+        processors = new HashMap( );
+
+        reusable = false;
+    }
+
+
+    /**
+     * Test whether this driver's processors come from, and can be returned to, a cached driver chain.
+     *
+     * @return  'true' if processors can be pooled, otherwise 'false'.
+     */
+    private final boolean isPoolable ( )
+    {
+        // Processors created without loading their configuration differ from the cached chain's.
+        return( (template != null) && loadConfig && template.isReuseEnabled() );
+    }
+
+
     /**
      * Pop next value from the linked-list stack of values to be processed.
      *
@@ -1054,6 +1107,22 @@ public class MessageProcessingDriver
 	 */
 	private void createProcessors ( ) throws ProcessingException
     {
+        // Use an idle set of processors from the cached chain, if it allows reuse.
+        if ( isPoolable() )
+        {
+            Map pooled = template.acquireProcessors( );
+
+            if ( pooled != null )
+            {
+                if(Debug.isLevelEnabled(Debug.MSG_LIFECYCLE))
+                    Debug.log(Debug.MSG_LIFECYCLE, "Reusing [" + pooled.size() + "] cached message-processors." );
+
+                processors = pooled;
+
+                return;
+            }
+        }
+
         if(Debug.isLevelEnabled(Debug.MSG_LIFECYCLE))
             Debug.log(Debug.MSG_LIFECYCLE, "Creating message-processors ..." );
 
@@ -1827,6 +1896,12 @@ public class MessageProcessingDriver
     private String driverConfigKey;
     private String driverConfigType;
 
+    // The cached driver chain that the driver's properties came from.
+    private DriverChainCache.Template template;
+
+    // Indicates that the processors completed their last request without errors.
+    private boolean reusable = false;
+
     private static final String BOLD_LINE =
         "\n===============================================================================\n";
 }
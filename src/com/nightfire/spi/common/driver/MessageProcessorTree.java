@@ -315,6 +315,19 @@ class MessageProcessorTree
     }
     
 
+    /**
+     * Forget all data flow through this node, so that it can be used by another request.
+     */
+    final void clear ( )
+    {
+        children.clear( );
+
+        meDone = false;
+
+        childrenDone = false;
+    }
+
+
     /**
      * Reset the current message-processor back to 'active'.
      */
@@ -5,6 +5,9 @@
 package com.nightfire.spi.neustar_soa.adapter;
 
 import java.sql.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 
 
 import com.nightfire.framework.db.DatabaseException;
@@ -67,6 +70,24 @@ public class LastNotificationTime {
    */
    private String select;
 
+   /**
+   * In write-behind mode, this holds the latest pending notification time
+   * for each SPID, region and type, keyed by getKey(). Access is
+   * synchronized on the map itself.
+   */
+   private volatile Map pendingTimes = null;
+
+   /**
+   * This lock is held while pending times are written to the database, so
+   * that a read waits for a flush that is in progress.
+   */
+   private final Object flushLock = new Object();
+
+   /**
+   * The thread that periodically flushes pending times in write-behind mode.
+   */
+   private FlushThread flushThread = null;
+
    /**
    * Constructor
    *
@@ -149,6 +170,9 @@ public class LastNotificationTime {
 
       java.util.Date last = null;
 
+      // make sure the table is up to date before it is read
+      flush();
+
       if( Debug.isLevelEnabled(Debug.DB_STATUS) ){
 
          Debug.log(Debug.DB_STATUS,
@@ -329,6 +353,54 @@ public class LastNotificationTime {
                                         int type)
                                         throws DatabaseException{
 
+      if( pendingTimes != null ){
+
+         String key = getKey(customerSPID, region, type);
+
+         synchronized( pendingTimes ){
+
+            PendingTime pending = (PendingTime) pendingTimes.get(key);
+
+            if( pending == null ){
+
+               pendingTimes.put(key, new PendingTime(customerSPID,
+                                                     region,
+                                                     newTime,
+                                                     type));
+
+            }
+            else if( newTime.after(pending.time) ){
+
+               pending.time = newTime;
+
+            }
+
+         }
+
+         return;
+
+      }
+
+      writeLastNotificationTime(customerSPID, region, newTime, type);
+
+   }
+
+   /**
+   * Writes the last notification time for the given SPID, region and type
+   * to the database, replacing the current value.
+   *
+   * @param customerSPID the customer ID
+   * @param region the String version of the numeric region code.
+   * @param newTime the new last notification time for the given SPID and
+   *                region.
+   * @param type the type of notification time.
+   */
+   private void writeLastNotificationTime(String customerSPID,
+                                          String region,
+                                          java.util.Date newTime,
+                                          int type)
+                                          throws DatabaseException{
+
 
       if( Debug.isLevelEnabled(Debug.DB_STATUS) ){
 
@@ -479,6 +551,228 @@ public class LastNotificationTime {
   
 		   
 
+   /**
+   * Switches to write-behind mode. Instead of writing every new notification
+   * time to the database, only the latest time for each SPID, region and
+   * type is kept in memory and written every flushInterval ms. Pending
+   * times are also written before any last notification time is read,
+   * and by shutdown().
+   *
+   * @param flushInterval the interval in ms between flushes.
+   */
+   public synchronized void startWriteBehind(long flushInterval){
+
+      if( flushThread != null ){
+         return;
+      }
+
+      pendingTimes = new HashMap();
+
+      flushThread = new FlushThread(flushInterval);
+      flushThread.start();
+
+   }
+
+   /**
+   * Writes any pending notification times to the database. This does
+   * nothing unless write-behind mode is enabled. A time that cannot be
+   * written is kept pending and retried on the next flush.
+   */
+   public void flush(){
+
+      if( pendingTimes == null ){
+         return;
+      }
+
+      synchronized( flushLock ){
+
+         Map times;
+
+         synchronized( pendingTimes ){
+
+            if( pendingTimes.isEmpty() ){
+               return;
+            }
+
+            times = new HashMap(pendingTimes);
+            pendingTimes.clear();
+
+         }
+
+         if( Debug.isLevelEnabled(Debug.DB_STATUS) ){
+
+            Debug.log(Debug.DB_STATUS,
+                      "Flushing ["+times.size()+
+                      "] pending last notification times.");
+
+         }
+
+         Iterator entries = times.entrySet().iterator();
+
+         while( entries.hasNext() ){
+
+            Map.Entry entry = (Map.Entry) entries.next();
+            PendingTime pending = (PendingTime) entry.getValue();
+
+            try{
+
+               writeLastNotificationTime(pending.spid,
+                                         pending.region,
+                                         pending.time,
+                                         pending.type);
+
+            }
+            catch(Exception ex){
+
+               Debug.error("Could not write last notification time ["+
+                           pending.time+"] for SPID ["+pending.spid+
+                           "] and region ["+pending.region+"]: "+ex);
+
+               synchronized( pendingTimes ){
+
+                  PendingTime newer =
+                     (PendingTime) pendingTimes.get(entry.getKey());
+
+                  if( newer == null ){
+                     pendingTimes.put(entry.getKey(), pending);
+                  }
+                  else if( pending.time.after(newer.time) ){
+                     newer.time = pending.time;
+                  }
+
+               }
+
+            }
+
+         }
+
+      }
+
+   }
+
+   /**
+   * Stops the write-behind flush thread, if any, and writes any pending
+   * notification times to the database.
+   */
+   public void shutdown(){
+
+      FlushThread thread;
+
+      synchronized(this){
+
+         thread = flushThread;
+         flushThread = null;
+
+      }
+
+      if( thread != null ){
+         thread.kill();
+      }
+
+      flush();
+
+   }
+
+   /**
+   * Builds the key of the pending time for a SPID, region and type.
+   */
+   private static String getKey(String customerSPID, String region, int type){
+
+      return customerSPID + ":" + region + ":" + type;
+
+   }
+
+   /**
+   * A notification time waiting to be written in write-behind mode.
+   */
+   private static class PendingTime {
+
+      final String spid;
+
+      final String region;
+
+      final int type;
+
+      java.util.Date time;
+
+      PendingTime(String spid, String region, java.util.Date time, int type){
+
+         this.spid = spid;
+         this.region = region;
+         this.time = time;
+         this.type = type;
+
+      }
+
+   }
+
+   /**
+   * This thread wakes up every flush interval to write the pending
+   * notification times to the database.
+   */
+   private class FlushThread extends Thread {
+
+      /**
+      * The sleep interval in ms.
+      */
+      private long sleep;
+
+      /**
+      * This flag is used to keep the run() method looping. When set to
+      * false (by the kill() method), the run() method will exit.
+      */
+      private volatile boolean alive = true;
+
+      public FlushThread(long sleepIntervalInMS){
+
+         super("LastNotificationTimeFlush");
+         setDaemon(true);
+         sleep = sleepIntervalInMS;
+
+      }
+
+      /**
+      * This will cause the run method to exit.
+      */
+      public void kill(){
+
+         alive = false;
+         interrupt();
+
+      }
+
+      public void run(){
+
+         Debug.log(Debug.NORMAL_STATUS,
+                   "Last notification time flush thread started. "+
+                   "Flush interval is ["+sleep+"] ms.");
+
+         while( alive ){
+
+            try{
+
+               Thread.sleep(sleep);
+
+            }
+            catch(InterruptedException ex){
+
+               // woken up by kill()
+
+            }
+
+            if( alive ){
+               flush();
+            }
+
+         }
+
+         Debug.log(Debug.NORMAL_STATUS,
+                   "Last notification time flush thread exiting.");
+
+      }
+
+   }
+
    /**
    * Used for testing. This queries the last notification time
    * based on a SPID and region.
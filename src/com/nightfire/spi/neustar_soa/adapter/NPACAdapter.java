@@ -6,6 +6,7 @@ package com.nightfire.spi.neustar_soa.adapter;
 
 import com.nightfire.spi.neustar_soa.adapter.handler.*;
 import com.nightfire.spi.neustar_soa.queue.NPACQueueUtils;
+import com.nightfire.spi.neustar_soa.queue.RegionStatusCache;
 import com.nightfire.spi.neustar_soa.utils.SOAQueryConstants;
 
 import java.util.Map;
@@ -240,6 +241,10 @@ public class NPACAdapter{
                // create new session for this primary SPID
                session = new Session( primarySPID );
 
+               // keep the pollers' cached region status up to date
+               session.addAssociationListener(
+                  RegionStatusCache.getInstance() );
+
                // add session mapping
                primaryToSession.put( primarySPID, session );
 
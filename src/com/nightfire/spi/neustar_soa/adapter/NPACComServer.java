@@ -25,7 +25,7 @@ import com.nightfire.framework.util.Debug;
 import com.nightfire.framework.util.FrameworkException;
 import com.nightfire.framework.util.StringUtils;
 
-import com.nightfire.spi.neustar_soa.adapter.smartsockets.Receiver;
+import com.nightfire.spi.neustar_soa.adapter.smartsockets.RejectingReceiver;
 import com.nightfire.spi.neustar_soa.adapter.smartsockets.NPACReceiver;
 import com.nightfire.spi.neustar_soa.queue.NPACQueueUtils;
 import com.nightfire.spi.neustar_soa.utils.SOAQueryConstants;
@@ -45,7 +45,7 @@ import com.nightfire.spi.neustar_soa.utils.TimeZoneUtil;
 * reply notifications, etc. that are required by the NPAC OSS Gateway.
 */
 public class NPACComServer extends ComServerBase
-                           implements Receiver{
+                           implements RejectingReceiver{
   
    /**
    * The name of the SmartSockets' project in which the NPAC OSS Gateway
@@ -115,6 +115,17 @@ public class NPACComServer extends ComServerBase
    public static final String DEFAULT_LAST_NOTIFICATION_TIME_TABLE =
                                    "LAST_NPAC_RESPONSE_TIME";
 
+   /**
+   * This optional property is the interval, in seconds, at which last
+   * notification times are written to the LAST_NOTIFICATION_TIME_TABLE.
+   * When set, only the latest time per SPID, region and type is written
+   * each interval instead of one write per notification. Pending times
+   * are always written before recovery reads them and on shutdown.
+   * By default, every notification time is written as it arrives.
+   */
+   public static final String LAST_NOTIFICATION_TIME_FLUSH_INTERVAL_PROP =
+                                   "LAST_NOTIFICATION_TIME_FLUSH_INTERVAL";
+
    /**
    * This property contains the name of the default primary SPID that
    * will get associated with a secondary SPID if it does not have
@@ -236,6 +247,38 @@ public class NPACComServer extends ComServerBase
    */
    private static final int DEFAULT_WAITING_THREAD_COUNT = 20;
 
+   /**
+   * This optional property indicates the maximum number of incoming
+   * messages queued for the worker threads. A value of 0 means the
+   * queue is unbounded.
+   */
+   public static final String NOTIFICATION_QUEUE_SIZE_PROP
+                                 = "NOTIFICATION_QUEUE_SIZE";
+
+   /**
+   * This is the default maximum number of queued incoming messages.
+   */
+   private static final int DEFAULT_NOTIFICATION_QUEUE_SIZE = 10000;
+
+   /**
+   * This optional property indicates what happens to an incoming message
+   * when the queue is full: CALLER_RUNS (the default) processes it in the
+   * receiver thread, so that no more messages are read until it is done,
+   * BLOCK makes the receiver thread wait for room in the queue, and REJECT
+   * NACKs notifications, so that the NPAC Gateway sends them again later.
+   */
+   public static final String NOTIFICATION_REJECTION_POLICY_PROP
+                                 = "NOTIFICATION_REJECTION_POLICY";
+
+   /**
+   * This optional property indicates whether incoming messages for the
+   * same SPID are processed one at a time, in the order they were
+   * received. Messages for different SPIDs are still processed in
+   * parallel. Default is false.
+   */
+   public static final String ORDER_NOTIFICATIONS_BY_SPID_PROP
+                                 = "ORDER_NOTIFICATIONS_BY_SPID";
+
    /**
     * property based on which records will be deleted from npac_queue table
     */
@@ -414,6 +457,11 @@ public class NPACComServer extends ComServerBase
                                           DEFAULT_RECOVERY_PADDING,
                                           errorBuffer );
 
+               long lastNotificationFlushInterval =
+                  getPropertyAsMs( LAST_NOTIFICATION_TIME_FLUSH_INTERVAL_PROP,
+                                   0,
+                                   errorBuffer );
+
                if( errorBuffer.length() > 0 ){
 
                   throw new ProcessingException( errorBuffer.toString() );
@@ -432,6 +480,11 @@ public class NPACComServer extends ComServerBase
                }
                lastNotificationTime = new LastNotificationTime( tableName );
 
+               if( lastNotificationFlushInterval > 0 ){
+                  lastNotificationTime.startWriteBehind(
+                                          lastNotificationFlushInterval );
+               }
+
                // check for the optional work queue properties
                long threadWait = DEFAULT_THREAD_WAIT_TIME;
                String prop = getPropertyValue(THREAD_WAIT_TIME_PROP);
@@ -482,9 +535,31 @@ public class NPACComServer extends ComServerBase
                }
 
 
+               int notificationQueueSize = DEFAULT_NOTIFICATION_QUEUE_SIZE;
+               prop = getPropertyValue(NOTIFICATION_QUEUE_SIZE_PROP);
+               if( prop != null ){
+
+                  try{
+                     notificationQueueSize = Integer.parseInt(prop);
+                  }
+                  catch(NumberFormatException nfex){
+                     Debug.error("The value ["+prop+"] for property ["+
+                                 NOTIFICATION_QUEUE_SIZE_PROP+
+                                 "] is not a valid numeric value.");
+                  }
+
+               }
+
                smartSocketsThreads = new WorkQueue(threadWait,
                                                    idleThreadCount,
-                                                   idleThreadCount*2);
+                                                   idleThreadCount*2,
+                                                   notificationQueueSize,
+                                                   getPropertyValue(NOTIFICATION_REJECTION_POLICY_PROP));
+
+               prop = getPropertyValue(ORDER_NOTIFICATIONS_BY_SPID_PROP);
+               if( prop != null ){
+                  smartSocketsThreads.setLaneOrdering( StringUtils.getBoolean(prop, false) );
+               }
 
                // initialize receiver(s) to listen for
                // messages from the NPAC
@@ -1555,6 +1630,79 @@ public class NPACComServer extends ComServerBase
 
    }
 
+   /**
+   * This is called by a receiver when the work queue for incoming messages
+   * is full. Notifications are NACKed with a failed NotificationReply (or
+   * DownloadReply for network notifications), so that the NPAC Gateway
+   * sends them again later. Other messages, such as replies and keep
+   * alives, can't be sent again, so they are processed in this thread.
+   *
+   * @param notification the XML message that could not be queued.
+   */
+   public void reject(String notification){
+
+      String notificationType = null;
+      String sessionID = null;
+      String invokeID = null;
+      String customerID = null;
+
+      try{
+
+         XMLMessageParser parsedNotification = new XMLMessageParser(notification);
+
+         notificationType =
+            parsedNotification.getNode(NPACConstants.NOTIFICATION_TYPE_NODE).getNodeName();
+
+         sessionID = parsedNotification.getTextValue(NPACConstants.SESSION_ID);
+         invokeID = parsedNotification.getTextValue(NPACConstants.INVOKE_ID);
+         customerID = getCustomerID(parsedNotification);
+
+      }
+      catch(MessageException mex){
+
+         Debug.error("Could not parse rejected message. It will be processed now:\n"+
+                     mex.toString());
+
+      }
+
+      if( adapter == null || notificationType == null ){
+
+         process(notification);
+
+      }
+      else if( isNetworkNotification(notificationType) ){
+
+         Debug.warning("Work queue is full. NACKing notification with invoke ID ["+
+                       invokeID+"].\n"+smartSocketsThreads.describe());
+
+         adapter.sendFailureDownloadReply(invokeID,
+                                          sessionID,
+                                          customerID,
+                                          NPACConstants.PROCESSING_FAILURE_ERROR_CODE,
+                                          "SOA is too busy to process the notification.");
+
+      }
+      else if( notificationType.endsWith(NPACConstants.NOTIFICATION_SUFFIX) &&
+               !adapter.notificationHandlerExists(invokeID) ){
+
+         Debug.warning("Work queue is full. NACKing notification with invoke ID ["+
+                       invokeID+"].\n"+smartSocketsThreads.describe());
+
+         adapter.sendFailureNotificationReply(invokeID,
+                                              sessionID,
+                                              customerID,
+                                              NPACConstants.PROCESSING_FAILURE_ERROR_CODE,
+                                              "SOA is too busy to process the notification.");
+
+      }
+      else{
+
+         process(notification);
+
+      }
+
+   }
+
    public void processMessage(String message){
       try{
          super.process("", message);
@@ -1644,6 +1792,11 @@ public class NPACComServer extends ComServerBase
          keepAliveThread.kill();
       }
 
+      // write any last notification times that are still pending
+      if( lastNotificationTime != null ){
+         lastNotificationTime.shutdown();
+      }
+
       synchronized(NPACComServer.class){
 
          if(adapter != null){
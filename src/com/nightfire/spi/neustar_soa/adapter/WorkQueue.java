@@ -5,71 +5,124 @@
 package com.nightfire.spi.neustar_soa.adapter;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.nightfire.framework.util.Debug;
+import com.nightfire.framework.util.Histogram;
 
 /**
 * This is a queue of Runnable implementations. Runnables added to the
 * queue are dequeued by worker threads and executed.
+*
+* The queue may be bounded. When it is full, the configured rejection
+* policy decides what happens to a new Runnable: it is run in the
+* enqueuing thread (CALLER_RUNS), which slows down the producer, the
+* enqueuing thread waits for room (BLOCK), or the Runnable is rejected
+* (REJECT) by calling its rejected() method if it implements Rejectable.
+* A Runnable that can't be rejected is run in the enqueuing thread.
+*
+* Runnables may be enqueued with a lane key, such as a SPID. If lane
+* ordering is enabled, Runnables with the same key are run one at a time
+* in the order they were enqueued, while other lanes run in parallel.
 */
-public class WorkQueue implements Runnable {
+public class WorkQueue {
+
+   /**
+    * Rejection policy that runs the Runnable in the enqueuing thread
+    * when the queue is full.
+    */
+   public static final String CALLER_RUNS = "CALLER_RUNS";
+
+   /**
+    * Rejection policy that makes the enqueuing thread wait until there
+    * is room in the queue.
+    */
+   public static final String BLOCK = "BLOCK";
+
+   /**
+    * Rejection policy that rejects the Runnable when the queue is full.
+    */
+   public static final String REJECT = "REJECT";
+
+   /**
+    * A Runnable that can be told that it was rejected because the
+    * queue was full, for example to NACK the message it would process.
+    */
+   public interface Rejectable extends Runnable {
+
+      /**
+       * Called in the enqueuing thread, instead of run(), when this
+       * Runnable is rejected.
+       */
+      public void rejected();
+
+   }
 
    /**
    * This is a static counter used in giving each thread a
    * unique ID number.
    */
-   private static int workerThreadID = 0;
+   private static AtomicInteger workerThreadID = new AtomicInteger();
 
    /**
-   * This list is used as the runnable queue implementation.
+   * This executes the queued Runnables.
    */
-   private List queue = new LinkedList( );
+   private ThreadPoolExecutor executor;
 
-   // The current number of items in the queue list.
-   private volatile int queueSize = 0;
+   /**
+   * One permit per Runnable that may be queued. This is null if the
+   * queue is unbounded.
+   */
+   private Semaphore queueSlots;
 
+   /**
+   * The maximum number of queued Runnables, or 0 if unbounded.
+   */
+   private int maxQueueSize;
 
    /**
-   * This is the number of threads that are waiting for work.
+   * The rejection policy, used when the queue is full.
    */
-   private volatile int availableThreadCount = 0;
+   private String rejectionPolicy;
 
    /**
-   * This is the number of threads that are currently executing a
-   * Runnable instance.
+   * Whether Runnables with the same lane key are run in order.
    */
-   private volatile int occupiedThreadCount = 0;
+   private volatile boolean laneOrdering = false;
 
    /**
-    * The total number of threads created.
-    */
-   private volatile int createdThreadCount = 0;
+   * The lanes that currently have Runnables queued or running,
+   * keyed by lane key. Guarded by itself.
+   */
+   private Map lanes = new HashMap();
 
    /**
-   * This is the maximum time that a thread should wait before
-   * waking up and comtemplating offing itself.
+   * The current number of queued Runnables, including those waiting in lanes.
    */
-   private long maxWaitTime;
+   private AtomicInteger queueSize = new AtomicInteger();
 
    /**
-   * This is the maximum number of threads allowed to be waiting
-   * around will nothing to do. If a worker thread's max wait time
-   * expires, and it discovers that the number of waiting threads
-   * exceeds the maxWaitingThreads, then the worker thread will
-   * consider itself no longer of much use, and it will exit.
+   * This is the number of threads that are currently executing a
+   * Runnable instance.
    */
-   private int maxWaitingThreads;
+   private AtomicInteger occupiedThreadCount = new AtomicInteger();
 
    /**
-    * The maximum number of threads to create.
-    */
-   private int maxThreads;
+   * The number of Runnables that were run in the enqueuing thread, or
+   * rejected, because the queue was full.
+   */
+   private AtomicLong callerRunsCount = new AtomicLong();
+
+   private AtomicLong rejectedCount = new AtomicLong();
 
    /**
-   * The run method will continue to loop while this flag is set to true.
-   * kill() sets this to false.
+   * How long Runnables waited in the queue, and how long they ran.
    */
-   private boolean alive = true;
+   private Histogram queueWaitTimes = new Histogram("Queue wait", "msec");
+
+   private Histogram runTimes = new Histogram("Run time", "msec");
 
    /**
    * The contructor. This uses a defalt max wait time of 10 minutes.
@@ -88,27 +141,66 @@ public class WorkQueue implements Runnable {
 
       this(maxWaitTime, maxWaitingThreads, maxWaitingThreads);
 
-      if( Debug.isLevelEnabled(Debug.SYSTEM_CONFIG) ){
+   }
 
-         Debug.log(Debug.SYSTEM_CONFIG,
-                   "Worker thread queue initialized:\n\tMaximum Wait Time ["+
-                   maxWaitTime+"] ms\n\tMaximum Idle Threads ["+
-                   maxWaitingThreads+"]\n");
+   /**
+   * The contructor. The queue is unbounded.
+   */
+   public WorkQueue(long maxWaitTime,
+                    int maxWaitingThreads,
+                    int maxThreads){
 
-      }
+      this(maxWaitTime, maxWaitingThreads, maxThreads, 0, CALLER_RUNS);
 
    }
 
    /**
    * The contructor.
+   *
+   * @param maxWaitTime how long, in ms, an idle worker thread waits for
+   *                    work before exiting.
+   * @param maxWaitingThreads only reported. Idle threads exit once
+   *                          maxWaitTime has passed.
+   * @param maxThreads the maximum number of worker threads.
+   * @param maxQueueSize the maximum number of queued Runnables, or
+   *                     0 for an unbounded queue.
+   * @param rejectionPolicy CALLER_RUNS, BLOCK or REJECT. If null,
+   *                        CALLER_RUNS is used.
    */
    public WorkQueue(long maxWaitTime,
                     int maxWaitingThreads,
-                    int maxThreads){
+                    int maxThreads,
+                    int maxQueueSize,
+                    String rejectionPolicy){
 
-      this.maxWaitTime = maxWaitTime;
-      this.maxWaitingThreads = maxWaitingThreads;
-      this.maxThreads = maxThreads;
+      maxThreads = Math.max(maxThreads, 1);
+
+      this.maxQueueSize = maxQueueSize;
+
+      if( BLOCK.equalsIgnoreCase(rejectionPolicy) ){
+         this.rejectionPolicy = BLOCK;
+      }
+      else if( REJECT.equalsIgnoreCase(rejectionPolicy) ){
+         this.rejectionPolicy = REJECT;
+      }
+      else{
+         this.rejectionPolicy = CALLER_RUNS;
+      }
+
+      if( maxQueueSize > 0 ){
+         queueSlots = new Semaphore(maxQueueSize);
+      }
+
+      // A thread is created for each Runnable until there are maxThreads,
+      // as before. Idle threads exit once maxWaitTime has passed.
+      executor = new ThreadPoolExecutor(maxThreads,
+                                        maxThreads,
+                                        Math.max(maxWaitTime, 1),
+                                        TimeUnit.MILLISECONDS,
+                                        new LinkedBlockingQueue(),
+                                        new WorkerThreadFactory());
+
+      executor.allowCoreThreadTimeOut(true);
 
       if( Debug.isLevelEnabled(Debug.SYSTEM_CONFIG) ){
 
@@ -116,12 +208,26 @@ public class WorkQueue implements Runnable {
                    "Worker thread queue initialized:\n\tMaximum Wait Time ["+
                    maxWaitTime+"] ms\n\tMaximum Number of Threads ["+
                    maxThreads+"]\n\tMaximum Idle Threads ["+
-                   maxWaitingThreads+"]\n");
+                   maxWaitingThreads+"]\n\tMaximum Queue Size ["+
+                   ( maxQueueSize > 0 ? String.valueOf(maxQueueSize) : "unbounded" )+
+                   "]\n\tRejection Policy ["+this.rejectionPolicy+"]\n");
 
       }
 
    }
 
+   /**
+   * Sets whether Runnables enqueued with the same lane key are run one
+   * at a time, in order. Default is false.
+   *
+   * @param ordered boolean
+   */
+   public void setLaneOrdering(boolean ordered){
+
+      laneOrdering = ordered;
+
+   }
+
    /**
    * Adds the given Runnable to the queue.
    *
@@ -129,188 +235,244 @@ public class WorkQueue implements Runnable {
    */
    public void enqueue(Runnable runMe){
 
+      enqueue(null, runMe);
+
+   }
+
+   /**
+   * Adds the given Runnable to the queue. If lane ordering is enabled,
+   * the Runnable runs after all Runnables previously enqueued with the
+   * same lane key.
+   *
+   * @param laneKey the lane key, such as a SPID. If null, the Runnable
+   *                is not ordered with respect to any other.
+   * @param runMe a Runnable implementation to be executed.
+   */
+   public void enqueue(String laneKey, Runnable runMe){
+
       if( Debug.isLevelEnabled(Debug.THREAD_STATUS) ){
          Debug.log(Debug.THREAD_STATUS,
                    "Adding ["+runMe+"] to work queue: \n"+this);
       }
 
-      boolean createThread = false;
+      if( executor.isShutdown() ){
 
-      synchronized(this)
-      {
-         queue.add(runMe);
+         Debug.warning("Work queue has been killed. Dropping ["+runMe+"].");
 
-         queueSize = queue.size( );
+         return;
 
-         if(availableThreadCount > 0)
-         {
-            Debug.log(Debug.THREAD_STATUS, "Notifying worker threads of available work." );
+      }
+
+      boolean ordered = ( laneKey != null && laneOrdering );
+
+      if( !reserveSlot(runMe, ordered) ){
+         return;
+      }
+
+      queueSize.incrementAndGet();
+
+      Task task = new Task(runMe, queueSlots != null);
+
+      try{
+
+         if( !ordered ){
+
+            executor.execute(task);
 
-            // notify the waiting threads
-            notifyAll();
          }
-         else if(createdThreadCount < maxThreads)
-         {
-            createThread = true;
+         else{
+
+            Lane lane;
+
+            boolean start = false;
+
+            synchronized( lanes ){
+
+               lane = (Lane) lanes.get(laneKey);
+
+               if( lane == null ){
+
+                  lane = new Lane(laneKey);
+                  lanes.put(laneKey, lane);
+                  start = true;
+
+               }
+
+               lane.tasks.add(task);
+
+            }
+
+            if( start ){
+               executor.execute(lane);
+            }
+
          }
+
       }
+      catch( RejectedExecutionException rex ){
 
-      if(createThread)
-      {
-         Thread workerThread = new WorkerThread();
+         // the queue was killed in the meantime
+         queueSize.decrementAndGet();
 
-         if( Debug.isLevelEnabled(Debug.THREAD_STATUS) )
-            Debug.log(Debug.THREAD_STATUS, "Starting thread: "+workerThread);
+         if( task.holdsSlot ){
+            releaseSlot();
+         }
+
+         Debug.warning("Work queue has been killed. Dropping ["+runMe+"].");
 
-         workerThread.start();
       }
-   }
 
+   }
 
    /**
-    * While this queue is alive, this method loops, running any
-    * Runnables in the queue and then waiting for more Runnables
-    * to be added.
-    */
-   public void run()
-   {
-      // Indicate presence of new thread at start of execution.
-      synchronized ( this )
-      {
-         createdThreadCount++;
+   * Gets a slot in the queue, applying the rejection policy if the
+   * queue is full. Running an ordered Runnable in this thread would
+   * overtake the Runnables queued in its lane, so ordered Runnables
+   * wait for room instead.
+   *
+   * @return true if a slot was reserved, false if the Runnable was
+   *         run in this thread or rejected instead.
+   */
+   private boolean reserveSlot(Runnable runMe, boolean ordered){
+
+      if( queueSlots == null || queueSlots.tryAcquire() ){
+         return true;
       }
 
-      try
-      {
-         while(alive)
-         {
-            Runnable runMe = null;
+      if( rejectionPolicy == BLOCK ||
+          ( ordered && rejectionPolicy == CALLER_RUNS ) ){
 
-            synchronized ( this )
-            {
-               // Indicate that the thread is now available to perform new work.
-               availableThreadCount++;
-
-               // While this thread doesn't have a runnable to execute ...
-               do
-               {
-                  // Exit loop if kill has been issued.
-                  if ( !alive )
-                     return;
-
-                  queueSize = queue.size( );
-
-                  // Check queue for runnables to work.
-                  if ( queueSize > 0 )
-                  {
-                     runMe = (Runnable)queue.remove(0);
-
-                     queueSize = queue.size( );
-
-                     if(Debug.isLevelEnabled(Debug.THREAD_STATUS))
-                        Debug.log(Debug.THREAD_STATUS, "Worker thread [" + Thread.currentThread() + "] got some work.  Queue size [" + queueSize + "]." );
-                  }
-                  else // No available work.
-                  {
-                     // There are too many threads and not enough work to do, so kill this thread.
-                     if( availableThreadCount > maxWaitingThreads )
-                     {
-                        if(Debug.isLevelEnabled(Debug.THREAD_STATUS))
-                           Debug.log(Debug.THREAD_STATUS, "Worker thread [" + Thread.currentThread() + "] exiting due to lack of work with excess waiting threads." );
-
-                        return;  // Exit run loop here.
-                     }
-
-                     if(Debug.isLevelEnabled(Debug.THREAD_STATUS))
-                        Debug.log(Debug.THREAD_STATUS, "Worker thread [" + Thread.currentThread() + "] waiting for work." );
-
-                     // Wait until more runnables are added to the queue or until the maximum idle time has been reached.
-                     // NOTE: Falling into this wait() free's up the lock on the work queue.
-                     try
-                     {
-                        wait(maxWaitTime);
-
-                        if(Debug.isLevelEnabled(Debug.THREAD_STATUS))
-                           Debug.log(Debug.THREAD_STATUS, "Worker thread [" + Thread.currentThread() + "] just woke up from wait()." );
-                     }
-                     catch ( InterruptedException ie )
-                     {
-                        Debug.warning( "Worker thread wait was interrupted: " + ie.toString() );
-                     }
-                  } // End: No available work.
-               } 
-               while ( runMe == null );  // End: Loop waiting for runnable to execute.
-
-               // Worker thread has become occupied.
-               availableThreadCount--;
-            } // End: synchronized block.
-
-
-            occupiedThreadCount++;
-
-           if (Debug.isLevelEnabled(Debug.THREAD_STATUS))
-                  Debug.log(Debug.THREAD_STATUS, "Executing runnable [" + runMe + "] in worker thread ...");
-
-               try
-               {
-                  long startTime = System.currentTimeMillis( );
-
-                  runMe.run();
-
-                  if (Debug.isLevelEnabled(Debug.BENCHMARK))
-                  {
-                     Debug.log(Debug.BENCHMARK, "ELAPSED TIME [" + (System.currentTimeMillis() - startTime) + 
-                               "] msec.  Worker thread execution of runnable [" + runMe + "]." );
-                  }
-               }
-               catch(Throwable ex)
-               {
-                  // This should not happen, but just in case it does, we want to keep from breaking out of loop.
-                  Debug.error( "Execution of [" + runMe + "] failed: " + ex.toString() );
+         try{
+
+            queueSlots.acquire();
+
+            if( executor.isShutdown() ){
+
+               // woken by kill(), so pass the slot on to the next waiter
+               queueSlots.release();
+
+               Debug.warning("Work queue has been killed. Dropping ["+runMe+"].");
+
+               return false;
+
+            }
+
+            return true;
+
+         }
+         catch(InterruptedException iex){
+
+            Thread.currentThread().interrupt();
+
+            Debug.warning("Interrupted while waiting for room in the work queue: "+iex);
 
-                  // QUESTION: Shouldn't we put runMe back on the queue?  (May just continue to fail, so we'll skip for now.)
-               }
-            occupiedThreadCount--;
-         } // End: while alive loop.
-      }
-      finally
-      {
-         synchronized( this )
-         {
-            availableThreadCount--;
-            createdThreadCount--;
          }
 
-         if(Debug.isLevelEnabled(Debug.THREAD_STATUS))
-            Debug.log(Debug.THREAD_STATUS, "Thread " + Thread.currentThread() + " is exiting now.");
       }
+
+      if( rejectionPolicy == REJECT && runMe instanceof Rejectable ){
+
+         long count = rejectedCount.incrementAndGet();
+
+         Debug.warning("Work queue is full. Rejecting ["+runMe+"]. Total rejected ["+count+"].");
+
+         ((Rejectable) runMe).rejected();
+
+         return false;
+
+      }
+
+      long count = callerRunsCount.incrementAndGet();
+
+      if( Debug.isLevelEnabled(Debug.ALL_WARNINGS) ){
+         Debug.warning("Work queue is full. Running ["+runMe+
+                       "] in the enqueuing thread. Total run by callers ["+count+"].");
+      }
+
+      Task task = new Task(runMe, false);
+
+      queueSize.incrementAndGet();
+
+      task.run();
+
+      return false;
+
    }
 
+   /**
+   * Frees a slot in the queue.
+   */
+   private void releaseSlot(){
+
+      if( queueSlots != null ){
+         queueSlots.release();
+      }
+
+   }
 
    /**
    * Returns whether or not this thread is alive and actively
    * executing enqueued runnables.
    */
    public boolean isAlive(){
-      return alive;
+      return !executor.isShutdown();
    }
 
    /**
-   * Sets the alive flag to false, causing run() to exit.
+   * Stops the worker threads once they finish their current Runnables.
+   * Runnables still queued are discarded, freeing their slots, so that
+   * enqueuing threads waiting for room are woken and drop their Runnables.
    */
    public synchronized void kill(){
 
-      if(alive){
+      if( !executor.isShutdown() ){
 
          Debug.log(Debug.NORMAL_STATUS, "Killing worker queue threads: "+this);
 
-         alive = false;
+         executor.shutdown();
+
+         List discarded = new ArrayList();
+
+         executor.getQueue().drainTo(discarded);
+
+         synchronized( lanes ){
+
+            Iterator iter = lanes.values().iterator();
+
+            while( iter.hasNext() ){
+
+               Lane lane = (Lane) iter.next();
+
+               discarded.addAll(lane.tasks);
+
+               lane.tasks.clear();
+
+            }
+
+            lanes.clear();
+
+         }
+
+         int count = 0;
+
+         Iterator iter = discarded.iterator();
+
+         while( iter.hasNext() ){
+
+            Object next = iter.next();
+
+            // queued Lanes are discarded with the lanes' Tasks above
+            if( next instanceof Task ){
 
-         maxWaitingThreads = 0;
+               ((Task) next).discard();
 
-         // notify the worker threads to stop waiting so that run()
-         // will then exit
-         notifyAll();
+               count++;
+
+            }
+
+         }
+
+         Debug.log(Debug.NORMAL_STATUS, "Discarded ["+count+"] queued Runnables.");
 
       }
 
@@ -325,19 +487,54 @@ public class WorkQueue implements Runnable {
 
    }
 
+   /**
+   * Gets the number of queued Runnables.
+   *
+   * @return int
+   */
+   public int getQueueSize(){
+
+      return queueSize.get();
+
+   }
+
+   /**
+   * Gets the histogram of the time Runnables spent waiting in the queue.
+   *
+   * @return Histogram
+   */
+   public Histogram getQueueWaitTimes(){
+
+      return queueWaitTimes;
+
+   }
+
+   /**
+   * Gets the histogram of the time Runnables took to run.
+   *
+   * @return Histogram
+   */
+   public Histogram getRunTimes(){
+
+      return runTimes;
+
+   }
+
    /**
    * This lists the number of threads available and number of runnables
    * queued.
    */
    public String toString(){
 
+      int occupied = occupiedThreadCount.get();
+
       StringBuffer buffer =
          new StringBuffer("Work Queue:\n\tRunnables Queued  [");
-      buffer.append( queueSize );
+      buffer.append( queueSize.get() );
       buffer.append("]\n\tThreads Available [");
-      buffer.append(availableThreadCount);
+      buffer.append( Math.max(executor.getPoolSize() - occupied, 0) );
       buffer.append("]\n\tThreads Occupied  [");
-      buffer.append(occupiedThreadCount);
+      buffer.append( occupied );
       buffer.append("]");
 
       return buffer.toString();
@@ -345,33 +542,200 @@ public class WorkQueue implements Runnable {
    }
 
    /**
-   * This overrides thread to simply change the default label
-   * for the thread. This makes it easier to identify these threads when
-   * debugging.
+   * This describes the queue, the number of Runnables run by callers or
+   * rejected because it was full, and the queue wait and run times.
+   */
+   public String describe(){
+
+      StringBuffer buffer = new StringBuffer( toString() );
+      buffer.append("\n\tActive Lanes      [");
+
+      synchronized( lanes ){
+         buffer.append( lanes.size() );
+      }
+
+      buffer.append("]\n\tRun By Callers    [");
+      buffer.append( callerRunsCount.get() );
+      buffer.append("]\n\tRejected          [");
+      buffer.append( rejectedCount.get() );
+      buffer.append("]\n\t");
+      buffer.append( queueWaitTimes.describe() );
+      buffer.append("\n\t");
+      buffer.append( runTimes.describe() );
+
+      return buffer.toString();
+
+   }
+
+   /**
+   * Wraps a queued Runnable to time it.
    */
-   protected class WorkerThread extends Thread{
+   private class Task implements Runnable {
 
-      private int id;
+      private Runnable runMe;
+
+      /**
+       * Whether this holds a slot in the queue, to be freed once it
+       * leaves the queue.
+       */
+      private boolean holdsSlot;
 
-      public WorkerThread(){
+      private long enqueueTime = System.currentTimeMillis();
+
+      private Task(Runnable runMe, boolean holdsSlot){
+
+         this.runMe = runMe;
+         this.holdsSlot = holdsSlot;
+
+      }
 
-         // this thread will call WorkerQueue.run() when started
-         super(WorkQueue.this);
+      public void run(){
 
-         synchronized( WorkQueue.class )
+         long startTime = System.currentTimeMillis( );
+
+         leaveQueue();
+
+         queueWaitTimes.record( startTime - enqueueTime );
+
+         occupiedThreadCount.incrementAndGet();
+
+         if (Debug.isLevelEnabled(Debug.THREAD_STATUS))
+            Debug.log(Debug.THREAD_STATUS, "Executing runnable [" + runMe + "] in worker thread ...");
+
+         try
+         {
+            runMe.run();
+         }
+         catch(Throwable ex)
          {
-            id = workerThreadID++;
+            // This should not happen, but just in case it does, we want to keep the worker thread.
+            Debug.error( "Execution of [" + runMe + "] failed: " + ex.toString() );
          }
+         finally
+         {
+            occupiedThreadCount.decrementAndGet();
+
+            long elapsed = System.currentTimeMillis( ) - startTime;
+
+            runTimes.record( elapsed );
+
+            if (Debug.isLevelEnabled(Debug.BENCHMARK))
+            {
+               Debug.log(Debug.BENCHMARK, "ELAPSED TIME [" + elapsed +
+                         "] msec.  Worker thread execution of runnable [" + runMe + "]." );
+            }
+         }
+
       }
 
       /**
-      * Returns a string that is the name of this class followed
-      * by the ID for the thread being used to dequeue the runnables.
-      *
+      * Drops this Task from the queue without running it.
       */
+      private void discard(){
+
+         leaveQueue();
+
+      }
+
+      private void leaveQueue(){
+
+         queueSize.decrementAndGet();
+
+         if( holdsSlot ){
+            releaseSlot();
+         }
+
+      }
+
+      public String toString(){
+
+         return runMe.toString();
+
+      }
+
+   }
+
+   /**
+   * The Runnables queued for one lane key. The lane runs one Runnable
+   * at a time in a worker thread, and is resubmitted to the executor
+   * after each one, so that a busy lane doesn't hold onto a thread.
+   */
+   private class Lane implements Runnable {
+
+      private String key;
+
+      private LinkedList tasks = new LinkedList();
+
+      private Lane(String key){
+
+         this.key = key;
+
+      }
+
+      public void run(){
+
+         Task task;
+
+         synchronized( lanes ){
+            task = (Task) tasks.removeFirst();
+         }
+
+         try{
+
+            task.run();
+
+         }
+         finally{
+
+            boolean more;
+
+            synchronized( lanes ){
+
+               more = !tasks.isEmpty();
+
+               if( !more ){
+                  lanes.remove(key);
+               }
+
+            }
+
+            if( more ){
+
+               try{
+                  executor.execute(this);
+               }
+               catch( RejectedExecutionException rex ){
+                  Debug.warning("Work queue has been killed. Dropping the rest of lane ["+key+"].");
+               }
+
+            }
+
+         }
+
+      }
+
       public String toString(){
 
-         return "Worker"+id+"-"+super.toString();
+         return "Lane ["+key+"]";
+
+      }
+
+   }
+
+   /**
+   * This names the worker threads, to make it easier to identify them
+   * when debugging.
+   */
+   private static class WorkerThreadFactory implements ThreadFactory {
+
+      public Thread newThread(Runnable runMe){
+
+         Thread workerThread = new Thread(runMe, "Worker"+workerThreadID.getAndIncrement());
+
+         if( Debug.isLevelEnabled(Debug.THREAD_STATUS) )
+            Debug.log(Debug.THREAD_STATUS, "Starting thread: "+workerThread);
+
+         return workerThread;
 
       }
 
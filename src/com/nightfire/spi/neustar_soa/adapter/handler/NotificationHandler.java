@@ -4,8 +4,6 @@
 ///////////////////////////////////////////////////////////////////////////////
 package com.nightfire.spi.neustar_soa.adapter.handler;
 
-import java.util.TimerTask;
-
 import com.nightfire.spi.neustar_soa.adapter.NPACAdapter;
 import com.nightfire.spi.neustar_soa.adapter.NPACConstants;
 import com.nightfire.spi.neustar_soa.adapter.Session;
@@ -34,7 +32,7 @@ public abstract class NotificationHandler implements Runnable {
     * reply is never received. This timer task will be cancelled if a reply is
     * received.
     */
-   protected TimerTask timeoutTimer;
+   protected TimeoutTimerTask timeoutTimer;
 
    /**
    * The session involved.
@@ -114,7 +112,7 @@ public abstract class NotificationHandler implements Runnable {
     *
     * @param timer TimerTask
     */
-   public void setTimeoutTimer(TimerTask timer){
+   public void setTimeoutTimer(TimeoutTimerTask timer){
 
       timeoutTimer = timer;
 
@@ -5,16 +5,15 @@
 ////////////////////////////////////////////////////////////////////////////
 package com.nightfire.spi.neustar_soa.adapter.handler;
 
-import java.util.TimerTask;
-
 import com.nightfire.framework.util.Debug;
+import com.nightfire.framework.util.TimingWheel;
 import com.nightfire.spi.neustar_soa.adapter.WorkQueue;
 
 /**
  * This class is used to perform a timeout when waiting for a reply
  * from the NPAC gateway.
  */
-public class TimeoutTimerTask extends TimerTask {
+public class TimeoutTimerTask implements Runnable {
 
    /**
     * The invoke ID of the reply message for which this timer is waiting.
@@ -42,6 +41,11 @@ public class TimeoutTimerTask extends TimerTask {
     */
    private WaitingHandlers waitingHandlers;
 
+   /**
+    * The scheduled timeout, used to cancel this timer task.
+    */
+   private TimingWheel.Timeout timeout;
+
    public TimeoutTimerTask( String invokeID,
                             NotificationHandler handler,
                             WorkQueue workQueue,
@@ -56,6 +60,18 @@ public class TimeoutTimerTask extends TimerTask {
 
    }
 
+   /**
+    * Schedules this timer task to expire after the given delay.
+    *
+    * @param timer TimingWheel the timer that will run this task.
+    * @param delay long the timeout in ms.
+    */
+   void schedule( TimingWheel timer, long delay ) {
+
+      timeout = timer.schedule( this, delay );
+
+   }
+
    /**
     * This is called when this timer task expires. This creates
     * a runnable to call timeout() on the handler instance. The runnable
@@ -68,8 +84,9 @@ public class TimeoutTimerTask extends TimerTask {
    }
 
    /**
-    * This overrides the cancel() method to add a logging message.
-    * @return boolean
+    * Cancels this timer task, if it has not already expired.
+    *
+    * @return boolean true if the timer was cancelled before expiring.
     */
    public boolean cancel() {
 
@@ -77,7 +94,7 @@ public class TimeoutTimerTask extends TimerTask {
                 "Cancelling timeout timer that was waiting for invoke ID ["+
                 invokeID+"]");
 
-       return super.cancel();
+      return ( timeout != null && timeout.cancel() );
 
    }
 
@@ -89,16 +106,28 @@ public class TimeoutTimerTask extends TimerTask {
 
       public void run(){
 
+         // remove the handler from the collection of waiting handlers,
+         // so that it is no longer waiting for a reply. If the reply
+         // arrived in the meantime, the handler is no longer waiting,
+         // and must not also be timed out.
+         if( !waitingHandlers.expire(invokeID, handler) ){
+
+            if( Debug.isLevelEnabled(Debug.MSG_STATUS) ){
+               Debug.log(Debug.MSG_STATUS,
+                         "Ignoring timeout for invoke ID ["+invokeID+
+                         "], since its reply has already been received.");
+            }
+
+            return;
+
+         }
+
          if( Debug.isLevelEnabled(Debug.MSG_STATUS) ){
             Debug.log(Debug.MSG_STATUS,
                       "Timed-out while waiting for reply "+
                       "with invoke ID ["+invokeID+"]");
          }
 
-         // remove the handler from the collection of waiting handlers,
-         // so that it is no longer waiting for a reply
-         waitingHandlers.remove(invokeID);
-
          // tell the handler to resend the message or do whatever it is
          // that it is supposed to do when it times out
          handler.timeout();
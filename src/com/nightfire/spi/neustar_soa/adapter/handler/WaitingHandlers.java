@@ -6,12 +6,28 @@
 package com.nightfire.spi.neustar_soa.adapter.handler;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.nightfire.framework.util.Debug;
+import com.nightfire.framework.util.StringUtils;
+import com.nightfire.framework.util.TimingWheel;
 import com.nightfire.spi.neustar_soa.adapter.WorkQueue;
 
 public class WaitingHandlers {
 
+   /**
+    * The length of a tick of the timeout wheel in ms. Reply timeouts
+    * expire up to this much later than requested.
+    */
+   private static final long TIMEOUT_TICK = 100;
+
+   /**
+    * The number of buckets in the timeout wheel. Timeouts longer than
+    * this many ticks share buckets with shorter ones.
+    */
+   private static final int TIMEOUT_WHEEL_SIZE = 1024;
+
    /**
     * This map contains all of the waiting notification/reply handlers.
     * They are keyed by their invoke ID.
@@ -19,9 +35,10 @@ public class WaitingHandlers {
    private Map handlers;
 
    /**
-    * The timer implementation.
+    * The timer implementation. Scheduling and cancelling a timeout
+    * take constant time, however many replies are outstanding.
     */
-   private Timer timer;
+   private TimingWheel timer;
 
    /**
     * A collection of worker threads that pulls work from a queue for
@@ -29,10 +46,23 @@ public class WaitingHandlers {
     */
    private WorkQueue workerThreads;
 
+   /**
+    * The number of timeouts that have expired.
+    */
+   private AtomicLong timeoutCount = new AtomicLong();
+
+   /**
+    * Reply latency statistics, keyed by the class name of the handler
+    * that was waiting for the reply.
+    */
+   private ConcurrentHashMap latencies = new ConcurrentHashMap();
+
    public WaitingHandlers(WorkQueue workQueue){
 
-      handlers = new Hashtable();
-      timer = new Timer();
+      handlers = new ConcurrentHashMap();
+      timer = new TimingWheel("NPACReplyTimeouts",
+                              TIMEOUT_TICK,
+                              TIMEOUT_WHEEL_SIZE);
       workerThreads = workQueue;
 
    }
@@ -41,10 +71,10 @@ public class WaitingHandlers {
                    NotificationHandler handler,
                    long timeout){
 
-      TimerTask timeoutTask = new TimeoutTimerTask(invokeID,
-                                                   handler,
-                                                   workerThreads,
-                                                   this );
+      TimeoutTimerTask timeoutTask = new TimeoutTimerTask(invokeID,
+                                                          handler,
+                                                          workerThreads,
+                                                          this );
 
       if(Debug.isLevelEnabled(Debug.MSG_STATUS)){
 
@@ -56,10 +86,11 @@ public class WaitingHandlers {
 
       }
 
-      timer.schedule( timeoutTask, timeout );
-
+      // add the handler first, so that it is there when the timer expires
       add( invokeID, handler );
 
+      timeoutTask.schedule( timer, timeout );
+
    }
 
    public void add(String invokeID, NotificationHandler handler){
@@ -73,7 +104,7 @@ public class WaitingHandlers {
 
       }
 
-      handlers.put(invokeID, handler);
+      handlers.put(invokeID, new Waiting(handler));
 
    }
 
@@ -100,7 +131,10 @@ public class WaitingHandlers {
     */
    public boolean isGenericReplyHandler(String invokeID){
 
-      return ( handlers.get(invokeID) instanceof GenericReplyHandler );
+      Waiting waiting = (Waiting) handlers.get(invokeID);
+
+      return ( waiting != null &&
+               waiting.handler instanceof GenericReplyHandler );
 
    }
 
@@ -114,11 +148,10 @@ public class WaitingHandlers {
 
       }
 
-      NotificationHandler handler =
-         (NotificationHandler) handlers.remove(invokeID);
+      Waiting waiting = (Waiting) handlers.remove(invokeID);
 
 
-      if(handler == null) {
+      if(waiting == null) {
 
          if(Debug.isLevelEnabled(Debug.ALL_WARNINGS)){
 
@@ -127,9 +160,13 @@ public class WaitingHandlers {
 
          }
 
+         return null;
+
       }
 
-      return handler;
+      recordLatency( waiting );
+
+      return waiting.handler;
 
    }
 
@@ -148,4 +185,195 @@ public class WaitingHandlers {
 
    }
 
+   /**
+    * This is called when the timeout timer of a handler expires. The
+    * handler is removed only if it is still waiting for the given invoke ID,
+    * so that a reply that arrived just before the timer expired does not
+    * also get timed out.
+    *
+    * @param invokeID String the invoke ID.
+    * @param handler NotificationHandler the handler whose timer expired.
+    * @return boolean true if the handler was still waiting, and should be
+    *                 timed out, false otherwise.
+    */
+   boolean expire(String invokeID, NotificationHandler handler){
+
+      Waiting waiting = (Waiting) handlers.get(invokeID);
+
+      if( waiting == null ||
+          waiting.handler != handler ||
+          !handlers.remove(invokeID, waiting) ){
+
+         return false;
+
+      }
+
+      long count = timeoutCount.incrementAndGet();
+
+      if(Debug.isLevelEnabled(Debug.NORMAL_STATUS)){
+
+         Debug.log(Debug.NORMAL_STATUS,
+                   "Timeout number ["+count+"] for invoke ID ["+
+                   invokeID+"]. "+describe());
+
+      }
+
+      return true;
+
+   }
+
+   /**
+    * Gets the number of handlers currently waiting for a reply.
+    *
+    * @return int
+    */
+   public int getOutstandingCount(){
+
+      return handlers.size();
+
+   }
+
+   /**
+    * Gets the number of reply timeouts that have expired.
+    *
+    * @return long
+    */
+   public long getTimeoutCount(){
+
+      return timeoutCount.get();
+
+   }
+
+   /**
+    * Gets the average reply latency, in ms, for the given type of
+    * notification handler.
+    *
+    * @param handlerType String the class name of the handler, without
+    *                    its package.
+    * @return long the average latency, or -1 if no replies were received.
+    */
+   public long getAverageLatency(String handlerType){
+
+      Latency latency = (Latency) latencies.get(handlerType);
+
+      return ( latency == null ) ? -1 : latency.getAverage();
+
+   }
+
+   /**
+    * Describes the outstanding handler count, timeout count and the
+    * reply latency of each type of notification handler.
+    *
+    * @return String
+    */
+   public String describe(){
+
+      StringBuffer sb = new StringBuffer("Waiting handlers [");
+      sb.append( getOutstandingCount() );
+      sb.append("], timeouts [");
+      sb.append( getTimeoutCount() );
+      sb.append("], reply latencies:");
+
+      Iterator iter = new TreeMap(latencies).entrySet().iterator();
+
+      while( iter.hasNext() ){
+
+         Map.Entry entry = (Map.Entry) iter.next();
+         sb.append(" ");
+         sb.append( entry.getKey() );
+         sb.append( entry.getValue() );
+
+      }
+
+      return sb.toString();
+
+   }
+
+   /**
+    * Records how long the handler waited for its reply.
+    */
+   private void recordLatency(Waiting waiting){
+
+      String type = StringUtils.getClassName( waiting.handler );
+
+      Latency latency = (Latency) latencies.get(type);
+
+      if( latency == null ){
+
+         Latency created = new Latency();
+
+         latency = (Latency) latencies.putIfAbsent(type, created);
+
+         if( latency == null ){
+            latency = created;
+         }
+
+      }
+
+      latency.record( System.currentTimeMillis() - waiting.addTime );
+
+   }
+
+   /**
+    * A handler waiting for a reply, and when it started waiting.
+    */
+   private static class Waiting {
+
+      private final NotificationHandler handler;
+
+      private final long addTime = System.currentTimeMillis();
+
+      private Waiting(NotificationHandler handler){
+
+         this.handler = handler;
+
+      }
+
+   }
+
+   /**
+    * Reply latency statistics for one type of notification handler.
+    */
+   private static class Latency {
+
+      private final AtomicLong count = new AtomicLong();
+
+      private final AtomicLong total = new AtomicLong();
+
+      private final AtomicLong max = new AtomicLong();
+
+      private void record(long latency){
+
+         count.incrementAndGet();
+         total.addAndGet(latency);
+
+         long currentMax = max.get();
+
+         while( latency > currentMax &&
+                !max.compareAndSet(currentMax, latency) ){
+
+            currentMax = max.get();
+
+         }
+
+      }
+
+      private long getAverage(){
+
+         long replies = count.get();
+
+         return ( replies == 0 ) ? -1 : total.get() / replies;
+
+      }
+
+      public String toString(){
+
+         return "[count="+count.get()+
+                ", avg="+getAverage()+
+                "ms, max="+max.get()+"ms]";
+
+      }
+
+   }
+
 }
@@ -387,35 +387,24 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 
 			String requestIdMessageValue = getString( requestIdMessage, context, input );
 		
-			int successReqTNNodesLen= 0;
-			int failureReqTNNodesLen= 0;						
-									
 			// Get the Document for requestIdMessage
 			XMLMessageParser domMsg = new XMLMessageParser(requestIdMessageValue);				
 
-			// If SuccessRequest node exists
-			if (domMsg.exists("SuccessRequest"))
-			{
-				successReqTNNodesLen = domMsg.getChildCount("SuccessRequest");
-				if( Debug.isLevelEnabled(Debug.MSG_STATUS) ){
-				 Debug.log( Debug.MSG_STATUS, "Child Node count SuccessRequest"+domMsg.getChildCount("SuccessRequest") );
-				}
-			}
-			
+			// Get the Success Request Ids and TNs in one pass
+			List requestIdTNs = getRequestIdTNs(domMsg, "SuccessRequest");
+
+			ResponseNodeAppender tnRequestIds = new ResponseNodeAppender(response,
+					SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".TnRequestIdList.TnRequestId");
 			
 			// Traverse through all the Success Request Id and set the request
 			// Id in Synchronous response XML
-			for (int i = 0; i < successReqTNNodesLen; i++) {												
+			for (int i = 0; i < requestIdTNs.size(); i++) {												
 
-				// Extract Request Id from XML file
-				requestId = (String) super.get(requestIdMessage + "."
-						+ "SuccessRequest.RequestIdTN"
-						+ "(" + i + ").RequestId", context, input);				
+				String[] requestIdTN = (String[]) requestIdTNs.get(i);
+
+				requestId = requestIdTN[0];
 				
-				// Extract TN from XML file
-				requestTn = (String) super.get(requestIdMessage + "."
-						+ "SuccessRequest.RequestIdTN"
-						+ "(" + i + ").RequestTn", context, input);
+				requestTn = requestIdTN[1];
 				
 				/*
 				 * Added this check for the support of backward compatibility.
@@ -429,12 +418,11 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 				 */				
 				if(requestIdSupportFlag != null && requestIdSupportFlag.equals("1")){					
 					
-					//response.setValue( SOAConstants.SYNCHRONUS_RESPONSE_PATH+".RequestIdList.RequestId("+i+")", requestId );
-					response.setValue(SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".TnRequestIdList.TnRequestId(" + i + ")." +
-							".Tn", requestTn);					
+					tnRequestIds.append();
+
+					tnRequestIds.setValue("Tn", requestTn);					
 					
-					response.setValue(SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".TnRequestIdList.TnRequestId(" + i + ")." +
-							".RequestId", requestId);
+					tnRequestIds.setValue("RequestId", requestId);
 					
 				}else{
 					response.setValue( SOAConstants.REQUEST_ID_PATH, requestId );
@@ -520,9 +508,6 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 		 */
 		if(requestIdSupportFlag != null && requestIdSupportFlag.equals("1")){
 	
-			int successReqTNNodesLen = 0;
-			int failureReqTNNodesLen = 0;
-			
 			String requestIdMessageValue = null;
 			XMLMessageParser domRequestIDMsg = null;
 			
@@ -532,59 +517,47 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 				
 				domRequestIDMsg = new XMLMessageParser(requestIdMessageValue);
 			
-				// If FailureRequest node exists in domMsg
-				if (domRequestIDMsg.exists("FailureRequest"))
-				{
-					failureReqTNNodesLen = domRequestIDMsg.getChildCount("FailureRequest");
-					if( Debug.isLevelEnabled(Debug.MSG_STATUS) ){
-					  Debug.log( Debug.MSG_STATUS, "Child Node count FailureRequest"+domRequestIDMsg.getChildCount("FailureRequest") );
-					}
-				}
-				for (int i = 0; i < failureReqTNNodesLen; i++) {												
+				// Get the Failure Request Ids and TNs in one pass
+				List requestIdTNs = getRequestIdTNs(domRequestIDMsg, "FailureRequest");
+
+				ResponseNodeAppender tnRequestIds = new ResponseNodeAppender(response,
+						SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".SuccessFailureRequestId.FailureRequest.TnRequestIdList.TnRequestId");
+
+				for (int i = 0; i < requestIdTNs.size(); i++) {												
 		
-					// Extract Request Id from XML file
-					requestId = (String) super.get(requestIdMessage + "."
-							+ "FailureRequest.RequestIdTN"
-							+ "(" + i + ").RequestId", context, input);
+					String[] requestIdTN = (String[]) requestIdTNs.get(i);
+
+					requestId = requestIdTN[0];
 					
-					// Extract TN from XML file
-					requestTn = (String) super.get(requestIdMessage + "."
-							+ "FailureRequest.RequestIdTN"
-							+ "(" + i + ").RequestTn", context, input);
+					requestTn = requestIdTN[1];
 										
-						response.setValue(SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".SuccessFailureRequestId.FailureRequest.TnRequestIdList.TnRequestId(" + i + ")." +
-								".Tn", requestTn);					
+						tnRequestIds.append();
+
+						tnRequestIds.setValue("Tn", requestTn);					
 						
-						response.setValue(SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".SuccessFailureRequestId.FailureRequest.TnRequestIdList.TnRequestId(" + i + ")." +
-								".RequestId", requestId);
+						tnRequestIds.setValue("RequestId", requestId);
 									
 				}
 				
-				// If SuccessRequest node exists in domMsg
-				if (domRequestIDMsg.exists("SuccessRequest"))
-				{
-					successReqTNNodesLen = domRequestIDMsg.getChildCount("SuccessRequest");
-					if( Debug.isLevelEnabled(Debug.MSG_STATUS) ){
-					 Debug.log( Debug.MSG_STATUS, "Child Node count SuccessRequest"+domRequestIDMsg.getChildCount("SuccessRequest") );
-					}
-				}			
-				for (int i = 0; i < successReqTNNodesLen; i++) {								
+				// Get the Success Request Ids and TNs in one pass
+				requestIdTNs = getRequestIdTNs(domRequestIDMsg, "SuccessRequest");
+
+				tnRequestIds = new ResponseNodeAppender(response,
+						SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".SuccessFailureRequestId.SuccessRequest.TnRequestIdList.TnRequestId");
+
+				for (int i = 0; i < requestIdTNs.size(); i++) {								
 		
-					// Extract Request Id from XML file
-					requestId = (String) super.get(requestIdMessage + "."
-							+ "SuccessRequest.RequestIdTN"
-							+ "(" + i + ").RequestId", context, input);				
+					String[] requestIdTN = (String[]) requestIdTNs.get(i);
+
+					requestId = requestIdTN[0];
 					
-					// Extract TN from XML file
-					requestTn = (String) super.get(requestIdMessage + "."
-							+ "SuccessRequest.RequestIdTN"
-							+ "(" + i + ").RequestTn", context, input);							
+					requestTn = requestIdTN[1];
 						
-						response.setValue(SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".SuccessFailureRequestId.SuccessRequest.TnRequestIdList.TnRequestId(" + i + ")." +
-								".Tn", requestTn);					
+						tnRequestIds.append();
+
+						tnRequestIds.setValue("Tn", requestTn);					
 						
-						response.setValue(SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".SuccessFailureRequestId.SuccessRequest.TnRequestIdList.TnRequestId(" + i + ")." +
-								".RequestId", requestId);						
+						tnRequestIds.setValue("RequestId", requestId);						
 				}
 			}
 			//populate error XML in to response.
@@ -652,15 +625,19 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 
 		// Traverse through all the Rule Id and construct the Partial Failure
 		// Synchronous Response as per the new format.
+		ResponseNodeAppender ruleErrors = new ResponseNodeAppender(response, SOAConstants.RULE_ERROR_PATH);
+
 		for (int msgCount = 0; msgCount < ruleIdList.getLength(); msgCount++) {
 			Node ruleIdNode = ruleIdList.item(msgCount);
 
+			ruleErrors.append();
+
 			ruleId = XMLMessageBase.getNodeValue(ruleIdNode);
 			if (Debug.isLevelEnabled(Debug.MSG_STATUS)) {
 				Debug.log(Debug.MSG_STATUS, "GenerateSyncResponse: " + "extracted the ruleid: " + ruleId);
 			}
 
-			response.setValue(SOAConstants.RULE_ERROR_PATH + "(" + msgCount + ")" + "." + "RuleId", ruleId);
+			ruleErrors.setValue("RuleId", ruleId);
 
 			Node ruleMsgNode = ruleMsgList.item(msgCount);
 
@@ -669,7 +646,7 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 				Debug.log(Debug.MSG_STATUS, "GenerateSyncResponse: " + "extracted the ruleMsg: " + ruleMsg);
 			}
 
-			response.setValue(SOAConstants.RULE_ERROR_PATH + "(" + msgCount + ")" + "." + "RuleMessage", ruleMsg);
+			ruleErrors.setValue("RuleMessage", ruleMsg);
 
 			Node ruleContextNode = ruleContextList.item(msgCount);
 
@@ -678,7 +655,7 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 				Debug.log(Debug.MSG_STATUS, "GenerateSyncResponse: " + "extracted the ruleContext: " + ruleContext);
 			}
 
-			response.setValue(SOAConstants.RULE_ERROR_PATH + "(" + msgCount + ")" + "." + "RuleContext", ruleContext);
+			ruleErrors.setValue("RuleContext", ruleContext);
 
 			Node ruleContextValueNode = ruleContextValueList.item(msgCount);
 
@@ -687,7 +664,7 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 				Debug.log(Debug.MSG_STATUS, "GenerateSyncResponse: " + "extracted the ruleContextValue: " + ruleContextValue);
 			}
 
-			response.setValue(SOAConstants.RULE_ERROR_PATH + "(" + msgCount + ")" + "." + "RuleContextValue", ruleContextValue);
+			ruleErrors.setValue("RuleContextValue", ruleContextValue);
 
 		}
 		if ( Debug.isLevelEnabled( Debug.MSG_STATUS )) {
@@ -781,34 +758,24 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 
 			String requestIdMessageValue = getString( requestIdMessage, context, input );
 		
-			int successReqTNNodesLen= 0;
-			int failureReqTNNodesLen= 0;						
-									
 			// Get the Document for requestIdMessageValue
 			XMLMessageParser domMsg = new XMLMessageParser(requestIdMessageValue);				
 
-			// If FailureRequest node exists in domMsg
-			if (domMsg.exists("FailureRequest"))
-			{
-				successReqTNNodesLen = domMsg.getChildCount("FailureRequest");
-				if( Debug.isLevelEnabled(Debug.MSG_STATUS) ){
-				  Debug.log( Debug.MSG_STATUS, "Child Node count FailureRequest"+domMsg.getChildCount("FailureRequest") );
-				}
-			}
+			// Get the Failure Request Ids and TNs in one pass
+			List requestIdTNs = getRequestIdTNs(domMsg, "FailureRequest");
+
+			ResponseNodeAppender tnRequestIds = new ResponseNodeAppender(response,
+					SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".TnRequestIdList.TnRequestId");
 
 			// Traverse through all the Failure Request Id and set the request
 			// Id in Synchronous response XML
-			for (int i = 0; i < successReqTNNodesLen; i++) {												
+			for (int i = 0; i < requestIdTNs.size(); i++) {												
+
+				String[] requestIdTN = (String[]) requestIdTNs.get(i);
 
-				// Extract Request Id from XML file
-				requestId = (String) super.get(requestIdMessage + "."
-						+ "FailureRequest.RequestIdTN"
-						+ "(" + i + ").RequestId", context, input);
+				requestId = requestIdTN[0];
 				
-				// Extract TN from XML file
-				requestTn = (String) super.get(requestIdMessage + "."
-						+ "FailureRequest.RequestIdTN"
-						+ "(" + i + ").RequestTn", context, input);
+				requestTn = requestIdTN[1];
 				
 				/*
 				 * Added this check for the support of backward compatibility.
@@ -822,11 +789,11 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 				 */				
 				if(requestIdSupportFlag != null && requestIdSupportFlag.equals("1")){					
 										
-					response.setValue(SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".TnRequestIdList.TnRequestId(" + i + ")." +
-							".Tn", requestTn);					
+					tnRequestIds.append();
+
+					tnRequestIds.setValue("Tn", requestTn);					
 					
-					response.setValue(SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".TnRequestIdList.TnRequestId(" + i + ")." +
-							".RequestId", requestId);
+					tnRequestIds.setValue("RequestId", requestId);
 					
 				}else{
 					response.setValue( SOAConstants.REQUEST_ID_PATH, requestId );
@@ -854,10 +821,15 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 
 		// Traverse through all the Rule Id and construct the Failure 
 		// Synchronous Response as per the new format.
+		ResponseNodeAppender ruleErrors = 
+						new ResponseNodeAppender(response, SOAConstants.RULE_ERROR_PATH);
+
 		for(int msgCount = 0 ; msgCount < ruleIdList.getLength() ; msgCount++)
 		{
 			 Node ruleIdNode = ruleIdList.item(msgCount);
 
+			 ruleErrors.append();
+
 			 ruleId = XMLMessageBase.getNodeValue(ruleIdNode);			 
              
 			 if( Debug.isLevelEnabled(Debug.MSG_STATUS) ){
@@ -865,8 +837,7 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 					"extracted the ruleid: " +ruleId);
 			 }
 
-			 response.setValue( SOAConstants.RULE_ERROR_PATH +"("
-			 +msgCount+")"+"."+"RuleId" , ruleId );
+			 ruleErrors.setValue( "RuleId", ruleId );
 
 			 Node ruleMsgNode = ruleMsgList.item(msgCount);
 
@@ -876,8 +847,7 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 					"extracted the ruleMsg: " +ruleMsg);
 			 }
 
-			 response.setValue( SOAConstants.RULE_ERROR_PATH +"("
-			 +msgCount+")"+"."+"RuleMessage", ruleMsg );
+			 ruleErrors.setValue( "RuleMessage", ruleMsg );
 
 			 Node ruleContextNode = ruleContextList.item(msgCount);
 
@@ -887,8 +857,7 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 					"extracted the ruleContext: " +ruleContext);
 			 }
 
-			 response.setValue( SOAConstants.RULE_ERROR_PATH +"("
-			 +msgCount+")"+"."+"RuleContext" , ruleContext );
+			 ruleErrors.setValue( "RuleContext", ruleContext );
 
 			 Node ruleContextValueNode = ruleContextValueList.item(msgCount);
 
@@ -900,8 +869,7 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 					"extracted the ruleContextValue: " +ruleContextValue);
 			 }
 
-			 response.setValue( SOAConstants.RULE_ERROR_PATH +"("
-			 +msgCount+")"+"."+"RuleContextValue" ,ruleContextValue );
+			 ruleErrors.setValue( "RuleContextValue", ruleContextValue );
 			 
 
 		}
@@ -918,6 +886,65 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 	
 	
 
+	/**
+	 * Gets the request Ids and TNs of the RequestIdTN entries in the given
+	 * list of the request Id message. They are read from the parsed message
+	 * in one pass, rather than through an indexed location for each value,
+	 * each of which would parse the whole message again.
+	 *
+	 * @param domMsg the parsed request Id message.
+	 * @param listName "SuccessRequest" or "FailureRequest".
+	 * @return List of String[]{ RequestId, RequestTn }, empty if the list
+	 *         does not exist.
+	 * @exception MessageException if an entry has no RequestId or RequestTn.
+	 */
+	private List getRequestIdTNs(XMLMessageParser domMsg, String listName)
+												throws MessageException {
+
+		List requestIdTNs = new ArrayList();
+
+		if (!domMsg.exists(listName)) {
+			return requestIdTNs;
+		}
+
+		Node list = domMsg.getNode(listName);
+
+		for (Node child = list.getFirstChild(); child != null; child = child.getNextSibling()) {
+
+			if (child.getNodeType() != Node.ELEMENT_NODE) {
+				continue;
+			}
+
+			requestIdTNs.add(new String[] { getChildValue(child, "RequestId"),
+											getChildValue(child, "RequestTn") });
+		}
+
+		if (Debug.isLevelEnabled(Debug.MSG_STATUS)) {
+			Debug.log(Debug.MSG_STATUS, "Child Node count " + listName + requestIdTNs.size());
+		}
+
+		return requestIdTNs;
+	}
+
+	/**
+	 * Gets the value of the named child of the given node.
+	 *
+	 * @exception MessageException if there is no such child.
+	 */
+	private static String getChildValue(Node parent, String name)
+												throws MessageException {
+
+		for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling()) {
+
+			if (child.getNodeType() == Node.ELEMENT_NODE && name.equals(child.getNodeName())) {
+				return XMLMessageBase.getNodeValue(child);
+			}
+		}
+
+		throw new MessageException("ERROR: Unable to get [" + name + "] of ["
+				+ parent.getNodeName() + "] from the request Id message.");
+	}
+
 	private XMLMessageGenerator failSVUniqueExpSupported(String errorValue,
 			String requestId, String requestStatus, String actionValue,
 			String regionId, String dateTimeSent, String tn)
@@ -972,18 +999,18 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 			List<String> tnList = Arrays.asList(tnTokens);
 			int tncount = 0;
 			Iterator<String> itr = tnList.iterator();
+			ResponseNodeAppender tnRequestIds = new ResponseNodeAppender(response,
+					SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".TnRequestIdList.TnRequestId");
 			while (itr.hasNext()) {
 
 				if (requestIdSupportFlag != null
 						&& requestIdSupportFlag.equals("1")) {
 
-					response.setValue(SOAConstants.SYNCHRONUS_RESPONSE_PATH
-							+ ".TnRequestIdList.TnRequestId(" + tncount + ")."
-							+ ".Tn", itr.next());
+					tnRequestIds.append();
+
+					tnRequestIds.setValue("Tn", itr.next());
 
-					response.setValue(SOAConstants.SYNCHRONUS_RESPONSE_PATH
-							+ ".TnRequestIdList.TnRequestId(" + tncount + ")."
-							+ ".RequestId", requestId);
+					tnRequestIds.setValue("RequestId", requestId);
 
 				} else {
 					response.setValue(SOAConstants.REQUEST_ID_PATH, requestId);
@@ -1012,9 +1039,13 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 				.getElementsByTagName("CONTEXT_VALUE");
 
 		// for getting the ruleid
+		ResponseNodeAppender ruleErrors = new ResponseNodeAppender(response, SOAConstants.RULE_ERROR_PATH);
+
 		for (int msgCount = 0; msgCount < ruleIdList.getLength(); msgCount++) {
 			Node ruleIdNode = ruleIdList.item(msgCount);
 
+			ruleErrors.append();
+
 			ruleId = XMLMessageBase.getNodeValue(ruleIdNode);
 
 			if (Debug.isLevelEnabled(Debug.MSG_STATUS)) {
@@ -1023,8 +1054,7 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 						+ "extracted the ruleid: " + ruleId);
 			}
 
-			response.setValue(SOAConstants.RULE_ERROR_PATH + "(" + msgCount
-					+ ")" + "." + "RuleId", ruleId);
+			ruleErrors.setValue("RuleId", ruleId);
 
 			Node ruleMsgNode = ruleMsgList.item(msgCount);
 
@@ -1036,8 +1066,7 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 						+ "extracted the ruleMsg: " + ruleMsg);
 			}
 
-			response.setValue(SOAConstants.RULE_ERROR_PATH + "(" + msgCount
-					+ ")" + "." + "RuleMessage", ruleMsg);
+			ruleErrors.setValue("RuleMessage", ruleMsg);
 
 			Node ruleContextNode = ruleContextList.item(msgCount);
 
@@ -1049,8 +1078,7 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 						+ "extracted the ruleContext: " + ruleContext);
 			}
 
-			response.setValue(SOAConstants.RULE_ERROR_PATH + "(" + msgCount
-					+ ")" + "." + "RuleContext", ruleContext);
+			ruleErrors.setValue("RuleContext", ruleContext);
 
 			Node ruleContextValueNode = ruleContextValueList.item(msgCount);
 
@@ -1066,8 +1094,7 @@ public class GenerateSyncResponse extends MessageProcessorBase {
 
 			}
 
-			response.setValue(SOAConstants.RULE_ERROR_PATH + "(" + msgCount
-					+ ")" + "." + "RuleContextValue", ruleContextValue);
+			ruleErrors.setValue("RuleContextValue", ruleContextValue);
 
 		}
 
@@ -51,6 +51,15 @@ public class LoadBalancingCorbaClient extends MessageProcessorBase {
      */
     public static final String DOWN_SERVER_RETRY_TIME_PROP =
                                   "DOWN_SERVER_RETRY_TIME";
+
+    /**
+     * This optional property indicates how the server for each request
+     * is picked: ROUND_ROBIN (the default) or LEAST_LOADED, which picks
+     * the server with the fewest outstanding requests, weighted by its
+     * average latency.
+     */
+    public static final String SERVER_SELECTION_MODE_PROP =
+                                  "SERVER_SELECTION_MODE";
     /**
      * The name used by properties that indicate the name of
      * available servers.
@@ -107,6 +116,7 @@ public class LoadBalancingCorbaClient extends MessageProcessorBase {
           getRequiredPropertyValue( SERVER_NAME_TYPE_PREFIX_PROP );
        long downServerRetryTime = Long.parseLong(
     			  getRequiredPropertyValue(DOWN_SERVER_RETRY_TIME_PROP));
+       String selectionMode = getPropertyValue( SERVER_SELECTION_MODE_PROP );
        
        String clientCacheKey = serverNameKey+"-"+propertyTypePrefix;
 
@@ -136,7 +146,8 @@ public class LoadBalancingCorbaClient extends MessageProcessorBase {
                                                  propertyTypePrefix + "]");
                 }
 
-                client = new RoundRobinCorbaClient(serverNames,serverNameKey,propertyTypePrefix,downServerRetryTime);
+                client = new RoundRobinCorbaClient(serverNames,serverNameKey,propertyTypePrefix,
+                                                   downServerRetryTime,selectionMode);
 
                 clientCache.put(clientCacheKey, client);
 
@@ -191,12 +202,46 @@ public class LoadBalancingCorbaClient extends MessageProcessorBase {
         finally
         {
         	ThreadMonitor.stop(tmti);
+
+            if( Debug.isLevelEnabled( Debug.IO_STATUS ) )
+                Debug.log( Debug.IO_STATUS, "Server load: " + client.describe() );
         }
 
         return formatNVPair( response );
 
     }
 
+    /**
+     * Describes the in-flight count, latency and availability of the
+     * servers of each client.
+     *
+     * @return String
+     */
+    public static String describeClients(){
+
+       StringBuffer sb = new StringBuffer();
+
+       synchronized( clientCache ){
+
+          Iterator iter = clientCache.entrySet().iterator();
+
+          while( iter.hasNext() ){
+
+             Map.Entry entry = (Map.Entry) iter.next();
+
+             sb.append( entry.getKey() );
+             sb.append( ": " );
+             sb.append( ((RoundRobinCorbaClient) entry.getValue()).describe() );
+             sb.append( "\n" );
+
+          }
+
+       }
+
+       return sb.toString();
+
+    }
+
     /**
      *
      * @param key String
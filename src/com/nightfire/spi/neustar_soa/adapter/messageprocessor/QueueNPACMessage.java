@@ -20,6 +20,8 @@ import com.nightfire.framework.util.Debug;
 import com.nightfire.mgrcore.queue.QueueException;
 
 import com.nightfire.spi.neustar_soa.queue.NPACMessageProducer;
+import com.nightfire.spi.neustar_soa.queue.NPACMessageType;
+import com.nightfire.spi.neustar_soa.queue.PollerWakeup;
 
 /**
  * This message processor is used to queue an outbound NPAC request message.
@@ -96,6 +98,9 @@ public class QueueNPACMessage extends MessageProcessorBase {
                           npacMessage,
                           spid);
 
+         // wake any local poller waiting for messages for this SPID
+         PollerWakeup.messageQueued(NPACMessageType.NPAC_MESSAGE_TYPE, spid);
+
       }
       catch(QueueException qex){
 
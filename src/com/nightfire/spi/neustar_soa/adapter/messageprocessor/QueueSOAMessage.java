@@ -19,7 +19,9 @@ import com.nightfire.framework.util.Debug;
 
 import com.nightfire.mgrcore.queue.QueueException;
 
+import com.nightfire.spi.neustar_soa.queue.PollerWakeup;
 import com.nightfire.spi.neustar_soa.queue.SOAMessageProducer;
+import com.nightfire.spi.neustar_soa.queue.SOAMessageType;
 
 /**
  * This message processor is used to queue an inbound NPAC reply or
@@ -83,6 +85,9 @@ public class QueueSOAMessage extends MessageProcessorBase {
 
          producer.enqueue( npacMessage );
 
+         // wake any local pollers waiting for messages bound for the SOA
+         PollerWakeup.messageQueued(SOAMessageType.SOA_MESSAGE_TYPE, null);
+
       }
       catch(QueueException qex){
 
@@ -0,0 +1,319 @@
+package com.nightfire.spi.neustar_soa.adapter.messageprocessor;
+
+import java.util.StringTokenizer;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import com.nightfire.framework.message.MessageException;
+import com.nightfire.framework.message.common.xml.XMLMessageBase;
+import com.nightfire.framework.message.generator.xml.XMLMessageGenerator;
+import com.nightfire.framework.util.Debug;
+import com.nightfire.spi.neustar_soa.utils.SOAConstants;
+
+
+/**
+ * Appends repeating elements, such as the TnRequestId or SvData entries of a
+ * response, to a response being built by an XMLMessageGenerator.
+ *
+ * Setting values through indexed paths such as "TnRequestIdList.TnRequestId(i).Tn"
+ * resolves the path from the root, and counts the preceding siblings, on every
+ * call, so building a list of n entries that way takes time proportional to n
+ * squared. This locates the list's parent node once, appends each new entry
+ * to it, and sets the entry's values relative to the entry, so a list is built
+ * in a single pass. The resulting XML is the same.
+ *
+ * As with the generator, the list's parent node is only created once the
+ * first entry is appended.
+ */
+public class ResponseNodeAppender {
+
+	/**
+	 * The response being built.
+	 */
+	private XMLMessageGenerator response = null;
+
+	/**
+	 * The generator path of the node the entries are appended to, or null
+	 * if they are appended to the root.
+	 */
+	private String parentPath = null;
+
+	/**
+	 * The node the entries are appended to, once the first is appended.
+	 */
+	private Node parent = null;
+
+	/**
+	 * The name of the repeating element.
+	 */
+	private String entryName = null;
+
+	/**
+	 * The entry most recently appended.
+	 */
+	private Node current = null;
+
+	/**
+	 * Creates an appender for the repeating element at the given path.
+	 *
+	 * @param response the response being built.
+	 * @param entryPath the generator path of the repeating element, without
+	 *                  an index, e.g. SOAConstants.SV_DATA_PATH.
+	 */
+	public ResponseNodeAppender( XMLMessageGenerator response, String entryPath ) {
+
+		this.response = response;
+
+		int lastDot = entryPath.lastIndexOf( '.' );
+
+		entryName = entryPath.substring( lastDot + 1 );
+
+		if ( lastDot >= 0 ) {
+			parentPath = entryPath.substring( 0, lastDot );
+		}
+
+	}
+
+	/**
+	 * Appends a new entry after any existing entries, and makes it the
+	 * current entry.
+	 *
+	 * @return Node the new entry.
+	 *
+	 * @exception MessageException if the parent node can't be created.
+	 */
+	public Node append() throws MessageException {
+
+		if ( parent == null ) {
+
+			Node root = response.getDocument().getDocumentElement();
+
+			parent = ( parentPath == null ) ? root : getNode( root, parentPath );
+
+		}
+
+		Document doc = parent.getOwnerDocument();
+
+		Element entry = doc.createElement( entryName );
+
+		parent.appendChild( entry );
+
+		current = entry;
+
+		return current;
+
+	}
+
+	/**
+	 * Sets a value in the current entry, creating the node if necessary.
+	 *
+	 * @param path the path of the node relative to the entry, e.g. "Tn"
+	 *             or ".GTTData.ClassDPC".
+	 * @param value the value.
+	 *
+	 * @exception MessageException if the node can't be created.
+	 */
+	public void setValue( String path, String value ) throws MessageException {
+
+		Node node = create( path );
+
+		try {
+
+			XMLMessageBase.setNodeValue( node, value );
+
+		}
+		catch ( Exception e ) {
+
+			throw toMessageException( e );
+
+		}
+
+	}
+
+	/**
+	 * Creates an empty node in the current entry, if it doesn't already exist.
+	 *
+	 * @param path the path of the node relative to the entry.
+	 *
+	 * @return Node the node.
+	 *
+	 * @exception MessageException if the node can't be created.
+	 */
+	public Node create( String path ) throws MessageException {
+
+		if ( current == null ) {
+
+			throw new MessageException( "ERROR: No [" + entryName
+										+ "] entry has been appended." );
+
+		}
+
+		return getNode( current, path );
+
+	}
+
+	/**
+	 * Gets the current entry.
+	 *
+	 * @return Node the entry most recently appended, or null.
+	 */
+	public Node getCurrent() {
+
+		return current;
+
+	}
+
+	/**
+	 * Gets the node at the given path below the given node, creating it if
+	 * necessary. Empty path components, as in "TnRequestId(0)..Tn", are
+	 * skipped, as the generator does.
+	 */
+	private static Node getNode( Node from, String path ) throws MessageException {
+
+		StringBuffer normalized = new StringBuffer();
+
+		StringTokenizer st = new StringTokenizer( path, "." );
+
+		while ( st.hasMoreTokens() ) {
+
+			if ( normalized.length() > 0 ) {
+				normalized.append( '.' );
+			}
+
+			normalized.append( st.nextToken() );
+
+		}
+
+		if ( normalized.length() == 0 ) {
+			return from;
+		}
+
+		try {
+
+			return XMLMessageBase.getNode( from, normalized.toString(), true );
+
+		}
+		catch ( Exception e ) {
+
+			throw toMessageException( e );
+
+		}
+
+	}
+
+	/**
+	 * For testing. Builds synchronous responses with TnRequestId lists of the
+	 * given sizes, through indexed paths and through an appender, checks that
+	 * the generated XML is identical, and prints the time each took.
+	 *
+	 * @param args the list sizes, e.g. 1000 10000
+	 */
+	public static void main( String[] args ) {
+
+		if ( args.length == 0 ) {
+
+			System.out.println( "\n\nUSAGE: ResponseNodeAppender <tn-count> [<tn-count> ...]\n\n" );
+
+			return;
+
+		}
+
+		Debug.disableAll();
+
+		try {
+
+			for ( int Ix = 0; Ix < args.length; Ix++ ) {
+
+				int count = Integer.parseInt( args[Ix] );
+
+				// warm up
+				build( count, false );
+				build( count, true );
+
+				long start = System.currentTimeMillis();
+
+				String indexed = build( count, false ).generate();
+
+				long indexedTime = System.currentTimeMillis() - start;
+
+				start = System.currentTimeMillis();
+
+				String appended = build( count, true ).generate();
+
+				long appendedTime = System.currentTimeMillis() - start;
+
+				System.out.println( "[" + count + "] TNs: indexed paths took ["
+									+ indexedTime + "] msec, appender took ["
+									+ appendedTime + "] msec, output ["
+									+ ( indexed.equals( appended ) ? "identical" : "DIFFERENT" )
+									+ "], [" + appended.length() + "] chars." );
+
+			}
+
+		}
+		catch ( Exception e ) {
+
+			e.printStackTrace();
+
+		}
+
+	}
+
+	/**
+	 * Builds a response with the given number of TnRequestId entries.
+	 */
+	private static XMLMessageGenerator build( int count, boolean useAppender )
+													throws MessageException {
+
+		XMLMessageGenerator response =
+							new XMLMessageGenerator( SOAConstants.RESPONSE_ROOT );
+
+		response.setValue( SOAConstants.REQUEST_STATUS_PATH, "success" );
+
+		ResponseNodeAppender tnRequestIds = new ResponseNodeAppender( response,
+				SOAConstants.SYNCHRONUS_RESPONSE_PATH + ".TnRequestIdList.TnRequestId" );
+
+		for ( int i = 0; i < count; i++ ) {
+
+			String tn = "303-555-" + ( 1000000 + i );
+
+			String requestId = String.valueOf( 5000000 + i );
+
+			if ( useAppender ) {
+
+				tnRequestIds.append();
+
+				tnRequestIds.setValue( "Tn", tn );
+
+				tnRequestIds.setValue( "RequestId", requestId );
+
+			}
+			else {
+
+				response.setValue( SOAConstants.SYNCHRONUS_RESPONSE_PATH
+								   + ".TnRequestIdList.TnRequestId(" + i + ")..Tn", tn );
+
+				response.setValue( SOAConstants.SYNCHRONUS_RESPONSE_PATH
+								   + ".TnRequestIdList.TnRequestId(" + i + ")..RequestId", requestId );
+
+			}
+
+		}
+
+		return response;
+
+	}
+
+	private static MessageException toMessageException( Exception e ) {
+
+		if ( e instanceof MessageException ) {
+			return (MessageException) e;
+		}
+
+		return new MessageException( e.getMessage() );
+
+	}
+
+}
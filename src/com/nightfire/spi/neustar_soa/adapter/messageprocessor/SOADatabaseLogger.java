@@ -59,6 +59,7 @@ import java.util.StringTokenizer;
 import org.w3c.dom.Document;
 
 import com.nightfire.adapter.messageprocessor.DBMessageProcessorBase;
+import com.nightfire.adapter.messageprocessor.GroupCommitWriter;
 import com.nightfire.adapter.util.DBMetaData;
 import com.nightfire.adapter.util.TableMetaData;
 import com.nightfire.common.ProcessingException;
@@ -134,6 +135,33 @@ public class SOADatabaseLogger extends DBMessageProcessorBase {
 	 * The value of columns
 	 */	
 	private ArrayList columns;
+
+	/**
+	 * Whether this logger's rows are committed asynchronously, by the writer
+	 * for the table and the request's database pool, or inserted by the
+	 * request itself.
+	 */
+	private boolean asyncLogging = false;
+
+	/**
+	 * The maximum number of rows queued for the writer.
+	 */
+	private int asyncQueueSize = GroupCommitWriter.DEFAULT_QUEUE_SIZE;
+
+	/**
+	 * The maximum number of rows the writer commits together.
+	 */
+	private int asyncBatchSize = GroupCommitWriter.DEFAULT_BATCH_SIZE;
+
+	/**
+	 * Whether the request waits for its rows to be committed.
+	 */
+	private boolean waitForCommit = true;
+
+	/**
+	 * The time, in milliseconds, to wait for the rows to be committed.
+	 */
+	private long commitTimeout = GroupCommitWriter.DEFAULT_COMMIT_TIMEOUT;
 	
 	/**
 	 * Constructor.
@@ -222,6 +250,22 @@ public class SOADatabaseLogger extends DBMessageProcessorBase {
 					+ "].");
 		}
 
+		if (StringUtils.getBoolean(
+				getPropertyValue(GroupCommitWriter.ASYNC_LOGGING_PROP), false)) {
+
+			if (usingContextConnection) {
+
+				Debug.warning("SOADatabaseLogger: Ignoring "
+						+ GroupCommitWriter.ASYNC_LOGGING_PROP
+						+ " since logging is part of the overall driver transaction.");
+
+			} else if (StringUtils.hasValue(tableName)) {
+
+				initializeAsyncLogging(errorBuffer);
+
+			}
+		}
+
 		separator = getPropertyValue(SOAConstants.LOCATION_SEPARATOR_PROP);
 
 		if (!StringUtils.hasValue(separator)) {
@@ -390,6 +434,12 @@ public class SOADatabaseLogger extends DBMessageProcessorBase {
 			tmti = ThreadMonitor.start( "Message-processor [" + getName() + "] started processing the request" );
 			// Extract the column values from the arguments.
 			extractMessageData(mpContext, inputObject);
+
+			if (asyncLogging && insertAsynchronously()) {
+
+				return (formatNVPair(inputObject));
+
+			}
 			
 			// Get a database connection from the appropriate location - based 
 			// on transaction characteristics.
@@ -521,6 +571,136 @@ public class SOADatabaseLogger extends DBMessageProcessorBase {
 		return (formatNVPair(inputObject));
 	}
 
+	/**
+	 * Reads the asynchronous logging properties.
+	 *
+	 * @param errorBuffer buffer for any property errors.
+	 */
+	private void initializeAsyncLogging(StringBuffer errorBuffer) {
+
+		waitForCommit = StringUtils.getBoolean(
+				getPropertyValue(GroupCommitWriter.WAIT_FOR_COMMIT_PROP), true);
+
+		try {
+
+			String strTemp =
+				getPropertyValue(GroupCommitWriter.ASYNC_QUEUE_SIZE_PROP);
+
+			if (StringUtils.hasValue(strTemp)) {
+				asyncQueueSize = StringUtils.getInteger(strTemp);
+			}
+
+			strTemp = getPropertyValue(GroupCommitWriter.ASYNC_BATCH_SIZE_PROP);
+
+			if (StringUtils.hasValue(strTemp)) {
+				asyncBatchSize = StringUtils.getInteger(strTemp);
+			}
+
+			strTemp = getPropertyValue(GroupCommitWriter.COMMIT_TIMEOUT_PROP);
+
+			if (StringUtils.hasValue(strTemp)) {
+				commitTimeout = StringUtils.getInteger(strTemp);
+			}
+
+		} catch (FrameworkException e) {
+
+			errorBuffer.append("Asynchronous logging property value is invalid. "
+								+ e.getMessage() + "\n");
+
+			return;
+
+		}
+
+		asyncLogging = true;
+
+		if (Debug.isLevelEnabled(Debug.SYSTEM_CONFIG)) {
+			Debug.log(Debug.SYSTEM_CONFIG,
+				"Rows will be group-committed asynchronously, waiting for commit? ["
+					+ waitForCommit + "], commit timeout [" + commitTimeout
+					+ "] msec.");
+		}
+	}
+
+	/**
+	 * Captures the row this logger inserts, and queues it to be
+	 * group-committed. If waiting for the commit, a failure is thrown, and
+	 * reported to the driver as for a synchronous insert; otherwise it is
+	 * only logged.
+	 *
+	 * @return true if the row was handled, or false if it couldn't be queued
+	 *         and must be inserted by the caller.
+	 *
+	 * @exception ProcessingException if the insert failed.
+	 * @exception MessageException if the message is bad.
+	 */
+	private boolean insertAsynchronously()
+		throws MessageException, ProcessingException {
+
+		// The writer depends on the request's database pool, so is looked up
+		// each time.
+		GroupCommitWriter asyncWriter = GroupCommitWriter.getInstance(
+			tableName, asyncQueueSize, asyncBatchSize);
+
+		GroupCommitWriter.Unit unit =
+			asyncWriter.createUnit(waitForCommit ? null : asyncFailureLogger);
+
+		try {
+
+			insert(unit.getConnection());
+
+		} catch (ProcessingException e) {
+
+			if (!unit.isUnsupported()) {
+				throw e;
+			}
+
+		} finally {
+
+			unit.release();
+
+		}
+
+		if (unit.isUnsupported()) {
+
+			if (Debug.isLevelEnabled(Debug.MSG_STATUS)) {
+				Debug.log(Debug.MSG_STATUS,
+					"Row can't be group-committed, so inserting it synchronously.");
+			}
+
+			return false;
+		}
+
+		if (!asyncWriter.submit(unit)) {
+
+			return false;
+
+		}
+
+		if (waitForCommit) {
+
+			unit.await(commitTimeout);
+
+		}
+
+		return true;
+	}
+
+	/**
+	 * Logs the failures of rows which the request didn't wait for.
+	 */
+	private final GroupCommitWriter.FailureCallback asyncFailureLogger =
+		new GroupCommitWriter.FailureCallback() {
+
+			public void failed(GroupCommitWriter.Unit unit, Exception e) {
+
+				Debug.log(Debug.ALL_ERRORS,
+					"ERROR: SOADatabaseLogger: Asynchronous logging to database table ["
+						+ tableName + "] failed after the request completed: "
+						+ e.getMessage());
+
+			}
+		};
+
 	/**
 	 * Insert a single row into the database table using the given 
 	 * connection.
@@ -855,6 +855,11 @@ public class SOALocalQuery extends MessageProcessorBase
 			
 		}
 
+		// appends each record's node, so that the path to it is not resolved
+		// from the root for every value
+		ResponseNodeAppender dataEntries = 
+							new ResponseNodeAppender( response, dataPath );
+
 		// loop over the all list
 		while ( iter.hasNext() )
 		{
@@ -865,16 +870,19 @@ public class SOALocalQuery extends MessageProcessorBase
 
 			npaNxxX = new StringBuffer();
 			
+			// add the record's node after the previous record
+			dataEntries.append();
+			
 			if( queryReplyType.equalsIgnoreCase( 
 											SOAConstants.NBR_QUERY_REPLY ) )
 			{
 				
-				response.create( dataPath + "(" + i + ").BlockId" );
+				dataEntries.create( "BlockId" );
 													
 			}else
 			{
 				
-				response.create( dataPath + "(" + i + ").SvId" );
+				dataEntries.create( "SvId" );
 				
 			}
 
@@ -915,8 +923,7 @@ public class SOALocalQuery extends MessageProcessorBase
 													"Creating Node : NpaNxxX..");
 						}
 	
-						response.setValue( dataPath 
-											+ "(" + i + ").NpaNxxX"  ,
+						dataEntries.setValue( "NpaNxxX"  ,
 											npaNxxX.toString() );
 					}
 					if( Debug.isLevelEnabled( Debug.SYSTEM_CONFIG ) ){
@@ -924,8 +931,7 @@ public class SOALocalQuery extends MessageProcessorBase
 											"Creating Node : " + columnNode[2] );
 					}
 
-					response.setValue( dataPath 
-												+ "(" + i + ")." + columnNode[2] , 
+					dataEntries.setValue( columnNode[2] , 
 												columnNode[1] );					
 						
 				
@@ -940,8 +946,7 @@ public class SOALocalQuery extends MessageProcessorBase
 												+ SOAConstants.DOWNLOAD_REASON_NODE );
 						}
 						
-						response.setValue( dataPath 
-							+ "(" + i + ")" + SOAConstants.DOWNLOAD_REASON_NODE , 
+						dataEntries.setValue( SOAConstants.DOWNLOAD_REASON_NODE , 
 							SOAConstants.DOWNLOAD_REASON_NEW );
 					}
                     if( Debug.isLevelEnabled( Debug.SYSTEM_CONFIG ) ){
@@ -949,8 +954,7 @@ public class SOALocalQuery extends MessageProcessorBase
 											"Creating Node : " + columnNode[2] );
 					}
 
-					response.setValue( dataPath 
-												+ "(" + i + ")." + columnNode[2] , 
+					dataEntries.setValue( columnNode[2] , 
 												columnNode[1] );
 												
 				// if column name is 'ONSP'
@@ -961,19 +965,16 @@ public class SOALocalQuery extends MessageProcessorBase
 											"Creating Node : " + columnNode[2] );
 					}
 
-					response.setValue( dataPath 
-											+ "(" + i + ")." + columnNode[2] , 
+					dataEntries.setValue( columnNode[2] , 
 											columnNode[1] );
 												
-					response.create( dataPath + "(" + i + ").NewSPDueDate" );
+					dataEntries.create( "NewSPDueDate" );
 					
-					response.create( 
-								dataPath + "(" + i + ").NewSPCreateTimestamp" );
+					dataEntries.create( "NewSPCreateTimestamp" );
 					
-					response.create( dataPath + "(" + i + ").OldSPDueDate" );
+					dataEntries.create( "OldSPDueDate" );
 					
-					response.create( 
-								dataPath + "(" + i + ").OldSPAuthorization" );
+					dataEntries.create( "OldSPAuthorization" );
 												
 				// if column name is 'FAILEDSPFLAG'
 				}else if( columnNode[0].equals( 
@@ -1036,8 +1037,7 @@ public class SOALocalQuery extends MessageProcessorBase
 											"Creating Node : " + columnNode[2] );
 					}
 			
-					response.setValue( dataPath 
-								+ "(" + i + ")"+ SOAConstants.GTTDATA_NODE 
+					dataEntries.setValue( SOAConstants.GTTDATA_NODE 
 								+"."+ columnNode[2]  , columnNode[1] );
 		
 		
@@ -1048,10 +1048,9 @@ public class SOALocalQuery extends MessageProcessorBase
 											"Creating Node : " + columnNode[2] );
 					}
 			
-					response.setValue( dataPath 
-							+ "(" + i + ")." + columnNode[2] , columnNode[1] );
+					dataEntries.setValue( columnNode[2] , columnNode[1] );
 							
-					response.create( dataPath + "(" + i + ").CreateTimestamp" );
+					dataEntries.create( "CreateTimestamp" );
 							
 							
 							
@@ -1062,10 +1061,9 @@ public class SOALocalQuery extends MessageProcessorBase
 											"Creating Node : " + columnNode[2] );
 					}
 			
-					response.setValue( dataPath 
-							+ "(" + i + ")." + columnNode[2] , columnNode[1] );
+					dataEntries.setValue( columnNode[2] , columnNode[1] );
 							
-					response.create( dataPath + "(" + i + ").LnpType" );
+					dataEntries.create( "LnpType" );
 							
 							
 							
@@ -1076,8 +1074,7 @@ public class SOALocalQuery extends MessageProcessorBase
 										   "Creating Node : " + columnNode[2] );
 				   }
 			
-				   response.setValue( dataPath 
-						   + "(" + i + ")." + columnNode[2] , columnNode[1] );
+				   dataEntries.setValue( columnNode[2] , columnNode[1] );
 							
 				}						  
 	
@@ -1109,6 +1106,11 @@ public class SOALocalQuery extends MessageProcessorBase
 	
 		Iterator iterator = null;
 	
+		// appends each record's node, so that the path to it is not resolved
+		// from the root for every value
+		ResponseNodeAppender dataEntries = 
+							new ResponseNodeAppender( response, SOAConstants.NPA_NXX_DATA_PATH );
+	
 		int i = 0 ;	
 	
 		
@@ -1121,8 +1123,10 @@ public class SOALocalQuery extends MessageProcessorBase
 		
 			iterator = arrayList.iterator();
 			
-			response.create( 
-					SOAConstants.NPA_NXX_DATA_PATH + "(" + i + ").NpaNxxId" );
+			// add the record's node after the previous record
+			dataEntries.append();
+			
+			dataEntries.create( "NpaNxxId" );
 		
 			// loop over all column node array
 			while( iterator.hasNext() )
@@ -1138,8 +1142,7 @@ public class SOALocalQuery extends MessageProcessorBase
 										"Creating Node : " + columnNode[2] );
 					}
 				
-					response.setValue( SOAConstants.NPA_NXX_DATA_PATH 
-								+ "(" + i + ")"+ SOAConstants.NPANXXVALUE_NODE 
+					dataEntries.setValue( SOAConstants.NPANXXVALUE_NODE 
 								+"."+ columnNode[2]  , columnNode[1] );
 				
 				
@@ -1151,8 +1154,7 @@ public class SOALocalQuery extends MessageProcessorBase
 											"Creating Node : " + columnNode[2] );
 					}
 
-					response.setValue( SOAConstants.NPA_NXX_DATA_PATH 
-											+ "(" + i + ")." + columnNode[2] , 
+					dataEntries.setValue( columnNode[2] , 
 											columnNode[1] );
 					if( Debug.isLevelEnabled( Debug.SYSTEM_CONFIG ) ){	
 						Debug.log( Debug.SYSTEM_CONFIG,
@@ -1160,13 +1162,10 @@ public class SOALocalQuery extends MessageProcessorBase
 											SOAConstants.DOWNLOAD_REASON_NODE );
 					}
 
-					response.setValue( SOAConstants.NPA_NXX_DATA_PATH 
-								+ "(" + i + ")" + 
-								SOAConstants.NPA_NXX_DOWNLOAD_REASON_NODE , 
+					dataEntries.setValue( SOAConstants.NPA_NXX_DOWNLOAD_REASON_NODE , 
 								SOAConstants.DOWNLOAD_REASON_NEW );
 					
-					response.create( SOAConstants.NPA_NXX_DATA_PATH + 
-										"(" + i + ").NpaNxxCreateTimestamp" );
+					dataEntries.create( "NpaNxxCreateTimestamp" );
 				
 					
 	
@@ -1181,15 +1180,13 @@ public class SOALocalQuery extends MessageProcessorBase
 											"Creating Node : " + columnNode[2] );
 					}
 
-					response.setValue( SOAConstants.NPA_NXX_DATA_PATH 
-											+ "(" + i + ")." + columnNode[2] , 
+					dataEntries.setValue( columnNode[2] , 
 											columnNode[1] );
 					
 				}
 				else if( columnNode[0].equals(SOAConstants.STATUS_COL))
 				{
-					response.setValue( SOAConstants.NPA_NXX_DATA_PATH 
-							+ "(" + i + ")." + columnNode[2] , 
+					dataEntries.setValue( columnNode[2] , 
 							columnNode[1] );
 				}
 				
@@ -1201,8 +1198,7 @@ public class SOALocalQuery extends MessageProcessorBase
 											"Creating Node : " + columnNode[2] );
 					}
 					
-					response.setValue( SOAConstants.NPA_NXX_DATA_PATH 
-							+ "(" + i + ")." + columnNode[2] , columnNode[1] );
+					dataEntries.setValue( columnNode[2] , columnNode[1] );
 				
 				}	
 											
@@ -1234,6 +1230,11 @@ public class SOALocalQuery extends MessageProcessorBase
 	
 		Iterator iterator = null;
 	
+		// appends each record's node, so that the path to it is not resolved
+		// from the root for every value
+		ResponseNodeAppender dataEntries = 
+							new ResponseNodeAppender( response, SOAConstants.NPA_NXX_X_DATA_PATH );
+	
 		int i = 0 ;	
 	
 		StringBuffer npaNxxX = null;
@@ -1248,8 +1249,10 @@ public class SOALocalQuery extends MessageProcessorBase
 		
 			npaNxxX = new StringBuffer();
 			
-			response.create( SOAConstants.NPA_NXX_X_DATA_PATH 
-											+ "(" + i + ").SPID" );							
+			// add the record's node after the previous record
+			dataEntries.append();
+			
+			dataEntries.create( "SPID" );							
 		
 			// loop over all column node array
 			while( iterator.hasNext() )
@@ -1273,16 +1276,14 @@ public class SOALocalQuery extends MessageProcessorBase
 										"Creating Node : NpaNxxXValue" );
 					}
 				
-					response.setValue( SOAConstants.NPA_NXX_X_DATA_PATH 
-											+ "(" + i + ").NpaNxxXValue"  , 
+					dataEntries.setValue( "NpaNxxXValue"  , 
 											npaNxxX.toString() );
 				    if( Debug.isLevelEnabled( Debug.SYSTEM_CONFIG ) ){
 						Debug.log( Debug.SYSTEM_CONFIG,
 										"Creating Node : " + columnNode[2] );
 					}
 				
-					response.setValue( SOAConstants.NPA_NXX_X_DATA_PATH 
-										+ "(" + i + ")." + columnNode[2] , 
+					dataEntries.setValue( columnNode[2] , 
 										columnNode[1] );
 				
 				}else if( columnNode[0].equals( 
@@ -1293,27 +1294,22 @@ public class SOALocalQuery extends MessageProcessorBase
 									"Creating Node : " + columnNode[2] );
 					}
 								
-					response.setValue( SOAConstants.NPA_NXX_X_DATA_PATH 
-							+ "(" + i + ")." + columnNode[2] , columnNode[1] );
+					dataEntries.setValue( columnNode[2] , columnNode[1] );
 							
-					response.create( SOAConstants.NPA_NXX_X_DATA_PATH 
-									+ "(" + i + ").NpaNxxXModifiedTimestamp" );
+					dataEntries.create( "NpaNxxXModifiedTimestamp" );
 				    if( Debug.isLevelEnabled( Debug.SYSTEM_CONFIG ) ){
 						Debug.log( Debug.SYSTEM_CONFIG,
 												"Creating Node : " + 
 												SOAConstants.DOWNLOAD_REASON_NODE );
 					}
 
-					response.setValue( SOAConstants.NPA_NXX_X_DATA_PATH 
-								+ "(" + i + ")" + 
-								SOAConstants.NPA_NXX_X_DOWNLOAD_REASON_NODE , 
+					dataEntries.setValue( SOAConstants.NPA_NXX_X_DOWNLOAD_REASON_NODE , 
 								SOAConstants.DOWNLOAD_REASON_NEW );
 								
 				}
 				else if( columnNode[0].equals(SOAConstants.STATUS_COL))
 				{
-					response.setValue( SOAConstants.NPA_NXX_X_DATA_PATH 
-							+ "(" + i + ")." + columnNode[2] , 
+					dataEntries.setValue( columnNode[2] , 
 							columnNode[1] );
 				}
 				else
@@ -1324,8 +1320,7 @@ public class SOALocalQuery extends MessageProcessorBase
 											"Creating Node : " + columnNode[2] );
 					}
 					
-					response.setValue( SOAConstants.NPA_NXX_X_DATA_PATH 
-							+ "(" + i + ")." + columnNode[2] , columnNode[1] );
+					dataEntries.setValue( columnNode[2] , columnNode[1] );
 				
 				}			  
 			
@@ -1357,6 +1352,11 @@ public class SOALocalQuery extends MessageProcessorBase
 	
 		Iterator iterator = null;
 	
+		// appends each record's node, so that the path to it is not resolved
+		// from the root for every value
+		ResponseNodeAppender dataEntries = 
+							new ResponseNodeAppender( response, SOAConstants.LRN_DATA_PATH );
+	
 		int i = 0 ;	
 	
 		// loop over the all list
@@ -1367,7 +1367,10 @@ public class SOALocalQuery extends MessageProcessorBase
 		
 			iterator = arrayList.iterator();
 			
-			response.create( SOAConstants.LRN_DATA_PATH + "(" + i + ").LrnId");
+			// add the record's node after the previous record
+			dataEntries.append();
+			
+			dataEntries.create( "LrnId");
 		
 			// loop over all column node array
 			while( iterator.hasNext() )
@@ -1382,8 +1385,7 @@ public class SOALocalQuery extends MessageProcessorBase
 											"Creating Node : " + columnNode[2] );
 					}
 		
-					response.setValue( SOAConstants.LRN_DATA_PATH 
-							+ "(" + i + ")." + columnNode[2] , columnNode[1] );
+					dataEntries.setValue( columnNode[2] , columnNode[1] );
                     
 					if( Debug.isLevelEnabled( Debug.SYSTEM_CONFIG ) ){
 						Debug.log( Debug.SYSTEM_CONFIG,
@@ -1391,20 +1393,16 @@ public class SOALocalQuery extends MessageProcessorBase
 											SOAConstants.DOWNLOAD_REASON_NODE );
 					}
 
-					response.setValue( SOAConstants.LRN_DATA_PATH 
-								+ "(" + i + ")" + 
-								SOAConstants.LRN_DOWNLOAD_REASON_NODE , 
+					dataEntries.setValue( SOAConstants.LRN_DOWNLOAD_REASON_NODE , 
 								SOAConstants.DOWNLOAD_REASON_NEW );
 								
-					response.create( SOAConstants.LRN_DATA_PATH + 
-											"(" + i + ").LrnCreateTimestamp");
+					dataEntries.create( "LrnCreateTimestamp");
 					
 		
 				}
 				else if( columnNode[0].equals(SOAConstants.STATUS_COL))
 				{
-					response.setValue( SOAConstants.LRN_DATA_PATH 
-							+ "(" + i + ")." + columnNode[2] , 
+					dataEntries.setValue( columnNode[2] , 
 							columnNode[1] );
 				}
 				else
@@ -1414,8 +1412,7 @@ public class SOALocalQuery extends MessageProcessorBase
 											"Creating Node : " + columnNode[2] );
 					}
 					
-					response.setValue( SOAConstants.LRN_DATA_PATH 
-							+ "(" + i + ")." + columnNode[2] , columnNode[1] );	
+					dataEntries.setValue( columnNode[2] , columnNode[1] );	
 				
 				}			
 							
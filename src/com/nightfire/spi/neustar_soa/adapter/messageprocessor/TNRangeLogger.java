@@ -103,6 +103,7 @@ import com.nightfire.spi.common.driver.Converter;
 import com.nightfire.framework.message.generator.xml.XMLMessageGenerator;
 import com.nightfire.spi.neustar_soa.utils.SOAConstants;
 import com.nightfire.spi.neustar_soa.utils.SOAUtility;
+import com.nightfire.spi.neustar_soa.utils.TNRangeSet;
 import com.nightfire.framework.message.parser.xml.XMLMessageParser;
 import com.nightfire.framework.monitor.ThreadMonitor;
 import com.nightfire.spi.neustar_soa.rules.SOACustomDBFunctions.CreateTnAltSpidData;
@@ -2587,33 +2588,17 @@ public class TNRangeLogger extends DBMessageProcessorBase {
 
 		endTN = Integer.parseInt(endTNValue);
 
-		ArrayList tnList = new ArrayList();
-		
-		ArrayList ValidTNList = new ArrayList();
-		
-		//Added for identifying whether its a true range or not
-
-		String tnSeperator = "-";
+		// The TNs still without a subdomain, held as ranges.
+		TNRangeSet tnList = new TNRangeSet();
 		
 		if ( Debug.isLevelEnabled( Debug.MSG_DATA ) ){
 			Debug.log(Debug.MSG_DATA ,"Getting the Value of  Subdomain in getSubdomainValue() method.");
 		}
 		
 		// Process all the TN that the notification contains
-		for (int i = startTN, j = 0; i <= endTN; i++, j++ ) 
-		{
-			StringBuffer tn = new StringBuffer( npaValue );
-			
-			tn.append( tnSeperator );
-			
-			tn.append( nxxValue );
-			
-			tn.append( tnSeperator );
-			
-			tn.append( StringUtils.padNumber( i, SOAConstants.TN_LINE,true, '0' ));
-			
-			tnList.add(tn.toString());
-		}
+		long npaNxx = TNRangeSet.toNumber( npaValue + "-" + nxxValue + "-0000" );
+		
+		tnList.add( npaNxx + startTN, npaNxx + endTN );
 		
 		if ( Debug.isLevelEnabled( Debug.MSG_DATA ) ){
 			Debug.log(Debug.MSG_DATA ," Created All TN List.");
@@ -2643,33 +2628,18 @@ public class TNRangeLogger extends DBMessageProcessorBase {
             
 			int i = 0;
 	
-			int tnCount = tnList.size();
+			int rangeCount = tnList.getRangeCount();
 			
 			if ( Debug.isLevelEnabled( Debug.MSG_DATA ) ){
 				Debug.log(Debug.MSG_DATA , "getSubdomainValue.tnList: "+tnList);
 			}
 			
 			// Get the Subdomain Value direct from Object Table.
-			while (i < tnCount)
+			while (i < rangeCount)
 			{			
-				int j = 1;
-	
 				StringBuffer tnValue = new StringBuffer();
 	
-				while (j <= 1000 && i <= tnCount-1 )
-				{
-					tnValue.append("'");
-					tnValue.append(tnList.get(i).toString());
-					
-					if ( j < 1000 && i != tnCount-1)				
-						tnValue.append("',");
-					else
-						tnValue.append("'");
-	
-					i++;
-					j++;
-					
-				}// end of inner while
+				i = appendPortingTNRanges(tnValue, tnList, i);
 				
 				tnQuery.append("select /*+ index ( SOA_SUBSCRIPTION_VERSION SOA_SV_INDEX_2 SOA_SV_INDEX_7 ) */ PORTINGTN, ALTERNATIVESPID,SUBDOMAINID ");	
 				tnQuery.append(" from SOA_SUBSCRIPTION_VERSION ");
@@ -2680,7 +2650,7 @@ public class TNRangeLogger extends DBMessageProcessorBase {
 					tnQuery.append( " PORTINGTN, SPID, max(CREATEDDATE) ");
 					tnQuery.append(" from SOA_SUBSCRIPTION_VERSION ");
 					tnQuery.append(" where ");
-					tnQuery.append(" PORTINGTN in ("+tnValue+ " ) ");
+					tnQuery.append(" ("+tnValue+ " ) ");
 					tnQuery.append(" and  SPID = '"+spidValue+"' ");
 					tnQuery.append(" and STATUS in ( 'active') and NNSP = SPID  ");
 					tnQuery.append(" and SUBDOMAINID IS NOT NULL ");
@@ -2691,7 +2661,7 @@ public class TNRangeLogger extends DBMessageProcessorBase {
 	
 				mainQuery.append(tnQuery);
 				
-				if (i <= tnCount-1)
+				if (i <= rangeCount-1)
 				{
 					mainQuery.append(" UNION ");
 				}
@@ -2716,52 +2686,35 @@ public class TNRangeLogger extends DBMessageProcessorBase {
 				}
 				
 				tnWithSubdomain.add( new CreateTnSubdomainData(tn, subdomain));
+				
+				//Remove tnNos from tnList, for which we get the SUBDOMAIN Value
+				tnList.remove(TNRangeSet.toNumber(tn));
 			}
 			
 			closeResultSetAndStatement(results, pstmt);
 			
-			//Remove tnNos from tnList, for which we get the SUBDOMAIN Value
-			tnList = getSuccessTN_having_valid_SUBDOMAIN(tnList, tnWithSubdomain );
-			
-			
-     		
-			tnCount = tnList.size();
+			rangeCount = tnList.getRangeCount();
 			
 			if ( Debug.isLevelEnabled( Debug.MSG_DATA ) ){
 				Debug.log(Debug.MSG_DATA,"getSubdomainValue.tnWithSubdomain.size: "+ tnWithSubdomain.size());
-				Debug.log(Debug.MSG_DATA,"getSubdomainValue.tnList.size: "+ tnCount);
+				Debug.log(Debug.MSG_DATA,"getSubdomainValue.tnList.size: "+ tnList.size());
 			}
 			
 			
 			
 			
 			//For rest of the TN we get the ALTSPID value from Object Table.
-			if(tnCount >0)
+			if(rangeCount >0)
 			{
 				 i=0;
 				 
 				 mainQuery.delete(0,mainQuery.length());
 				 tnQuery.delete(0,tnQuery.length());
-					while (i < tnCount)
+					while (i < rangeCount)
 					{			
-						int j = 1;
-			
 						StringBuffer tnValue = new StringBuffer();
 			
-						while (j <= 1000 && i <= tnCount-1 )
-						{
-							tnValue.append("'");
-							tnValue.append(tnList.get(i).toString());
-							
-							if ( j < 1000 && i != tnCount-1)				
-								tnValue.append("',");
-							else
-								tnValue.append("'");
-			
-							i++;
-							j++;
-							
-						}// end of inner while
+						i = appendPortingTNRanges(tnValue, tnList, i);
 						
 						tnQuery.append("select /*+ index ( SOA_SUBSCRIPTION_VERSION SOA_SV_INDEX_2 SOA_SV_INDEX_7 ) */ PORTINGTN, ALTERNATIVESPID,SUBDOMAINID ");	
 						tnQuery.append(" from SOA_SUBSCRIPTION_VERSION ");
@@ -2771,7 +2724,7 @@ public class TNRangeLogger extends DBMessageProcessorBase {
 							tnQuery.append( "(select /*+ index ( SOA_SUBSCRIPTION_VERSION SOA_SV_INDEX_2 SOA_SV_INDEX_6 ) */ PORTINGTN, SPID, max(CREATEDDATE) ");
 							tnQuery.append(" from SOA_SUBSCRIPTION_VERSION ");
 							tnQuery.append(" where ");
-							tnQuery.append(" PORTINGTN in ("+tnValue+ " ) ");
+							tnQuery.append(" ("+tnValue+ " ) ");
 							tnQuery.append(" and  SPID = '"+spidValue+"' ");
 							tnQuery.append(" and STATUS in ( 'active')  and NNSP = SPID ");
 							tnQuery.append(" group by PORTINGTN, SPID)");
@@ -2779,7 +2732,7 @@ public class TNRangeLogger extends DBMessageProcessorBase {
 						
 						mainQuery.append(tnQuery);
 						
-						if (i <= tnCount-1)
+						if (i <= rangeCount-1)
 						{
 							mainQuery.append(" UNION ");
 						}
@@ -2794,6 +2747,8 @@ public class TNRangeLogger extends DBMessageProcessorBase {
 
 					results = pstmt.executeQuery();	
 					
+					TNRangeSet found = new TNRangeSet();
+					
 					 //Stored the result in validTNList with (TN, ALTSPID) combination.
 					 while(results.next())
 					 {
@@ -2806,97 +2761,65 @@ public class TNRangeLogger extends DBMessageProcessorBase {
 							 Debug.log(Debug.MSG_STATUS," in resutlSet , tn["+tn+"] altspid["+altspid+"]");
 						 }
 						 
-						 for( int z=0; z< tnList.size(); z++)
+						 if(tnList.contains(tn) && !found.contains(tn))
 						 {
-							 String portingTn = tnList.get(z).toString();
-							 if( Debug.isLevelEnabled(Debug.MSG_STATUS) ){
-								 Debug.log(Debug.MSG_STATUS,"TNnnn "+tn);
-							 }
-							 if(tn.equals(portingTn))
-							 {
-								 validTNList.add(new CreateTnAltSpidData(tn,altspid));
-								 break;
-							 }
+							 validTNList.add(new CreateTnAltSpidData(tn,altspid));
+							 
+							 found.add(tn);
 						 }
 					 }
 					
 					 closeResultSetAndStatement(results, pstmt);
 					 
-					 tnList = getSuccessTN_having_valid_ALTSPID(tnList, validTNList);
+					 tnList.removeAll(found);
 			}
 			 
-			tnCount = tnList.size();
+			rangeCount = tnList.getRangeCount();
 			
 			if( Debug.isLevelEnabled(Debug.MSG_DATA) ){
 				Debug.log(Debug.MSG_DATA,"getSubdomainValue.validTNList.size()_1"+ validTNList.size());
 			
-				Debug.log(Debug.MSG_DATA,"getSubdomainValue.tnList.size"+ tnCount);
+				Debug.log(Debug.MSG_DATA,"getSubdomainValue.tnList.size"+ tnList.size());
 			}
 			
 			 
 			//Get the ALTSPID from NBRPoolBlcok Table.
-			 if(tnCount > 0)
+			 if(rangeCount > 0)
 			 {
-					
-				 i=0;
-				 
 				 mainQuery.delete(0,mainQuery.length());
 				 tnQuery.delete(0,tnQuery.length());
 				 
-				while (i < tnCount)
-				{			
-					int j = 1;
-	
-					StringBuffer npaValue = new StringBuffer();
-					StringBuffer nxxValue = new StringBuffer();
-					StringBuffer dashxValue = new StringBuffer();
-	
-					while (j <= 1000 && i <= tnCount-1 )
+				// The distinct NPA, NXX and DASHX values of the remaining TNs.
+				HashSet npaValues = new HashSet();
+				HashSet nxxValues = new HashSet();
+				HashSet dashxValues = new HashSet();
+				
+				StringBuffer npaValue = new StringBuffer();
+				StringBuffer nxxValue = new StringBuffer();
+				StringBuffer dashxValue = new StringBuffer();
+				
+				for (i = 0; i < rangeCount; i++)
+				{
+					// Step through the number pool blocks (1000 TNs) the range touches.
+					for (long block = tnList.getRangeStart(i) / 1000; block <= tnList.getRangeEnd(i) / 1000; block++)
 					{
-						npaValue.append("'");
-						npaValue.append(tnList.get(i).toString().substring(SOAConstants.TN_NPA_START_INDEX,SOAConstants.TN_NPA_END_INDEX));
-						
-						nxxValue.append("'");
-						nxxValue.append(tnList.get(i).toString().substring(SOAConstants.TN_NXX_START_INDEX,SOAConstants.TN_NXX_END_INDEX));
-						
-						dashxValue.append("'");
-						dashxValue.append(tnList.get(i).toString().substring(SOAConstants.TN_DASHX_START_INDEX, SOAConstants.TN_DASHX_END_INDEX));
-						
-						
-						if ( j < 1000 && i != tnCount-1)				
-						{
-							npaValue.append("',");
-							nxxValue.append("',");
-							dashxValue.append("',");
-						
-						}
-						else
-						{
-							npaValue.append("'");
-							nxxValue.append("'");
-							dashxValue.append("'");
-						}
-						i++;
-						j++;
+						String tn = TNRangeSet.toTN(block * 1000);
 						
+						appendDistinct(npaValue, npaValues, tn.substring(SOAConstants.TN_NPA_START_INDEX,SOAConstants.TN_NPA_END_INDEX));
+						appendDistinct(nxxValue, nxxValues, tn.substring(SOAConstants.TN_NXX_START_INDEX,SOAConstants.TN_NXX_END_INDEX));
+						appendDistinct(dashxValue, dashxValues, tn.substring(SOAConstants.TN_DASHX_START_INDEX, SOAConstants.TN_DASHX_END_INDEX));
 					}
-					
-					tnQuery.append(" select NPA, NXX, DASHX, ALTERNATIVESPID from SOA_NBRPOOL_BLOCK ");	
-					tnQuery.append(" where ");
-					tnQuery.append(" SPID = '" +spidValue+"'");
-					tnQuery.append(" and NPA in ("+npaValue+" ) ");
-					tnQuery.append(" and NXX in ("+nxxValue+" ) ");
-					tnQuery.append(" and DASHX in ("+dashxValue+" ) ");
-					tnQuery.append(" and STATUS ='active' and ALTERNATIVESPID IS NOT NULL ");
+				}
+				
+				tnQuery.append(" select NPA, NXX, DASHX, ALTERNATIVESPID from SOA_NBRPOOL_BLOCK ");	
+				tnQuery.append(" where ");
+				tnQuery.append(" SPID = '" +spidValue+"'");
+				tnQuery.append(" and NPA in ("+npaValue+" ) ");
+				tnQuery.append(" and NXX in ("+nxxValue+" ) ");
+				tnQuery.append(" and DASHX in ("+dashxValue+" ) ");
+				tnQuery.append(" and STATUS ='active' and ALTERNATIVESPID IS NOT NULL ");
 	
-					mainQuery.append(tnQuery);
-					
-					if (i <= tnCount-1)
-					{
-						mainQuery.append(" UNION ");
-					}
-							
-				 }	
+				mainQuery.append(tnQuery);
 				
 				if( Debug.isLevelEnabled(Debug.MSG_STATUS) ){
 					Debug.log(Debug.MSG_STATUS,"  getSubdomainValue.mainQuery.SQL_3: "+mainQuery);
@@ -2905,6 +2828,8 @@ public class TNRangeLogger extends DBMessageProcessorBase {
 				pstmt = dbCon.prepareStatement(mainQuery.toString());		 
 
 				results = pstmt.executeQuery();	
+				
+				TNRangeSet found = new TNRangeSet();
 					 
 				 while(results.next())
 				 {
@@ -2919,13 +2844,21 @@ public class TNRangeLogger extends DBMessageProcessorBase {
 						 Debug.log(Debug.MSG_STATUS," in resutlSet , npa["+npa+"] nxx["+nxx+"] dashx["+dashx+"] altspid["+altspid+"]");
 					 }
 					 
-					 for( int z=0; z< tnList.size(); z++)
-					 {
-						 String tn = tnList.get(z).toString();
-						 
-						 if(tn.substring(0,3).equals(npa) && tn.substring(4,7).equals(nxx) && tn.substring(8,9).equals(dashx))
-							 validTNList.add(new CreateTnAltSpidData(tn,altspid)); 
-					 }
+					 // The remaining TNs in the block.
+					 long blockStart = TNRangeSet.toNumber(npa + "-" + nxx + "-" + dashx + "000");
+					 
+					 TNRangeSet blockTNs = new TNRangeSet();
+					 
+					 blockTNs.add(blockStart, blockStart + 999);
+					 
+					 blockTNs.retainAll(tnList);
+					 
+					 Iterator iter = blockTNs.iterator();
+					 
+					 while (iter.hasNext())
+						 validTNList.add(new CreateTnAltSpidData((String)iter.next(),altspid)); 
+					 
+					 found.addAll(blockTNs);
 				 }
 				 
 				 closeResultSetAndStatement(results, pstmt);
@@ -2934,10 +2867,10 @@ public class TNRangeLogger extends DBMessageProcessorBase {
 					 Debug.log(Debug.MSG_DATA,"getSubdomainValue.validTNList.size()_2: "+ validTNList.size());
 				 }
 				 
-				 tnList = getSuccessTN_having_valid_ALTSPID(tnList, validTNList);
+				 tnList.removeAll(found);
 			 }		
 			 
-			 tnCount = validTNList.size();
+			 int tnCount = validTNList.size();
 			 
 			 
 			 if(tnCount == 0)
@@ -3094,76 +3027,51 @@ public class TNRangeLogger extends DBMessageProcessorBase {
     }
 
     /**
-     * 
-     * Update the FailedTNlist, add the TN in Context.FailedTNList.
-     * 
+     * Appends a PORTINGTN condition for up to 1000 of the ranges in the set,
+     * a "between" for each range of TNs and an "=" for each single TN, so
+     * that the query does not list every TN of a range.
+     *
+     * @param condition the buffer to append the condition to.
+     * @param tnList the TNs.
+     * @param from the index of the first range to add.
+     * @return the index of the first range not added.
      */
-    
-    public ArrayList getSuccessTN_having_valid_SUBDOMAIN(ArrayList tn_list, ArrayList tnWithSubdomain)
+    private static int appendPortingTNRanges(StringBuffer condition, TNRangeSet tnList, int from)
     {
-    	 
-    	try
+    	int to = Math.min(from + 1000, tnList.getRangeCount());
+
+    	for (int i = from; i < to; i++)
     	{
-    		
-    		if(tnWithSubdomain != null)
-    		{
-		    	for( int i=0;i< tnWithSubdomain.size();i++)
-		    	{
-		    		String validTN =  ((CreateTnSubdomainData)tnWithSubdomain.get(i)).portingTn;
-
-		    		int tnIndex = tn_list.indexOf(validTN);
-		    		
-		    		if (tnIndex != -1)
-					{
-						tn_list.remove(tnIndex);
-					}
-		    	}
-    		}
-    	}	
-	    catch(Exception e)
-	    {
-	    	if( Debug.isLevelEnabled(Debug.MSG_DATA) ){
-				Debug.log(Debug.MSG_DATA," Error in ArrayListgetSuccessTN_having_valid_tnWithSubdomain");
-			}
-	    }
-	    return tn_list;
-    } 
-    
+    		if (i > from)
+    			condition.append(" or ");
+
+    		long start = tnList.getRangeStart(i);
+    		long end = tnList.getRangeEnd(i);
+
+    		if (start == end)
+    			condition.append("PORTINGTN = '").append(TNRangeSet.toTN(start)).append("'");
+    		else
+    			condition.append("PORTINGTN between '").append(TNRangeSet.toTN(start))
+    				.append("' and '").append(TNRangeSet.toTN(end)).append("'");
+    	}
+
+    	return to;
+    }
+
     /**
-     * 
-     * Update the FailedTNlist, add the TN in Context.FailedTNList.
-     * 
+     * Appends a quoted value to a comma separated list, unless it was already added.
      */
-    
-    public ArrayList getSuccessTN_having_valid_ALTSPID(ArrayList tn_list, ArrayList validTn_list)
+    private static void appendDistinct(StringBuffer list, HashSet added, String value)
     {
-    	 
-    	try
-    	{
-    		if(validTn_list != null)
-    		{
-		    	for( int i=0;i< validTn_list.size();i++)
-		    	{
-		    		String validTN =  ((CreateTnAltSpidData)validTn_list.get(i)).portingTn;
-				
-		    		int tnIndex = tn_list.indexOf(validTN);
-					
-					if (tnIndex != -1)
-					{
-						tn_list.remove(tnIndex);
-					}
-		    	}
-    		}
-    	}	
-	    catch(Exception e)
-	    {
-	    	if( Debug.isLevelEnabled(Debug.MSG_DATA) ){
-				Debug.log(Debug.MSG_DATA," Error in ArrayListgetSuccessTN_having_valid_ALTSPID");
-			}
-	    }
-	    return tn_list;
-    } 
-    
+    	if (!added.add(value))
+    		return;
+
+    	if (list.length() > 0)
+    		list.append(",");
+
+    	list.append("'").append(value).append("'");
+    }
+
     /**
      * Utility method for cleaning up a statement and returning a connection
      * to the pool. This method takes care of catching and logging any
@@ -0,0 +1,11 @@
+package com.nightfire.spi.neustar_soa.adapter.smartsockets;
+
+/**
+ * A Receiver that can turn away a message when it is too busy to
+ * process it, for example by NACKing it so that it is resent later.
+ */
+public interface RejectingReceiver extends Receiver {
+
+   public abstract void reject( String xml );
+
+}
@@ -176,11 +176,13 @@ public class SmartSocketsReceiver implements Runnable {
 
               msg.setCurrent(0);
 
+              String spid = null;
+
               // Clean this up as time allows - extract the parsing to message
               // type specific classes
               if (msg.getType().getName().equalsIgnoreCase(NPACSmartSocketsClient.NPAC_MESSAGE_TYPE))
               {
-                  String spid = msg.nextStr();  // Do we need to pass this on? - RLP
+                  spid = msg.nextStr();
               }
 
               String xml = msg.nextXml().getStr();
@@ -194,7 +196,9 @@ public class SmartSocketsReceiver implements Runnable {
 
               // This passes the runnable off to a separate worker thread so
               // that this loop can get back to listening for messages.
-              workQ.enqueue(runnable);
+              // Messages for the same SPID are kept in order, if the
+              // work queue is configured to do so.
+              workQ.enqueue(spid, runnable);
             }
          }
          catch (TipcException ssex) {
@@ -249,7 +253,7 @@ public class SmartSocketsReceiver implements Runnable {
     * receiver thread will not be blocked while the incoming message
     * gets processed.
     */
-   private class CallbackRunnable implements Runnable{
+   private class CallbackRunnable implements WorkQueue.Rejectable{
 
       /**
        * A reference to the receiver whose process() method will get called.
@@ -273,5 +277,21 @@ public class SmartSocketsReceiver implements Runnable {
          receiver.process( message );
 
       }
+
+      /**
+       * Called when the work queue is full. If the receiver can reject
+       * messages, it does so, otherwise the message is processed in
+       * this thread.
+       */
+      public void rejected(){
+
+         if( receiver instanceof RejectingReceiver ){
+            ((RejectingReceiver) receiver).reject( message );
+         }
+         else{
+            receiver.process( message );
+         }
+
+      }
    }
 }
@@ -27,6 +27,9 @@
 */
 package com.nightfire.spi.neustar_soa.file;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileWriter;
 import java.io.FileReader;
 import java.io.PrintWriter;
@@ -34,6 +37,11 @@ import java.io.LineNumberReader;
 import java.io.IOException;
 import java.util.StringTokenizer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
 import com.nightfire.framework.util.Debug;
 import com.nightfire.framework.util.FrameworkException;
 
@@ -50,6 +58,27 @@ public class BDDNotificationFileSort {
     // This holds the name of current method.
     private String methodName=null;
     
+    // The number of bytes of heap the external sort may use for one run.
+    // 0 sorts the whole file in memory.
+    private long memoryBudget=0;
+    
+    // The size of the buffers used to read and write the run files.
+    private static final int RUN_BUFFER_SIZE=64 * 1024;
+    
+    /**
+     * Sets the memory budget of the sort. When it is greater than zero the
+     * file is sorted in runs that fit in the budget, which are written to
+     * temporary files next to the sorted file and then merged, so the heap
+     * used does not grow with the size of the BDD file.
+     * 
+     * @param memoryBudget the number of bytes a run may use, 0 to sort
+     *                     the whole file in memory.
+     */
+    public void setMemoryBudget(long memoryBudget) {
+        
+        this.memoryBudget=memoryBudget;
+    }
+    
     /**
     * This will be used to read the data from a BDDfile and it sorts the raw 
     * data based on notificationID and creationTimeStamp elements wherein BDD 
@@ -91,6 +120,9 @@ public class BDDNotificationFileSort {
 
         sortFile="Sort." + bddFile;
          
+        if(memoryBudget > 0)
+            
+            return sortInRuns(bddFile, sortFile);
         
                               
         // A new instance will be created with reader by FileReader class.
@@ -289,8 +321,8 @@ public class BDDNotificationFileSort {
     }
    /**
     * This will be used to make use the data which is read from a file and it
-    * sorts that data on a selected item either notificationid or 
-    * creationtimestamp.
+    * sorts that data on creationtimestamp and then notificationid. Rows with
+    * the same keys keep the order in which they were read.
     *   
     * 
     * @param mainList contains the BDD data.
@@ -304,37 +336,26 @@ public class BDDNotificationFileSort {
     {
       methodName="sortBySelectedItem";
       
-      int pos, pos1;
-      
-      int min;
-      
-      ArrayList temp=null;
-
       Debug.log(Debug.MAPPING_STATUS," The sorting will be started" +
 		 " creation Time Stamp.");
       
       try{
-      for (pos = 0; pos < listSize-1; pos++)
-      {
-        min = pos;
-        
-        for (pos1 = pos+1; pos1 < listSize; pos1++)
-        {
-          ArrayList firstList=(ArrayList)mainList.get(pos1);
-          ArrayList secondList=(ArrayList)mainList.get(min);
-  
-          if (Long.parseLong((String)firstList.get(2)) < 
-                  Long.parseLong((String)secondList.get(2)))       
-        	  
-              min = pos1;
-        }
-        
-          	temp =(ArrayList)mainList.get(pos);
-        	
-        	mainList.set(pos,mainList.get(min));
-        	
-        	mainList.set(min,temp);
-      }
+          
+          Collections.sort(mainList.subList(0, listSize), new Comparator() {
+              
+              public int compare(Object first, Object second) {
+                  
+                  ArrayList firstList=(ArrayList)first;
+                  ArrayList secondList=(ArrayList)second;
+                  
+                  return compareKeys(
+                          Long.parseLong((String)firstList.get(2)),
+                          (String)firstList.get(0),
+                          Long.parseLong((String)secondList.get(2)),
+                          (String)secondList.get(0));
+              }
+          });
+          
       Debug.log(Debug.MAPPING_STATUS,className + "[" + methodName + "] " +
       		"The sorting has been" +
 		 " done based on creation Time Stamp.");
@@ -346,4 +367,452 @@ public class BDDNotificationFileSort {
 	      throw new FrameworkException(ex.getMessage());    
 	  }
    } 
+    
+   /**
+    * This compares two BDD records on their creation time stamp and then
+    * their notification id.
+    * 
+    * @param firstDate the creation time stamp of the first record.
+    * @param firstKey the notification id of the first record.
+    * @param secondDate the creation time stamp of the second record.
+    * @param secondKey the notification id of the second record.
+    * @return int a negative number, zero or a positive number as the first
+    *             record sorts before, with or after the second one.
+    */
+   private static int compareKeys(long firstDate, String firstKey,
+           long secondDate, String secondKey) {
+       
+       if (firstDate != secondDate)
+           return (firstDate < secondDate) ? -1 : 1;
+       
+       if (firstKey == null || secondKey == null)
+           return (firstKey == null ? 0 : 1) - (secondKey == null ? 0 : 1);
+       
+       try {
+           long first = Long.parseLong(firstKey);
+           long second = Long.parseLong(secondKey);
+           
+           return (first < second) ? -1 : ((first == second) ? 0 : 1);
+           
+       } catch (NumberFormatException nfe) {
+           
+           return firstKey.compareTo(secondKey);
+       }
+   }
+   
+   /**
+    * This sorts the BDD file in runs which fit in the memory budget. Each run
+    * is sorted and written to a temporary file, and the runs are then merged
+    * into the sorted file. When the whole file fits in one run, it is written
+    * directly without a temporary file.
+    * 
+    * @param bddFile contains a BDD file.
+    * @param sortFile the name of the file the sorted data is written to.
+    * @return sortFile contains the sorted data.
+    * @throws FrameworkException  will be thrown if a line has an invalid
+    * 							  creation time stamp.
+    * @throws IOException is thrown when I/O operation error is occurred.
+    */
+   private String sortInRuns(String bddFile, String sortFile)
+           throws IOException, FrameworkException {
+       
+       methodName="sortInRuns";
+       
+       File runDir = new File(sortFile).getAbsoluteFile().getParentFile();
+       
+       List runFiles = new ArrayList();
+       
+       ArrayList run = new ArrayList();
+       
+       long runSize = 0;
+       
+       BufferedReader buffer = null;
+       
+       Debug.log(Debug.MAPPING_STATUS, className + "[" + methodName +
+               "] Sorting the BDDFile in runs of at most [" + memoryBudget +
+               "] bytes.");
+       
+       try {
+           
+           buffer = new BufferedReader(new FileReader(bddFile),
+                   RUN_BUFFER_SIZE);
+           
+           String line = buffer.readLine();
+           
+           int lineNumber = 0;
+           
+           // As in the loader, an empty line ends the data of the file.
+           while (line != null && line.length() > 0) {
+               
+               lineNumber++;
+               
+               try {
+                   
+                   run.add(new SortRecord(line));
+                   
+               } catch (NumberFormatException nfe) {
+                   
+                   throw new FrameworkException("Line " + lineNumber +
+                           ": invalid creation time stamp: " + nfe.getMessage());
+               }
+               
+               runSize += SortRecord.estimateSize(line);
+               
+               if (runSize >= memoryBudget) {
+                   
+                   runFiles.add(writeRun(run, runDir));
+                   
+                   run.clear();
+                   
+                   runSize = 0;
+               }
+               
+               line = buffer.readLine();
+           }
+           
+           buffer.close();
+           
+           buffer = null;
+           
+           if (runFiles.isEmpty()) {
+               
+               Collections.sort(run);
+               
+               writeRecords(run, new File(sortFile));
+               
+           } else {
+               
+               if (!run.isEmpty())
+                   runFiles.add(writeRun(run, runDir));
+               
+               // release the last run before merging
+               run = null;
+               
+               Debug.log(Debug.MAPPING_STATUS, className + "[" + methodName +
+                       "] Merging [" + runFiles.size() + "] sorted runs into " +
+                       sortFile);
+               
+               mergeRuns(runFiles, new File(sortFile));
+           }
+           
+           Debug.log(Debug.MAPPING_STATUS, className + "[" + methodName +
+                   "]" + sortFile + " has been created with the sorted data " +
+                   "of BDD file");
+           
+       } finally {
+           
+           if (buffer != null) {
+               try {
+                   buffer.close();
+               } catch (IOException e) {
+                   Debug.log(Debug.ALL_ERRORS, className + " : Exception " +
+                           "occures at the time to close the stream..." +
+                           e.getMessage());
+               }
+           }
+           
+           for (int i = 0; i < runFiles.size(); i++) {
+               
+               File runFile = (File) runFiles.get(i);
+               
+               if (!runFile.delete())
+                   Debug.log(Debug.ALL_WARNINGS, className + "[" + methodName +
+                           "] Could not delete run file " + runFile);
+           }
+       }
+       
+       return sortFile;
+   }
+   
+   /**
+    * Sorts a run and writes it to a new temporary file.
+    * 
+    * @param run the records of the run.
+    * @param runDir the directory the temporary file is created in.
+    * @return File the run file.
+    * @throws IOException is thrown when the file cannot be written.
+    */
+   private File writeRun(List run, File runDir) throws IOException {
+       
+       Collections.sort(run);
+       
+       File runFile = File.createTempFile("BDDSort", ".run", runDir);
+       
+       writeRecords(run, runFile);
+       
+       Debug.log(Debug.MAPPING_STATUS, className + "[" + methodName +
+               "] Wrote a sorted run of [" + run.size() + "] lines to " +
+               runFile);
+       
+       return runFile;
+   }
+   
+   /**
+    * Writes the lines of the given records to a file, one per line.
+    * 
+    * @param records the records to write.
+    * @param file the file to write.
+    * @throws IOException is thrown when the file cannot be written.
+    */
+   private static void writeRecords(List records, File file)
+           throws IOException {
+       
+       PrintWriter output = new PrintWriter(new BufferedWriter(
+               new FileWriter(file), RUN_BUFFER_SIZE));
+       
+       try {
+           for (int i = 0; i < records.size(); i++)
+               output.println(((SortRecord) records.get(i)).line);
+           
+           if (output.checkError())
+               throw new IOException("Could not write to " + file);
+           
+       } finally {
+           output.close();
+       }
+   }
+   
+   /**
+    * Merges the sorted run files into the sorted file, keeping one line of
+    * each run in memory.
+    * 
+    * @param runFiles the sorted run files, in the order they were read.
+    * @param sortFile the file the merged data is written to.
+    * @throws IOException is thrown when a file cannot be read or written.
+    */
+   private static void mergeRuns(List runFiles, File sortFile)
+           throws IOException {
+       
+       PriorityQueue heap = new PriorityQueue(runFiles.size());
+       
+       List readers = new ArrayList();
+       
+       PrintWriter output = null;
+       
+       try {
+           
+           for (int i = 0; i < runFiles.size(); i++) {
+               
+               RunReader reader = new RunReader((File) runFiles.get(i), i);
+               
+               readers.add(reader);
+               
+               if (reader.advance())
+                   heap.add(reader);
+           }
+           
+           output = new PrintWriter(new BufferedWriter(
+                   new FileWriter(sortFile), RUN_BUFFER_SIZE));
+           
+           while (!heap.isEmpty()) {
+               
+               RunReader reader = (RunReader) heap.poll();
+               
+               output.println(reader.current.line);
+               
+               if (reader.advance())
+                   heap.add(reader);
+           }
+           
+           if (output.checkError())
+               throw new IOException("Could not write to " + sortFile);
+           
+       } finally {
+           
+           if (output != null)
+               output.close();
+           
+           for (int i = 0; i < readers.size(); i++)
+               ((RunReader) readers.get(i)).close();
+       }
+   }
+   
+   /**
+    * A line of the BDD file along with its sort keys.
+    */
+   private static class SortRecord implements Comparable {
+       
+       final String line;
+       
+       final long notifDate;
+       
+       final String notifyKey;
+       
+       /**
+        * Extracts the creation time stamp and notification id of a line the
+        * same way readDataOnSort() does.
+        * 
+        * @param line a line of the BDD file.
+        * @throws NumberFormatException if the time stamp is not a number.
+        */
+       SortRecord(String line) {
+           
+           StringTokenizer tokens =
+               new StringTokenizer(line, DEFAULT_DELIMITER, true);
+           
+           String date = null;
+           
+           String key = null;
+           
+           for (int pos = 0; pos <= 6 && tokens.hasMoreTokens(); pos++) {
+               
+               String data = tokens.nextToken();
+               
+               if (pos == 0)
+                   date = data;
+               if (pos == 6)
+                   key = data;
+           }
+           
+           this.line = line;
+           
+           this.notifDate = Long.parseLong(date);
+           
+           this.notifyKey = key;
+       }
+       
+       public int compareTo(Object other) {
+           
+           SortRecord record = (SortRecord) other;
+           
+           return compareKeys(notifDate, notifyKey, record.notifDate,
+                   record.notifyKey);
+       }
+       
+       /**
+        * Roughly estimates the heap used by the record of a line: the
+        * characters of the line plus the objects holding it and its keys.
+        */
+       static long estimateSize(String line) {
+           
+           return 2L * line.length() + 160;
+       }
+   }
+   
+   /**
+    * Reads the records of a sorted run file one at a time. Records with the
+    * same keys are taken from the earlier run first, so the merge keeps the
+    * order of the original file.
+    */
+   private static class RunReader implements Comparable {
+       
+       private final BufferedReader reader;
+       
+       private final int index;
+       
+       SortRecord current;
+       
+       RunReader(File runFile, int index) throws IOException {
+           
+           this.reader = new BufferedReader(new FileReader(runFile),
+                   RUN_BUFFER_SIZE);
+           
+           this.index = index;
+       }
+       
+       /**
+        * Reads the next record of the run.
+        * 
+        * @return boolean false when the run has no more records.
+        */
+       boolean advance() throws IOException {
+           
+           String line = reader.readLine();
+           
+           current = (line == null) ? null : new SortRecord(line);
+           
+           return current != null;
+       }
+       
+       public int compareTo(Object other) {
+           
+           RunReader run = (RunReader) other;
+           
+           int result = current.compareTo(run.current);
+           
+           return (result != 0) ? result : (index - run.index);
+       }
+       
+       void close() {
+           
+           try {
+               reader.close();
+           } catch (IOException e) {
+               Debug.log(Debug.ALL_ERRORS, "BDDNotificationFileSort : " +
+                       "Exception occures at the time to close the stream..." +
+                       e.getMessage());
+           }
+       }
+   }
+   
+   /**
+    * Times the sort of a BDD file, optionally generating a synthetic file
+    * first, to size the memory budget.
+    * 
+    * @param args the BDD file, the memory budget in MB (0 for the in-memory
+    *             sort) and optionally the number of synthetic lines to
+    *             generate into the file.
+    */
+   public static void main(String[] args) {
+       
+       if (args.length < 2) {
+           
+           System.out.println("\n\nUSAGE: BDDNotificationFileSort " +
+                   "<bdd-file> <memory-budget-MB> [<synthetic-line-count>]\n\n");
+           
+           return;
+       }
+       
+       try {
+           
+           if (args.length > 2)
+               generateFile(args[0], Integer.parseInt(args[2]));
+           
+           BDDNotificationFileSort sort = new BDDNotificationFileSort();
+           
+           sort.setMemoryBudget(Long.parseLong(args[1]) * 1024 * 1024);
+           
+           Runtime r = Runtime.getRuntime();
+           
+           long start = System.currentTimeMillis();
+           
+           sort.readDataOnSort(args[0]);
+           
+           long stop = System.currentTimeMillis();
+           
+           System.out.println("Sorting [" + args[0] + "] took [" +
+                   (stop - start) + "] msec.  MEMORY: Total:[" +
+                   r.totalMemory() + "], Free:[" + r.freeMemory() + "]");
+           
+       } catch (Exception e) {
+           
+           e.printStackTrace();
+       }
+   }
+   
+   /**
+    * Writes a synthetic BDD notification file with random creation time
+    * stamps and notification ids.
+    */
+   private static void generateFile(String file, int lineCount)
+           throws IOException {
+       
+       Random random = new Random(lineCount);
+       
+       PrintWriter output = new PrintWriter(new BufferedWriter(
+               new FileWriter(file), RUN_BUFFER_SIZE));
+       
+       try {
+           for (int i = 0; i < lineCount; i++) {
+               
+               long date = 20050101000000L + random.nextInt(1000000);
+               
+               output.println(date + "|1111|A|" + (1 + random.nextInt(40)) +
+                       "|" + random.nextInt(5) + "|" + i + "|3035551234|" +
+                       "0001|9999|" + date);
+           }
+       } finally {
+           output.close();
+       }
+   }
 }
\ No newline at end of file
@@ -8,10 +8,15 @@ import java.io.FileReader;
 import java.io.LineNumberReader;
 import java.io.IOException;
 import java.io.FileNotFoundException;
+import java.sql.SQLException;
 import java.util.StringTokenizer;
 import java.util.Date;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import com.nightfire.framework.util.Debug;
 import com.nightfire.spi.neustar_soa.utils.SOAConstants;
@@ -168,31 +173,8 @@ public class DelimitedFileReader {
 		    
 		    endTime = new Date();
 		    
-		    List failedList = (LinkedList) consumer.getFailedList();
-					    
-		    try
-		    {
-			
-			if(recordFailed!=0 && failedList.size()!=0){
-			    
-			 NotificationReportGenerator reportGenerator = new
-				NotificationReportGenerator(reportFile);
-			
-			    reportGenerator.addBody(failedList);
-			    
-			    reportGenerator.summary(startTime, endTime, recordsRead,
-				    recordUpdated, recordFailed, null);
-			    
-			    reportGenerator.generateReport();
-			    
-			    bddStatus=false;
-			    
-			}
-		    } catch (FrameworkException fe) {
-
-			    throw new FrameworkException(" Could not generate report : "
-					    + fe.getMessage());
-		    }
+		    generateNotificationReport(consumer, reportFile);
+		    
 		    Debug.log(Debug.SYSTEM_CONFIG,className + "[" + methodName +
 			       "] Processing ended....");
 		    
@@ -218,6 +200,418 @@ public class DelimitedFileReader {
 
 
 
+    /**
+     * Generates the report of failed notification records, if there were any.
+     *
+     * @param consumer the consumer holding the failed records.
+     * @param reportFile contains the name of report.
+     * @throws FrameworkException thrown if the report cannot be generated.
+     */
+    private void generateNotificationReport(NotificationTokenConsumer consumer,
+            		String reportFile) throws FrameworkException {
+	    
+	    List failedList = (LinkedList) consumer.getFailedList();
+	    
+	    try
+	    {
+		
+		if(recordFailed!=0 && failedList.size()!=0){
+		    
+		    NotificationReportGenerator reportGenerator = new
+			NotificationReportGenerator(reportFile);
+		
+		    reportGenerator.addBody(failedList);
+		    
+		    reportGenerator.summary(startTime, endTime, recordsRead,
+			    recordUpdated, recordFailed, null);
+		    
+		    reportGenerator.generateReport();
+		    
+		    bddStatus=false;
+		    
+		}
+	    } catch (FrameworkException fe) {
+
+		    throw new FrameworkException(" Could not generate report : "
+				    + fe.getMessage());
+	    }
+    }
+
+    /**
+     * This is the pipelined version of read(NotificationTokenConsumer, String).
+     * The calling thread reads the file and hands chunks of lines to a number
+     * of worker threads, each of which tokenizes the lines and inserts them
+     * through its own NotificationTokenConsumer and database connection.
+     * Records of the same SPID always go to the same worker so that they are
+     * still inserted in the order of the sorted file.
+     *
+     * @param consumer
+     *            supplies the customer id for the worker consumers. Its own
+     *            connection is not used.
+     * @param reportFile
+     *            contains the name of report.
+     * @param workerCount
+     *            the number of worker threads inserting records.
+     * @param chunkSize
+     *            the number of lines handed to a worker at a time.
+     * @param commitInterval
+     *            the number of records each worker commits together.
+     * @throws IOException
+     *             will be thrown if file cann't find or read.
+     * @throws FrameworkException
+     *             will be thrown if any application related errors occurred.
+     */
+    public void read(NotificationTokenConsumer consumer, String reportFile,
+    				int workerCount, int chunkSize, int commitInterval)
+    				throws IOException, FrameworkException {
+	    
+	    methodName="read";
+	    
+	    if (workerCount < 1)
+		    workerCount = 1;
+	    
+	    if (chunkSize < 1)
+		    chunkSize = 1;
+	    
+	    LoaderWorker[] workers = new LoaderWorker[workerCount];
+	    
+	    List[] pending = new List[workerCount];
+	    
+	    int[] pendingLine = new int[workerCount];
+	    
+	    try {
+		    
+		    startTime = new Date();
+		    
+		    Debug.log(Debug.SYSTEM_CONFIG, className + "[" + methodName +
+			       "] Processing started with [" + workerCount +
+			       "] workers, chunk size [" + chunkSize +
+			       "] and commit interval [" + commitInterval + "]....");
+		    
+		    for (int i = 0; i < workerCount; i++) {
+			    
+			    NotificationTokenConsumer workerConsumer =
+				    new NotificationTokenConsumer();
+			    
+			    workerConsumer.customerID = consumer.customerID;
+			    
+			    workerConsumer.setCommitInterval(commitInterval);
+			    
+			    workers[i] = new LoaderWorker(workerConsumer);
+			    
+			    // This gets the worker's database connection.
+			    workerConsumer.init();
+		    }
+		    
+		    for (int i = 0; i < workerCount; i++)
+			    workers[i].start();
+		    
+		    String line = buffer.readLine();
+		    
+		    while (line != null && getLoaderError(workers) == null) {
+			    
+			    if (line.length() == 0)
+				    break;
+			    
+			    recordsRead++;
+			    
+			    int lane = getLane(line, workerCount);
+			    
+			    if (pending[lane] == null) {
+				    
+				    pending[lane] = new ArrayList(chunkSize);
+				    
+				    pendingLine[lane] = buffer.getLineNumber();
+			    }
+			    
+			    pending[lane].add(line);
+			    
+			    if (pending[lane].size() >= chunkSize) {
+				    
+				    workers[lane].submit(
+					    new LineChunk(pendingLine[lane], pending[lane]));
+				    
+				    pending[lane] = null;
+			    }
+			    
+			    line = buffer.readLine();
+		    }
+		    
+		    for (int i = 0; i < workerCount; i++) {
+			    
+			    if (pending[i] != null)
+				    workers[i].submit(new LineChunk(pendingLine[i], pending[i]));
+			    
+			    workers[i].submit(LineChunk.END_OF_FILE);
+		    }
+		    
+		    for (int i = 0; i < workerCount; i++) {
+			    
+			    workers[i].join();
+			    
+			    recordFailed += workers[i].failed;
+		    }
+		    
+		    FrameworkException loaderError = getLoaderError(workers);
+		    
+		    if (loaderError != null)
+			    throw loaderError;
+		    
+		    if (recordsRead > 0) {
+			    
+			    recordUpdated = recordsRead - recordFailed;
+		    }
+		    else {
+			    
+			    Debug.log(Debug.SYSTEM_CONFIG, className + "[" + methodName +
+				       "] There is no records read, The BDD file might be empty....");
+			    
+			    System.out.println("***** UNSUCCESS:The Bdd data insertion has" +
+			    " been failed! Check .log file to see the more details");
+			    
+			    System.exit(-1);
+		    }
+		    
+		    endTime = new Date();
+		    
+		    generateNotificationReport(consumer, reportFile);
+		    
+		    Debug.log(Debug.SYSTEM_CONFIG,className + "[" + methodName +
+			       "] Processing ended....");
+		    
+	    } catch (InterruptedException iex) {
+		    
+		    success = false;
+		    
+		    throw new FrameworkException("Interrupted while waiting for the " +
+		    		"loader workers: " + iex.getMessage());
+		    
+	    } catch (IOException ioex) {
+		    
+		    success = false;
+		    
+		    Debug.logStackTrace(ioex);
+		    
+		    throw new FrameworkException(ioex.getMessage());
+		    
+	    } catch (FrameworkException fex) {
+		    
+		    success = false;
+		    
+		    Debug.logStackTrace(fex);
+		    
+		    throw fex;
+		    
+	    } finally {
+		    
+		    for (int i = 0; i < workerCount; i++) {
+			    
+			    if (workers[i] != null) {
+				    
+				    workers[i].halt();
+				    
+				    workers[i].consumer.cleanup(success);
+			    }
+		    }
+	    }
+    }
+
+    /**
+     * Picks the worker for a line based on its SPID, the second field, so
+     * that all the notifications of one SPID are processed by the same worker.
+     *
+     * @param line a line of the BDD file.
+     * @param workerCount the number of workers.
+     * @return int the index of the worker.
+     */
+    private int getLane(String line, int workerCount) {
+	    
+	    if (workerCount == 1)
+		    return 0;
+	    
+	    int start = line.indexOf(delimiter);
+	    
+	    if (start < 0)
+		    return 0;
+	    
+	    start += delimiter.length();
+	    
+	    int end = line.indexOf(delimiter, start);
+	    
+	    String spid = (end < 0) ? line.substring(start)
+		    : line.substring(start, end);
+	    
+	    return (spid.trim().hashCode() & 0x7fffffff) % workerCount;
+    }
+
+    /**
+     * Returns the first error reported by any of the workers.
+     *
+     * @param workers the loader workers.
+     * @return FrameworkException the error, or null if none has failed.
+     */
+    private static FrameworkException getLoaderError(LoaderWorker[] workers) {
+	    
+	    for (int i = 0; i < workers.length; i++) {
+		    
+		    if (workers[i] != null && workers[i].error != null)
+			    return workers[i].error;
+	    }
+	    
+	    return null;
+    }
+
+    /**
+     * A chunk of consecutive lines of one worker, along with the line number
+     * of its first line for error reporting.
+     */
+    private static class LineChunk {
+	    
+	    /**
+	     * Tells a worker that there is no more input.
+	     */
+	    static final LineChunk END_OF_FILE = new LineChunk(-1, null);
+	    
+	    final int firstLine;
+	    
+	    final List lines;
+	    
+	    LineChunk(int firstLine, List lines) {
+		    
+		    this.firstLine = firstLine;
+		    
+		    this.lines = lines;
+	    }
+    }
+
+    /**
+     * The number of chunks that may be waiting for a worker before the
+     * reading thread blocks.
+     */
+    private static final int LOADER_QUEUE_DEPTH = 4;
+
+    /**
+     * A worker thread that tokenizes the lines it is given and passes them
+     * to its own consumer.
+     */
+    private class LoaderWorker extends Thread {
+	    
+	    final NotificationTokenConsumer consumer;
+	    
+	    private final BlockingQueue chunks =
+		    new ArrayBlockingQueue(LOADER_QUEUE_DEPTH);
+	    
+	    volatile int failed = 0;
+	    
+	    volatile FrameworkException error = null;
+	    
+	    LoaderWorker(NotificationTokenConsumer consumer) {
+		    
+		    super("BDDLoaderWorker");
+		    
+		    setDaemon(true);
+		    
+		    this.consumer = consumer;
+	    }
+	    
+	    /**
+	     * Queues a chunk for this worker, blocking while the worker is busy
+	     * with earlier chunks. Chunks are dropped once the worker has failed.
+	     */
+	    void submit(LineChunk chunk) throws InterruptedException {
+		    
+		    while (error == null && isAlive()) {
+			    
+			    if (chunks.offer(chunk, 1, TimeUnit.SECONDS))
+				    return;
+		    }
+	    }
+	    
+	    /**
+	     * Stops a worker that is still running, e.g. after another worker
+	     * failed.
+	     */
+	    void halt() {
+		    
+		    if (isAlive())
+			    interrupt();
+	    }
+	    
+	    public void run() {
+		    
+		    List tokenList = new ArrayList();
+		    
+		    int lineNumber = 0;
+		    
+		    try {
+			    
+			    while (true) {
+				    
+				    LineChunk chunk = (LineChunk) chunks.take();
+				    
+				    if (chunk == LineChunk.END_OF_FILE)
+					    break;
+				    
+				    lineNumber = chunk.firstLine;
+				    
+				    for (int i = 0; i < chunk.lines.size(); i++, lineNumber++) {
+					    
+					    String line = (String) chunk.lines.get(i);
+					    
+					    consumer.bddToken = line;
+					    
+					    getTokens(new StringTokenizer(line, delimiter, true),
+						    tokenList);
+					    
+					    String[] array = new String[tokenList.size() + 2];
+					    
+					    tokenList.toArray(array);
+					    
+					    consumer.errorFlag = false;
+					    
+					    boolean errorFlag = consumer.process(array);
+					    
+					    array[tokenList.size() + 1] = line;
+					    
+					    if (errorFlag)
+						    failed++;
+					    
+					    tokenList.clear();
+				    }
+			    }
+			    
+			    // commit whatever is left of the last commit interval
+			    consumer.commitPending();
+			    
+		    } catch (InterruptedException iex) {
+			    
+			    Debug.log(Debug.SYSTEM_CONFIG, getName() + " was interrupted.");
+			    
+		    } catch (SQLException sqlex) {
+			    
+			    error = new FrameworkException("Could not commit the BDD " +
+			    		"records: " + sqlex.getMessage());
+			    
+		    } catch (FrameworkException fex) {
+			    
+			    Debug.logStackTrace(fex);
+			    
+			    // add in the line number of the line that failed
+			    error = new FrameworkException("Line " + lineNumber + ": "
+					    + fex.getMessage());
+			    
+		    } catch (RuntimeException rex) {
+			    
+			    Debug.logStackTrace(rex);
+			    
+			    error = new FrameworkException("Line " + lineNumber + ": "
+					    + rex.toString());
+		    }
+	    }
+    }
+
+
+
     /**
      * This reads the file with the given name line by line, and tokenizes
      * each line based on this reader's delimiter. The list of tokens is
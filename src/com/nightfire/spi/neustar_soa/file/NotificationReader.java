@@ -65,6 +65,54 @@ public class NotificationReader extends DelimitedFileReader {
      
      private static String logFile=null;
      
+     // The number of loader workers, 0 reads the file on the current thread.
+     private int loaderThreads = 0;
+     
+     // The number of lines handed to a loader worker at a time.
+     private int loaderChunkSize = DEFAULT_LOADER_CHUNK_SIZE;
+     
+     // The number of records a loader worker commits together.
+     private int loaderCommitInterval = DEFAULT_LOADER_COMMIT_INTERVAL;
+     
+     // The heap in MB the file sort may use, 0 sorts the file in memory.
+     private int sortMemoryBudget = 0;
+     
+     private static final int DEFAULT_LOADER_CHUNK_SIZE = 500;
+     
+     private static final int DEFAULT_LOADER_COMMIT_INTERVAL = 100;
+     
+    /**
+     * Configures the pipelined loader. When loaderThreads is greater than
+     * zero the sorted file is loaded by that many worker threads, each
+     * committing its records every commitInterval records.
+     * 
+     * @param loaderThreads the number of worker threads, 0 to disable.
+     * @param chunkSize the number of lines handed to a worker at a time.
+     * @param commitInterval the number of records committed together.
+     */
+    public void setLoaderOptions(int loaderThreads, int chunkSize,
+            int commitInterval) {
+        
+        this.loaderThreads = loaderThreads;
+        
+        if (chunkSize > 0)
+            loaderChunkSize = chunkSize;
+        
+        if (commitInterval > 0)
+            loaderCommitInterval = commitInterval;
+    }
+    
+    /**
+     * Sets the heap, in MB, the BDD file sort may use. When it is greater
+     * than zero, the file is sorted in runs on disk that are then merged.
+     * 
+     * @param sortMemoryBudget the memory budget in MB, 0 to sort in memory.
+     */
+    public void setSortMemoryBudget(int sortMemoryBudget) {
+        
+        this.sortMemoryBudget = sortMemoryBudget;
+    }
+     
     /**
      * This reads the named file and insert the record(s) into the respective
      * SOA Database table based on its contents.
@@ -97,6 +145,8 @@ public class NotificationReader extends DelimitedFileReader {
             
             bddNotifyFileSort=new BDDNotificationFileSort();
             
+            bddNotifyFileSort.setMemoryBudget(sortMemoryBudget * 1024L * 1024L);
+            
             // It reads the contents in BDDFile for sorting and writes 
             // the sorting data into a new file.
             sortFile=bddNotifyFileSort.readDataOnSort(bddFile);
@@ -112,7 +162,13 @@ public class NotificationReader extends DelimitedFileReader {
             
             // It reads the contents from a sorted file.
           
-            super.read(notificationTknConsumer,reportFile);
+            if (loaderThreads > 0)
+                
+                super.read(notificationTknConsumer, reportFile, loaderThreads,
+                        loaderChunkSize, loaderCommitInterval);
+            else
+                
+                super.read(notificationTknConsumer,reportFile);
                                
             Debug.log(Debug.MAPPING_STATUS, className + "["+ methodName + "]  " +
             		"Data has been " +
@@ -259,6 +315,17 @@ public class NotificationReader extends DelimitedFileReader {
                     
                     NotificationReader reader = new NotificationReader();
                     
+                    reader.setLoaderOptions(
+                        getIntProperty(hashMap, SOAConstants.LOADER_THREADS, 0),
+                        getIntProperty(hashMap, SOAConstants.LOADER_CHUNK_SIZE,
+                                DEFAULT_LOADER_CHUNK_SIZE),
+                        getIntProperty(hashMap,
+                                SOAConstants.LOADER_COMMIT_INTERVAL,
+                                DEFAULT_LOADER_COMMIT_INTERVAL));
+                    
+                    reader.setSortMemoryBudget(getIntProperty(hashMap,
+                            SOAConstants.SORT_MEMORY_BUDGET, 0));
+                    
                     reader.read(bddFile,custID,reportFile);
                     
                 } else {
@@ -310,4 +377,34 @@ public class NotificationReader extends DelimitedFileReader {
         }
     }
     
+    /**
+     * Returns the integer value of an optional property.
+     * 
+     * @param props the properties read from the properties file.
+     * @param name the name of the property.
+     * @param defaultValue the value used when the property is missing or
+     *            invalid.
+     * @return int the property value.
+     */
+    private static int getIntProperty(HashMap props, String name,
+            int defaultValue) {
+        
+        String value = (String) props.get(name);
+        
+        if (value == null)
+            return defaultValue;
+        
+        try {
+            return Integer.parseInt(value);
+            
+        } catch (NumberFormatException nfe) {
+            
+            Debug.log(Debug.ALL_WARNINGS, className + "[" + methodName
+                    + "] Invalid value [" + value + "] for property [" + name
+                    + "], using [" + defaultValue + "].");
+            
+            return defaultValue;
+        }
+    }
+    
 }
\ No newline at end of file
@@ -1279,7 +1279,9 @@ public class NotificationTokenConsumer extends NotificationTokenConsumerBase {
                         params[params.length - 2] = "Insufficient parameters "
                                 + "for the required fields to insert";
                         
-                        failedList.add(params);
+                        synchronized (failedList) {
+                            failedList.add(params);
+                        }
 
                     }
                }
@@ -1615,7 +1617,7 @@ public class NotificationTokenConsumer extends NotificationTokenConsumerBase {
                                 + " is generated by " + "[SVID=" + svId
                                 + "] and [SPID=" + spId + "]");
                 
-                connection.setAutoCommit(false);
+                setAutoCommit(false);
                 
                 insertSoaMsgMap = connection
                         .prepareStatement(SOAConstants.SOA_MSG_MAP);
@@ -2174,7 +2176,7 @@ public class NotificationTokenConsumer extends NotificationTokenConsumerBase {
                           " The failed data already has been " +
                           "inserted for this notification:"+notifyInsert);
                     }
-                    connection.setAutoCommit(false);
+                    setAutoCommit(false);
                     
                     // failedLstSt stands for failed list statement.
                     failedLstSt = connection
@@ -2711,7 +2713,7 @@ public class NotificationTokenConsumer extends NotificationTokenConsumerBase {
                 
                 insertStatement.close();
                 
-                connection.setAutoCommit(true);
+                setAutoCommit(true);
 
             } else {
                 
@@ -2775,7 +2777,7 @@ public class NotificationTokenConsumer extends NotificationTokenConsumerBase {
                      " The parameters will be  inserted into " +
                      SOAConstants.SOA_COMMON_MESSAGE + " table for " + notifyInsert);
 
-                connection.setAutoCommit(false);
+                setAutoCommit(false);
 
                 insertStatement.setString(1, msgkey.trim());
 
@@ -2855,7 +2857,7 @@ public class NotificationTokenConsumer extends NotificationTokenConsumerBase {
                   " The parameters will be  inserted into " +
                   SOAConstants.SOA_AUDIT_NPAC + " table for " + notifyInsert);
                 
-                connection.setAutoCommit(false);
+                setAutoCommit(false);
 
                 commonSetData(insertStatement,SOAConstants.RESPONSE);
 
@@ -3319,7 +3321,7 @@ public class NotificationTokenConsumer extends NotificationTokenConsumerBase {
         methodNm="commonSetData";
         
         try {
-            connection.setAutoCommit(false);
+            setAutoCommit(false);
             
             insertStatement.setString(1, msgkey.trim());
             
@@ -3373,7 +3375,7 @@ public class NotificationTokenConsumer extends NotificationTokenConsumerBase {
         
         try {
             
-            connection.setAutoCommit(false);
+            setAutoCommit(false);
             
             Date datetime = parseDate(createTimeStamp);
             
@@ -3390,7 +3392,7 @@ public class NotificationTokenConsumer extends NotificationTokenConsumerBase {
                 
             reqStatement.close();
                 
-            connection.setAutoCommit(true);
+            setAutoCommit(true);
                 
             } catch (SQLException sqlEx) {
                 
@@ -32,6 +32,7 @@ package com.nightfire.spi.neustar_soa.file;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
+import java.sql.Savepoint;
 import java.util.Date;
 import java.util.List;
 import java.util.LinkedList;
@@ -74,6 +75,56 @@ public abstract class NotificationTokenConsumerBase {
     // this flag will show whether inserted succcessfuly
     protected boolean errorFlag = false;
     
+    /**
+     * The number of successfully processed records that are committed
+     * together. The default of 1 keeps the original behaviour where every
+     * record is committed (or rolled back) on its own.
+     */
+    private int commitInterval = 1;
+    
+    /**
+     * The number of processed records not yet committed when the commit
+     * interval is greater than 1.
+     */
+    private int uncommittedRecords = 0;
+    
+    /**
+     * Marks the start of the current record so that a failed record can be
+     * rolled back without losing the uncommitted records before it.
+     */
+    private Savepoint recordSavepoint;
+    
+    /**
+     * Whether the driver supports releasing savepoints before the commit.
+     */
+    private boolean releaseSavepoints = true;
+    
+    /**
+     * Sets how many records are committed together. Must be called before
+     * init().
+     * 
+     * @param commitInterval
+     *            the number of records per commit, values below 1 are
+     *            treated as 1.
+     */
+    public void setCommitInterval(int commitInterval) {
+        
+        this.commitInterval = (commitInterval < 1) ? 1 : commitInterval;
+        
+    }
+    
+    /**
+     * Indicates whether records are committed in groups of commitInterval
+     * rather than one at a time.
+     * 
+     * @return boolean true if the commit interval is greater than 1.
+     */
+    protected boolean isBatchedCommit() {
+        
+        return commitInterval > 1;
+        
+    }
+    
     /**
      * This gets a database connection that will be used by process method.
      * 
@@ -93,6 +144,10 @@ public abstract class NotificationTokenConsumerBase {
             // save the original auto-commit value
             connectionAutoCommitTemp = connection.getAutoCommit();
             
+            // In batched mode the whole commit interval is one transaction.
+            if (isBatchedCommit())
+                connection.setAutoCommit(false);
+            
         } catch (SQLException sqlex) {
             throw new FrameworkException(
                     "Could not prepare insert statement:\n" + getInsertSQL()
@@ -116,6 +171,21 @@ public abstract class NotificationTokenConsumerBase {
         
         String msg=null;
         
+        // Remember where this record starts so that only its own changes
+        // are undone if it fails. Without a savepoint a failed record could
+        // only be undone along with the uncommitted records before it, so
+        // the batch fails instead.
+        if (isBatchedCommit()) {
+            try {
+                recordSavepoint = connection.setSavepoint();
+            } catch (SQLException sqlex) {
+                recordSavepoint = null;
+                throw new FrameworkException("Could not set a savepoint for "
+                        + "the record, after [" + uncommittedRecords
+                        + "] uncommitted records: " + sqlex);
+            }
+        }
+        
         try {
             if(tokens!=null)
            // This tokens are containing the notification id and Object Id.     
@@ -154,8 +224,24 @@ public abstract class NotificationTokenConsumerBase {
         {
             Debug.log(errorCode,"Insert Failed:" + msg + "\nAdding in failed List ...");
             tokens[tokens.length - 2] =msg;
-            failedList.add(tokens);
+            synchronized (failedList) {
+                failedList.add(tokens);
+            }
         }    
+        if (isBatchedCommit()) {
+            try {
+                if (errorFlag) {
+                    rollbackRecord();
+                } else if (++uncommittedRecords >= commitInterval) {
+                    commitPending();
+                } else {
+                    releaseRecordSavepoint();
+                }
+            } catch (SQLException sqlex) {
+                throw new FrameworkException(
+                        "Could not complete the batched transaction: " + sqlex);
+            }
+        }
         // this flag will show whether inserted succcessfuly
         return errorFlag;
         
@@ -294,21 +380,93 @@ public abstract class NotificationTokenConsumerBase {
     }
     
     /**
-     * It will be used to commit the trasactions.
+     * It will be used to commit the trasactions. In batched mode the record
+     * is left in the open transaction and committed with its commit interval.
      * @throws SQLException
      */
     protected void setDataToCommit() throws SQLException {
+        if (isBatchedCommit())
+            return;
         connection.commit();
         connection.setAutoCommit(true);
     }
     
     /**
-     * It will be used to rollback the transactions.
+     * It will be used to rollback the transactions. In batched mode only the
+     * current record is rolled back.
      * @throws SQLException
      */
     protected void setDataToRollback() throws SQLException {
+        if (isBatchedCommit()) {
+            rollbackRecord();
+            return;
+        }
         connection.rollback();
         connection.setAutoCommit(true);
     }
     
+    /**
+     * Changes the auto-commit mode of the connection. This is ignored in
+     * batched mode, where the connection stays in a single transaction until
+     * the commit interval is reached.
+     * 
+     * @param autoCommit
+     *            the auto-commit mode to set.
+     * @throws SQLException
+     */
+    protected void setAutoCommit(boolean autoCommit) throws SQLException {
+        if (!isBatchedCommit())
+            connection.setAutoCommit(autoCommit);
+    }
+    
+    /**
+     * Commits the records processed since the last commit. This is only
+     * needed in batched mode, and is called by the reader once the last
+     * record has been processed.
+     * @throws SQLException
+     */
+    protected void commitPending() throws SQLException {
+        if (connection != null && uncommittedRecords > 0) {
+            connection.commit();
+            Debug.log(Debug.DB_STATUS, "Committed [" + uncommittedRecords
+                    + "] BDD records.");
+        }
+        uncommittedRecords = 0;
+        recordSavepoint = null;
+    }
+    
+    /**
+     * Rolls back the changes made by the current record only, keeping the
+     * uncommitted records processed before it.
+     * @throws SQLException
+     *             if the record has no savepoint to roll back to.
+     */
+    private void rollbackRecord() throws SQLException {
+        if (recordSavepoint == null)
+            throw new SQLException("The record has no savepoint, so it can't "
+                    + "be rolled back without losing the [" + uncommittedRecords
+                    + "] uncommitted records before it.");
+        connection.rollback(recordSavepoint);
+    }
+    
+    /**
+     * Releases the savepoint of a record that succeeded, so that savepoints
+     * don't pile up over a long commit interval. Drivers which don't support
+     * releasing savepoints free them at the commit instead.
+     */
+    private void releaseRecordSavepoint() {
+        if (recordSavepoint == null)
+            return;
+        if (releaseSavepoints) {
+            try {
+                connection.releaseSavepoint(recordSavepoint);
+            } catch (SQLException sqlex) {
+                releaseSavepoints = false;
+                Debug.log(Debug.DB_STATUS, "Savepoints will be freed at the "
+                        + "commit, since they can't be released: " + sqlex);
+            }
+        }
+        recordSavepoint = null;
+    }
+    
 }
\ No newline at end of file
@@ -29,6 +29,16 @@ public class NPACPollerServer extends ComServerBase{
 
    public static final String TIMER_PROP = "TIMER";
 
+   /**
+    * Property giving the maximum time, in seconds, that the pollers sleep
+    * when the queue stays empty (optional). If this is greater than the
+    * TIMER value, polling is adaptive: the sleep time doubles from the
+    * TIMER value up to this maximum while no messages are found, pollers
+    * are woken as soon as a message is queued by this process, and the
+    * region recovery status is rechecked on the same schedule.
+    */
+   public static final String MAX_TIMER_PROP = "MAX_TIMER";
+
    public static final String NPAC_COM_SERVER_KEY_PROP = "NPAC_COM_SERVER_KEY";
 
    public static final String NPAC_COM_SERVER_TYPE_PROP = "NPAC_COM_SERVER_TYPE";
@@ -90,12 +100,28 @@ public class NPACPollerServer extends ComServerBase{
              }
        }
 
+       long timer = getTimerInterval();
+
        // create poller instances
        pollers = initPollers(whereCondition,
                              getMaxWorkerThreads(),
-                             getTimerInterval(),
+                             timer,
                              npacComServerProps );
 
+       long maxTimer = getMaxTimerInterval();
+
+       if( maxTimer > timer ){
+
+          for(int i = 0; i < pollers.length; i++){
+
+             pollers[i].setMaxPollingInterval(maxTimer);
+
+          }
+
+          RegionStatusCache.getInstance().setRecheckInterval(timer, maxTimer);
+
+       }
+
    }
 
    protected Poller[] initPollers(String whereCondition,
@@ -195,6 +221,42 @@ public class NPACPollerServer extends ComServerBase{
 
    }
 
+   /**
+    * This gets the maximum timer interval from properties.
+    * This is the longest the pollers will sleep when adaptive polling
+    * is enabled, or zero if it is not.
+    */
+   private long getMaxTimerInterval() throws ProcessingException{
+
+       String timerValue = getPropertyValue( MAX_TIMER_PROP );
+
+       if( !StringUtils.hasValue(timerValue) ){
+          return 0;
+       }
+
+       long timer;
+
+       try{
+          timer = Long.parseLong( timerValue );
+       }
+       catch(NumberFormatException nfex){
+          throw new ProcessingException("The value ["+timerValue+
+                                        "] for property ["+MAX_TIMER_PROP+
+                                        "] is not a valid integer.");
+       }
+
+       // convert seconds to milliseconds
+       timer *= 1000;
+
+       if( Debug.isLevelEnabled(Debug.SYSTEM_CONFIG) ){
+          Debug.log(Debug.SYSTEM_CONFIG, "Maximum polling timer set to ["+
+                    timer+"] ms");
+       }
+
+       return timer;
+
+   }
+
    /**
     * This gets the max number of worker threads that each poller should
     * use when processing consumed messages.
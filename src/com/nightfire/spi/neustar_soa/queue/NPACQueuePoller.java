@@ -35,6 +35,12 @@ public class NPACQueuePoller implements Poller {
 
    }
 
+   public void setMaxPollingInterval(long maxPollingInterval){
+
+      poller.setMaxPollingInterval(maxPollingInterval);
+
+   }
+
    public void start(){
 	   	   
       poller.start();
@@ -5,22 +5,16 @@
 ////////////////////////////////////////////////////////////////////////////
 package com.nightfire.spi.neustar_soa.queue;
 
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.util.Map;
 import java.util.HashMap;
 
 import com.nightfire.mgrcore.queue.*;
 import com.nightfire.mgrcore.queue.agents.*;
 
-import com.nightfire.framework.db.DBInterface;
 import com.nightfire.framework.util.CustomerContext;
 import com.nightfire.framework.util.Debug;
 
-import com.nightfire.spi.neustar_soa.adapter.NPACConstants;
 import com.nightfire.spi.neustar_soa.utils.NANCSupportFlag;
-import com.nightfire.spi.neustar_soa.utils.SOAQueryConstants;
 
 
 /**
@@ -82,6 +76,20 @@ public class NPACQueuePollerThread extends Thread{
     * This is just a label used to identify this instance in the logs.
     */
    private String threadLabel;
+
+   /**
+    * The maximum ammount of time that this poller should sleep when it
+    * repeatedly finds no queued messages. If this is greater than the
+    * polling interval, the poller is adaptive: its sleep time doubles each
+    * time it finds no messages, and it is woken as soon as a message is
+    * queued by this process.
+    */
+   private long maxSleepInterval;
+
+   /**
+    * Used to sleep between polls, and to be woken when a message is queued.
+    */
+   private PollerWakeup wakeup;
    
    /**
     * This represents the connectivity key
@@ -127,6 +135,7 @@ public class NPACQueuePollerThread extends Thread{
       this.whereCondition = whereCondition;
       this.values = values;
       this.sleepInterval = pollingInterval;
+      this.maxSleepInterval = pollingInterval;
       this.spid = (String)values.get("SPID");
               
       // this is just a label used to identify this instance in the logs
@@ -168,7 +177,9 @@ public class NPACQueuePollerThread extends Thread{
 
    /**
     * This polls the queue for new messages to process. If no messages
-    * are found, this will sleep and then try again.
+    * are found, this will sleep and then try again. If adaptive polling
+    * is enabled, the sleep time backs off while the queue remains empty,
+    * and the sleep is cut short when a message is queued.
     */
    public void run(){
 
@@ -188,43 +199,66 @@ public class NPACQueuePollerThread extends Thread{
          Debug.error("Could not clear customer context: "+ex);
       }
 
+      long idleSleepInterval = sleepInterval;
+
       while( alive ){
-    	  if(isAllRegionsConnected())
-    	  {
 
          try{
 
-            // the queueing infrastructure requires that the queue
-            // instance in the consumer get reset each time we
-            // want to query the DB
-            resetConsumer();
+            // messages are only sent once all regions have recovered
+            if( RegionStatusCache.getInstance().isAllRegionsConnected(
+                                                    connectivityKey) ){
+
+               // the queueing infrastructure requires that the queue
+               // instance in the consumer get reset each time we
+               // want to query the DB
+               resetConsumer();
+
+               MessageQueue queue = consumer.getQueue();
+
+               // if there are more messages in the DB queue
+               if( queue.hasNext() ) {
 
-            MessageQueue queue = consumer.getQueue();
+                  if( Debug.isLevelEnabled(Debug.IO_STATUS) ){
+                     Debug.log(Debug.IO_STATUS,
+                               this+
+                               " continuing to process messages from queue.");
+                  }
 
-            // if there are more messages in the DB queue
-            if( queue.hasNext()) {
+                  // hand consumer off to worker threads
+                  threadPool.process( queue, consumer, policy );
+
+                  idleSleepInterval = sleepInterval;
+
+                  continue;
 
-               if( Debug.isLevelEnabled(Debug.IO_STATUS) ){
-                  Debug.log(Debug.IO_STATUS,
-                            this+
-                            " continuing to process messages from queue.");
                }
 
-               // hand consumer off to worker threads
-               threadPool.process( queue, consumer, policy );
+            }
 
+            if( Debug.isLevelEnabled(Debug.IO_STATUS) ){
+               Debug.log(Debug.IO_STATUS,
+                         this+
+                         " sleeping for ["+idleSleepInterval+"] ms.");
             }
-            else {
 
-               if( Debug.isLevelEnabled(Debug.IO_STATUS) ){
-                  Debug.log(Debug.IO_STATUS,
-                            this+
-                            " sleeping.");
-               }
+            // There aren't any more messages at this time.
+            // Take a little rest.
+            if( wakeup == null ){
+
+               Thread.sleep(idleSleepInterval);
+
+            }
+            else if( wakeup.sleep(idleSleepInterval) ){
+
+               // a message was queued, so poll again right away
+               idleSleepInterval = sleepInterval;
+
+            }
+            else{
 
-               // There aren't any more messages at this time.
-               // Take a little rest.
-               Thread.sleep(sleepInterval);
+               idleSleepInterval = Math.min(idleSleepInterval * 2,
+                                            maxSleepInterval);
 
             }
 
@@ -237,25 +271,34 @@ public class NPACQueuePollerThread extends Thread{
             Debug.logStackTrace(oops);
          }
 
-    	  }
-    	  else
-    	  {
-    		  try
-    		  {
-    		  Thread.sleep(sleepInterval);
-    		  }
-    		  catch(InterruptedException e)
-    		  {
-    			  e.printStackTrace();
-    		  }
-    	  }
       }
-      
-      
 
    }
 
-  
+   /**
+    * Enables adaptive polling. This must be called before the thread
+    * is started.
+    *
+    * @param maxPollingInterval long the maximum time, in ms, that this
+    *                           thread will sleep when there are no messages
+    *                           to be processed. If this is not greater
+    *                           than the polling interval, polling is not
+    *                           adaptive.
+    */
+   public void setMaxPollingInterval(long maxPollingInterval){
+
+      if( maxPollingInterval > sleepInterval ){
+
+         maxSleepInterval = maxPollingInterval;
+
+         if( wakeup == null ){
+            wakeup = PollerWakeup.register(messageType, spid);
+         }
+
+      }
+
+   }
+
    /**
     * This calls setDequeueCriteria() to reinitialize the Queue instance
     * in the consumer. This must be done each time before the consumer queries
@@ -295,177 +338,15 @@ public class NPACQueuePollerThread extends Thread{
       alive = false;
       threadPool.shutdown();
 
+      if( wakeup != null ){
+         PollerWakeup.unregister(wakeup);
+      }
+
       // interrupt this thread if it is sleeping
       interrupt();
 
    }
 
-	private boolean isAllRegionsConnected(){
-		
-	   Connection conn=null;
-
- 	   PreparedStatement ps=null;
-
-	   ResultSet rs=null;
-	   
-	   String connInstance="";
-	   
-	   boolean connCheck = false;
-	   
-	   String NPACASSOCIATION_STATUS;
-	   
-	   if(connectivityKey != null && connectivityKey.length()>16){
-		   connInstance = connectivityKey.substring(17) ;
-		   if (Debug.isLevelEnabled(Debug.MSG_STATUS)) {
-				Debug.log(Debug.MSG_STATUS,
-						"isAllRegionsConnected Connectivity instance :[" + connInstance
-								+ "]");
-			}
-		   
-	   }
-	  
-	   for (int i=0;i<=NPACConstants.NPACASSOCIATION_STATUS_ARR.length-1;i++)
-	   {
-		   if(connInstance.equals(""))
-			   connCheck = NPACConstants.NPACASSOCIATION_STATUS_ARR[0];
-		   else if((Integer.parseInt(connInstance))==i)
-			   connCheck = NPACConstants.NPACASSOCIATION_STATUS_ARR[i];
-	   }	   	   	
-
- 	   boolean recoveryPoll=false;
-
-	   if(!connCheck)
-	   {
-			if (connectivityKey == null) {
-
-				try {
-					conn = DBInterface.acquireConnection();
-
-					ps = conn
-							.prepareStatement(SOAQueryConstants.REGION_RECOVERY_STATUS_NULL);
-
-					// Record count of all the configured regions.
-					rs = ps.executeQuery();
-
-					if (Debug.isLevelEnabled(Debug.MSG_STATUS)) {
-						Debug
-								.log(
-										Debug.MSG_STATUS,
-										"Executing region recovery status :["
-												+ SOAQueryConstants.REGION_RECOVERY_STATUS_NULL
-												+ "] for connectivity :["
-												+ connectivityKey + "]");
-					}
-					
-					if (rs.next()) {
-						int recCount = rs.getInt(1);
-
-						Debug.log(Debug.SYSTEM_CONFIG, "Record count is ="
-								+ recCount);
-
-						if (recCount == 0) {
-							recoveryPoll = true;							
-							for (int i=0;i<=NPACConstants.NPACASSOCIATION_STATUS_ARR.length-1;i++)
-							   {
-								   if(connInstance.equals(""))
-									   NPACConstants.NPACASSOCIATION_STATUS_ARR[0] = true ;
-								   else if((Integer.parseInt(connInstance))==i)
-									   NPACConstants.NPACASSOCIATION_STATUS_ARR[i] = true;
-							   }
-						}
-					}
-
-				} catch (Exception ex) {
-					Debug.log(Debug.SYSTEM_CONFIG, "Exception :"
-							+ ex.toString());
-				} finally {
-					try {
-						if (ps != null)
-							ps.close();
-
-						if (rs != null)
-							rs.close();
-
-						if (conn != null)
-							DBInterface.releaseConnection(conn);
-					} catch (Exception dbEx) {
-						Debug.log(Debug.SYSTEM_CONFIG, "Exception :"
-								+ dbEx.toString());
-					}
-				}
-
-			} else {
-				try {
-					conn = DBInterface.acquireConnection();
-
-					ps = conn
-							.prepareStatement(SOAQueryConstants.REGION_RECOVERY_STATUS);
-
-					
-					ps.setString(1, connectivityKey);
-					// Record count of all the configured regions.
-					rs = ps.executeQuery();
-
-					if (Debug.isLevelEnabled(Debug.MSG_STATUS)) {
-						Debug
-								.log(
-										Debug.MSG_STATUS,
-										"Executing region recovery status :["
-												+ SOAQueryConstants.REGION_RECOVERY_STATUS
-												+ "] for connectivity :["
-												+ connectivityKey + "]");
-					}
-
-					if (rs.next()) {
-						int recCount = rs.getInt(1);
-
-						Debug.log(Debug.SYSTEM_CONFIG, "Record count is ="
-								+ recCount);
-
-						if (recCount == 0) {
-							recoveryPoll = true;							
-							for (int i=0;i<=NPACConstants.NPACASSOCIATION_STATUS_ARR.length-1;i++)
-							   {
-								   if(connInstance.equals(""))
-									   NPACConstants.NPACASSOCIATION_STATUS_ARR[0] = true ;
-								   else if((Integer.parseInt(connInstance))==i)
-									   NPACConstants.NPACASSOCIATION_STATUS_ARR[i] = true;
-							   }
-							
-							
-						}
-					}					
-
-				} catch (Exception ex) {
-					Debug.log(Debug.SYSTEM_CONFIG, "Exception :"
-							+ ex.toString());
-				} finally {
-					try {
-						if (ps != null)
-							ps.close();
-
-						if (rs != null)
-							rs.close();
-
-						if (conn != null)
-							DBInterface.releaseConnection(conn);
-					} catch (Exception dbEx) {
-						Debug.log(Debug.SYSTEM_CONFIG, "Exception :"
-								+ dbEx.toString());
-					}
-				}
-			}
-
-		}
-		else
-		{
-			recoveryPoll=true;
-		}
-	  
- 	   return recoveryPoll;
- 	   
-    }
-
    /**
     * Returns a label for this thread.
     *
@@ -4,6 +4,12 @@ public interface Poller {
 
    public void start();
 
+   /**
+    * Enables adaptive polling, with the given maximum sleep time in ms.
+    * This must be called before the poller is started.
+    */
+   public void setMaxPollingInterval(long maxPollingInterval);
+
    public void shutdown();
 
 }
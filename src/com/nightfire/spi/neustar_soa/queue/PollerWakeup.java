@@ -0,0 +1,191 @@
+////////////////////////////////////////////////////////////////////////////
+// Copyright (c) 2004 NeuStar, Inc. All rights reserved.
+// The source code provided herein is the exclusive property of NeuStar, Inc.
+// and is considered to be confidential and proprietary to NeuStar.
+////////////////////////////////////////////////////////////////////////////
+package com.nightfire.spi.neustar_soa.queue;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import com.nightfire.framework.util.Debug;
+
+/**
+ * This is used by a queue poller thread to sleep between polls of the
+ * queue, so that it can be woken as soon as a message of the type it
+ * polls for is queued by this process, instead of waiting for its
+ * polling interval to elapse. Messages queued by other processes are
+ * still picked up on the next poll.
+ *
+ * Wakeups may be registered for a particular SPID, so that queuing a
+ * message for one SPID does not wake the pollers of every other SPID.
+ */
+public class PollerWakeup {
+
+   /**
+    * The registered wakeups, keyed by the message type they poll for.
+    */
+   private static Map registry = new ConcurrentHashMap();
+
+   /**
+    * The message type polled for.
+    */
+   private String messageType;
+
+   /**
+    * The SPID polled for, or null if the poller is not SPID-specific.
+    */
+   private String spid;
+
+   /**
+    * This flag is set when a message is queued, and cleared when the
+    * poller has been woken for it.
+    */
+   private boolean signalled = false;
+
+   /**
+    * Creates and registers a wakeup for a poller.
+    *
+    * @param messageType String the message type the poller polls for.
+    * @param spid String the SPID the poller polls for, or null if it polls
+    *             for all SPIDs.
+    * @return PollerWakeup
+    */
+   public static PollerWakeup register(String messageType, String spid){
+
+      PollerWakeup wakeup = new PollerWakeup(messageType, spid);
+
+      getWakeups(messageType).add(wakeup);
+
+      return wakeup;
+
+   }
+
+   /**
+    * Removes a poller's wakeup, once the poller has been shut down.
+    *
+    * @param wakeup PollerWakeup the wakeup returned by register().
+    */
+   public static void unregister(PollerWakeup wakeup){
+
+      getWakeups(wakeup.messageType).remove(wakeup);
+
+   }
+
+   /**
+    * This is called once a message has been queued, to wake the pollers
+    * that poll for its type and SPID.
+    *
+    * @param messageType String the type of the queued message.
+    * @param spid String the SPID of the queued message, or null if it is
+    *             not known, in which case all pollers for the type are woken.
+    */
+   public static void messageQueued(String messageType, String spid){
+
+      List wakeups = (List) registry.get(messageType);
+
+      if( wakeups == null ){
+         return;
+      }
+
+      if( Debug.isLevelEnabled(Debug.IO_STATUS) ){
+         Debug.log(Debug.IO_STATUS,
+                   "Waking poller(s) for message type ["+messageType+
+                   "] and SPID ["+spid+"].");
+      }
+
+      Iterator iter = wakeups.iterator();
+
+      while( iter.hasNext() ){
+
+         PollerWakeup wakeup = (PollerWakeup) iter.next();
+
+         if( spid == null || wakeup.spid == null || spid.equals(wakeup.spid) ){
+            wakeup.signal();
+         }
+
+      }
+
+   }
+
+   /**
+    * Sleeps until the given time has elapsed, or a message is queued.
+    * If a message was queued since the last sleep, this returns at once.
+    *
+    * @param sleepTime long the maximum time to sleep, in ms.
+    * @return boolean true if woken by a queued message, false if the
+    *                 full time elapsed.
+    * @throws InterruptedException if the poller is interrupted.
+    */
+   public synchronized boolean sleep(long sleepTime)
+                                     throws InterruptedException{
+
+      long wakeTime = System.currentTimeMillis() + sleepTime;
+
+      long remaining = sleepTime;
+
+      while( !signalled && remaining > 0 ){
+
+         wait(remaining);
+
+         remaining = wakeTime - System.currentTimeMillis();
+
+      }
+
+      boolean woken = signalled;
+
+      signalled = false;
+
+      return woken;
+
+   }
+
+   /**
+    * Wakes the poller.
+    */
+   public synchronized void signal(){
+
+      signalled = true;
+
+      notifyAll();
+
+   }
+
+   private PollerWakeup(String messageType, String spid){
+
+      this.messageType = messageType;
+      this.spid = spid;
+
+   }
+
+   /**
+    * Gets the list of wakeups for the given message type, creating it if
+    * necessary.
+    */
+   private static List getWakeups(String messageType){
+
+      List wakeups = (List) registry.get(messageType);
+
+      if( wakeups == null ){
+
+         synchronized( registry ){
+
+            wakeups = (List) registry.get(messageType);
+
+            if( wakeups == null ){
+
+               wakeups = new CopyOnWriteArrayList();
+               registry.put(messageType, wakeups);
+
+            }
+
+         }
+
+      }
+
+      return wakeups;
+
+   }
+
+}
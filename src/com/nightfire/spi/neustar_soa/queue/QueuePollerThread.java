@@ -73,6 +73,20 @@ public class QueuePollerThread extends Thread{
     */
    private String threadLabel;
 
+   /**
+    * The maximum ammount of time that this poller should sleep when it
+    * repeatedly finds no queued messages. If this is greater than the
+    * polling interval, the poller is adaptive: its sleep time doubles each
+    * time it finds no messages, and it is woken as soon as a message is
+    * queued by this process.
+    */
+   private long maxSleepInterval;
+
+   /**
+    * Used to sleep between polls, and to be woken when a message is queued.
+    */
+   private PollerWakeup wakeup;
+
    //add priority in orderby clause
    private final static String PRIORITY = "priority,";
    
@@ -108,6 +122,7 @@ public class QueuePollerThread extends Thread{
       this.whereCondition = whereCondition;
       this.values = values;
       this.sleepInterval = pollingInterval;
+      this.maxSleepInterval = pollingInterval;
 
       // this is just a label used to identify this instance in the logs
       threadLabel = "["+messageType+"] Poller Thread - ["+
@@ -138,7 +153,9 @@ public class QueuePollerThread extends Thread{
 
    /**
     * This polls the queue for new messages to process. If no messages
-    * are found, this will sleep and then try again.
+    * are found, this will sleep and then try again. If adaptive polling
+    * is enabled, the sleep time backs off while the queue remains empty,
+    * and the sleep is cut short when a message is queued.
     */
    public void run(){
 
@@ -158,6 +175,8 @@ public class QueuePollerThread extends Thread{
          Debug.error("Could not clear customer context: "+ex);
       }
 
+      long idleSleepInterval = sleepInterval;
+
       while( alive ){
 
          try{
@@ -181,18 +200,35 @@ public class QueuePollerThread extends Thread{
                // hand consumer off to worker threads
                threadPool.process( queue, consumer, policy );
 
+               idleSleepInterval = sleepInterval;
+
+               continue;
+
             }
-            else {
 
-               if( Debug.isLevelEnabled(Debug.IO_STATUS) ){
-                  Debug.log(Debug.IO_STATUS,
-                            this+
-                            " sleeping.");
-               }
+            if( Debug.isLevelEnabled(Debug.IO_STATUS) ){
+               Debug.log(Debug.IO_STATUS,
+                         this+
+                         " sleeping for ["+idleSleepInterval+"] ms.");
+            }
+
+            // There aren't any more messages at this time.
+            // Take a little rest.
+            if( wakeup == null ){
+
+               Thread.sleep(idleSleepInterval);
+
+            }
+            else if( wakeup.sleep(idleSleepInterval) ){
 
-               // There aren't any more messages at this time.
-               // Take a little rest.
-               Thread.sleep(sleepInterval);
+               // a message was queued, so poll again right away
+               idleSleepInterval = sleepInterval;
+
+            }
+            else{
+
+               idleSleepInterval = Math.min(idleSleepInterval * 2,
+                                            maxSleepInterval);
 
             }
 
@@ -207,6 +243,29 @@ public class QueuePollerThread extends Thread{
 
       }
 
+   }
+
+   /**
+    * Enables adaptive polling. This must be called before the thread
+    * is started.
+    *
+    * @param maxPollingInterval long the maximum time, in ms, that this
+    *                           thread will sleep when there are no messages
+    *                           to be processed. If this is not greater
+    *                           than the polling interval, polling is not
+    *                           adaptive.
+    */
+   public void setMaxPollingInterval(long maxPollingInterval){
+
+      if( maxPollingInterval > sleepInterval ){
+
+         maxSleepInterval = maxPollingInterval;
+
+         if( wakeup == null ){
+            wakeup = PollerWakeup.register(messageType, (String) values.get(SOAMessageType.SPID_COL));
+         }
+
+      }
 
    }
 
@@ -265,6 +324,10 @@ public class QueuePollerThread extends Thread{
       alive = false;
       threadPool.shutdown();
 
+      if( wakeup != null ){
+         PollerWakeup.unregister(wakeup);
+      }
+
       // interrupt this thread if it is sleeping
       interrupt();
 
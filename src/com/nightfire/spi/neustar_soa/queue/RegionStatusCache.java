@@ -0,0 +1,345 @@
+////////////////////////////////////////////////////////////////////////////
+// Copyright (c) 2004 NeuStar, Inc. All rights reserved.
+// The source code provided herein is the exclusive property of NeuStar, Inc.
+// and is considered to be confidential and proprietary to NeuStar.
+////////////////////////////////////////////////////////////////////////////
+package com.nightfire.spi.neustar_soa.queue;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.nightfire.framework.db.DBInterface;
+import com.nightfire.framework.util.Debug;
+
+import com.nightfire.spi.neustar_soa.adapter.AssociationEvent;
+import com.nightfire.spi.neustar_soa.adapter.AssociationListener;
+import com.nightfire.spi.neustar_soa.adapter.NPACConstants;
+import com.nightfire.spi.neustar_soa.adapter.Session;
+import com.nightfire.spi.neustar_soa.utils.SOAQueryConstants;
+
+/**
+ * This caches whether all of the regions of a connectivity have completed
+ * recovery, so that the NPAC queue pollers do not need to query the
+ * SOA_REGION_RECOVERY table on every poll while a region is recovering.
+ *
+ * Once a region is found to be still awaiting recovery, the table is not
+ * queried again for that connectivity until the recheck interval has
+ * elapsed. This interval doubles each time the regions are found to be
+ * still recovering, up to the maximum. When an association changes state
+ * in this process, the cached result is discarded and the NPAC pollers are
+ * woken, so that they find out at once. The recheck interval is zero
+ * (the table is queried on every poll) until it is set.
+ */
+public class RegionStatusCache implements AssociationListener {
+
+   /**
+    * The single instance.
+    */
+   private static RegionStatusCache singleton = new RegionStatusCache();
+
+   /**
+    * The initial time to wait, in ms, before querying the recovery status
+    * of a connectivity again.
+    */
+   private volatile long minRecheckInterval = 0;
+
+   /**
+    * The maximum time to wait, in ms, before querying the recovery status
+    * of a connectivity again.
+    */
+   private volatile long maxRecheckInterval = 0;
+
+   /**
+    * The time at which the recovery status of each connectivity instance
+    * should next be queried.
+    */
+   private long[] nextCheckTimes =
+      new long[ NPACConstants.NPACASSOCIATION_STATUS_ARR.length ];
+
+   /**
+    * The current recheck interval of each connectivity instance.
+    */
+   private long[] recheckIntervals =
+      new long[ NPACConstants.NPACASSOCIATION_STATUS_ARR.length ];
+
+   /**
+    * The connectivity keys of the primary SPIDs of the sessions that
+    * have sent association events, keyed by SPID.
+    */
+   private Map connectivityKeys = new ConcurrentHashMap();
+
+   /**
+    * The number of recovery status queries, and the number avoided.
+    */
+   private long queryCount = 0;
+
+   private long cachedCount = 0;
+
+   public static RegionStatusCache getInstance(){
+
+      return singleton;
+
+   }
+
+   /**
+    * Sets the range of the recheck interval.
+    *
+    * @param minRecheckInterval long the initial interval, in ms.
+    * @param maxRecheckInterval long the maximum interval, in ms.
+    */
+   public void setRecheckInterval(long minRecheckInterval,
+                                  long maxRecheckInterval){
+
+      this.minRecheckInterval = minRecheckInterval;
+      this.maxRecheckInterval = Math.max(minRecheckInterval,
+                                         maxRecheckInterval);
+
+      if(Debug.isLevelEnabled(Debug.SYSTEM_CONFIG)){
+         Debug.log(Debug.SYSTEM_CONFIG,
+                   "Region recovery status recheck interval set to ["+
+                   this.minRecheckInterval+"-"+this.maxRecheckInterval+
+                   "] ms.");
+      }
+
+   }
+
+   /**
+    * Checks whether all of the regions of the given connectivity are
+    * connected and have completed recovery.
+    *
+    * @param connectivityKey String the connectivity key, or null for
+    *                        the default connectivity.
+    * @return boolean true if messages may be sent to the NPAC.
+    */
+   public boolean isAllRegionsConnected(String connectivityKey){
+
+      int instance = getInstance(connectivityKey);
+
+      if( instance < 0 ){
+
+         // the status of an unknown instance is not cached
+         return ( getAwaitingCount(connectivityKey) == 0 );
+
+      }
+
+      if( NPACConstants.NPACASSOCIATION_STATUS_ARR[instance] ){
+         return true;
+      }
+
+      synchronized( this ){
+
+         if( System.currentTimeMillis() < nextCheckTimes[instance] ){
+
+            cachedCount++;
+            return false;
+
+         }
+
+         queryCount++;
+
+      }
+
+      int awaitingCount = getAwaitingCount(connectivityKey);
+
+      synchronized( this ){
+
+         if( awaitingCount == 0 ){
+
+            NPACConstants.NPACASSOCIATION_STATUS_ARR[instance] = true;
+            nextCheckTimes[instance] = 0;
+            recheckIntervals[instance] = 0;
+            return true;
+
+         }
+
+         long interval = Math.min( Math.max( recheckIntervals[instance] * 2,
+                                             minRecheckInterval ),
+                                   maxRecheckInterval );
+
+         recheckIntervals[instance] = interval;
+         nextCheckTimes[instance] = System.currentTimeMillis() + interval;
+
+         if(Debug.isLevelEnabled(Debug.MSG_STATUS)){
+            Debug.log(Debug.MSG_STATUS,
+                      "["+awaitingCount+"] region(s) of connectivity ["+
+                      connectivityKey+"] awaiting recovery. Rechecking in ["+
+                      interval+"] ms. "+describe());
+         }
+
+      }
+
+      return false;
+
+   }
+
+   /**
+    * Discards the cached recovery status of the session's connectivity
+    * when one of its associations changes state, and wakes the NPAC
+    * pollers once an association is connected.
+    */
+   public void associationStateChanged(AssociationEvent event){
+
+      String spid = ((Session) event.getSource()).getPrimarySPID();
+
+      String connectivityKey = (String) connectivityKeys.get(spid);
+
+      if( connectivityKey == null ){
+
+         connectivityKey = NPACQueueUtils.getConnectivityKey(spid);
+
+         if( connectivityKey != null ){
+            connectivityKeys.put(spid, connectivityKey);
+         }
+
+      }
+
+      int instance = getInstance(connectivityKey);
+
+      if( instance >= 0 ){
+
+         synchronized( this ){
+
+            nextCheckTimes[instance] = 0;
+            recheckIntervals[instance] = 0;
+
+         }
+
+      }
+
+      if( event.getAssociationState() == Session.ASSOCIATION_CONNECTED ){
+
+         PollerWakeup.messageQueued(NPACMessageType.NPAC_MESSAGE_TYPE, null);
+
+      }
+
+   }
+
+   /**
+    * Describes the number of recovery status queries made and avoided.
+    *
+    * @return String
+    */
+   public synchronized String describe(){
+
+      return "Region recovery status queries [" + queryCount +
+             "], avoided [" + cachedCount + "].";
+
+   }
+
+   /**
+    * Gets the index of the connectivity instance in the association
+    * status array.
+    *
+    * @return int the index, or -1 if it is not valid.
+    */
+   private static int getInstance(String connectivityKey){
+
+      if( connectivityKey == null || connectivityKey.length() <= 16 ){
+         return 0;
+      }
+
+      try{
+
+         int instance = Integer.parseInt( connectivityKey.substring(17) );
+
+         if( instance >= 0 &&
+             instance < NPACConstants.NPACASSOCIATION_STATUS_ARR.length ){
+
+            return instance;
+
+         }
+
+      }
+      catch(NumberFormatException nfex){
+
+         Debug.warning("Invalid connectivity key ["+connectivityKey+"]: "+
+                       nfex);
+
+      }
+
+      return -1;
+
+   }
+
+   /**
+    * Queries the number of configured regions that are still awaiting
+    * recovery.
+    *
+    * @return int the count, or -1 if the query failed.
+    */
+   private static int getAwaitingCount(String connectivityKey){
+
+      Connection conn = null;
+
+      PreparedStatement ps = null;
+
+      ResultSet rs = null;
+
+      String query = ( connectivityKey == null )
+                     ? SOAQueryConstants.REGION_RECOVERY_STATUS_NULL
+                     : SOAQueryConstants.REGION_RECOVERY_STATUS;
+
+      int recCount = -1;
+
+      try {
+
+         conn = DBInterface.acquireConnection();
+
+         ps = conn.prepareStatement(query);
+
+         if( connectivityKey != null ){
+            ps.setString(1, connectivityKey);
+         }
+
+         if (Debug.isLevelEnabled(Debug.MSG_STATUS)) {
+            Debug.log(Debug.MSG_STATUS,
+                      "Executing region recovery status :[" + query +
+                      "] for connectivity :[" + connectivityKey + "]");
+         }
+
+         // Record count of all the configured regions.
+         rs = ps.executeQuery();
+
+         if (rs.next()) {
+
+            recCount = rs.getInt(1);
+
+            Debug.log(Debug.SYSTEM_CONFIG, "Record count is =" + recCount);
+
+         }
+
+      }
+      catch (Exception ex) {
+         Debug.log(Debug.SYSTEM_CONFIG, "Exception :" + ex.toString());
+      }
+      finally {
+
+         try {
+
+            if (rs != null)
+               rs.close();
+
+            if (ps != null)
+               ps.close();
+
+            if (conn != null)
+               DBInterface.releaseConnection(conn);
+
+         }
+         catch (Exception dbEx) {
+            Debug.log(Debug.SYSTEM_CONFIG, "Exception :" + dbEx.toString());
+         }
+
+      }
+
+      return recCount;
+
+   }
+
+   private RegionStatusCache(){
+   }
+
+}
@@ -39,6 +39,12 @@ public class SOAQueuePoller implements Poller{
 
    }
 
+   public void setMaxPollingInterval(long maxPollingInterval){
+
+      poller.setMaxPollingInterval(maxPollingInterval);
+
+   }
+
    public void start(){
 
       poller.start();
@@ -91,7 +91,8 @@ public class SOARequestPollerServer extends NPACPollerServer{
 
 	  // create the load-balancing corba client
 	  RoundRobinAsyncCorbaClient client =
-		 new RoundRobinAsyncCorbaClient(serverNames,serverKey,serverTypePrefix,downServerRetryTime);
+		 new RoundRobinAsyncCorbaClient(serverNames,serverKey,serverTypePrefix,downServerRetryTime,
+                                        getPropertyValue(LoadBalancingCorbaClient.SERVER_SELECTION_MODE_PROP));
 
 	  return client;
 
@@ -138,6 +138,7 @@ import com.nightfire.spi.neustar_soa.utils.NancPropException;
 import com.nightfire.spi.neustar_soa.utils.SOAConfiguredSPIDCache;
 import com.nightfire.spi.neustar_soa.utils.SOAConstants;
 import com.nightfire.spi.neustar_soa.utils.SOAQueryConstants;
+import com.nightfire.spi.neustar_soa.utils.TNRangeSet;
 
 /**
  * This class contains utility methods for accessing SOA data from the
@@ -1027,7 +1028,6 @@ public abstract class SOACustomDBFunctions extends RuleEvaluatorBase{
 		ArrayList failedTNList = null;
 		ArrayList submittedTnList = null;
 		String tnCoalescingFlagValue = null;
-		ArrayList modifedTNList = null;
 		boolean isNnspOnspDifferent = false;
 
 		if (isSVID)
@@ -1085,27 +1085,12 @@ public abstract class SOACustomDBFunctions extends RuleEvaluatorBase{
 						Debug.log(Debug.MSG_STATUS,"setTnList(), submittedTnList after returning from getModifiedSubmittedTnList(): "+submittedTnList);
 				 }
 				 
-				 //breaking all range tn belongs to submittedTnList into single tn list (modifedTNList).
-				 modifedTNList = new ArrayList();
-				 String tnFromML = null;
-				 for (int ctr=0; ctr < submittedTnList.size(); ctr++)
-				 {							
-					 tnFromML = ((String)submittedTnList.get(ctr));
-					 if (tnFromML.length() > 12)
-					 {
-						String start = tnFromML.substring(0,12);
-						String end = tnFromML.substring(13);
-						modifedTNList.addAll(getRangeTnList(start, end));
-					 }
-					 else 
-					 {
-						 modifedTNList.add(tnFromML);
-					 }
-				 }
+				 //collecting all tns and range tns belonging to submittedTnList into a set of ranges (modifedTNList).
+				 TNRangeSet modifedTNList = toTNRangeSet(submittedTnList);
 				 
 				 if ( Debug.isLevelEnabled( Debug.MSG_STATUS ))
 				 {
-						Debug.log(Debug.MSG_STATUS,"setTnList(), after breaking all range tn belongs to submittedTnList into single tn list (modifedTNList) : "+modifedTNList);
+						Debug.log(Debug.MSG_STATUS,"setTnList(), ranges of tns belonging to submittedTnList (modifedTNList) : "+modifedTNList);
 				 }
 				 //Checking each tn in tnList contains in modifedTNList.
 				 // if it does not contain then add it in submittedTnList beacause if tn doesnot exist in SV table so it will not be part of 
@@ -1201,21 +1186,26 @@ public abstract class SOACustomDBFunctions extends RuleEvaluatorBase{
 					Debug.log(Debug.MSG_STATUS," FailedTnList in Context, Count of FailedTNList: "+failedTNList.size());
 				
 				
-				Iterator tmIterator = failedTNList.iterator();
+				ArrayList successList = new ArrayList(tnList.size());
+
+				// only the first occurrence of a failed TN is removed.
+				HashSet removedTNs = new HashSet();
+
+				Iterator tmIterator = tnList.iterator();
 	
 				while (tmIterator.hasNext())
 				{
-					String failedTN = (String)tmIterator.next();
-	
-					
-					int tnIndex = tnList.indexOf(failedTN);
-					
-					
-					if (tnIndex != -1)
+					String tn = (String)tmIterator.next();
+
+					if (!failedTNList.contains(tn) || !removedTNs.add(tn))
 					{
-						tnList.remove(tnIndex);	
+						successList.add(tn);
 					}
-				}			
+				}
+
+				tnList.clear();
+
+				tnList.addAll(successList);
 			}
 			else
 				if ( Debug.isLevelEnabled( Debug.MSG_STATUS ))
@@ -1274,16 +1264,9 @@ public abstract class SOACustomDBFunctions extends RuleEvaluatorBase{
 				Debug.log(Debug.MSG_ERROR ," submittedTnList is null");
 			return tnList;
 		}
-		Collections.sort(tnList);
+		TNRangeSet presentTNs = toTNRangeSet(tnList);
 		
 		ArrayList subRange = new ArrayList();
-		String currentNpaNxx = null;
-		String endTN = null;
-		String startTN = null;			
-		String startFirstTN = null;
-		String rangeStartTN = null;
-		String range = null;
-		String temp = null;
 		
 		Iterator iter = submittedTnList.iterator();
 		
@@ -1294,73 +1277,13 @@ public abstract class SOACustomDBFunctions extends RuleEvaluatorBase{
 				String submitTn = (String)iter.next();
 				if( submitTn.length() > 12 ){
 					
-					endTN = submitTn.substring(13);
-					startTN = submitTn.substring(0, 12);
-					currentNpaNxx = submitTn.substring(0,7);
-					rangeStartTN = startTN;
-					startFirstTN = submitTn.substring(8, 12);
-					int rangeLength = Integer.parseInt(endTN)- Integer.parseInt(startFirstTN) + 1;
-					int startFTN = Integer.parseInt(startFirstTN);
-					int j = 0;
-					for (int i = 0; i < rangeLength; i++) {
-					
-						if(tnList.contains(startTN)){
-					
-							j++;
-							temp = temp + startTN + ";";
-							startTN = currentNpaNxx +"-"+ StringUtils.padNumber(startFTN+1,SOAConstants.TN_LINE, true, '0');
-							if(startFTN == Integer.parseInt(endTN) && j==rangeLength){
-								range = rangeStartTN + "-" + StringUtils.padNumber(startFTN,SOAConstants.TN_LINE, true, '0');
-								subRange.add(range);
-								temp= null;
-								range = null;
-								break;
-							}
-							startFTN++;
-						}else{
-							if(temp !=null ){
-							
-								temp = (temp.substring(4, temp.length()-1)).trim();
-								if(temp.length() > 12){
-									
-									String[] failedRangeTns = temp.split(";");
-									String startRange = failedRangeTns[0];
-									String endRange = failedRangeTns[failedRangeTns.length-1];
-									range = startRange + "-" + endRange.substring(8,12);
-									
-								}else{
-									
-									range = temp;
-									
-								}
-								subRange.add(range);
-								temp = null;
-								range = null;
-								
-							}
-							rangeStartTN = currentNpaNxx + "-" + StringUtils.padNumber(startFTN+1,SOAConstants.TN_LINE, true, '0');
-							startTN = rangeStartTN;
-							startFirstTN = startTN.substring(8, 12);
-							startFTN = Integer.parseInt(startFirstTN);
-						}
-					}
-				if(temp !=null ){
-					temp = temp.trim();
-					temp = temp.substring(4, temp.length()-1);
-					if(temp.length() > 12){
-						String[] failedRangeTns = temp.split(";");
-						String startRange = failedRangeTns[0];
-						String endRange = failedRangeTns[failedRangeTns.length-1];
-						range = startRange + "-" + endRange.substring(8,12);
-					}else{
-						range = temp;
-					}
-					subRange.add(range);
-					temp = null;
-					range = null;
-				}
+					// The parts of the submitted range present in tnList, as single TNs and sub ranges.
+					TNRangeSet submittedRange = new TNRangeSet();
+					submittedRange.add(submitTn);
+					submittedRange.retainAll(presentTNs);
+					subRange.addAll(submittedRange.toRangeList());
 				}else{
-					if (tnList.contains(submitTn)){
+					if (presentTNs.contains(submitTn)){
 						subRange.add(submitTn);
 					}
 				}
@@ -1394,99 +1317,41 @@ public abstract class SOACustomDBFunctions extends RuleEvaluatorBase{
 			return tnList;
 		}
 
-		Collections.sort(tnList);
+		ArrayList subRange = toTNRangeSet(tnList).toRangeList();
 
-		ArrayList subRange = new ArrayList();
-
-		Iterator iter = tnList.iterator();
-
-		String previousNpaNxx = null;
-
-		String currentNpaNxx = null;
+		if (Debug.isLevelEnabled(Debug.MSG_STATUS))
+			Debug.log(Debug.MSG_STATUS, "Collapsed TNs " + tnList + " into " + subRange);
 
-		String endStation = null;
+		return subRange;
 
-		String previousEndStation = null;
+	}
 
-		String startTN = null;		
+	/**
+	 * Builds the set of TNs in a list of TNs and TN ranges, skipping any
+	 * entries that are not TNs or TN ranges.
+	 *
+	 * @param tnList list of TN Strings in NPA-NXX-XXXX or NPA-NXX-XXXX-YYYY form.
+	 * @return the set of TNs.
+	 */
+	private static TNRangeSet toTNRangeSet(ArrayList tnList) {
 
-		int previousEndTN = -1;
+		TNRangeSet tns = new TNRangeSet();
 
-		int i = 1;
+		Iterator iter = tnList.iterator();
 
 		while (iter.hasNext()) {
-			String tn = (String) iter.next();
-
-			Debug.log(Debug.MSG_STATUS, i + "tn " + tn);
-
-			currentNpaNxx = tn.substring(0, 7);
-
-			if (previousNpaNxx != null) {
-
-				endStation = tn.substring(8);
-
-				Debug.log(Debug.MSG_STATUS, i + "endStation " + endStation);
-
-				try {
-					int endTN = Integer.parseInt(endStation);
-
-					previousEndTN = Integer.parseInt(previousEndStation);
-
-					if (currentNpaNxx.equals(previousNpaNxx)) {
-
-						if (previousEndTN != -1 && endTN == (previousEndTN + 1)) {
-							previousEndTN = endTN;
-						} else {
-
-							if (startTN.substring(8).equals(Integer.valueOf(previousEndTN).toString())) {
-								subRange.add(startTN);
-							} else {
-								subRange.add(startTN + "-" + StringUtils.padNumber(previousEndTN, SOAConstants.TN_LINE, true, '0'));
-							}
-							
-							previousEndTN = -1;
-							previousNpaNxx = null;
-
-							startTN = tn;
-
-						}
-					} else {
-
-						if (startTN.substring(8).equals(Integer.valueOf(previousEndTN).toString())) {
-							subRange.add(startTN);
-						} else {
-							subRange.add(startTN + "-" + StringUtils.padNumber(previousEndTN, SOAConstants.TN_LINE, true, '0'));
-						}
-
-						previousEndTN = -1;
-						previousNpaNxx = null;
 
-						startTN = tn;
-
-					}
+			String tn = (String) iter.next();
 
-				} catch (NumberFormatException nfe) {
-				}
-			} else {
-				startTN = tn;
+			try {
+				tns.add(tn);
+			} catch (RuntimeException e) {
+				if (Debug.isLevelEnabled(Debug.MSG_WARNING))
+					Debug.log(Debug.MSG_WARNING, "Skipping invalid TN [" + tn + "]: " + e.getMessage());
 			}
-
-			previousNpaNxx = currentNpaNxx;
-
-			previousEndStation = tn.substring(8);
-
-			i++;
-
 		}
 
-		if (previousEndTN != -1) {
-			subRange.add(startTN + "-" + StringUtils.padNumber(previousEndTN, SOAConstants.TN_LINE, true, '0'));
-		} else {
-			subRange.add(startTN);
-		}
-
-		return subRange;
-
+		return tns;
 	}
 	
 	public boolean triggerTnSv(Value spid, Value tn, Value startTN, 
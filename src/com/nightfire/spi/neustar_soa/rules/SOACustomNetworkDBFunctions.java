@@ -47,6 +47,7 @@ import java.util.TreeSet;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Date;
+import java.util.List;
 import java.text.SimpleDateFormat;
 import java.text.ParseException;
 import com.nightfire.framework.rules.Value;
@@ -1650,12 +1651,6 @@ public abstract class SOACustomNetworkDBFunctions extends
    public boolean isNpaNxxLrn(Value lrn, Value spid){
        	         
 	   boolean result = false;
-	   
-	   Connection conn = null;
-
-	   Statement stmt = null;
-      
-       ResultSet results = null;
 
 	   StringBuffer npaNxxValue = new StringBuffer();
 
@@ -1712,18 +1707,13 @@ public abstract class SOACustomNetworkDBFunctions extends
 								+ spid.toString() + "'";
 
 	   try{
-			 conn = getDBConnection();
-
-			 stmt = conn.createStatement();
-
-			 if ( Debug.isLevelEnabled( Debug.NORMAL_STATUS ))
-				 Debug.log(Debug.NORMAL_STATUS,"Executing napnxxLrnQuery"+napnxxLrnQuery);
-
-			 results = stmt.executeQuery(napnxxLrnQuery);						 
+			 // LRN ownership of an NPA-NXX is reference data, so the
+			 // result may be shared with later requests.
+			 List rows = executeCachedQuery(napnxxLrnQuery, null, true);
 			
-			 while( results.next() ){
+			 for( int k = 0; k < rows.size(); k++ ){
 
-				dbNpaNxx = results.getString(1);
+				dbNpaNxx = ((String[])rows.get(k))[0];
 
 				if ( Debug.isLevelEnabled( Debug.NORMAL_STATUS ))
 					Debug.log(Debug.NORMAL_STATUS,"Executing dbNpaNxx"+dbNpaNxx);
@@ -1786,10 +1776,7 @@ public abstract class SOACustomNetworkDBFunctions extends
 			 if ( Debug.isLevelEnabled( Debug.ALL_ERRORS ))
 				 Debug.log(Debug.ALL_ERRORS,exception.toString());
          
-			}finally{
-			
-			close(results, stmt);
-		 }
+			}
 
 		 return result;
 
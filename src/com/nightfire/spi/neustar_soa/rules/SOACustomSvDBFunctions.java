@@ -176,31 +176,18 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 	 */
 	public String getCustomerID(Value spid){
 
-		Connection conn = null;
-
-		PreparedStatement pstmt = null;
-
-		ResultSet results = null;
-
 		String customerID = null;
 
 		try{
 
-			conn = getDBConnection();
+			// The customer of a SPID is reference data, so the result
+			// may be shared with later requests.
+			List rows = executeCachedQuery(SOAQueryConstants.GET_CUSTOMERID_QUERY,
+					new String[]{ spid.toString() }, true);
 
-			if(Debug.isLevelEnabled(Debug.NORMAL_STATUS))
-				Debug.log(Debug.NORMAL_STATUS, " SQL, getCustomerID :\n" + SOAQueryConstants.GET_CUSTOMERID_QUERY);
-
-			pstmt = conn.prepareStatement(
-					SOAQueryConstants.GET_CUSTOMERID_QUERY);
+			if(!rows.isEmpty()){
 
-			pstmt.setString( 1, spid.toString());
-
-			results = pstmt.executeQuery();
-
-			if(results.next()){
-
-				customerID = results.getString(1);                                
+				customerID = ((String[])rows.get(0))[0];
 			}
 			if ( Debug.isLevelEnabled( Debug.MSG_STATUS ))
 				Debug.log(Debug.MSG_STATUS,"getCustomerID value is: "+customerID);
@@ -209,9 +196,6 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 
 			logErrors(exception, SOAQueryConstants.GET_CUSTOMERID_QUERY);
 
-		}finally{
-
-			close(results, pstmt); 
 		}
 
 		return customerID;
@@ -281,12 +265,6 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 
 		boolean result = true;
 
-		Connection conn = null;
-
-		PreparedStatement pstmt = null;
-
-		ResultSet results = null;
-
 		String npa = null;
 
 		String nxx = null;		
@@ -319,29 +297,23 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 
 		try{
 
-			conn = getDBConnection();
-
-			if(Debug.isLevelEnabled(Debug.NORMAL_STATUS))
-				Debug.log(Debug.NORMAL_STATUS, " SQL, isNpaNxxLrn :\n" + SOAQueryConstants.GET_LRN);
-
-			pstmt = conn.prepareStatement(SOAQueryConstants.GET_LRN);
-
-			pstmt.setString( 1, spid.toString());   
-
-			pstmt.setString( 2, npanxx );
-
-			results = pstmt.executeQuery();
+			// LRN ownership of an NPA-NXX is reference data, so the
+			// result may be shared with later requests.
+			List rows = executeCachedQuery(SOAQueryConstants.GET_LRN,
+					new String[]{ spid.toString(), npanxx }, true);
 
 			StringBuffer errorMessage=new StringBuffer();
 
-			while( results.next() ){
+			for( int i = 0; i < rows.size(); i++ ){
 
-				if (results.getString(1).equals(lrn.toString())){
+				String dbLrn = ((String[])rows.get(i))[0];
+
+				if (dbLrn.equals(lrn.toString())){
 					result = true;
 					break;
 				}
 				else{					
-					errorMessage.append("[" + results.getString(1) + "]");				   
+					errorMessage.append("[" + dbLrn + "]");				   
 					result = false;			 
 				}			 
 			}
@@ -355,10 +327,6 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 
 			logErrors(exception, SOAQueryConstants.GET_LRN);
 
-		}finally{
-
-			close(results, pstmt); 
-
 		}
 
 		return result;	      
@@ -376,26 +344,15 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 
 		boolean result = true;
 
-		Connection conn = null;
-
-		PreparedStatement pstmt = null;
-
-		ResultSet results = null;
-
 		String lrn1 = lrn.toString();
 
 
 		try{
 
-			conn = getDBConnection();
-
-			if(Debug.isLevelEnabled(Debug.NORMAL_STATUS))
-				Debug.log(Debug.NORMAL_STATUS, " SQL, isValueLrn :\n" + SOAQueryConstants.LIST_GTT_LRN);
-
-			pstmt = conn.prepareStatement(SOAQueryConstants.LIST_GTT_LRN);
-
-			pstmt.setString( 1, spid.toString());
-			results = pstmt.executeQuery();
+			// The GTT LRNs of a SPID are reference data, so the result
+			// may be shared with later requests.
+			List rows = executeCachedQuery(SOAQueryConstants.LIST_GTT_LRN,
+					new String[]{ spid.toString() }, true);
 
 			StringBuffer errorMessage=new StringBuffer();
 			StringTokenizer st = new StringTokenizer(lrn1,
@@ -412,10 +369,11 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 				y++;
 			}
 
-			while( results.next() ){
+			for( int i = 0; i < rows.size(); i++ ){
+				String gttLrn = ((String[])rows.get(i))[0];
 				for (int x=0; x<tokens.length; x++){
-					if (results.getString(1).equals(tokens[x].toString())){
-						errorMessage.append("[" + results.getString(1) + "]");						 
+					if (gttLrn.equals(tokens[x].toString())){
+						errorMessage.append("[" + gttLrn + "]");						 
 						result=false;
 						break;
 					}								
@@ -431,10 +389,6 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 
 			logErrors(exception, SOAQueryConstants.LIST_GTT_LRN);
 
-		}finally{
-
-			close(results, pstmt); 
-
 		}
 		return result;
 	}
@@ -5005,12 +4959,6 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 
 	public String getnpaNxxvalue(Value npbid , Value regionid){
 
-		Connection conn = null;
-
-		PreparedStatement pstmt = null;
-
-		ResultSet results = null;
-
 		String npa = "";
 
 		String nxx = "";			
@@ -5019,24 +4967,18 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 
 		try{
 
-			conn = getDBConnection();
-
-			if(Debug.isLevelEnabled(Debug.NORMAL_STATUS))
-				Debug.log(Debug.NORMAL_STATUS, " SQL, getnpaNxxvalue :\n" + SOAQueryConstants.IS_NPB_NPANXX_QUERY);
+			// The NPA-NXX of a block never changes, so the result may be
+			// shared with later requests.
+			List rows = executeCachedQuery(SOAQueryConstants.IS_NPB_NPANXX_QUERY,
+					new String[]{ npbid.toString(), regionid.toString() }, true);
 
-			pstmt = conn.prepareStatement(SOAQueryConstants.IS_NPB_NPANXX_QUERY);			  
+			if(!rows.isEmpty()){
 
-			pstmt.setString( 1, npbid.toString() );
+				String[] row = (String[])rows.get(0);
 
-			pstmt.setString( 2, regionid.toString() );
+				npa = row[0];
 
-			results = pstmt.executeQuery();
-
-			if(results.next()){
-
-				npa =results.getString(1);
-
-				nxx=  results.getString(2);				  
+				nxx = row[1];				  
 
 			}	
 			npaNxx.append(npa.toString());
@@ -5046,9 +4988,6 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 
 			logErrors(exception, SOAQueryConstants.IS_NPB_NPANXX_QUERY);
 
-		}finally{
-
-			close(results, pstmt);
 		}
 
 		return npaNxx.toString();
@@ -5065,12 +5004,6 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 
 		boolean result = false;
 
-		Connection conn = null;
-
-		PreparedStatement pstmt = null;
-
-		ResultSet results = null;
-
 		String portingTn = null;
 
 		StringBuffer errorMessage = new StringBuffer();		
@@ -5080,19 +5013,12 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 
 		try{
 
-			conn = getDBConnection();
-
-			if(Debug.isLevelEnabled(Debug.NORMAL_STATUS))
-				Debug.log(Debug.NORMAL_STATUS, " SQL, isAccountIdExists :\n" + SOAQueryConstants.EXISTS_ACCOUNTID);
-
-			pstmt = conn.prepareStatement(SOAQueryConstants.EXISTS_ACCOUNTID);
-
-			pstmt.setString( 1, accountId.toString() );
-			pstmt.setString( 2, spid.toString() );	
-
-			results = pstmt.executeQuery();
+			// Accounts may be created by any request, so the result is
+			// only reused within this request.
+			List rows = executeCachedQuery(SOAQueryConstants.EXISTS_ACCOUNTID,
+					new String[]{ accountId.toString(), spid.toString() }, false);
 
-			if( results.next() ){
+			if( !rows.isEmpty() ){
 
 				result = true;
 
@@ -5118,9 +5044,6 @@ public abstract class SOACustomSvDBFunctions extends SOACustomDBFunctions{
 		}catch(Exception exception){
 			logErrors(exception, SOAQueryConstants.EXISTS_ACCOUNTID);
 
-		}finally{
-
-			close(results, pstmt); 
 		}
 
 
@@ -22,6 +22,21 @@ public class RoundRobinAsyncCorbaClient extends RoundRobinCorbaClient {
 
     }
 
+    /**
+     * Constructor.
+     *
+     * @param serverNames List the list containing the string
+     *                         server names of the CORBA servers that
+     *                         should be tried by this client.
+     * @param selectionMode String ROUND_ROBIN or LEAST_LOADED.
+     */
+    public RoundRobinAsyncCorbaClient( List serverNames,String serverKey, String serverTypePrefix,
+                                       long downServerRetryTime, String selectionMode ){
+
+       super( serverNames,serverKey,serverTypePrefix,downServerRetryTime,selectionMode );
+
+    }
+
     /**
      * This overrides the parent class to call processAsync()
      * on the given RequestHandler instance.
@@ -1,6 +1,8 @@
 package com.nightfire.spi.neustar_soa.utils;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.omg.CORBA.ORB;
 import org.omg.CORBA.StringHolder;
@@ -9,7 +11,6 @@ import com.nightfire.common.ProcessingException;
 
 import com.nightfire.idl.*;
 import com.nightfire.idl.RequestHandlerPackage.*;
-import com.nightfire.spi.neustar_soa.adapter.messageprocessor.LoadBalancingCorbaClient;
 
 import com.nightfire.framework.corba.CorbaException;
 import com.nightfire.framework.corba.CorbaPortabilityLayer;
@@ -21,59 +22,72 @@ import com.nightfire.framework.util.Debug;
 /**
  * This is the sync CORBA client that delivers incoming requests
  * to a list of CORBA servers.
+ *
+ * Each server has a circuit breaker. A server that can't be located, or
+ * that fails several requests in a row, is skipped until the down server
+ * retry time has passed. Then a single request is sent to it as a probe,
+ * and the server is used again only if the probe succeeds.
+ *
+ * Servers are either picked in turn (ROUND_ROBIN), or the server with
+ * the lowest product of outstanding requests and average latency is
+ * picked (LEAST_LOADED), so that a slow server gets less of the traffic.
  */
 public class RoundRobinCorbaClient {
 
     /**
-     * The list of server names to which this client will load balance its
-     * requests.
+     * Selection mode that sends requests to each server in turn.
      */
-    private List serverNames;
+    public static final String ROUND_ROBIN = "ROUND_ROBIN";
 
     /**
-     * The number of servers in the serverNames list.
+     * Selection mode that sends requests to the server with the fewest
+     * outstanding requests, weighted by its average latency.
      */
-    private int serverCount;
+    public static final String LEAST_LOADED = "LEAST_LOADED";
 
     /**
-     * This counter is incremented and mod'ed by the serverCount to
-     * get the index of the next server name that should be tried.
+     * The number of consecutive failed requests, other than failures to
+     * locate the server, after which a server's circuit breaker opens.
      */
-    private volatile int roundRobinCounter;
+    public static final int FAILURE_THRESHOLD = 3;
 
     /**
-     * Used to locate the CORBA servers based on their name.
+     * The weight given to the latest request when updating a server's
+     * average latency.
      */
-    private static ObjectLocator serverLocator = null;
-    
+    private static final double LATENCY_WEIGHT = 0.2;
+
     /**
-     * The total number of servers in the serverNames list.
+     * The list of servers to which this client will load balance its
+     * requests.
      */
-    private int totalServerCount;
-    
+    private Server[] servers;
+
     /**
-     * Servers start time.
+     * This counter is incremented and mod'ed by the server count to
+     * get the index of the next server that should be tried.
      */
-    private long globalStartTime;
-    
+    private AtomicInteger roundRobinCounter = new AtomicInteger();
+
     /**
-     * Down servers retry time.
+     * Used to locate the CORBA servers based on their name.
      */
-    private long downServerRetryTime;
-    
+    private static ObjectLocator serverLocator = null;
+
     /**
-     * Servers key.
+     * How long a server's circuit breaker stays open before the
+     * server is probed.
      */
-    private String serverNameKey = null;
-    
+    private long downServerRetryTime;
+
     /**
-     * Servers property type
+     * Whether the least loaded server is picked, instead of the next
+     * one in turn.
      */
-    private String propertyTypePrefix = null;
-    
+    private boolean leastLoaded;
 
     /**
-     * Constructor.
+     * Constructor for a client that picks servers in turn.
      *
      * @param serverNames List the list containing the string
      *                         server names of the CORBA servers that
@@ -81,14 +95,36 @@ public class RoundRobinCorbaClient {
      */
     public RoundRobinCorbaClient( List serverNames,String serverKey, String serverTypePrefix,long downServerRetryTimeValue ){
 
-       this.serverNames = serverNames;
-       serverCount = serverNames.size();
-       roundRobinCounter = 0;
-       this.totalServerCount = serverCount;
-       this.globalStartTime = System.currentTimeMillis( );
+       this( serverNames, serverKey, serverTypePrefix, downServerRetryTimeValue, ROUND_ROBIN );
+
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param serverNames List the list containing the string
+     *                         server names of the CORBA servers that
+     *                         should be tried by this client.
+     * @param selectionMode String ROUND_ROBIN or LEAST_LOADED. If null,
+     *                             ROUND_ROBIN is used.
+     */
+    public RoundRobinCorbaClient( List serverNames,String serverKey, String serverTypePrefix,
+                                  long downServerRetryTimeValue, String selectionMode ){
+
+       servers = new Server[ serverNames.size() ];
+
+       for( int i = 0; i < servers.length; i++ ){
+          servers[i] = new Server( serverNames.get(i).toString() );
+       }
+
        this.downServerRetryTime = downServerRetryTimeValue;
-       this.serverNameKey = serverKey;
-       this.propertyTypePrefix = serverTypePrefix;
+       this.leastLoaded = LEAST_LOADED.equalsIgnoreCase( selectionMode );
+
+       if( Debug.isLevelEnabled( Debug.SYSTEM_CONFIG ) ){
+          Debug.log( Debug.SYSTEM_CONFIG, "Created CORBA client for servers under property key ["+
+                     serverKey+"] and property type prefix ["+serverTypePrefix+"] using ["+
+                     (leastLoaded ? LEAST_LOADED : ROUND_ROBIN)+"] selection: "+describe() );
+       }
     }
 
     /**
@@ -120,111 +156,82 @@ public class RoundRobinCorbaClient {
        if( serverLocator == null ){
           initCorba();
        }
-       if(serverCount < totalServerCount && System.currentTimeMillis() - globalStartTime > downServerRetryTime) {
-    	    Debug.log(Debug.IO_STATUS,"ServerCount:" + serverCount);				
-    	    Debug.log(Debug.IO_STATUS,"TotalServerCount :"+ totalServerCount);			
-			synchronized (RoundRobinCorbaClient.class) {
-					globalStartTime = System.currentTimeMillis();
-					serverNames.clear();
-					serverNames = LoadBalancingCorbaClient.getServerNames(serverNameKey,propertyTypePrefix);
-					if (serverNames.size() == 0) {
-						throw new ProcessingException(
-								"No SERVER_NAME"
-										+ " properties were found under property key ["
-										+ serverNameKey
-										+ "] and property type prefix ["
-										+ propertyTypePrefix + "]");
-					}
-					serverCount = serverNames.size();
-					roundRobinCounter = 0;
-			}
-		}
-   
-		// get the index of the next server this client should try
-		int serverIndex = getNextIndex();
-
-		// This loop tries all servers in the serverNames list
-		// until it gets a success.
-		for (int i = 0; i < serverCount; i++) {
-
-			String serverName = serverNames.get(serverIndex).toString();
-
-			if (Debug.isLevelEnabled(Debug.IO_STATUS)) {
-
-				Debug.log(Debug.IO_STATUS,"Attempting to locate server number ["+ serverIndex + "] named [" + serverName + "]");
-			}
-
-			try {
-
-				org.omg.CORBA.Object server = serverLocator.find(serverName);
-
-				RequestHandler handler = RequestHandlerHelper.narrow(server);
-
-				send(header, message, handler, response);
-
-				return response.value;
-
-			} catch (CorbaException findFailed) {
-				if (findFailed.getMessage().contains("Could not resolve CORBA name")|| 
-					findFailed.getMessage().contains("Retries exceeded, couldn't reconnect to")) 
-				{
-					Debug.error("Could not deliver request to server ["+ serverName + "]: ");
-					synchronized (RoundRobinCorbaClient.class) {
-						serverLocator.removeFromCache(serverName);
-						serverNames.remove(serverName);
-						serverCount = serverNames.size();
-						roundRobinCounter = 0;
-						i--;
-					}
-				}
-				Debug.error("Could not locate server named [" + serverName + "]: " + findFailed);
-
-			} catch (InvalidDataException badData) {
-
-				throw new MessageException(badData.errorMessage);
-
-			} catch (CorbaServerException processingEx) {
-
-				throw new ProcessingException(processingEx.errorMessage);
-
-			} catch (NullResultException nullResult) {
-
-				throw new ProcessingException(nullResult.errorMessage);
-
-			} catch (Exception ohNo) {
-				if (ohNo.getMessage().contains(	"Could not resolve CORBA name")	|| 
-					ohNo.getMessage().contains(	"Retries exceeded, couldn't reconnect to")) 
-				{
-					Debug.error("Could not deliver request to server ["	+ serverName + "]: ");
-					synchronized (RoundRobinCorbaClient.class) {
-						serverLocator.removeFromCache(serverName);
-						serverNames.remove(serverName);
-						serverCount = serverNames.size();
-						roundRobinCounter = 0;
-						i--;
-					}
-				}
-				Debug.error("Could not deliver request to server ["	+ serverName + "]: " + ohNo);
-
-			}
-			if (serverCount > 0) {
-				// try the next server
-				serverIndex++;
-				serverIndex %= serverCount;
-
-				// this assures that the next index is incremented and
-				// that the load-balancing is evenly distributed even
-				// in the case where a server may be down
-				getNextIndex();
-			}
-
-		}
-		// If we get here, then we have tried all known servers,
-		// and none of them were available.
-		throw new CorbaException("None of the following servers were "
-				+ "available to service the request: " + serverNames);
-	
-   }
+
+       // the servers that have already been tried for this request
+       boolean[] tried = new boolean[ servers.length ];
+
+       // This loop tries the available servers until it gets a success.
+       Server server;
+
+       while( (server = nextServer( tried )) != null ){
+
+          String serverName = server.name;
+
+          if (Debug.isLevelEnabled(Debug.IO_STATUS)) {
+
+             Debug.log(Debug.IO_STATUS,"Attempting to locate server named [" + serverName + "]");
+          }
+
+          long start = server.begin();
+
+          boolean available = false;
+
+          try {
+
+             org.omg.CORBA.Object corbaServer = serverLocator.find(serverName);
+
+             RequestHandler handler = RequestHandlerHelper.narrow(corbaServer);
+
+             // The server may still reject the request below, but it
+             // was reachable.
+             available = true;
+
+             send(header, message, handler, response);
+
+             return response.value;
+
+          } catch (InvalidDataException badData) {
+
+             throw new MessageException(badData.errorMessage);
+
+          } catch (CorbaServerException processingEx) {
+
+             throw new ProcessingException(processingEx.errorMessage);
+
+          } catch (NullResultException nullResult) {
+
+             throw new ProcessingException(nullResult.errorMessage);
+
+          } catch (Exception ohNo) {
+
+             available = false;
+
+             String error = String.valueOf( ohNo.getMessage() );
+
+             if (error.indexOf("Could not resolve CORBA name") != -1 ||
+                 error.indexOf("Retries exceeded, couldn't reconnect to") != -1)
+             {
+                // the server is down, so don't wait for more failures
+                serverLocator.removeFromCache(serverName);
+                server.trip();
+             }
+
+             Debug.error("Could not deliver request to server [" + serverName + "]: " + ohNo);
+
+          } finally {
+
+             server.end( start, available );
+
+          }
+
+       }
+
+       // If we get here, then we have tried all known servers,
+       // and none of them were available.
+       throw new CorbaException("None of the following servers were "
+             + "available to service the request: " + describe());
+
+    }
 
     /**
      * This calls processSync() on the given RequestHandler instance.
@@ -252,24 +259,135 @@ public class RoundRobinCorbaClient {
     }
 
     /**
-     * This gets the next server index to try first. This changing index
-     * implements the round robin functionality.
+     * Gets the number of requests currently outstanding on the named server.
+     *
+     * @param serverName String the server name.
+     * @return int the in-flight count, or -1 if the server is unknown.
+     */
+    public int getInFlightCount( String serverName ){
+
+       Server server = getServer( serverName );
+
+       return ( server == null ) ? -1 : server.inFlight.get();
+
+    }
+
+    /**
+     * Gets the average latency, in ms, of requests sent to the named server.
+     *
+     * @param serverName String the server name.
+     * @return long the exponentially weighted average latency, or -1 if
+     *              the server is unknown.
+     */
+    public long getAverageLatency( String serverName ){
+
+       Server server = getServer( serverName );
+
+       return ( server == null ) ? -1 : (long) server.latency;
+
+    }
+
+    /**
+     * Describes the state, in-flight count and latency of each server.
+     *
+     * @return String
+     */
+    public String describe(){
+
+       StringBuffer sb = new StringBuffer();
+
+       for( int i = 0; i < servers.length; i++ ){
+
+          if( i > 0 ){
+             sb.append(", ");
+          }
+
+          sb.append( servers[i] );
+
+       }
+
+       return sb.toString();
+
+    }
+
+    /**
+     * Picks the next server to try, among those not yet tried for this
+     * request whose circuit breaker allows a request.
      *
-     * @return int the index of the server to try next.
+     * @param tried boolean[] the servers already tried, which is updated
+     *                        with the server returned.
+     * @return Server the server to try, or null if none are available.
+     */
+    private Server nextServer( boolean[] tried ){
+
+       if( servers.length == 0 ){
+          return null;
+       }
+
+       long now = System.currentTimeMillis();
+
+       // the index from which the servers are scanned, so that requests
+       // are spread evenly between servers that are equally loaded
+       int first = ( roundRobinCounter.getAndIncrement() & Integer.MAX_VALUE ) % servers.length;
+
+       while( true ){
+
+          int best = -1;
+
+          double bestLoad = Double.MAX_VALUE;
+
+          for( int j = 0; j < servers.length; j++ ){
+
+             int index = ( first + j ) % servers.length;
+
+             if( tried[index] || !servers[index].isSelectable( now, downServerRetryTime ) ){
+                continue;
+             }
+
+             if( !leastLoaded ){
+                best = index;
+                break;
+             }
+
+             double load = servers[index].getLoad();
+
+             if( load < bestLoad ){
+                best = index;
+                bestLoad = load;
+             }
+
+          }
+
+          if( best == -1 ){
+             return null;
+          }
+
+          tried[best] = true;
+
+          // another thread may have claimed the probe of an open server
+          if( servers[best].allowRequest( now, downServerRetryTime ) ){
+             return servers[best];
+          }
+
+       }
+
+    }
+
+    /**
+     * Finds a server by name.
      */
-    private int getNextIndex()throws ProcessingException{
-    	try {
-			int index = roundRobinCounter % serverCount;
+    private Server getServer( String serverName ){
 
-			roundRobinCounter++;
-			roundRobinCounter %= serverCount;
+       for( int i = 0; i < servers.length; i++ ){
 
-			return index;
-		}catch (Exception ex) {
-            Debug.logStackTrace(ex);
-            throw new ProcessingException("None of the servers were available to service the request:");
+          if( servers[i].name.equals( serverName ) ){
+             return servers[i];
+          }
+
+       }
+
+       return null;
 
-         }
     }
 
     /**
@@ -306,5 +424,186 @@ public class RoundRobinCorbaClient {
        }
 
     }
-    
+
+    /**
+     * A server, its circuit breaker and its load statistics.
+     */
+    private static class Server {
+
+       private static final int CLOSED = 0;
+
+       private static final int OPEN = 1;
+
+       private static final int HALF_OPEN = 2;
+
+       private final String name;
+
+       /**
+        * The number of requests currently being sent to the server.
+        */
+       private final AtomicInteger inFlight = new AtomicInteger();
+
+       /**
+        * The total number of requests and failed requests.
+        */
+       private final AtomicLong requests = new AtomicLong();
+
+       private final AtomicLong failures = new AtomicLong();
+
+       /**
+        * The exponentially weighted average latency in ms.
+        */
+       private volatile double latency = 0;
+
+       /**
+        * The circuit breaker state, and when it was last opened.
+        */
+       private int state = CLOSED;
+
+       private long openTime;
+
+       private int consecutiveFailures;
+
+       private Server( String name ){
+
+          this.name = name;
+
+       }
+
+       /**
+        * Whether a request may be sent now, without claiming the probe.
+        */
+       private synchronized boolean isSelectable( long now, long retryTime ){
+
+          return ( state == CLOSED || ( state == OPEN && now - openTime >= retryTime ) );
+
+       }
+
+       /**
+        * Whether a request may be sent now. If the breaker is open and the
+        * retry time has passed, the caller's request becomes the probe.
+        */
+       private synchronized boolean allowRequest( long now, long retryTime ){
+
+          if( state == CLOSED ){
+             return true;
+          }
+
+          if( state == OPEN && now - openTime >= retryTime ){
+
+             Debug.log( Debug.IO_STATUS, "Probing server [" + name + "]." );
+
+             state = HALF_OPEN;
+
+             return true;
+
+          }
+
+          return false;
+
+       }
+
+       /**
+        * The load used by the LEAST_LOADED selection mode. Servers that
+        * have not yet been used have no latency, so the in-flight count
+        * decides between them.
+        */
+       private double getLoad(){
+
+          return ( inFlight.get() + 1 ) * ( latency + 1 );
+
+       }
+
+       /**
+        * Called before a request is sent.
+        *
+        * @return long the start time.
+        */
+       private long begin(){
+
+          inFlight.incrementAndGet();
+
+          requests.incrementAndGet();
+
+          return System.currentTimeMillis();
+
+       }
+
+       /**
+        * Called once the request completes.
+        */
+       private void end( long start, boolean success ){
+
+          inFlight.decrementAndGet();
+
+          if( success ){
+
+             double elapsed = System.currentTimeMillis() - start;
+
+             latency = ( latency == 0 ) ? elapsed
+                                        : latency + LATENCY_WEIGHT * ( elapsed - latency );
+
+          }
+
+          synchronized( this ){
+
+             if( success ){
+
+                consecutiveFailures = 0;
+
+                if( state != CLOSED ){
+                   Debug.log( Debug.IO_STATUS, "Server [" + name + "] is available again." );
+                }
+
+                state = CLOSED;
+
+             }
+             else{
+
+                failures.incrementAndGet();
+
+                if( ++consecutiveFailures >= FAILURE_THRESHOLD || state == HALF_OPEN ){
+                   open();
+                }
+
+             }
+
+          }
+
+       }
+
+       /**
+        * Opens the breaker right away.
+        */
+       private synchronized void trip(){
+
+          open();
+
+       }
+
+       private void open(){
+
+          if( state != OPEN ){
+             Debug.warning( "Server [" + name + "] is unavailable, and will not be used until it is probed again." );
+          }
+
+          state = OPEN;
+
+          openTime = System.currentTimeMillis();
+
+       }
+
+       public synchronized String toString(){
+
+          return name + " [" +
+                 ( state == CLOSED ? "available" : ( state == OPEN ? "unavailable" : "probing" ) ) +
+                 ", in-flight=" + inFlight.get() +
+                 ", latency=" + (long) latency + "ms" +
+                 ", requests=" + requests.get() +
+                 ", failures=" + failures.get() + "]";
+
+       }
+
+    }
+
 }
@@ -1660,6 +1660,29 @@ public interface SOAConstants {
 	 * The name of report file. 
 	 */
 	public static final String REPORT_FILE_NAME="REPORT_FILE_NAME";
+	
+	/**
+	 * The number of worker threads loading the Notification BDD file.
+	 * When not given the file is loaded on a single thread.
+	 */
+	public static final String LOADER_THREADS="LOADER_THREADS";
+	
+	/**
+	 * The number of lines handed to a loader worker at a time.
+	 */
+	public static final String LOADER_CHUNK_SIZE="LOADER_CHUNK_SIZE";
+	
+	/**
+	 * The number of records a loader worker commits together.
+	 */
+	public static final String LOADER_COMMIT_INTERVAL="LOADER_COMMIT_INTERVAL";
+	
+	/**
+	 * The heap, in MB, the Notification BDD file sort may use before it
+	 * sorts the file in runs on disk. When not given the whole file is
+	 * sorted in memory.
+	 */
+	public static final String SORT_MEMORY_BUDGET="SORT_MEMORY_BUDGET";
 
 
 	public static final String NULL_ERROR=" Required data either missing or invalid format in " +
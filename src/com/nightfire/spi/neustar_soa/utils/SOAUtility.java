@@ -387,6 +387,20 @@ public class SOAUtility {
 				
 				hashMap.put(SOAConstants.REPORT_FILE_NAME, reportFile);
 				
+				// Optional settings of the notification file sort and loader.
+				String[] loaderProps = { SOAConstants.LOADER_THREADS,
+						SOAConstants.LOADER_CHUNK_SIZE,
+						SOAConstants.LOADER_COMMIT_INTERVAL,
+						SOAConstants.SORT_MEMORY_BUDGET };
+				
+				for (int i = 0; i < loaderProps.length; i++) {
+					
+					String value = properties.getProperty(loaderProps[i]);
+					
+					if (value != null && !value.trim().equals(""))
+						hashMap.put(loaderProps[i], value.trim());
+				}
+				
 		 
 		}catch(Exception ex){
 		    
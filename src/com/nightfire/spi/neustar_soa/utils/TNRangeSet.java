@@ -0,0 +1,576 @@
+package com.nightfire.spi.neustar_soa.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.nightfire.framework.util.StringUtils;
+
+/**
+ * A set of telephone numbers, held as sorted, disjoint ranges of ten-digit
+ * numbers rather than one String per TN, so that a range request of
+ * thousands of TNs takes up only a handful of ranges.
+ *
+ * TNs are given and returned in the NPA-NXX-XXXX form. Ranges are given
+ * and returned in the NPA-NXX-XXXX-YYYY form, and never cross an NPA-NXX.
+ *
+ * This class is not synchronized.
+ */
+public class TNRangeSet
+{
+	// Number of line numbers in an NPA-NXX.
+	private static final long LINES_PER_NPA_NXX = 10000;
+
+	private static final int INITIAL_CAPACITY = 4;
+
+	// starts[i] to ends[i] is the i'th range, inclusive. Ranges are sorted,
+	// and are neither overlapping nor adjacent.
+	private long[] starts;
+
+	private long[] ends;
+
+	private int count = 0;
+
+	/**
+	 * Creates an empty set.
+	 */
+	public TNRangeSet()
+	{
+		starts = new long[INITIAL_CAPACITY];
+		ends = new long[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * Creates a set holding the same TNs as the given one.
+	 *
+	 * @param other the set to copy.
+	 */
+	public TNRangeSet(TNRangeSet other)
+	{
+		starts = other.starts.clone();
+		ends = other.ends.clone();
+		count = other.count;
+	}
+
+	/**
+	 * Creates a set from a list of TNs and TN ranges.
+	 *
+	 * @param tns a list of TN and TN range Strings.
+	 * @return the set of all TNs in the list.
+	 * @exception NumberFormatException if an entry is not a TN or TN range.
+	 */
+	public static TNRangeSet fromList(java.util.Collection tns)
+	{
+		TNRangeSet set = new TNRangeSet();
+
+		Iterator iter = tns.iterator();
+
+		while (iter.hasNext())
+		{
+			set.add((String)iter.next());
+		}
+
+		return set;
+	}
+
+	/**
+	 * Converts a TN to its ten-digit number.
+	 *
+	 * @param tn a TN in NPA-NXX-XXXX form.
+	 * @return the TN as a number.
+	 * @exception NumberFormatException if tn is not a TN.
+	 */
+	public static long toNumber(String tn)
+	{
+		if (tn == null || tn.length() != 12 || tn.charAt(3) != '-' || tn.charAt(7) != '-')
+		{
+			throw new NumberFormatException("Invalid TN [" + tn + "]");
+		}
+
+		return Long.parseLong(tn.substring(0, 3) + tn.substring(4, 7) + tn.substring(8));
+	}
+
+	/**
+	 * Converts a ten-digit number to a TN.
+	 *
+	 * @param number the TN as a number.
+	 * @return the TN in NPA-NXX-XXXX form.
+	 */
+	public static String toTN(long number)
+	{
+		int npa = (int)(number / 10000000);
+		int nxx = (int)((number / LINES_PER_NPA_NXX) % 1000);
+
+		return StringUtils.padNumber(npa, 3, true, '0') + "-"
+			+ StringUtils.padNumber(nxx, 3, true, '0') + "-"
+			+ StringUtils.padNumber(getLine(number), SOAConstants.TN_LINE, true, '0');
+	}
+
+	// The line number of a TN.
+	private static int getLine(long number)
+	{
+		return (int)(number % LINES_PER_NPA_NXX);
+	}
+
+	/**
+	 * Adds a TN, or a TN range in NPA-NXX-XXXX-YYYY form.
+	 *
+	 * @param tn the TN or TN range to add.
+	 * @exception NumberFormatException if tn is not a TN or TN range, or is
+	 * a range whose end is before its start.
+	 */
+	public void add(String tn)
+	{
+		if (tn != null && tn.length() > 12)
+		{
+			long start = toNumber(tn.substring(0, 12));
+
+			long end = start - getLine(start) + Integer.parseInt(tn.substring(13));
+
+			if (end < start)
+			{
+				throw new NumberFormatException("TN range [" + tn + "] ends before it starts");
+			}
+
+			add(start, end);
+		}
+		else
+		{
+			add(toNumber(tn));
+		}
+	}
+
+	/**
+	 * Adds a TN.
+	 *
+	 * @param number the TN as a number.
+	 */
+	public void add(long number)
+	{
+		add(number, number);
+	}
+
+	/**
+	 * Adds all the TNs from start to end, inclusive.
+	 *
+	 * @param start the first TN as a number.
+	 * @param end the last TN as a number.
+	 */
+	public void add(long start, long end)
+	{
+		if (start > end)
+		{
+			throw new IllegalArgumentException("Range start [" + start + "] is after its end [" + end + "]");
+		}
+
+		// The ranges from lo to hi overlap or touch the new range.
+		int lo = firstEndingAtOrAfter(start - 1);
+		int hi = lastStartingAtOrBefore(end + 1);
+
+		if (lo <= hi)
+		{
+			start = Math.min(start, starts[lo]);
+			end = Math.max(end, ends[hi]);
+		}
+
+		replace(lo, hi + 1, new long[]{ start }, new long[]{ end }, 1);
+	}
+
+	/**
+	 * Adds all the TNs in the given set.
+	 *
+	 * @param other the TNs to add.
+	 */
+	public void addAll(TNRangeSet other)
+	{
+		for (int i = 0; i < other.count; i++)
+		{
+			add(other.starts[i], other.ends[i]);
+		}
+	}
+
+	/**
+	 * Removes a TN.
+	 *
+	 * @param number the TN as a number.
+	 */
+	public void remove(long number)
+	{
+		remove(number, number);
+	}
+
+	/**
+	 * Removes a TN, or a TN range in NPA-NXX-XXXX-YYYY form.
+	 *
+	 * @param tn the TN or TN range to remove.
+	 * @exception NumberFormatException if tn is not a TN or TN range.
+	 */
+	public void remove(String tn)
+	{
+		TNRangeSet removed = new TNRangeSet();
+
+		removed.add(tn);
+
+		removeAll(removed);
+	}
+
+	/**
+	 * Removes all the TNs from start to end, inclusive.
+	 *
+	 * @param start the first TN as a number.
+	 * @param end the last TN as a number.
+	 */
+	public void remove(long start, long end)
+	{
+		if (start > end)
+		{
+			return;
+		}
+
+		// The ranges from lo to hi overlap the removed range.
+		int lo = firstEndingAtOrAfter(start);
+		int hi = lastStartingAtOrBefore(end);
+
+		if (lo > hi)
+		{
+			return;
+		}
+
+		long[] newStarts = new long[2];
+		long[] newEnds = new long[2];
+		int n = 0;
+
+		if (starts[lo] < start)
+		{
+			newStarts[n] = starts[lo];
+			newEnds[n++] = start - 1;
+		}
+
+		if (ends[hi] > end)
+		{
+			newStarts[n] = end + 1;
+			newEnds[n++] = ends[hi];
+		}
+
+		replace(lo, hi + 1, newStarts, newEnds, n);
+	}
+
+	/**
+	 * Removes all the TNs in the given set.
+	 *
+	 * @param other the TNs to remove.
+	 */
+	public void removeAll(TNRangeSet other)
+	{
+		for (int i = 0; i < other.count && count > 0; i++)
+		{
+			remove(other.starts[i], other.ends[i]);
+		}
+	}
+
+	/**
+	 * Removes all the TNs that are not in the given set.
+	 *
+	 * @param other the TNs to keep.
+	 */
+	public void retainAll(TNRangeSet other)
+	{
+		long[] newStarts = new long[Math.max(INITIAL_CAPACITY, count + other.count)];
+		long[] newEnds = new long[newStarts.length];
+		int n = 0;
+
+		int i = 0;
+		int j = 0;
+
+		while (i < count && j < other.count)
+		{
+			long start = Math.max(starts[i], other.starts[j]);
+			long end = Math.min(ends[i], other.ends[j]);
+
+			if (start <= end)
+			{
+				newStarts[n] = start;
+				newEnds[n++] = end;
+			}
+
+			if (ends[i] < other.ends[j])
+			{
+				i++;
+			}
+			else
+			{
+				j++;
+			}
+		}
+
+		starts = newStarts;
+		ends = newEnds;
+		count = n;
+	}
+
+	/**
+	 * Tests whether a TN is in the set.
+	 *
+	 * @param number the TN as a number.
+	 * @return true if the TN is in the set.
+	 */
+	public boolean contains(long number)
+	{
+		int i = firstEndingAtOrAfter(number);
+
+		return i < count && starts[i] <= number;
+	}
+
+	/**
+	 * Tests whether a TN is in the set.
+	 *
+	 * @param tn the TN in NPA-NXX-XXXX form.
+	 * @return true if the TN is in the set, false if not or if tn is not a TN.
+	 */
+	public boolean contains(String tn)
+	{
+		try
+		{
+			return contains(toNumber(tn));
+		}
+		catch (NumberFormatException e)
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * @return true if the set holds no TNs.
+	 */
+	public boolean isEmpty()
+	{
+		return count == 0;
+	}
+
+	/**
+	 * @return the number of TNs in the set.
+	 */
+	public long size()
+	{
+		long size = 0;
+
+		for (int i = 0; i < count; i++)
+		{
+			size += ends[i] - starts[i] + 1;
+		}
+
+		return size;
+	}
+
+	/**
+	 * @return the number of ranges of consecutive TNs in the set.
+	 */
+	public int getRangeCount()
+	{
+		return count;
+	}
+
+	/**
+	 * @param i the index of a range, from 0 to getRangeCount() - 1.
+	 * @return the first TN of the range as a number.
+	 */
+	public long getRangeStart(int i)
+	{
+		return starts[i];
+	}
+
+	/**
+	 * @param i the index of a range, from 0 to getRangeCount() - 1.
+	 * @return the last TN of the range as a number.
+	 */
+	public long getRangeEnd(int i)
+	{
+		return ends[i];
+	}
+
+	/**
+	 * Returns the TNs in ascending order.
+	 *
+	 * @return an Iterator of TN Strings in NPA-NXX-XXXX form.
+	 */
+	public Iterator iterator()
+	{
+		return new Iterator()
+		{
+			private int range = 0;
+
+			private long next = (count > 0) ? starts[0] : 0;
+
+			public boolean hasNext()
+			{
+				return range < count;
+			}
+
+			public Object next()
+			{
+				if (range >= count)
+				{
+					throw new NoSuchElementException();
+				}
+
+				String tn = toTN(next);
+
+				if (next == ends[range])
+				{
+					if (++range < count)
+					{
+						next = starts[range];
+					}
+				}
+				else
+				{
+					next++;
+				}
+
+				return tn;
+			}
+
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	/**
+	 * Returns each TN of the set, in ascending order.
+	 *
+	 * @return a list of TN Strings in NPA-NXX-XXXX form.
+	 */
+	public ArrayList toTNList()
+	{
+		ArrayList list = new ArrayList((int)Math.min(size(), Integer.MAX_VALUE));
+
+		Iterator iter = iterator();
+
+		while (iter.hasNext())
+		{
+			list.add(iter.next());
+		}
+
+		return list;
+	}
+
+	/**
+	 * Returns the ranges of consecutive TNs in the set, in ascending order,
+	 * split so that none crosses an NPA-NXX. A range of one TN is returned as
+	 * that TN.
+	 *
+	 * @return a list of TN Strings in NPA-NXX-XXXX form, and TN range Strings
+	 * in NPA-NXX-XXXX-YYYY form.
+	 */
+	public ArrayList toRangeList()
+	{
+		ArrayList list = new ArrayList(count);
+
+		for (int i = 0; i < count; i++)
+		{
+			long start = starts[i];
+
+			while (start <= ends[i])
+			{
+				long end = Math.min(ends[i], start - getLine(start) + LINES_PER_NPA_NXX - 1);
+
+				if (start == end)
+				{
+					list.add(toTN(start));
+				}
+				else
+				{
+					list.add(toTN(start) + "-" + StringUtils.padNumber(getLine(end), SOAConstants.TN_LINE, true, '0'));
+				}
+
+				start = end + 1;
+			}
+		}
+
+		return list;
+	}
+
+	/**
+	 * @return the ranges in the set, for logging.
+	 */
+	public String toString()
+	{
+		return toRangeList().toString();
+	}
+
+	// Index of the first range ending at or after the number, or count if none does.
+	private int firstEndingAtOrAfter(long number)
+	{
+		int lo = 0;
+		int hi = count;
+
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+
+			if (ends[mid] < number)
+			{
+				lo = mid + 1;
+			}
+			else
+			{
+				hi = mid;
+			}
+		}
+
+		return lo;
+	}
+
+	// Index of the last range starting at or before the number, or -1 if none does.
+	private int lastStartingAtOrBefore(long number)
+	{
+		int lo = 0;
+		int hi = count;
+
+		while (lo < hi)
+		{
+			int mid = (lo + hi) >>> 1;
+
+			if (starts[mid] <= number)
+			{
+				lo = mid + 1;
+			}
+			else
+			{
+				hi = mid;
+			}
+		}
+
+		return lo - 1;
+	}
+
+	// Replaces the ranges from index 'from' up to, not including, 'to' with the first n given ranges.
+	private void replace(int from, int to, long[] newStarts, long[] newEnds, int n)
+	{
+		int newCount = count - (to - from) + n;
+
+		if (newCount > starts.length)
+		{
+			int capacity = Math.max(newCount, starts.length * 2);
+
+			long[] grownStarts = new long[capacity];
+			long[] grownEnds = new long[capacity];
+
+			System.arraycopy(starts, 0, grownStarts, 0, count);
+			System.arraycopy(ends, 0, grownEnds, 0, count);
+
+			starts = grownStarts;
+			ends = grownEnds;
+		}
+
+		System.arraycopy(starts, to, starts, from + n, count - to);
+		System.arraycopy(ends, to, ends, from + n, count - to);
+
+		System.arraycopy(newStarts, 0, starts, from, n);
+		System.arraycopy(newEnds, 0, ends, from, n);
+
+		count = newCount;
+	}
+}
@@ -0,0 +1,254 @@
+package com.nightfire.spi.neustar_soa.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Checks TNRangeSet's adding, removing and intersecting of TNs and TN
+ * ranges, and the ranges it returns, against the expected TN lists.
+ *
+ * Prints the number of checks passed, or describes the first one that
+ * failed and exits with status 1.
+ */
+class TNRangeSetTest
+{
+	public static void main(String[] args)
+	{
+		try
+		{
+			checkAdd();
+
+			checkInvalidAdd();
+
+			checkRemove();
+
+			checkRetainAll();
+
+			checkToRangeList();
+
+			System.out.println("All [" + checked + "] TNRangeSet checks passed.");
+		}
+		catch (Exception e)
+		{
+			System.err.println("TNRangeSet check failed: " + e.getMessage());
+
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * Checks that added TNs and ranges are merged when they overlap or touch.
+	 */
+	private static void checkAdd() throws Exception
+	{
+		TNRangeSet set = new TNRangeSet();
+
+		check("empty set", set, new String[]{});
+
+		set.add("301-555-0010");
+		set.add("301-555-0005-0008");
+
+		check("separate TN and range", set,
+			new String[]{ "301-555-0005-0008", "301-555-0010" });
+
+		// fills the gap, joining both into one range
+		set.add("301-555-0009");
+
+		check("TN joining two ranges", set, new String[]{ "301-555-0005-0010" });
+
+		// overlaps the end of the range
+		set.add("301-555-0008-0012");
+
+		check("overlapping range", set, new String[]{ "301-555-0005-0012" });
+
+		// adding TNs already in the set changes nothing
+		set.add("301-555-0006");
+		set.add("301-555-0005-0012");
+
+		check("TNs already present", set, new String[]{ "301-555-0005-0012" });
+
+		set.add("201-555-9999");
+
+		check("TN before the first range", set,
+			new String[]{ "201-555-9999", "301-555-0005-0012" });
+
+		checkEquals("size", 9, set.size());
+
+		checkEquals("range count", 2, set.getRangeCount());
+
+		checkEquals("contains a range's end", true, set.contains("301-555-0012"));
+
+		checkEquals("contains a TN after the ranges", false, set.contains("301-555-0013"));
+
+		checkEquals("contains an invalid TN", false, set.contains("301-555"));
+
+		TNRangeSet fromList = TNRangeSet.fromList(Arrays.asList(new String[]{
+			"301-555-0011", "301-555-0001-0003", "301-555-0004" }));
+
+		check("fromList", fromList, new String[]{ "301-555-0001-0004", "301-555-0011" });
+
+		checkEquals("toTNList", Arrays.asList(new String[]{
+			"301-555-0001", "301-555-0002", "301-555-0003", "301-555-0004", "301-555-0011" }),
+			fromList.toTNList());
+	}
+
+	/*
+	 * Checks that malformed TNs and ranges, and ranges whose end is before
+	 * their start, throw NumberFormatException without changing the set.
+	 */
+	private static void checkInvalidAdd() throws Exception
+	{
+		String[] invalid = {
+			null, "", "3015550010", "301-555-001", "301-555-00x0",
+			"301-555-0010-", "301-555-0010-00x2", "301-555-0010-0009",
+			"301-555-0010--001" };
+
+		TNRangeSet set = new TNRangeSet();
+
+		set.add("301-555-0010");
+
+		for (int i = 0; i < invalid.length; i++)
+		{
+			try
+			{
+				set.add(invalid[i]);
+
+				throw new Exception("Adding [" + invalid[i] + "] did not throw NumberFormatException.");
+			}
+			catch (NumberFormatException e)
+			{
+				checked++;
+			}
+		}
+
+		check("set after invalid adds", set, new String[]{ "301-555-0010" });
+	}
+
+	/*
+	 * Checks that removing TNs and ranges trims and splits the ranges.
+	 */
+	private static void checkRemove() throws Exception
+	{
+		TNRangeSet set = new TNRangeSet();
+
+		set.add("301-555-0001-0020");
+
+		set.remove("301-555-0010");
+
+		check("TN in the middle of a range", set,
+			new String[]{ "301-555-0001-0009", "301-555-0011-0020" });
+
+		set.remove("301-555-0001-0002");
+
+		check("start of a range", set,
+			new String[]{ "301-555-0003-0009", "301-555-0011-0020" });
+
+		set.remove("301-555-0008-0012");
+
+		check("range across two ranges", set,
+			new String[]{ "301-555-0003-0007", "301-555-0013-0020" });
+
+		// TNs not in the set are ignored
+		set.remove("301-555-0030-0040");
+		set.remove(TNRangeSet.toNumber("201-555-0005"));
+
+		check("TNs not in the set", set,
+			new String[]{ "301-555-0003-0007", "301-555-0013-0020" });
+
+		set.remove("301-555-0001-0007");
+
+		check("whole range", set, new String[]{ "301-555-0013-0020" });
+
+		set.remove("301-555-0000-9999");
+
+		check("whole set", set, new String[]{});
+
+		checkEquals("isEmpty", true, set.isEmpty());
+	}
+
+	/*
+	 * Checks that retainAll keeps only the TNs in both sets.
+	 */
+	private static void checkRetainAll() throws Exception
+	{
+		TNRangeSet set = TNRangeSet.fromList(Arrays.asList(new String[]{
+			"301-555-0001-0010", "301-555-0020-0030", "301-555-0040" }));
+
+		TNRangeSet copy = new TNRangeSet(set);
+
+		TNRangeSet other = TNRangeSet.fromList(Arrays.asList(new String[]{
+			"301-555-0005-0025", "301-555-0028", "301-555-0041-0050" }));
+
+		set.retainAll(other);
+
+		check("intersection", set,
+			new String[]{ "301-555-0005-0010", "301-555-0020-0025", "301-555-0028" });
+
+		check("copy is unchanged", copy,
+			new String[]{ "301-555-0001-0010", "301-555-0020-0030", "301-555-0040" });
+
+		copy.retainAll(new TNRangeSet());
+
+		check("intersection with an empty set", copy, new String[]{});
+	}
+
+	/*
+	 * Checks that ranges crossing an NPA-NXX are split at its end.
+	 */
+	private static void checkToRangeList() throws Exception
+	{
+		TNRangeSet set = new TNRangeSet();
+
+		set.add(TNRangeSet.toNumber("301-555-9998"), TNRangeSet.toNumber("301-557-0001"));
+
+		check("range across NPA-NXXs", set,
+			new String[]{ "301-555-9998-9999", "301-556-0000-9999", "301-557-0000-0001" });
+
+		checkEquals("range count", 1, set.getRangeCount());
+
+		checkEquals("size", 10004, set.size());
+
+		set.remove("301-555-9999");
+
+		check("single TN at the end of an NPA-NXX", set,
+			new String[]{ "301-555-9998", "301-556-0000-9999", "301-557-0000-0001" });
+	}
+
+	private static void check(String what, TNRangeSet set, String[] expected) throws Exception
+	{
+		checkEquals(what, Arrays.asList(expected), set.toRangeList());
+	}
+
+	private static void checkEquals(String what, List expected, ArrayList actual) throws Exception
+	{
+		if (!expected.equals(actual))
+		{
+			throw new Exception(what + ": expected " + expected + " but got " + actual);
+		}
+
+		checked++;
+	}
+
+	private static void checkEquals(String what, long expected, long actual) throws Exception
+	{
+		if (expected != actual)
+		{
+			throw new Exception(what + ": expected [" + expected + "] but got [" + actual + "]");
+		}
+
+		checked++;
+	}
+
+	private static void checkEquals(String what, boolean expected, boolean actual) throws Exception
+	{
+		if (expected != actual)
+		{
+			throw new Exception(what + ": expected [" + expected + "] but got [" + actual + "]");
+		}
+
+		checked++;
+	}
+
+	private static int checked = 0;
+}
@@ -0,0 +1,675 @@
+/**
+ * Copyright (c) 2003 NightFire Software, Inc.  All rights reserved.
+ *
+ * $Header$
+ */
+
+package com.nightfire.webgui.core;
+
+import  java.lang.reflect.*;
+import  java.util.*;
+import  java.util.concurrent.*;
+import  java.util.concurrent.atomic.*;
+
+import  javax.servlet.http.*;
+
+import  com.nightfire.framework.util.*;
+
+
+/**
+ * The authenticated-user lookup used by SecurityFilter for single sign-on.
+ * It maps each user's info (the decoded USER_INFO cookie value) to the set of
+ * sessions authenticated with it, and each session id to the cookie it was
+ * last authenticated with.
+ *
+ * Lookups take no locks, and adding or removing a session takes constant
+ * time and never blocks requests for other users.  Sessions whose
+ * sessionDestroyed() notification was missed, such as those of a user who
+ * logged out, or those still mapped to a user's previous info after a
+ * password change, are removed by a periodic sweep.
+ */
+final class AuthenticatedSessionRegistry
+{
+    // User info -> SessionSet.
+    private final ConcurrentHashMap sessionsByUser = new ConcurrentHashMap();
+
+    // Session id -> Registration.
+    private final ConcurrentHashMap registrations = new ConcurrentHashMap();
+
+    private final AtomicBoolean sweeperStarted = new AtomicBoolean();
+
+
+    /**
+     * Adds a session to the sessions authenticated with the given user info,
+     * if it isn't already one of them.
+     *
+     * @param  userInfo  The decoded user-info cookie value.
+     * @param  cookie    The user-info cookie.
+     * @param  session   The authenticated session.
+     */
+    public void add(String userInfo, Cookie cookie, HttpSession session)
+    {
+        String sessionId = session.getId();
+
+        while (true)
+        {
+            SessionSet sessions = getSessionSet(userInfo);
+
+            int added = sessions.add(sessionId, session);
+
+            // the set was emptied and removed meanwhile, so add to its replacement.
+            if (added < 0)
+                continue;
+
+            if (added > 0)
+                registrations.put(sessionId, new Registration(userInfo, cookie));
+
+            return;
+        }
+    }
+
+
+    /**
+     * Tests whether any session is authenticated with the given user info.
+     *
+     * @param  userInfo  The decoded user-info cookie value.
+     *
+     * @return  true if there is at least one such session.
+     */
+    public boolean isAuthenticated(String userInfo)
+    {
+        return sessionsByUser.containsKey(userInfo);
+    }
+
+
+    /**
+     * Gets the sessions authenticated with the given user info.
+     *
+     * @param  userInfo  The decoded user-info cookie value.
+     *
+     * @return  The sessions, or null if there are none.
+     */
+    public Collection getSessions(String userInfo)
+    {
+        SessionSet sessions = (SessionSet)sessionsByUser.get(userInfo);
+
+        return (sessions == null) ? null : sessions.getSessions();
+    }
+
+
+    /**
+     * Removes all the sessions authenticated with the given user info, as
+     * on logout.  The sessions' own registrations are left for
+     * sessionDestroyed() or the sweep to remove.
+     *
+     * @param  userInfo  The decoded user-info cookie value.
+     *
+     * @return  The sessions removed, or null if there were none.
+     */
+    public Collection removeUser(String userInfo)
+    {
+        SessionSet sessions = (SessionSet)sessionsByUser.remove(userInfo);
+
+        if (sessions == null)
+            return null;
+
+        sessions.retire();
+
+        return sessions.getSessions();
+    }
+
+
+    /**
+     * Removes a session which has been invalidated.
+     *
+     * @param  sessionId  The session's id.
+     *
+     * @return  The cookie the session was last authenticated with, or null
+     *          if it wasn't registered.
+     */
+    public Cookie removeSession(String sessionId)
+    {
+        Registration registration = (Registration)registrations.remove(sessionId);
+
+        if (registration == null)
+            return null;
+
+        SessionSet sessions = (SessionSet)sessionsByUser.get(registration.userInfo);
+
+        if (sessions != null)
+            removeFromSet(registration.userInfo, sessions, sessionId);
+
+        return registration.cookie;
+    }
+
+
+    /**
+     * @return  The number of user infos with authenticated sessions.
+     */
+    public int getUserCount()
+    {
+        return sessionsByUser.size();
+    }
+
+
+    /**
+     * @return  The number of registered sessions.
+     */
+    public int getSessionCount()
+    {
+        return registrations.size();
+    }
+
+
+    /**
+     * Removes every session which has been invalidated, or has been inactive
+     * for longer than its maximum inactive interval.
+     *
+     * @return  The number of sessions removed.
+     */
+    public int sweep()
+    {
+        long now     = System.currentTimeMillis();
+
+        int  removed = 0;
+
+        Iterator users = sessionsByUser.entrySet().iterator();
+
+        while (users.hasNext())
+        {
+            Map.Entry  entry    = (Map.Entry)users.next();
+
+            String     userInfo = (String)entry.getKey();
+
+            SessionSet sessions = (SessionSet)entry.getValue();
+
+            Iterator   iter     = sessions.getSessions().iterator();
+
+            while (iter.hasNext())
+            {
+                HttpSession session = (HttpSession)iter.next();
+
+                if (!isExpired(session, now))
+                    continue;
+
+                String sessionId = session.getId();
+
+                if (removeFromSet(userInfo, sessions, sessionId))
+                    removed++;
+
+                Registration registration = (Registration)registrations.get(sessionId);
+
+                // only the registration for this user info, as the session may
+                // since have been authenticated with new info.
+                if (registration != null && registration.userInfo.equals(userInfo))
+                    registrations.remove(sessionId, registration);
+            }
+        }
+
+        // registrations of sessions whose user logged out.
+        Iterator iter = registrations.entrySet().iterator();
+
+        while (iter.hasNext())
+        {
+            Map.Entry    entry        = (Map.Entry)iter.next();
+
+            Registration registration = (Registration)entry.getValue();
+
+            if (!sessionsByUser.containsKey(registration.userInfo))
+                registrations.remove(entry.getKey(), registration);
+        }
+
+        return removed;
+    }
+
+
+    /**
+     * Starts a daemon thread which sweeps the registry at the given interval,
+     * unless one has already been started.
+     *
+     * @param  intervalSec  The interval between sweeps, in seconds.
+     */
+    public void startSweeper(long intervalSec)
+    {
+        if (intervalSec <= 0 || !sweeperStarted.compareAndSet(false, true))
+            return;
+
+        final long interval = intervalSec * 1000;
+
+        Thread sweeper = new Thread("AuthenticatedSessionSweeper")
+            {
+                public void run()
+                {
+                    while (true)
+                    {
+                        try
+                        {
+                            Thread.sleep(interval);
+
+                            int removed = sweep();
+
+                            if (Debug.isLevelEnabled(Debug.BENCHMARK))
+                                Debug.log(Debug.BENCHMARK, "Swept [" + removed + "] expired sessions from the authenticated-user lookup, leaving ["
+                                          + getSessionCount() + "] sessions of [" + getUserCount() + "] users.");
+                        }
+                        catch (InterruptedException e)
+                        {
+                            Debug.warning("Authenticated-session sweeper interrupted, exiting.");
+
+                            return;
+                        }
+                        catch (Exception e)
+                        {
+                            Debug.error("Failed to sweep the authenticated-user lookup: " + e.toString());
+                        }
+                    }
+                }
+            };
+
+        sweeper.setDaemon(true);
+
+        sweeper.setPriority(Thread.MIN_PRIORITY);
+
+        sweeper.start();
+    }
+
+
+    /**
+     * For testing.  Loads the lookup with the given number of sessions spread
+     * over the given users, then has each thread repeatedly run a session
+     * through what SecurityFilter does with the lookup: the single sign-on
+     * check and registration of a new session, the debug listing of the
+     * user's sessions, and removal once the session is destroyed.  This is
+     * run against the Hashtable of Vectors previously used, and against the
+     * registry, and the throughput of each is printed.
+     *
+     * @param  args  The number of sessions, users, threads and sessions per thread.
+     */
+    public static void main(String[] args)
+    {
+        if (args.length < 4)
+        {
+            System.out.println("\n\nUSAGE: AuthenticatedSessionRegistry <num-sessions> <num-users> <num-threads> <sessions-per-thread>\n\n");
+
+            return;
+        }
+
+        try
+        {
+            int sessionCount = Integer.parseInt(args[0]);
+
+            int userCount    = Integer.parseInt(args[1]);
+
+            int threadCount  = Integer.parseInt(args[2]);
+
+            int perThread    = Integer.parseInt(args[3]);
+
+            Debug.disableAll();
+
+            for (int Ix = 0; Ix < 2; Ix++)
+            {
+                run("synchronized (warm-up)", new LegacyLookup(), sessionCount, userCount, threadCount, perThread / 10);
+
+                run("concurrent (warm-up)", new AuthenticatedSessionRegistry(), sessionCount, userCount, threadCount, perThread / 10);
+            }
+
+            run("synchronized", new LegacyLookup(), sessionCount, userCount, threadCount, perThread);
+
+            run("concurrent", new AuthenticatedSessionRegistry(), sessionCount, userCount, threadCount, perThread);
+        }
+        catch (Exception e)
+        {
+            e.printStackTrace();
+        }
+    }
+
+
+    private static void run(String name, final Object lookup, int sessionCount, final int userCount,
+                            int threadCount, final int perThread) throws Exception
+    {
+        for (int Ix = 0; Ix < sessionCount; Ix++)
+            lifecycle(lookup, "user" + (Ix % userCount), createSession("preloaded" + Ix), false);
+
+        final Exception[] errors = new Exception[1];
+
+        Thread[] threads = new Thread[threadCount];
+
+        for (int Ix = 0; Ix < threadCount; Ix++)
+        {
+            final int threadIndex = Ix;
+
+            threads[Ix] = new Thread()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            for (int Jx = 0; Jx < perThread; Jx++)
+                            {
+                                String userInfo = "user" + ((threadIndex * perThread + Jx) % userCount);
+
+                                lifecycle(lookup, userInfo, createSession(threadIndex + "-" + Jx), true);
+                            }
+                        }
+                        catch (Exception e)
+                        {
+                            errors[0] = e;
+                        }
+                    }
+                };
+        }
+
+        long start = System.currentTimeMillis();
+
+        for (int Ix = 0; Ix < threadCount; Ix++)
+            threads[Ix].start();
+
+        for (int Ix = 0; Ix < threadCount; Ix++)
+            threads[Ix].join();
+
+        long stop = System.currentTimeMillis();
+
+        if (errors[0] != null)
+            throw errors[0];
+
+        long total = (long)threadCount * perThread;
+
+        int remaining = (lookup instanceof LegacyLookup) ? ((LegacyLookup)lookup).userInfoLookup.size()
+                                                         : ((AuthenticatedSessionRegistry)lookup).getSessionCount();
+
+        System.out.println(name + ": [" + total + "] sessions on [" + threadCount + "] threads, with ["
+                           + sessionCount + "] sessions of [" + userCount + "] users logged in, took ["
+                           + (stop - start) + "] msec, [" + (total * 1000 / Math.max(1, stop - start))
+                           + "] sessions/sec, [" + remaining + "] sessions left registered.");
+    }
+
+
+    /*
+     * Authenticates a new session, by single sign-on if another session of
+     * the user is already authenticated, then lists the user's sessions and,
+     * if destroy is set, removes the session again.
+     */
+    private static void lifecycle(Object lookup, String userInfo, HttpSession session, boolean destroy)
+    {
+        Cookie cookie = new Cookie("USER_INFO", userInfo);
+
+        if (lookup instanceof LegacyLookup)
+        {
+            LegacyLookup legacy = (LegacyLookup)lookup;
+
+            legacy.authenticatedUserLookup.get(userInfo);
+
+            legacy.add(userInfo, cookie, session);
+
+            List sessions = (List)legacy.authenticatedUserLookup.get(userInfo);
+
+            if (sessions != null)
+                sessions.size();
+
+            if (destroy)
+                legacy.sessionDestroyed(session);
+        }
+        else
+        {
+            AuthenticatedSessionRegistry registry = (AuthenticatedSessionRegistry)lookup;
+
+            registry.isAuthenticated(userInfo);
+
+            registry.add(userInfo, cookie, session);
+
+            Collection sessions = registry.getSessions(userInfo);
+
+            if (sessions != null)
+                sessions.size();
+
+            if (destroy)
+                registry.removeSession(session.getId());
+        }
+    }
+
+
+    /*
+     * Creates a session which only knows its id.
+     */
+    private static HttpSession createSession(final String id)
+    {
+        return (HttpSession)Proxy.newProxyInstance(HttpSession.class.getClassLoader(), new Class[] { HttpSession.class },
+            new InvocationHandler()
+            {
+                public Object invoke(Object proxy, Method method, Object[] args)
+                {
+                    String methodName = method.getName();
+
+                    if (methodName.equals("getId"))
+                        return id;
+                    else if (methodName.equals("hashCode"))
+                        return Integer.valueOf(id.hashCode());
+                    else if (methodName.equals("equals"))
+                        return Boolean.valueOf(proxy == args[0]);
+
+                    return null;
+                }
+            });
+    }
+
+
+    /*
+     * The authenticated-user lookup SecurityFilter used before this registry.
+     */
+    private static final class LegacyLookup
+    {
+        final Map userInfoLookup          = new Hashtable();
+
+        final Map authenticatedUserLookup = new Hashtable();
+
+        void add(String userInfo, Cookie cookie, HttpSession session)
+        {
+            List sessions = (List)authenticatedUserLookup.get(userInfo);
+
+            if (sessions == null)
+            {
+                sessions = new Vector();
+
+                authenticatedUserLookup.put(userInfo, sessions);
+            }
+
+            if (!sessions.contains(session))
+            {
+                sessions.add(session);
+
+                userInfoLookup.put(session.getId(), cookie);
+            }
+        }
+
+        void sessionDestroyed(HttpSession session)
+        {
+            String sessionId = session.getId();
+
+            Cookie cookie    = (Cookie)userInfoLookup.get(sessionId);
+
+            if (cookie == null)
+                return;
+
+            String userInfo = cookie.getValue();
+
+            List   sessions = (List)authenticatedUserLookup.get(userInfo);
+
+            if (sessions != null)
+            {
+                synchronized (sessions)
+                {
+                    Iterator iterator = sessions.iterator();
+
+                    while (iterator.hasNext())
+                    {
+                        HttpSession candidate = (HttpSession)iterator.next();
+
+                        if (sessionId.equals(candidate.getId()))
+                            iterator.remove();
+                    }
+
+                    userInfoLookup.remove(sessionId);
+
+                    if (sessions.size() == 0)
+                        authenticatedUserLookup.remove(userInfo);
+                }
+            }
+        }
+    }
+
+
+    /**
+     * Gets the set of sessions for the given user info, creating it if necessary.
+     */
+    private SessionSet getSessionSet(String userInfo)
+    {
+        SessionSet sessions = (SessionSet)sessionsByUser.get(userInfo);
+
+        if (sessions == null)
+        {
+            SessionSet created = new SessionSet();
+
+            sessions = (SessionSet)sessionsByUser.putIfAbsent(userInfo, created);
+
+            if (sessions == null)
+                sessions = created;
+        }
+
+        return sessions;
+    }
+
+
+    /**
+     * Removes a session from a user's set, and the set from the lookup if
+     * that emptied it.
+     *
+     * @return  true if the session was in the set.
+     */
+    private boolean removeFromSet(String userInfo, SessionSet sessions, String sessionId)
+    {
+        int remaining = sessions.remove(sessionId);
+
+        if (remaining < 0)
+            return false;
+
+        if (remaining == 0 && sessions.retireIfEmpty())
+            sessionsByUser.remove(userInfo, sessions);
+
+        return true;
+    }
+
+
+    /**
+     * Tests whether a session has been invalidated, or has been inactive for
+     * longer than its maximum inactive interval.
+     */
+    private static boolean isExpired(HttpSession session, long now)
+    {
+        try
+        {
+            int maxInactive = session.getMaxInactiveInterval();
+
+            return maxInactive > 0 && now - session.getLastAccessedTime() > maxInactive * 1000L;
+        }
+        catch (IllegalStateException e)
+        {
+            return true;
+        }
+    }
+
+
+    /**
+     * The sessions authenticated with one user info.  The count is that of
+     * the sessions added and not yet removed, and is set to -1 once the set is
+     * removed from the lookup, so that a session being added at the same time
+     * goes to the set that replaces it rather than being lost.
+     */
+    private static final class SessionSet
+    {
+        // Session id -> HttpSession.
+        private final ConcurrentHashMap sessions = new ConcurrentHashMap();
+
+        private final AtomicInteger count = new AtomicInteger();
+
+
+        /**
+         * @return  1 if the session was added, 0 if it was already in the set,
+         *          or -1 if the set has been retired.
+         */
+        int add(String sessionId, HttpSession session)
+        {
+            // reserve a place first, so that the set can't be retired while
+            // the session is added.
+            while (true)
+            {
+                int current = count.get();
+
+                if (current < 0)
+                    return -1;
+
+                if (count.compareAndSet(current, current + 1))
+                    break;
+            }
+
+            if (sessions.putIfAbsent(sessionId, session) == null)
+                return 1;
+
+            count.decrementAndGet();
+
+            return 0;
+        }
+
+
+        /**
+         * @return  The number of sessions left, or -1 if the session wasn't in the set.
+         */
+        int remove(String sessionId)
+        {
+            if (sessions.remove(sessionId) == null)
+                return -1;
+
+            return count.decrementAndGet();
+        }
+
+
+        /**
+         * Retires the set if it holds no sessions.
+         *
+         * @return  true if the set was retired.
+         */
+        boolean retireIfEmpty()
+        {
+            return count.compareAndSet(0, -1);
+        }
+
+
+        void retire()
+        {
+            count.set(-1);
+        }
+
+
+        Collection getSessions()
+        {
+            return sessions.values();
+        }
+    }
+
+
+    /**
+     * A session's registration.
+     */
+    private static final class Registration
+    {
+        final String userInfo;
+
+        final Cookie cookie;
+
+        Registration(String userInfo, Cookie cookie)
+        {
+            this.userInfo = userInfo;
+
+            this.cookie   = cookie;
+        }
+    }
+}
@@ -57,13 +57,16 @@ public class SecurityFilter implements Filter, ServletConstants, PlatformConstan
     private static final String LOGOUT_PAGE           = "LOGOUT_PAGE";
     private static final String WELCOME_PAGE          = "WELCOME_PAGE";
     private static final String INVALID_LOGIN_PAGE    = "INVALID_LOGIN_PAGE";
+    private static final String SESSION_SWEEP_INTERVAL_PROP = "SESSION_SWEEP_INTERVAL";
 
     private static final String NORMAL_LOGIN_TYPE    = "NORMAL";
     private static final String LOGIN_TYPE_PROP    = "LoginType";
 
     private static boolean singleSignOn             = true;
-    private static Map     userInfoLookup           = new Hashtable();
-    private static Map     authenticatedUserLookup  = new Hashtable();
+    private static AuthenticatedSessionRegistry authenticatedUserLookup = new AuthenticatedSessionRegistry();
+
+    // default interval, in seconds, between sweeps of the authenticated-user lookup.
+    private static final long    DEFAULT_SESSION_SWEEP_INTERVAL  = 300;
 
 
     // default password expiration interval in no. of days.
@@ -82,6 +85,8 @@ public class SecurityFilter implements Filter, ServletConstants, PlatformConstan
 
     private String loginType;
 
+    private long   sessionSweepInterval = DEFAULT_SESSION_SWEEP_INTERVAL;
+
     /**
      * Implementation of Filter's init().  This allows for this filter to perform
      * any initialization tasks.
@@ -99,6 +104,8 @@ public class SecurityFilter implements Filter, ServletConstants, PlatformConstan
         initParameters(filterConfig);
 
         initSingleSignOn();
+
+        authenticatedUserLookup.startSweeper(sessionSweepInterval);
     }
 
     /**
@@ -146,6 +153,22 @@ public class SecurityFilter implements Filter, ServletConstants, PlatformConstan
 
             invalidLoginPage = loginPage;
         }
+
+        // Get the interval between sweeps of expired sessions from the authenticated-user lookup.
+
+        String sweepInterval = filterConfig.getInitParameter(SESSION_SWEEP_INTERVAL_PROP);
+
+        if (StringUtils.hasValue(sweepInterval))
+        {
+            try
+            {
+                sessionSweepInterval = Long.parseLong(sweepInterval);
+            }
+            catch (NumberFormatException e)
+            {
+                log.warn("initParameters(): The filter initialization parameter [" + SESSION_SWEEP_INTERVAL_PROP + "] has an invalid value [" + sweepInterval + "].  The default of [" + DEFAULT_SESSION_SWEEP_INTERVAL + "] seconds will be used instead.");
+            }
+        }
     }
 
     /**
@@ -1028,21 +1051,7 @@ public class SecurityFilter implements Filter, ServletConstants, PlatformConstan
             log.warn("doFilter(): Error occurred while decoding user info cookie." );
         }
 
-        List   sessions = (List)authenticatedUserLookup.get(userInfo);
-
-        if (sessions == null)
-        {
-            sessions = new Vector();
-
-            authenticatedUserLookup.put(userInfo, sessions);
-        }
-
-        if (!sessions.contains(session))
-        {
-            sessions.add(session);
-
-            userInfoLookup.put(session.getId(), cookie);
-        }
+        authenticatedUserLookup.add(userInfo, cookie, session);
 
         debugAuthenticatedUserLookup(cookie);
     }
@@ -1085,9 +1094,7 @@ public class SecurityFilter implements Filter, ServletConstants, PlatformConstan
                     log.warn("doFilter(): Error occurred while decoding user info cookie." );
                 }
 
-                List   sessions = (List)authenticatedUserLookup.get(userInfo);
-
-                if (sessions == null)
+                if (!authenticatedUserLookup.isAuthenticated(userInfo))
                 {
                     log.debug("authenticationRequired(): With single sign-on enabled, session-list lookup with user-info [" + getCookieWithoutPassword( cookie.getName(), userInfo ) + "] returns nothing.  Authentication will be required.");
 
@@ -1149,12 +1156,10 @@ public class SecurityFilter implements Filter, ServletConstants, PlatformConstan
                     log.warn("doFilter(): Error occurred while decoding user info cookie." );
                 }
 
-				List   sessions = (List)authenticatedUserLookup.get(userInfo);
-
 				if (log.isDebugDataEnabled())
 					log.debugData("invalidateSessions(): Cleaning up session for cookie [" + USER_INFO_COOKIE + "] with value [" + getCookieWithoutPassword( cookie.getName(), userInfo ) + "]...");
 
-				authenticatedUserLookup.remove(userInfo);
+				Collection sessions = authenticatedUserLookup.removeUser(userInfo);
 
 				if (sessions == null)
 				{
@@ -1163,22 +1168,19 @@ public class SecurityFilter implements Filter, ServletConstants, PlatformConstan
 					return;
 				}
 
-				synchronized (sessions)
+				Iterator iterator = sessions.iterator();
+
+				while (iterator.hasNext())
 				{
-					Iterator iterator = sessions.iterator();
+					HttpSession eachSession = (HttpSession)iterator.next();
 
-					while (iterator.hasNext())
+					try
 					{
-						HttpSession eachSession = (HttpSession)iterator.next();
-
-						try
-						{
-							eachSession.invalidate();
-						}
-						catch (IllegalStateException e)
-						{
-							log.warn("invalidateSessions():  Trying to invalidate a session that has already been invalidated.  Skipping ...");
-						}
+						eachSession.invalidate();
+					}
+					catch (IllegalStateException e)
+					{
+						log.warn("invalidateSessions():  Trying to invalidate a session that has already been invalidated.  Skipping ...");
 					}
 				}
 
@@ -1199,56 +1201,10 @@ public class SecurityFilter implements Filter, ServletConstants, PlatformConstan
      */
     public static final void sessionDestroyed(HttpSession session)
     {
-        String sessionId = session.getId();
-
-        Cookie cookie    = (Cookie)userInfoLookup.get(sessionId);
-
-        if (cookie != null)
-        {
-            String userInfo = cookie.getValue();
-
-            try {
-                userInfo = URLDecoder.decode(userInfo, "UTF-8");
-            } catch (UnsupportedEncodingException e) {
-                Debug.log(Debug.ALL_WARNINGS,"sessionDestroyed(): Error occurred while decoding user info cookie." );
-            }
-
-
-            if (userInfo != null)
-            {
-                List sessions = (List)authenticatedUserLookup.get(userInfo);
-
-                if (sessions != null)
-                {
-                    synchronized (sessions)
-                    {
-                        if (sessions != null)
-                        {
-                            Iterator iterator = sessions.iterator();
+        authenticatedUserLookup.removeSession(session.getId());
 
-                            while (iterator.hasNext())
-                            {
-                                HttpSession candidate = (HttpSession)iterator.next();
-
-                                if (sessionId.equals(candidate.getId()))
-                                {
-                                    iterator.remove();
-                                }
-                            }
-
-                            userInfoLookup.remove(sessionId);
-
-                            if (sessions.size() == 0)
-                            {
-                                authenticatedUserLookup.remove(userInfo);
-                            }
-                        }
-                    }
-                }
-            }
-        }
         Debug.log(Debug.BENCHMARK,"Total Authenticated Login Count = "
-                  + authenticatedUserLookup.size());
+                  + authenticatedUserLookup.getUserCount());
     }
 
     /**
@@ -1319,7 +1275,7 @@ public class SecurityFilter implements Filter, ServletConstants, PlatformConstan
 
             log.debug("debugAuthenticatedUserLookup(): Looking up session list with user-info [" + getCookieWithoutPassword ( cookie.getName(), userInfo ) + "] ...");
 
-            List sessions = (List)authenticatedUserLookup.get(userInfo);
+            Collection sessions = authenticatedUserLookup.getSessions(userInfo);
 
             if (sessions != null)
             {
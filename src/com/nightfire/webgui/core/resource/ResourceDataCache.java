@@ -8,7 +8,8 @@ package com.nightfire.webgui.core.resource;
 
 import  java.net.*;
 import  java.util.*;
-import java.util.concurrent.locks.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 import  com.nightfire.framework.util.*;
 import com.nightfire.framework.debug.*;
@@ -21,6 +22,17 @@ import java.io.IOException;
  * options are to always use the cached data or to use the most up-to-date data
  * based on its time-stamp.  It also supports the lookup based on either the
  * file-path or the URL object.  Note that this class is thread-safe.
+ *
+ * Cached resources are read without locking.  A resource that isn't cached is
+ * loaded by the first thread to ask for it, while other threads asking for the
+ * same resource wait for that load, so different resources load concurrently.
+ * Modified resources are reloaded by background threads, rather than by the
+ * requests that use them.
+ *
+ * Resource change listeners are notified one at a time, whichever thread
+ * loaded or reloaded the resource, since listeners such as the help file
+ * copier in ContextManager write to shared files.  A load notifies the
+ * listeners only after threads waiting for it have been given the resource.
  */
  
 public final class ResourceDataCache
@@ -31,10 +43,16 @@ public final class ResourceDataCache
 
     private boolean                    develMode;
 
-    private HashMap                    cache;
+    private ConcurrentMap              cache;
+
+    // Loads in progress, as FutureTasks keyed by the resource's url.
+    private ConcurrentMap              loading = new ConcurrentHashMap();
     
     private Map                        resourceChangeListeners;
 
+    // Held while listeners are notified, so that they run one at a time.
+    private final Object               notificationLock = new Object();
+
     private ResourceTransformerFactory factory = null;
     
 
@@ -43,7 +61,26 @@ public final class ResourceDataCache
     private DebugLogger log;
 
 
-    private ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // Checks and reloads resources in development mode.
+    private ExecutorService checker;
+
+    private AtomicLong hits = new AtomicLong();
+
+    private AtomicLong misses = new AtomicLong();
+
+    private AtomicLong loadWaits = new AtomicLong();
+
+    private AtomicLong loadFailures = new AtomicLong();
+
+    private AtomicLong reloads = new AtomicLong();
+
+    private Histogram loadTimes = new Histogram("Resource load time", "msec");
+
+    /**
+     * The minimum time, in milliseconds, between checks of a resource for
+     * modification in development mode.
+     */
+    private static final long DEVEL_CHECK_INTERVAL = 1000;
     
 
 
@@ -112,13 +149,25 @@ public final class ResourceDataCache
                 
 
                 
-        cache                   = new HashMap();
+        cache                   = new ConcurrentHashMap();
 
         factory                 = new DefaultResourceFactory();
 
         resourceChangeListeners = new HashMap();
 
 
+        checker                 = Executors.newSingleThreadExecutor(new ThreadFactory()
+            {
+                public Thread newThread(Runnable r)
+                {
+                    Thread t = new Thread(r, "ResourceDataCacheChecker");
+
+                    t.setDaemon(true);
+
+                    return t;
+                }
+            });
+
         // start up the reloader class for production mode
         ResourceReloader loader = new ResourceReloader(reloadCheckSec, idleCleanupTime);        
         loader.start();
@@ -143,9 +192,10 @@ public final class ResourceDataCache
 
 
     /**
-     * If true then resources are checked for modification one every resource
-     * access. If false, then a reloader thread is used to reloaded 
-     * resources at specified intervals.
+     * If true then resources are checked for modification on every resource
+     * access, at most once a second, by a background thread, so a request may
+     * still get the previous version of a resource just modified. If false,
+     * then a reloader thread is used to reloaded resources at specified intervals.
      *
      * @param  enabled  The flag indicating whether automatic reloading is
      *                        on or off.
@@ -336,107 +386,231 @@ public final class ResourceDataCache
         
         String       key   = url.toString();
 
-        ResourceInfo entry = null;
+        ResourceInfo entry = (ResourceInfo)cache.get(key);
 
-        try {
-            lock.readLock().lock();
-            
-            entry = (ResourceInfo)cache.get(key);
-            
+        if (entry == null)
+        {
+            misses.incrementAndGet();
+
+            entry = load(url, type, key);
         }
-        finally {
-            lock.readLock().unlock();
+        else
+        {
+            hits.incrementAndGet();
+
+            // the check is made in the background, so that the request isn't
+            // held up opening connections to the resource and its references.
+            if (develMode)
+                requestCheck(entry);
         }
-        
 
-        if (entry == null)
-        {
-            log.debug("getResourceData(): An entry with key [" + key + "] does not exist in the cache.  Creating a new resource ...");
+        Benchmark.stopTiming(log, startTime, "Time taken to load resource.");
+
+        //update last access time of the returned resource with current time so as to save resource from being removed from cache.
+        entry.lastAccessed=System.currentTimeMillis();
+
+        if(log.isDebugEnabled() )
+            log.debug("Returning resource: " + entry.getDescription());
             
-            try {
-  
-                lock.writeLock().lock();
-                entry = (ResourceInfo)cache.get(key);
-                // if the entry is not null now another thread beat us to the
-                // update
-                if (entry != null)
-                    return entry.resource;
-                
-                
-                URLConnection connection = url.openConnection();
+        return entry.resource;
+    }
 
-                entry                    = addToCache(url, connection, type, key);
 
-                notifyResourceChangeListeners(entry, null);
+    /**
+     * Gets a resource which isn't in the cache, either by loading and caching it,
+     * or, if another thread is already loading it, by waiting for that load.
+     *
+     * @param  url        The url of the resource.
+     * @param  type       The type of the resource. {@link DefaultFactory}
+     * @param  key        The key to lookup the cached resource.
+     *
+     * @exception  FrameworkException  Thrown if the resource can't be loaded.
+     *
+     * @return  The ResourceInfo object which had been added to the cache.
+     */
+    private ResourceInfo load(final URL url, final String type, final String key) throws FrameworkException
+    {
+        FutureTask task = (FutureTask)loading.get(key);
 
-                if (log.isDebugEnabled())
+        if (task == null)
+        {
+            // Set to the new entry if this load adds it to the cache.
+            final ResourceInfo[] added = new ResourceInfo[1];
+
+            FutureTask created = new FutureTask(new Callable()
                 {
-                    log.debug("getResourceData(): Added a new entry to the cache, with key [" + key + "] and value:\n" + entry.getDescription());
+                    public Object call() throws Exception
+                    {
+                        // if the entry is not null now another thread beat us to the
+                        // update
+                        ResourceInfo entry = (ResourceInfo)cache.get(key);
+
+                        if (entry != null)
+                            return entry;
+
+                        log.debug("getResourceData(): An entry with key [" + key + "] does not exist in the cache.  Creating a new resource ...");
+
+                        entry = addToCache(url, url.openConnection(), type, key);
+
+                        added[0] = entry;
+
+                        if (log.isDebugEnabled())
+                        {
+                            log.debug("getResourceData(): Added a new entry to the cache, with key [" + key + "] and value:\n" + entry.getDescription());
+                        }
+
+                        return entry;
+                    }
+                });
+
+            task = (FutureTask)loading.putIfAbsent(key, created);
+
+            if (task == null)
+            {
+                task = created;
+
+                try
+                {
+                    task.run();
+                }
+                finally
+                {
+                    // the entry is in the cache by now, so later requests find it there.
+                    loading.remove(key, task);
                 }
 
-                return entry.resource;
-                
+                // notified outside the load, so that a listener which uses the
+                // cache never waits for a load that is waiting for the listener.
+                if (added[0] != null)
+                    notifyResourceChangeListeners(added[0], null);
             }
-            catch (Exception e) {
-                log.error("getResourceData(): Failed to add a new entry into the cache: " + e.getMessage());
-                log.error("",e);
-                throw new FrameworkException(e);
+            else
+                loadWaits.incrementAndGet();
+        }
+        else
+            loadWaits.incrementAndGet();
 
-            } finally {
-                lock.writeLock().unlock();
-                
-            }
-            
+        try
+        {
+            return (ResourceInfo)task.get();
         }
-        
-            
-        if (develMode) 
+        catch (ExecutionException e)
         {
-            try
-            {
-                URLConnection connection = url.openConnection();
+            Exception cause = (e.getCause() instanceof Exception) ? (Exception)e.getCause() : e;
 
-                lock.writeLock().lock();
-                
- 
-                if (isResourceChanged(entry, url)) {
-                        if (log.isDebugEnabled())
-                            {
-                                log.debug("getResourceData(): The requested resource[or one of the referred resources] has been modified.  Updating the cached resource with key [" + key + "] ...");
-                            }
-                    
-                        ResourceInfo previousEntry = entry;
+            log.error("getResourceData(): Failed to add a new entry into the cache: " + cause.getMessage());
+            log.error("", cause);
+
+            throw new FrameworkException(cause);
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
 
-                        entry                      = addToCache(url, connection, type, key);
+            throw new FrameworkException("Interrupted while waiting for resource [" + key + "] to be loaded.");
+        }
+    }
 
-                        notifyResourceChangeListeners(entry, previousEntry);
+
+    /**
+     * Has the checker thread check a cached resource for modification, and reload
+     * it, unless it was checked recently or a check is already under way.
+     *
+     * @param  entry  The cached resource.
+     */
+    private void requestCheck(final ResourceInfo entry)
+    {
+        long now = System.currentTimeMillis();
+
+        if (now - entry.lastChecked < DEVEL_CHECK_INTERVAL || !entry.checking.compareAndSet(false, true))
+            return;
+
+        entry.lastChecked = now;
+
+        try
+        {
+            checker.execute(new Runnable()
+                {
+                    public void run()
+                    {
+                        try
+                        {
+                            reloadIfChanged(entry);
+                        }
+                        finally
+                        {
+                            entry.checking.set(false);
+                        }
                     }
-               
- 
-                
-            }
-            catch (Exception e)
+                });
+        }
+        catch (RejectedExecutionException e)
+        {
+            entry.checking.set(false);
+        }
+    }
+
+
+    /**
+     * Reloads a cached resource if it, or one of the resources it refers to,
+     * has been modified, and notifies the listeners of the new resource.  If the
+     * resource can't be reloaded it is removed from the cache, so that the next
+     * request for it reports the error.  A resource whose key isn't a valid url
+     * is skipped.
+     *
+     * @param  previousEntry  The cached resource.
+     *
+     * @return  true if the resource was reloaded or removed.
+     */
+    private boolean reloadIfChanged(ResourceInfo previousEntry)
+    {
+        String key = previousEntry.id;
+
+        URL url;
+
+        try
+        {
+            url = new URL(key);
+        }
+        catch (MalformedURLException e)
+        {
+            // if the id is not a valid url then skip it.
+            // This should never occur since urls are always used
+            // as the key.
+            return false;
+        }
+
+        if (!isResourceChanged(previousEntry, url))
+            return false;
+
+        try
+        {
+            if (log.isDebugEnabled())
             {
-                log.error("getResourceData(): Failed to update the modified resource in the cache: " + e.getMessage());
-                log.error("",e);
-                throw new FrameworkException(e);
-            }
-            finally {
-                lock.writeLock().unlock();
+                log.debug("reloadIfChanged(): The requested resource[or one of the referred resources] has been modified.  Updating the cached resource with key [" + key + "] ...");
             }
-            
-        }
 
+            ResourceInfo entry = createResourceInfo(url, url.openConnection(), previousEntry.type, key);
 
-        Benchmark.stopTiming(log, startTime, "Time taken to load resource.");
+            entry.lastAccessed = previousEntry.lastAccessed;
 
-        //update last access time of the returned resource with current time so as to save resource from being removed from cache.
-        entry.lastAccessed=System.currentTimeMillis();
+            // if the entry was removed or replaced meanwhile, leave it.
+            if (cache.replace(key, previousEntry, entry))
+            {
+                reloads.incrementAndGet();
 
-        if(log.isDebugEnabled() )
-            log.debug("Returning resource: " + entry.getDescription());
-            
-        return entry.resource;
+                notifyResourceChangeListeners(entry, previousEntry);
+            }
+        }
+        catch (Exception e)
+        {
+            log.error("reloadIfChanged(): Failed to update the modified resource in the cache, removing it: " + e.getMessage());
+            log.error("",e);
+
+            cache.remove(key, previousEntry);
+        }
+
+        return true;
     }
 
 
@@ -476,7 +650,7 @@ public final class ResourceDataCache
          
 
     /**
-     * Convenient method for adding an entry to the cache.
+     * Convenient method for loading a resource and adding it to the cache.
      *
      * @param  url        The url of the resource.
      * @param  connection The URLConnection object.
@@ -488,6 +662,45 @@ public final class ResourceDataCache
      * @return  The ResourceInfo object which had been added to the cache.
      */
     private ResourceInfo addToCache(URL url, URLConnection connection, String type, String key) throws Exception
+    {
+        ResourceInfo entry = createResourceInfo(url, connection, type, key);
+
+        cache.put(key, entry);
+
+        return entry;
+    }
+
+
+    /**
+     * Loads a resource, without adding it to the cache.
+     *
+     * @param  url        The url of the resource.
+     * @param  connection The URLConnection object.
+     * @param  type       The type of the resource. {@link DefaultFactory}
+     * @param  key        The key to lookup the cached resource.
+     *
+     * @exception  Exception  Thrown when an error occurs during processing
+     *
+     * @return  The ResourceInfo object for the resource.
+     */
+    private ResourceInfo createResourceInfo(URL url, URLConnection connection, String type, String key) throws Exception
+    {
+        long loadStart = System.currentTimeMillis();
+
+        try {
+            return transform(url, connection, type, key);
+        }
+        catch (Exception e) {
+            loadFailures.incrementAndGet();
+            throw e;
+        }
+        finally {
+            loadTimes.record(System.currentTimeMillis() - loadStart);
+        }
+    }
+
+
+    private ResourceInfo transform(URL url, URLConnection connection, String type, String key) throws Exception
     {
 
         // before using any connections make sure all caching is off.
@@ -537,8 +750,6 @@ public final class ResourceDataCache
             entry.refs = refs;
         }
         
-        cache.put(key, entry);
-
         return entry;
     }
   
@@ -601,12 +812,21 @@ public final class ResourceDataCache
   
     /**
      * Notifies all the registered ResourceChangeListener instances of the updated
-     * resource.
+     * resource.  Only one thread notifies listeners at a time.
      *
      * @param  newResourceInfo  New resource information.
      * @param  oldResourceInfo  Previous resource information.
      */
     private void notifyResourceChangeListeners(ResourceInfo newResourceInfo, ResourceInfo oldResourceInfo)
+    {
+        synchronized (notificationLock)
+        {
+            notifyListeners(newResourceInfo, oldResourceInfo);
+        }
+    }
+
+
+    private void notifyListeners(ResourceInfo newResourceInfo, ResourceInfo oldResourceInfo)
     {        
         Set listenerSet = resourceChangeListeners.entrySet();
 
@@ -654,6 +874,10 @@ public final class ResourceDataCache
     {
         Map tempMap = new HashMap(cache);
         StringBuffer buf = new StringBuffer();
+        buf.append("Resource cache: entries [" + tempMap.size() + "], hits [" + hits.get()
+                   + "], misses [" + misses.get() + "], waits for loads in progress [" + loadWaits.get()
+                   + "], load failures [" + loadFailures.get() + "], reloads [" + reloads.get() + "]\n");
+        buf.append(loadTimes.describe() + "\n");
         buf.append("Resource contents: \n");
         
         Iterator iter = tempMap.values().iterator();
@@ -680,7 +904,13 @@ public final class ResourceDataCache
 
         public long   lastModified;
 
-        public long   lastAccessed;
+        public volatile long lastAccessed;
+
+        // When the resource was last checked for modification in development mode.
+        public volatile long lastChecked;
+
+        // Set while the resource is being checked for modification.
+        public final AtomicBoolean checking = new AtomicBoolean();
 
         public List refs;
         
@@ -805,81 +1035,47 @@ public final class ResourceDataCache
       try {
         Thread.currentThread().setPriority( Thread.MIN_PRIORITY );
         
-        boolean changed = false;
-        
-        HashMap tmpCache = null;
-
-        
-        
         while (!interrupted) {
 
             log.info("Checking for changed resources.");  
 
-            //synchronized (this) { 
-            try {
-                lock.readLock().lock();
-                
-                tmpCache = new HashMap(cache);
-            } 
-            finally {
-                lock.readLock().unlock();
-            }
-            
-            
-        
-            int beforeSize  = tmpCache.size();
-            
-            Iterator iter = tmpCache.values().iterator();
+            int changed = 0;
+
+            int idle = 0;
+
+            Iterator iter = new ArrayList(cache.values()).iterator();
             
             while (iter.hasNext() ) {
                 ResourceInfo ri = (ResourceInfo) iter.next();
-                try {
-                    
-                    URL url = new URL(ri.id);
-                    //log.debug("Checking resource: " + ri);
-                    
-                    if (isResourceChanged(ri, url)) {
-                        log.info("Resource changed, removing to force a reload: " + ri);
-                        changed = true;
-                        iter.remove();
-                    }
 
-                    //Remove resource from cache if it is idle for more than idleCleanupTime
-                    if(System.currentTimeMillis() - ri.lastAccessed > idleCleanupTime)
-                    {
-                        log.info("Resource not used recently, removing to free up memory: " + ri);
-                        changed = true;
-                        iter.remove();
+                //Remove resource from cache if it is idle for more than idleCleanupTime
+                if(System.currentTimeMillis() - ri.lastAccessed > idleCleanupTime)
+                {
+                    log.info("Resource not used recently, removing to free up memory: " + ri);
 
-                    }
-                }
-                catch (MalformedURLException e) {
-                    // if the id is not a valid url then skip it.
-                    // This should never occur since urls are always used
-                    // as the key.
+                    if (cache.remove(ri.id, ri))
+                        idle++;
+
+                    continue;
                 }
-                
-            }
-      
-            
 
-            // if the some resource changed them
-            // perform an intersection with the 
-            // the main cache, to remove changed resources.
-            if (changed) {
-                log.debug("Number of changed or not recently used resources [" + (beforeSize - tmpCache.size()) +"]");             
-                //synchronized (this) { 
-                try {
-                    lock.writeLock().lock();
-                    
-                    cache.entrySet().retainAll(tmpCache.entrySet());
-               
-                } 
-                finally {
-                    lock.writeLock().unlock();
+                // changed resources are reloaded here, rather than removed to
+                // force a reload by the next request for them.
+                if (ri.checking.compareAndSet(false, true)) {
+                    try {
+                        if (reloadIfChanged(ri)) {
+                            log.info("Resource changed: " + ri.id);
+                            changed++;
+                        }
+                    }
+                    finally {
+                        ri.checking.set(false);
+                    }
                 }
+            }
 
-                
+            if (changed > 0 || idle > 0) {
+                log.debug("Number of changed resources [" + changed + "], not recently used resources [" + idle +"]");             
             }
             else {
                 log.debug("No resources changed");